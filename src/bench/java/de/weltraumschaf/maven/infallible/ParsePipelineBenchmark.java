@@ -0,0 +1,100 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures files per second of the whole parse pipeline on synthetic corpora of several sizes.
+ * <p>
+ * Each invocation reads, lexes and parses all {@value #FILES} files of the corpus from disk with the
+ * {@link ParseScheduler} and collects the results as the mojo does. The scores are files per second, because each
+ * invocation counts as {@value #FILES} operations.
+ * </p>
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParsePipelineBenchmark {
+
+    private static final int FILES = 100;
+    private static final String ENCODING = "utf-8";
+
+    /**
+     * Statements per file, from tiny files dominated by per file overhead to large files dominated by parsing.
+     */
+    @Param({"10", "1000", "20000"})
+    public int statements;
+    /**
+     * Parser thread specification as for the mojo's {@code threads} parameter.
+     */
+    @Param({"1", "1C"})
+    public String threads;
+    /**
+     * Prediction strategy as for the mojo's {@code predictionStrategy} parameter.
+     */
+    @Param({"ll", "two-stage"})
+    public String strategy;
+
+    private Path corpus;
+    private List<String> files;
+    private ParserFactory parsers;
+    private ParserInvoker invoker;
+    private ParseScheduler scheduler;
+
+    @Setup
+    public void generateCorpus() throws IOException, MojoExecutionException {
+        corpus = Files.createTempDirectory("infallible-bench");
+        files = SnafuCorpus.generate(corpus, FILES, statements);
+        parsers = new ParserFactory(new SystemStreamLog(), getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        invoker = new ParserInvoker(new SystemStreamLog(), parsers.getParserClass(), "startRule",
+            PredictionStrategy.forConfigName(strategy));
+        scheduler = new ParseScheduler(
+            ParseScheduler.parseThreads(threads, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @TearDown
+    public void deleteCorpus() throws IOException {
+        SnafuCorpus.delete(corpus);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public Collector parseCorpus() throws MojoExecutionException {
+        final Collector tested = new Collector();
+        scheduler.run(files, this::parse, tested);
+
+        if (tested.hasFailed()) {
+            throw new IllegalStateException("Generated corpus must not fail!");
+        }
+
+        return tested;
+    }
+
+    private Result parse(final String fileToTest) throws MojoExecutionException {
+        return invoker.invoke(parsers.create(Paths.get(fileToTest), ENCODING));
+    }
+}
@@ -0,0 +1,90 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per file overhead to create a parser and invoke its start rule.
+ * <p>
+ * The source is a one liner, so the numbers are dominated by the creation and invocation overhead, not by the
+ * parsing itself. {@link #reflective()} resolves the generated classes, constructors and the start rule for every
+ * file as the plugin did before {@link ParserFactory} and {@link ParserInvoker} cached them as method handles.
+ * {@link #reused()} resets the lexer and parser of the benchmark thread instead of creating new ones. No parser builds
+ * a parse tree, as by default in the plugin. Run with
+ * {@code -prof gc} to compare the allocation rate ({@code gc.alloc.rate.norm} is the allocated bytes per file).
+ * </p>
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserCreationBenchmark {
+
+    private static final String PACKAGE_NAME = "foo.bar.baz";
+    private static final String GRAMMAR_NAME = "Snafu";
+    private static final String START_RULE = "startRule";
+    private static final String SOURCE = "3 * 4 + 5.27 ;";
+
+    private ClassLoader classes;
+    private ParserFactory parsers;
+    private ParserInvoker invoker;
+    private ParserFactory reusingParsers;
+
+    @Setup
+    public void resolveGrammar() throws MojoExecutionException {
+        classes = getClass().getClassLoader();
+        parsers = new ParserFactory(new SystemStreamLog(), classes, PACKAGE_NAME, GRAMMAR_NAME);
+        invoker = new ParserInvoker(new SystemStreamLog(), parsers.getParserClass(), START_RULE);
+        reusingParsers = new ParserFactory(
+            new SystemStreamLog(), classes, PACKAGE_NAME, GRAMMAR_NAME, ParserFactory.Options.DEFAULT.withReuse(true));
+    }
+
+    @Benchmark
+    public Result reflective() throws Exception {
+        final Lexer lexer = classes.loadClass(ParserFactory.generateClassName(PACKAGE_NAME, GRAMMAR_NAME, "Lexer"))
+            .asSubclass(Lexer.class)
+            .getConstructor(CharStream.class)
+            .newInstance(new ANTLRInputStream(SOURCE));
+        final Parser parser = classes.loadClass(ParserFactory.generateClassName(PACKAGE_NAME, GRAMMAR_NAME, "Parser"))
+            .asSubclass(Parser.class)
+            .getConstructor(TokenStream.class)
+            .newInstance(new CommonTokenStream(lexer));
+        parser.setErrorHandler(new BailErrorStrategy());
+        // Like the parsers of the factory, so only the creation and invocation differ.
+        parser.setBuildParseTree(false);
+        parser.getClass().getDeclaredMethod(START_RULE).invoke(parser);
+        return Result.passed(parser.getSourceName());
+    }
+
+    @Benchmark
+    public Result bound() throws MojoExecutionException {
+        return invoker.invoke(parsers.create(new ANTLRInputStream(SOURCE)));
+    }
+
+    @Benchmark
+    public Result reused() throws MojoExecutionException {
+        return invoker.invoke(reusingParsers.create(new ANTLRInputStream(SOURCE)));
+    }
+}
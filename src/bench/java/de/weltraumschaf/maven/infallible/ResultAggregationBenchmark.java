@@ -0,0 +1,87 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost to collect results and to format the summary.
+ * <p>
+ * The results are created up front with random metrics, spread over 100 directories and with one percent failures,
+ * so only {@link Collector} and {@link ResultFormatter} are measured.
+ * </p>
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResultAggregationBenchmark {
+
+    private static final int DIRECTORIES = 100;
+    private static final int FAILURE_RATE = 100;
+
+    /**
+     * Number of collected results.
+     */
+    @Param({"1000", "100000"})
+    public int results;
+    /**
+     * How many slowest files and directories are tracked, as for the mojo's {@code reportSlowest} parameter.
+     */
+    @Param({"0", "10"})
+    public int slowest;
+
+    private List<Result> created;
+    private Collector collected;
+
+    @Setup
+    public void createResults() {
+        final Random random = new Random(42L);
+        created = new ArrayList<>(results);
+
+        for (int i = 0; i < results; ++i) {
+            final String file = "/project/src/dir" + (i % DIRECTORIES) + "/source" + i + ".snf";
+            final Result result = i % FAILURE_RATE == 0
+                ? Result.failed(file, new ParseCancellationException("Syntax error in " + file))
+                : Result.passed(file);
+            created.add(result.withMetrics(new Metrics(
+                random.nextInt(100_000), random.nextInt(500_000), random.nextInt(2_000_000),
+                random.nextInt(10_000), random.nextInt(100_000))));
+        }
+
+        collected = aggregate();
+    }
+
+    @Benchmark
+    public Collector aggregate() {
+        final Collector tested = new Collector(slowest);
+
+        for (final Result result : created) {
+            tested.add(result);
+        }
+
+        return tested;
+    }
+
+    @Benchmark
+    public String format() {
+        return new ResultFormatter().format(collected, 1_000_000_000L);
+    }
+}
@@ -0,0 +1,131 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic sources for the Snafu test grammar ({@code src/test/antlr4/Snafu.g4}).
+ * <p>
+ * The sources are generated from a fixed seed, so each benchmark run parses the same corpus. All generated
+ * statements are valid, so every file passes.
+ * </p>
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class SnafuCorpus {
+
+    /**
+     * Seed for the generated statements.
+     */
+    private static final long SEED = 42L;
+    /**
+     * Maximum nesting of parenthesized statements.
+     */
+    private static final int MAX_DEPTH = 3;
+    /**
+     * Files are spread over this many sub directories.
+     */
+    private static final int DIRECTORIES = 10;
+    private static final String[] OPERATORS = {" + ", " - ", " * ", " / "};
+
+    private SnafuCorpus() {
+        super();
+    }
+
+    /**
+     * Generates the given number of files into the given directory.
+     *
+     * @param directory must not be {@code null}
+     * @param files greater than 0
+     * @param statementsPerFile greater than 0
+     * @return absolute paths of the generated files
+     * @throws IOException if a file can't be written
+     */
+    static List<String> generate(final Path directory, final int files, final int statementsPerFile)
+        throws IOException {
+        final Random random = new Random(SEED);
+        final List<String> generated = new ArrayList<>(files);
+
+        for (int i = 0; i < files; ++i) {
+            final Path file = directory.resolve("dir" + (i % DIRECTORIES)).resolve("source" + i + ".snf");
+            Files.createDirectories(file.getParent());
+
+            try (Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                output.write(statements(random, statementsPerFile));
+            }
+
+            generated.add(file.toAbsolutePath().toString());
+        }
+
+        return generated;
+    }
+
+    /**
+     * Generates the given number of statements, one per line.
+     *
+     * @param random must not be {@code null}
+     * @param count not negative
+     * @return never {@code null}
+     */
+    static String statements(final Random random, final int count) {
+        final StringBuilder buffer = new StringBuilder();
+
+        for (int i = 0; i < count; ++i) {
+            statement(buffer, random, 0);
+            buffer.append(" ;\n");
+        }
+
+        return buffer.toString();
+    }
+
+    private static void statement(final StringBuilder buffer, final Random random, final int depth) {
+        final int terms = 1 + random.nextInt(4);
+
+        for (int i = 0; i < terms; ++i) {
+            if (i > 0) {
+                buffer.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+            }
+
+            if (depth < MAX_DEPTH && random.nextInt(4) == 0) {
+                buffer.append('(');
+                statement(buffer, random, depth + 1);
+                buffer.append(')');
+            } else if (random.nextBoolean()) {
+                buffer.append(random.nextInt(1000));
+            } else {
+                buffer.append(random.nextInt(100)).append('.').append(random.nextInt(100));
+            }
+        }
+    }
+
+    /**
+     * Deletes the given directory recursively.
+     *
+     * @param directory must not be {@code null}
+     * @throws IOException if a file can't be deleted
+     */
+    static void delete(final Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException ex) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.shared.model.fileset.FileSet;
+
+/**
+ * Reads the files of an archive without extracting them.
+ * <p>
+ * Supported are zip and jar archives, tar archives, optionally gzip compressed ({@code .tar.gz} or {@code .tgz}), and
+ * gzip compressed single files ({@code .gz}). The type is recognized by the file name. All archives are read
+ * sequentially in one pass, so also compressed tar archives are read only once.
+ * </p>
+ * <p>
+ * An entry is identified by the path of its archive and its name separated by {@value #ENTRY_SEPARATOR} (e.g.
+ * {@code /corpus/snafu.zip!/simple/constant.snf}). The name of the single entry of a gzip compressed file is the
+ * file name without {@code .gz}.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Archive {
+
+    /**
+     * Separates the path of the archive from the entry name.
+     */
+    static final String ENTRY_SEPARATOR = "!/";
+    /**
+     * Size of the read buffers.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Suffix of gzip compressed files.
+     */
+    private static final String GZIP = ".gz";
+
+    private Archive() {
+        super();
+    }
+
+    /**
+     * Whether the given file is a supported archive.
+     *
+     * @param file must not be {@code null}
+     * @return {@code true} if supported, else {@code false}
+     */
+    static boolean isArchive(final Path file) {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final Path fileName = file.getFileName();
+
+        if (null == fileName) {
+            return false;
+        }
+
+        final String name = fileName.toString().toLowerCase(Locale.ROOT);
+        return isZip(name) || isTar(name) || name.endsWith(".tgz") || name.endsWith(GZIP);
+    }
+
+    /**
+     * Whether any of the given file sets has an archive as directory.
+     *
+     * @param filesets may be {@code null}
+     * @return {@code true} if any archive, else {@code false}
+     */
+    static boolean isAnyArchive(final FileSet[] filesets) {
+        if (null == filesets) {
+            return false;
+        }
+
+        for (final FileSet set : filesets) {
+            final Path directory = Paths.get(set.getDirectory());
+
+            if (Files.isRegularFile(directory) && isArchive(directory)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isZip(final String name) {
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+
+    private static boolean isTar(final String name) {
+        return name.endsWith(".tar");
+    }
+
+    /**
+     * Visits all files of the given archive in the order they are stored.
+     *
+     * @param archive must not be {@code null}, a supported archive
+     * @param visitor must not be {@code null}
+     * @throws IOException if the archive can't be read or the visitor failed
+     */
+    static void read(final Path archive, final EntryVisitor visitor) throws IOException {
+        Validate.notNull(archive, "Parameter 'archive' must not be null!");
+        Validate.notNull(visitor, "Parameter 'visitor' must not be null!");
+        Validate.isTrue(isArchive(archive), "Parameter 'archive' must be a supported archive!");
+        final String name = archive.getFileName().toString();
+        final String lowerName = name.toLowerCase(Locale.ROOT);
+
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE)) {
+            if (isZip(lowerName)) {
+                readZip(new ZipInputStream(file), visitor);
+            } else if (isTar(lowerName)) {
+                readTar(new TarArchiveInputStream(file), visitor);
+            } else if (lowerName.endsWith(".tar" + GZIP) || lowerName.endsWith(".tgz")) {
+                readTar(new TarArchiveInputStream(new GZIPInputStream(file, BUFFER_SIZE)), visitor);
+            } else {
+                final String entry = name.substring(0, name.length() - GZIP.length());
+                visitor.visit(entry, new GZIPInputStream(file, BUFFER_SIZE));
+            }
+        }
+    }
+
+    private static void readZip(final ZipInputStream zip, final EntryVisitor visitor) throws IOException {
+        ZipEntry entry;
+
+        while (null != (entry = zip.getNextEntry())) {
+            if (!entry.isDirectory()) {
+                visitor.visit(normalize(entry.getName()), zip);
+            }
+        }
+    }
+
+    private static void readTar(final TarArchiveInputStream tar, final EntryVisitor visitor) throws IOException {
+        TarArchiveEntry entry;
+
+        while (null != (entry = tar.getNextTarEntry())) {
+            if (entry.isFile()) {
+                visitor.visit(normalize(entry.getName()), tar);
+            }
+        }
+    }
+
+    /**
+     * Strips leading {@code ./} and {@code /} and unifies the separators.
+     *
+     * @param name must not be {@code null}
+     * @return never {@code null}
+     */
+    static String normalize(final String name) {
+        String normalized = name.replace('\\', '/');
+
+        while (normalized.startsWith("./") || normalized.startsWith("/")) {
+            normalized = normalized.substring(normalized.indexOf('/') + 1);
+        }
+
+        return normalized;
+    }
+
+    /**
+     * Reads the remaining bytes of the given input.
+     *
+     * @param input must not be {@code null}, not closed
+     * @return never {@code null}
+     * @throws IOException if the input can't be read
+     */
+    static byte[] readFully(final InputStream input) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = input.read(buffer)) != -1) {
+            content.write(buffer, 0, read);
+        }
+
+        return content.toByteArray();
+    }
+
+    /**
+     * Visits the files of an archive.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+
+        /**
+         * Visits one file.
+         *
+         * @param name never {@code null}, relative to the archive root separated by {@code /}
+         * @param content never {@code null}, only valid during this call and must not be closed
+         * @throws IOException if the content can't be read
+         */
+        void visit(String name, InputStream content) throws IOException;
+    }
+}
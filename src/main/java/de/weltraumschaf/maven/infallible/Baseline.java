@@ -0,0 +1,254 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Throughput of a run, to detect performance regressions of later runs.
+ * <p>
+ * A baseline holds the files and tokens parsed per second and the total time per directory. A later run regressed if
+ * its throughput dropped by more than a given percentage. The same applies to each directory: Its time may grow
+ * only so much that its throughput drops by at most the same percentage. Directories which took less than
+ * {@link #MIN_DIRECTORY_MILLIS} in the baseline are not compared, because their time is mostly noise.
+ * </p>
+ * <p>
+ * Baselines are stored as properties file. Directories are keyed by their path relative to their file set directory,
+ * so a baseline recorded in one checkout matches any other. This class is immutable.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Baseline {
+
+    /**
+     * Default name of the baseline file in the work directory.
+     */
+    static final String FILE_NAME = "baseline.properties";
+    /**
+     * Directories which took less in the baseline are not compared.
+     */
+    static final long MIN_DIRECTORY_MILLIS = 10;
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    /**
+     * Key of the parsed files per second.
+     */
+    private static final String FILES_PER_SECOND = "filesPerSecond";
+    /**
+     * Key of the parsed tokens per second.
+     */
+    private static final String TOKENS_PER_SECOND = "tokensPerSecond";
+    /**
+     * Prefix of the keys of the directory times.
+     */
+    private static final String DIRECTORY_PREFIX = "directory.";
+
+    /**
+     * Parsed files per second.
+     */
+    private final double filesPerSecond;
+    /**
+     * Parsed tokens per second.
+     */
+    private final double tokensPerSecond;
+    /**
+     * Total nanoseconds per directory.
+     */
+    private final Map<String, Long> directoryNanos;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param filesPerSecond not negative
+     * @param tokensPerSecond not negative
+     * @param directoryNanos must not be {@code null}
+     */
+    Baseline(final double filesPerSecond, final double tokensPerSecond, final Map<String, Long> directoryNanos) {
+        super();
+        Validate.isTrue(filesPerSecond >= 0, "Parameter 'filesPerSecond' must not be negative!");
+        Validate.isTrue(tokensPerSecond >= 0, "Parameter 'tokensPerSecond' must not be negative!");
+        Validate.notNull(directoryNanos, "Parameter 'directoryNanos' must not be null!");
+        this.filesPerSecond = filesPerSecond;
+        this.tokensPerSecond = tokensPerSecond;
+        this.directoryNanos = Collections.unmodifiableMap(new TreeMap<>(directoryNanos));
+    }
+
+    /**
+     * Measures the throughput of the given run.
+     * <p>
+     * Directories with the same key are summed up. The run must not have cached results (see
+     * {@link Result#isCached()}): The elapsed time includes checking the unchanged files, which were not parsed, so
+     * neither counting nor ignoring them gives the throughput of parsing.
+     * </p>
+     *
+     * @param tested must not be {@code null}, should track all directories, without cached results
+     * @param elapsedNanos wall clock time to parse all files, greater than 0
+     * @param directoryKey must not be {@code null}, gives the key of an absolute directory
+     * @return never {@code null}
+     */
+    static Baseline measure(
+        final Collector tested, final long elapsedNanos, final UnaryOperator<String> directoryKey) {
+        Validate.notNull(tested, "Parameter 'tested' must not be null!");
+        Validate.isTrue(0 == tested.countCached(), "Parameter 'tested' must not have cached results!");
+        Validate.isTrue(elapsedNanos > 0, "Parameter 'elapsedNanos' must be greater than 0!");
+        Validate.notNull(directoryKey, "Parameter 'directoryKey' must not be null!");
+        final double seconds = elapsedNanos / NANOS_PER_SECOND;
+        final Map<String, Long> directories = new HashMap<>();
+        tested.directoryNanos().forEach((directory, nanos) ->
+            directories.merge(directoryKey.apply(directory), nanos, Long::sum));
+        return new Baseline(
+            tested.count() / seconds,
+            tested.getTotalMetrics().getTokens() / seconds,
+            directories);
+    }
+
+    /**
+     * Loads a stored baseline.
+     *
+     * @param file must not be {@code null}
+     * @return never {@code null}
+     * @throws MojoExecutionException if the file can't be read or is malformed
+     */
+    static Baseline load(final Path file) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final Properties stored = new Properties();
+
+        try (InputStream input = Files.newInputStream(file)) {
+            stored.load(input);
+            final Map<String, Long> directories = new HashMap<>();
+
+            for (final String name : stored.stringPropertyNames()) {
+                if (name.startsWith(DIRECTORY_PREFIX)) {
+                    directories.put(
+                        name.substring(DIRECTORY_PREFIX.length()), Long.parseLong(stored.getProperty(name)));
+                }
+            }
+
+            return new Baseline(
+                Double.parseDouble(required(stored, FILES_PER_SECOND)),
+                Double.parseDouble(required(stored, TOKENS_PER_SECOND)),
+                directories);
+        } catch (final IOException | IllegalArgumentException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read baseline '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private static String required(final Properties stored, final String name) {
+        final String value = stored.getProperty(name);
+
+        if (null == value) {
+            throw new IllegalArgumentException(String.format("Missing '%s'!", name));
+        }
+
+        return value;
+    }
+
+    /**
+     * Stores this baseline, so that later runs are compared with it.
+     *
+     * @param file must not be {@code null}
+     * @throws MojoExecutionException if the file can't be written
+     */
+    void store(final Path file) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final Properties stored = new Properties();
+        stored.setProperty(FILES_PER_SECOND, String.valueOf(filesPerSecond));
+        stored.setProperty(TOKENS_PER_SECOND, String.valueOf(tokensPerSecond));
+        directoryNanos.forEach(
+            (directory, nanos) -> stored.setProperty(DIRECTORY_PREFIX + directory, nanos.toString()));
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                stored.store(output, "Performance baseline of the infallible-maven-plugin.");
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write baseline '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    Map<String, Long> getDirectoryNanos() {
+        return directoryNanos;
+    }
+
+    /**
+     * Compares the given run with this baseline.
+     * <p>
+     * Directories which are not in both are not compared.
+     * </p>
+     *
+     * @param current must not be {@code null}
+     * @param maxSlowdown how many percent the throughput may drop, in range [0, 100]
+     * @return never {@code null}, one message per regression, empty if there is none
+     */
+    List<String> regressions(final Baseline current, final int maxSlowdown) {
+        Validate.notNull(current, "Parameter 'current' must not be null!");
+        Validate.isTrue(maxSlowdown >= 0 && maxSlowdown <= 100, "Parameter 'maxSlowdown' must be in range [0, 100]!");
+        final List<String> regressions = new ArrayList<>();
+
+        if (dropped(filesPerSecond, current.filesPerSecond, maxSlowdown)) {
+            regressions.add(String.format(Locale.ROOT, "Throughput dropped from %.1f to %.1f files/s!",
+                filesPerSecond, current.filesPerSecond));
+        }
+
+        if (dropped(tokensPerSecond, current.tokensPerSecond, maxSlowdown)) {
+            regressions.add(String.format(Locale.ROOT, "Throughput dropped from %.0f to %.0f tokens/s!",
+                tokensPerSecond, current.tokensPerSecond));
+        }
+
+        final long minNanos = TimeUnit.MILLISECONDS.toNanos(MIN_DIRECTORY_MILLIS);
+        directoryNanos.forEach((directory, nanos) -> {
+            final Long currentNanos = current.directoryNanos.get(directory);
+
+            // The throughput of the directory is inverse to its time.
+            if (nanos >= minNanos && null != currentNanos
+                && dropped(1d / nanos, 1d / currentNanos, maxSlowdown)) {
+                regressions.add(String.format(Locale.ROOT, "Directory '%s' took %.3f ms instead of %.3f ms!",
+                    directory, currentNanos / NANOS_PER_MILLI, nanos / NANOS_PER_MILLI));
+            }
+        });
+
+        return regressions;
+    }
+
+    private static boolean dropped(final double baseline, final double current, final int maxSlowdown) {
+        return current * 100 < baseline * (100 - maxSlowdown);
+    }
+}
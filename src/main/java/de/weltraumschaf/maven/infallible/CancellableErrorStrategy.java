@@ -0,0 +1,41 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.concurrent.CancellationException;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+
+/**
+ * Bails out on the first syntax error and stops parsing if the parsing thread was interrupted.
+ * <p>
+ * ANTLR does not check for interrupts. But generated parsers call {@link #sync(Parser)} before each sub rule and loop
+ * iteration, so an interrupted parse stops soon with a {@link CancellationException}. It is no
+ * {@link org.antlr.v4.runtime.misc.ParseCancellationException}, so it is not mistaken for a syntax error.
+ * </p>
+ * <p>
+ * Adaptive prediction may look ahead many tokens without any sync, so the token streams created by
+ * {@link ParserFactory} check for interrupts on each consumed token, too.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class CancellableErrorStrategy extends BailErrorStrategy {
+
+    @Override
+    public void sync(final Parser recognizer) {
+        checkInterrupted(recognizer.getSourceName());
+        super.sync(recognizer);
+    }
+
+    /**
+     * Stops the parse if the current thread was interrupted.
+     *
+     * @param sourceName name of the parsed source
+     * @throws CancellationException if the current thread was interrupted
+     */
+    static void checkInterrupted(final String sourceName) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException(String.format("Parsing '%s' cancelled!", sourceName));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Shares the class loaders of the generated grammar classes between the executions of one Maven session.
+ * <p>
+ * Without this cache each execution and each reactor module would load, verify and JIT the same generated classes
+ * again and leave the file handles of the old loader open. A loader is reused as long as its output directory
+ * contains the same class files (see {@link Fingerprint#ofClassFiles(java.nio.file.Path)}). It is closed as soon as
+ * the class files changed or a new session started (e.g. in a long living Maven daemon).
+ * </p>
+ * <p>
+ * The loaders of the last session are not closed when it ends: Only build extensions are notified about the end of a
+ * session (see {@code AbstractMavenLifecycleParticipant#afterSessionEnd}), and the plugin is no extension. In a Maven
+ * daemon they stay until the next session executes the plugin. They only load from class directories, so they hold
+ * no open files, but their classes stay in memory.
+ * </p>
+ * <p>
+ * The cache lives in the class realm of the plugin, which Maven reuses for all executions of a session. This class is
+ * thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ClassLoaderCache {
+
+    /**
+     * The instance shared by all executions.
+     */
+    private static final ClassLoaderCache SHARED = new ClassLoaderCache();
+
+    /**
+     * Cached loaders by absolute output directory.
+     */
+    private final Map<File, Entry> entries = new HashMap<>();
+    /**
+     * Identifies the session of the cached loaders, {@code null} if none cached yet.
+     */
+    private String session;
+
+    /**
+     * The instance shared by all executions.
+     *
+     * @return never {@code null}
+     */
+    static ClassLoaderCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the class loader for the given output directory.
+     * <p>
+     * All loaders cached for another session are closed first.
+     * </p>
+     *
+     * @param log must not be {@code null}
+     * @param outputDirectory must not be {@code null}
+     * @param session must not be {@code null}, identifies the current Maven session
+     * @return never {@code null}, must not be closed by the caller
+     * @throws MojoExecutionException if the class files can't be read or the loader can't be created
+     */
+    synchronized ClassLoader getClassLoader(final Log log, final File outputDirectory, final String session)
+        throws MojoExecutionException {
+        Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(outputDirectory, "Parameter 'outputDirectory' must not be null!");
+        Validate.notNull(session, "Parameter 'session' must not be null!");
+
+        if (!session.equals(this.session)) {
+            closeAll(log);
+            this.session = session;
+        }
+
+        final File key = outputDirectory.getAbsoluteFile();
+        final String fingerprint = Fingerprint.ofClassFiles(key.toPath());
+        final Entry cached = entries.get(key);
+
+        if (null != cached) {
+            if (cached.fingerprint.equals(fingerprint)) {
+                log.debug(String.format("Reuse class loader for '%s'.", key));
+                return cached.loader;
+            }
+
+            log.debug(String.format("Class files in '%s' changed, close its class loader.", key));
+            entries.remove(key);
+            close(log, key, cached);
+        }
+
+        final Entry created = new Entry(new ClassLoaderFactory(key).getClassLoader(), fingerprint);
+        entries.put(key, created);
+        return created.loader;
+    }
+
+    /**
+     * Closes all cached loaders.
+     *
+     * @param log must not be {@code null}
+     */
+    synchronized void closeAll(final Log log) {
+        Validate.notNull(log, "Parameter 'log' must not be null!");
+        final Iterator<Map.Entry<File, Entry>> iterator = entries.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            final Map.Entry<File, Entry> cached = iterator.next();
+            iterator.remove();
+            close(log, cached.getKey(), cached.getValue());
+        }
+
+        session = null;
+    }
+
+    /**
+     * Number of cached loaders.
+     *
+     * @return not negative
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static void close(final Log log, final File outputDirectory, final Entry entry) {
+        try {
+            entry.loader.close();
+        } catch (final IOException ex) {
+            log.warn(String.format(
+                "Can't close class loader for '%s' (%s)!", outputDirectory, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * A cached loader and the fingerprint of the class files it was created for.
+     */
+    private static final class Entry {
+
+        /**
+         * The cached loader.
+         */
+        private final URLClassLoader loader;
+        /**
+         * Fingerprint of the class files when the loader was created.
+         */
+        private final String fingerprint;
+
+        private Entry(final URLClassLoader loader, final String fingerprint) {
+            super();
+            this.loader = loader;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -32,10 +32,10 @@ final class ClassLoaderFactory {
     /**
      * Creates the class loader.
      *
-     * @return never {@code null}, always new instance
+     * @return never {@code null}, always new instance which must be closed by the caller
      * @throws MojoExecutionException if the {@link #baseDir} results in a mal formed URL
      */
-    ClassLoader getClassLoader() throws MojoExecutionException {
+    URLClassLoader getClassLoader() throws MojoExecutionException {
         try {
             return new URLClassLoader(
                 new URL[]{baseDir.toURI().toURL()},
@@ -1,12 +1,36 @@
 package de.weltraumschaf.maven.infallible;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 import org.apache.commons.lang3.Validate;
 
 /**
  * Collects results.
+ * <p>
+ * Only failed results are kept completely. For all other results only the path and the state is stored: Paths are
+ * stored in a {@link PathIndex} and the state of each path is stored as bits by its index. All counts are maintained
+ * on add, so they are available in constant time.
+ * </p>
+ * <p>
+ * The {@link Metrics} of all results are summed up. Optionally the slowest results and the directories with the most
+ * parse time are tracked, the time of all directories and the results which took longer than a time budget.
+ * </p>
+ * <p>
+ * This class is thread safe, so results may be added concurrently by multiple parser threads.
+ * </p>
  *
  * @since 1.0.0
  * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
@@ -14,9 +38,127 @@ import org.apache.commons.lang3.Validate;
 final class Collector {
 
     /**
-     * Holds the result.
+     * Orders results by their total time.
      */
-    private final Collection<Result> results = new ArrayList<>();
+    private static final Comparator<Result> BY_TOTAL_NANOS = Comparator.comparingLong(
+        r -> r.getMetrics().getTotalNanos());
+
+    /**
+     * Paths of all collected results.
+     */
+    private final PathIndex paths = new PathIndex();
+    /**
+     * Bit per index of failed results, guarded by itself.
+     */
+    private final BitSet failed = new BitSet();
+    /**
+     * Bit per index of cached results, guarded by {@link #failed}.
+     */
+    private final BitSet cached = new BitSet();
+    /**
+     * Bit per index of timed out results, guarded by {@link #failed}.
+     */
+    private final BitSet timedOut = new BitSet();
+    /**
+     * Number of failed results.
+     */
+    private final AtomicLong failedCount = new AtomicLong();
+    /**
+     * Number of timed out results.
+     */
+    private final AtomicLong timedOutCount = new AtomicLong();
+    /**
+     * Number of cached results.
+     */
+    private final AtomicLong cachedCount = new AtomicLong();
+    /**
+     * Number of results with LL fallback.
+     */
+    private final AtomicLong fallbackCount = new AtomicLong();
+    /**
+     * Number of files which were not parsed because the run stopped early.
+     */
+    private final AtomicLong skippedCount = new AtomicLong();
+    /**
+     * Holds the failed results.
+     */
+    private final Collection<Result> failures = new ConcurrentLinkedQueue<>();
+    /**
+     * Sum of all read times.
+     */
+    private final AtomicLong readNanos = new AtomicLong();
+    /**
+     * Sum of all lex times.
+     */
+    private final AtomicLong lexNanos = new AtomicLong();
+    /**
+     * Sum of all parse times.
+     */
+    private final AtomicLong parseNanos = new AtomicLong();
+    /**
+     * Sum of all tokens.
+     */
+    private final AtomicLong tokens = new AtomicLong();
+    /**
+     * Sum of all bytes.
+     */
+    private final AtomicLong bytes = new AtomicLong();
+    /**
+     * How many of the slowest results and directories are tracked.
+     */
+    private final int slowestCount;
+    /**
+     * The slowest results, the fastest of them is the head, guarded by itself.
+     */
+    private final PriorityQueue<Result> slowest = new PriorityQueue<>(BY_TOTAL_NANOS);
+    /**
+     * Total time per directory.
+     */
+    private final Map<String, LongAdder> directoryNanos = new ConcurrentHashMap<>();
+    /**
+     * Whether the time of all directories is tracked, not only for the slowest.
+     */
+    private final boolean allDirectories;
+    /**
+     * Results which took longer are tracked, 0 for no budget.
+     */
+    private final long budgetNanos;
+    /**
+     * Results which took longer than the budget.
+     */
+    private final Collection<Result> overBudget = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Convenience constructor which tracks no slowest results.
+     */
+    Collector() {
+        this(0);
+    }
+
+    /**
+     * Convenience constructor which tracks no directories besides the slowest and has no time budget.
+     *
+     * @param slowestCount how many of the slowest results and directories are tracked, not negative
+     */
+    Collector(final int slowestCount) {
+        this(slowestCount, false, 0);
+    }
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param slowestCount how many of the slowest results and directories are tracked, not negative
+     * @param allDirectories whether the time of all directories is tracked
+     * @param budgetNanos results which took longer are tracked, 0 for no budget, not negative
+     */
+    Collector(final int slowestCount, final boolean allDirectories, final long budgetNanos) {
+        super();
+        Validate.isTrue(slowestCount >= 0, "Parameter 'slowestCount' must not be negative!");
+        Validate.isTrue(budgetNanos >= 0, "Parameter 'budgetNanos' must not be negative!");
+        this.slowestCount = slowestCount;
+        this.allDirectories = allDirectories;
+        this.budgetNanos = budgetNanos;
+    }
 
     /**
      * Add an result.
@@ -25,36 +167,148 @@ final class Collector {
      * </p>
      *
      * @param result must not be {@code null}
+     * @return the index of the result, not negative
      */
-    void add(final Result result) {
-        results.add(Validate.notNull(result, "Parameter 'result' must not be null!"));
+    int add(final Result result) {
+        Validate.notNull(result, "Parameter 'result' must not be null!");
+        final int index = paths.add(result.getTestedFile());
+
+        synchronized (failed) {
+            failed.set(index, result.isFailed());
+            cached.set(index, result.isCached());
+            timedOut.set(index, result.isTimedOut());
+        }
+
+        if (result.isFailed()) {
+            failures.add(result);
+            failedCount.incrementAndGet();
+        }
+
+        if (result.isTimedOut()) {
+            timedOutCount.incrementAndGet();
+        }
+
+        if (result.isCached()) {
+            cachedCount.incrementAndGet();
+        }
+
+        if (result.isFallback()) {
+            fallbackCount.incrementAndGet();
+        }
+
+        addMetrics(index, result);
+        return index;
+    }
+
+    private void addMetrics(final int index, final Result result) {
+        final Metrics metrics = result.getMetrics();
+        readNanos.addAndGet(metrics.getReadNanos());
+        lexNanos.addAndGet(metrics.getLexNanos());
+        parseNanos.addAndGet(metrics.getParseNanos());
+        tokens.addAndGet(metrics.getTokens());
+        bytes.addAndGet(metrics.getBytes());
+
+        if (result.isCached()) {
+            return;
+        }
+
+        if (budgetNanos > 0 && metrics.getTotalNanos() > budgetNanos) {
+            overBudget.add(result);
+        }
+
+        if (slowestCount > 0 || allDirectories) {
+            directoryNanos.computeIfAbsent(paths.getDirectory(index), d -> new LongAdder())
+                .add(metrics.getTotalNanos());
+        }
+
+        if (0 == slowestCount) {
+            return;
+        }
+
+        synchronized (slowest) {
+            slowest.add(result);
+
+            if (slowest.size() > slowestCount) {
+                slowest.poll();
+            }
+        }
     }
 
     /**
-     * Number of all collected results ({@link #countPassed()} + {@link #countFailed()}).
+     * Number of all collected results ({@link #countPassed()} + {@link #countFailed()} + {@link #countTimedOut()}).
      *
      * @return not negative
      */
     long count() {
-        return results.size();
+        return paths.size();
     }
 
     /**
-     * Number of failed results ({@link #count()} - {@link #countPassed()}).
+     * Number of failed results.
      *
      * @return not negative
      */
     long countFailed() {
-        return results.stream().filter(r -> r.isFailed()).count();
+        return failedCount.get();
     }
 
     /**
-     * Number of passed results ({@link #count()} - {@link #countFailed()}).
+     * Number of results which exceeded their time budget.
+     *
+     * @return not negative
+     */
+    long countTimedOut() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * Number of passed results ({@link #count()} - {@link #countFailed()} - {@link #countTimedOut()}), including the
+     * cached ones.
      *
      * @return not negative
      */
     long countPassed() {
-        return count() - countFailed();
+        return count() - countFailed() - countTimedOut();
+    }
+
+    /**
+     * Number of results which were not parsed because they passed unchanged in the last run.
+     *
+     * @return not negative
+     */
+    long countCached() {
+        return cachedCount.get();
+    }
+
+    /**
+     * Number of results which had to be re-parsed with full LL prediction.
+     *
+     * @return not negative
+     */
+    long countFallbacks() {
+        return fallbackCount.get();
+    }
+
+    /**
+     * Counts files which were not parsed because the run stopped early.
+     *
+     * @param count not negative
+     */
+    void skip(final long count) {
+        Validate.isTrue(count >= 0, "Parameter 'count' must not be negative!");
+        skippedCount.addAndGet(count);
+    }
+
+    /**
+     * Number of files which were not parsed because the run stopped early.
+     * <p>
+     * Skipped files are no results, so they are not included in {@link #count()}.
+     * </p>
+     *
+     * @return not negative
+     */
+    long countSkipped() {
+        return skippedCount.get();
     }
 
     /**
@@ -67,12 +321,130 @@ final class Collector {
     }
 
     /**
-     * Get all collected results.
+     * Get the path of the result with the given index.
+     *
+     * @param index must be less than {@link #count()}
+     * @return never {@code null}
+     */
+    String getTestedFile(final int index) {
+        return paths.get(index);
+    }
+
+    /**
+     * Get the state of the result with the given index.
+     *
+     * @param index must be less than {@link #count()}
+     * @return never {@code null}
+     */
+    Result.State getState(final int index) {
+        Validate.isTrue(index >= 0 && index < count(), "Parameter 'index' must be in range [0, %d)!", count());
+
+        synchronized (failed) {
+            if (failed.get(index)) {
+                return Result.State.FAILED;
+            }
+
+            if (timedOut.get(index)) {
+                return Result.State.TIMED_OUT;
+            }
+
+            return cached.get(index) ? Result.State.CACHED : Result.State.PASSED;
+        }
+    }
+
+    /**
+     * Sum of the metrics of all results.
+     *
+     * @return never {@code null}
+     */
+    Metrics getTotalMetrics() {
+        return new Metrics(readNanos.get(), lexNanos.get(), parseNanos.get(), tokens.get(), bytes.get());
+    }
+
+    /**
+     * How many of the slowest results and directories are tracked.
+     *
+     * @return not negative
+     */
+    int getSlowestCount() {
+        return slowestCount;
+    }
+
+    /**
+     * Get the slowest results.
+     *
+     * @return never {@code null}, at most {@link #getSlowestCount()} results, slowest first
+     */
+    List<Result> slowestFiles() {
+        final List<Result> copy;
+
+        synchronized (slowest) {
+            copy = new ArrayList<>(slowest);
+        }
+
+        copy.sort(BY_TOTAL_NANOS.reversed());
+        return copy;
+    }
+
+    /**
+     * Get the directories with the most total time of their results.
+     *
+     * @return never {@code null}, at most {@link #getSlowestCount()} directories with their total nanoseconds,
+     * slowest first
+     */
+    List<Map.Entry<String, Long>> slowestDirectories() {
+        return directoryNanos.entrySet().stream()
+            .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().sum()))
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(slowestCount)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the total time of all tracked directories.
+     *
+     * @return never {@code null}, directories with their total nanoseconds, empty if neither the slowest nor all
+     * directories are tracked
+     */
+    Map<String, Long> directoryNanos() {
+        final Map<String, Long> copy = new HashMap<>();
+        directoryNanos.forEach((directory, nanos) -> copy.put(directory, nanos.sum()));
+        return copy;
+    }
+
+    /**
+     * Get the results which took longer than the time budget.
+     *
+     * @return never {@code null}, ordered by path, empty if there is no budget
+     */
+    List<Result> overBudget() {
+        final List<Result> copy = new ArrayList<>(overBudget);
+        copy.sort(Comparator.comparing(Result::getTestedFile));
+        return copy;
+    }
+
+    /**
+     * Get the paths of all timed out results.
+     *
+     * @return never {@code null}, in the order they were added
+     */
+    List<String> timedOutFiles() {
+        final BitSet indexes;
+
+        synchronized (failed) {
+            indexes = (BitSet) timedOut.clone();
+        }
+
+        return indexes.stream().mapToObj(paths::get).collect(Collectors.toList());
+    }
+
+    /**
+     * Get all collected failed results.
      *
      * @return never {@code null}, unmodifiable copy
      */
-    Collection<Result> results() {
+    Collection<Result> failures() {
         // Return defensive copy for thread safty.
-        return Collections.unmodifiableCollection(new ArrayList<>(results));
+        return Collections.unmodifiableCollection(new ArrayList<>(failures));
     }
 }
@@ -0,0 +1,59 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Writes and reads strings of any length as UTF-8 bytes prefixed by their length.
+ * <p>
+ * {@link DataOutput#writeUTF(java.lang.String)} fails for strings with more than 65535 encoded bytes, e.g. the
+ * message of a failure embedding a long string or comment token.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class DataStrings {
+
+    private DataStrings() {
+        super();
+    }
+
+    /**
+     * Writes the given string.
+     *
+     * @param output must not be {@code null}
+     * @param value must not be {@code null}
+     * @throws IOException if the string can't be written
+     */
+    static void write(final DataOutput output, final String value) throws IOException {
+        Validate.notNull(output, "Parameter 'output' must not be null!");
+        Validate.notNull(value, "Parameter 'value' must not be null!");
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #write(java.io.DataOutput, java.lang.String)}.
+     *
+     * @param input must not be {@code null}
+     * @return never {@code null}
+     * @throws IOException if the string can't be read
+     */
+    static String read(final DataInput input) throws IOException {
+        Validate.notNull(input, "Parameter 'input' must not be null!");
+        final int length = input.readInt();
+
+        if (length < 0) {
+            throw new IOException(String.format("Invalid string length %d!", length));
+        }
+
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
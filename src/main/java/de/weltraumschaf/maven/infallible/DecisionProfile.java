@@ -0,0 +1,328 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Merges the per decision statistics of profiling parsers over all parsed files.
+ * <p>
+ * Parsers must be profiling (see {@link Parser#setProfile(boolean)}). The merged statistics are reported ranked by
+ * the time spent in prediction with the name of the rule each decision belongs to.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class DecisionProfile {
+
+    /**
+     * Name of the text report in the work directory.
+     */
+    static final String TEXT_FILE_NAME = "profile.txt";
+    /**
+     * Name of the CSV report in the work directory.
+     */
+    static final String CSV_FILE_NAME = "profile.csv";
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    /**
+     * Orders decisions by time spent in prediction, most first.
+     */
+    private static final Comparator<Decision> BY_TIME = Comparator
+        .comparingLong((Decision d) -> d.timeInPrediction).reversed()
+        .thenComparingInt(d -> d.number);
+
+    /**
+     * Merged statistics by decision number, {@code null} until the first parser was added.
+     */
+    private Decision[] decisions;
+    /**
+     * Number of added parsers.
+     */
+    private long parsers;
+
+    /**
+     * Merges the statistics of the given parser.
+     *
+     * @param parser must not be {@code null}, must be profiling
+     */
+    synchronized void add(final Parser parser) {
+        Validate.notNull(parser, "Parameter 'parser' must not be null!");
+        final ParseInfo info = parser.getParseInfo();
+        Validate.isTrue(null != info, "Parameter 'parser' must be profiling!");
+
+        if (null == decisions) {
+            decisions = new Decision[info.getDecisionInfo().length];
+
+            for (int i = 0; i < decisions.length; ++i) {
+                final int ruleIndex = parser.getATN().getDecisionState(i).ruleIndex;
+                decisions[i] = new Decision(i, parser.getRuleNames()[ruleIndex]);
+            }
+        }
+
+        for (final DecisionInfo decision : info.getDecisionInfo()) {
+            decisions[decision.decision].add(decision);
+        }
+
+        ++parsers;
+    }
+
+    /**
+     * Number of added parsers.
+     *
+     * @return not negative
+     */
+    synchronized long countParsers() {
+        return parsers;
+    }
+
+    /**
+     * Get the invoked decisions ranked by time spent in prediction.
+     *
+     * @return never {@code null}, copy
+     */
+    synchronized List<Decision> ranked() {
+        final List<Decision> ranked = new ArrayList<>();
+
+        if (null != decisions) {
+            for (final Decision decision : decisions) {
+                if (decision.invocations > 0) {
+                    ranked.add(decision.copy());
+                }
+            }
+        }
+
+        ranked.sort(BY_TIME);
+        return ranked;
+    }
+
+    /**
+     * Formats the ranked decisions as human readable table.
+     *
+     * @return never {@code null}
+     */
+    String formatText() {
+        final List<Decision> ranked = ranked();
+        final int ruleWidth = Math.max(
+            "Rule".length(), ranked.stream().mapToInt(d -> d.rule.length()).max().orElse(0));
+        final String row = "%4s  %8s  %-" + ruleWidth + "s  %11s  %11s  %10s  %8s  %10s  %8s  %9s  %10s  %10s  %6s%n";
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append(String.format(Locale.ROOT,
+            "Decision profile of %d parser run(s), ranked by time in prediction:%n%n", countParsers()));
+        buffer.append(String.format(Locale.ROOT, row, "Rank", "Decision", "Rule", "Invocations", "Time (ms)",
+            "SLL look", "SLL max", "LL look", "LL max", "Fallbacks", "Ambiguous", "Ctx sens.", "Errors"));
+
+        for (int i = 0; i < ranked.size(); ++i) {
+            final Decision decision = ranked.get(i);
+            buffer.append(String.format(Locale.ROOT, row,
+                i + 1,
+                decision.number,
+                decision.rule,
+                decision.invocations,
+                String.format(Locale.ROOT, "%.3f", decision.timeInPrediction / NANOS_PER_MILLI),
+                decision.sllTotalLook,
+                decision.sllMaxLook,
+                decision.llTotalLook,
+                decision.llMaxLook,
+                decision.llFallbacks,
+                decision.ambiguities,
+                decision.contextSensitivities,
+                decision.errors));
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * Formats the ranked decisions as CSV with header line.
+     *
+     * @return never {@code null}
+     */
+    String formatCsv() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("rank,decision,rule,invocations,timeInPredictionNanos,sllTotalLook,sllMaxLook,llTotalLook,"
+            + "llMaxLook,llFallbacks,ambiguities,contextSensitivities,errors,predicateEvaluations\n");
+        final List<Decision> ranked = ranked();
+
+        for (int i = 0; i < ranked.size(); ++i) {
+            final Decision decision = ranked.get(i);
+            buffer.append(i + 1).append(',')
+                .append(decision.number).append(',')
+                .append(decision.rule).append(',')
+                .append(decision.invocations).append(',')
+                .append(decision.timeInPrediction).append(',')
+                .append(decision.sllTotalLook).append(',')
+                .append(decision.sllMaxLook).append(',')
+                .append(decision.llTotalLook).append(',')
+                .append(decision.llMaxLook).append(',')
+                .append(decision.llFallbacks).append(',')
+                .append(decision.ambiguities).append(',')
+                .append(decision.contextSensitivities).append(',')
+                .append(decision.errors).append(',')
+                .append(decision.predicateEvaluations).append('\n');
+        }
+
+        return buffer.toString();
+    }
+
+    /**
+     * Writes the text and CSV report into the given directory.
+     *
+     * @param directory must not be {@code null}, created if it does not exist
+     * @throws MojoExecutionException if a report can't be written
+     */
+    void write(final Path directory) throws MojoExecutionException {
+        Validate.notNull(directory, "Parameter 'directory' must not be null!");
+        write(directory.resolve(TEXT_FILE_NAME), formatText());
+        write(directory.resolve(CSV_FILE_NAME), formatCsv());
+    }
+
+    private static void write(final Path file, final String content) throws MojoExecutionException {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+
+            try (Writer output = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                output.write(content);
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write decision profile '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Merged statistics of one decision.
+     */
+    static final class Decision {
+
+        /**
+         * Number of the decision in the ATN.
+         */
+        private final int number;
+        /**
+         * Name of the rule containing the decision.
+         */
+        private final String rule;
+        /**
+         * Number of predictions.
+         */
+        private long invocations;
+        /**
+         * Nanoseconds spent in prediction.
+         */
+        private long timeInPrediction;
+        /**
+         * Sum of SLL lookahead depths.
+         */
+        private long sllTotalLook;
+        /**
+         * Maximum SLL lookahead depth.
+         */
+        private long sllMaxLook;
+        /**
+         * Sum of LL lookahead depths.
+         */
+        private long llTotalLook;
+        /**
+         * Maximum LL lookahead depth.
+         */
+        private long llMaxLook;
+        /**
+         * Number of fallbacks from SLL to full context LL prediction.
+         */
+        private long llFallbacks;
+        /**
+         * Number of reported ambiguities.
+         */
+        private long ambiguities;
+        /**
+         * Number of reported context sensitivities.
+         */
+        private long contextSensitivities;
+        /**
+         * Number of syntax errors reported in prediction.
+         */
+        private long errors;
+        /**
+         * Number of semantic predicate evaluations.
+         */
+        private long predicateEvaluations;
+
+        private Decision(final int number, final String rule) {
+            super();
+            this.number = number;
+            this.rule = rule;
+        }
+
+        private void add(final DecisionInfo info) {
+            invocations += info.invocations;
+            timeInPrediction += info.timeInPrediction;
+            sllTotalLook += info.SLL_TotalLook;
+            sllMaxLook = Math.max(sllMaxLook, info.SLL_MaxLook);
+            llTotalLook += info.LL_TotalLook;
+            llMaxLook = Math.max(llMaxLook, info.LL_MaxLook);
+            llFallbacks += info.LL_Fallback;
+            ambiguities += info.ambiguities.size();
+            contextSensitivities += info.contextSensitivities.size();
+            errors += info.errors.size();
+            predicateEvaluations += info.predicateEvals.size();
+        }
+
+        private Decision copy() {
+            final Decision copy = new Decision(number, rule);
+            copy.invocations = invocations;
+            copy.timeInPrediction = timeInPrediction;
+            copy.sllTotalLook = sllTotalLook;
+            copy.sllMaxLook = sllMaxLook;
+            copy.llTotalLook = llTotalLook;
+            copy.llMaxLook = llMaxLook;
+            copy.llFallbacks = llFallbacks;
+            copy.ambiguities = ambiguities;
+            copy.contextSensitivities = contextSensitivities;
+            copy.errors = errors;
+            copy.predicateEvaluations = predicateEvaluations;
+            return copy;
+        }
+
+        int getNumber() {
+            return number;
+        }
+
+        String getRule() {
+            return rule;
+        }
+
+        long getInvocations() {
+            return invocations;
+        }
+
+        long getTimeInPrediction() {
+            return timeInPrediction;
+        }
+
+        long getLlFallbacks() {
+            return llFallbacks;
+        }
+
+        long getSllMaxLook() {
+            return sllMaxLook;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Persists the prediction DFA of the generated lexer and parser between runs.
+ * <p>
+ * ANTLR builds the DFA while parsing and shares it between all instances of a generated lexer or parser class. A run
+ * stores the built DFA and the next run preloads it before parsing, so it does not start with an empty DFA. The stored
+ * DFA is only used if the fingerprint of the grammar (generated classes and ANTLR runtime version) is unchanged.
+ * </p>
+ * <p>
+ * The DFA may only be loaded and stored while no parser of the grammar is running.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class DfaCache {
+
+    /**
+     * Name of the cache file in the work directory.
+     */
+    static final String FILE_NAME = "dfa.bin.gz";
+    /**
+     * Identifies the file format.
+     */
+    private static final int MAGIC = 0x44464131;
+    /**
+     * Size of the I/O buffers.
+     */
+    private static final int BUFFER_SIZE = 65536;
+
+    /**
+     * Logging facility.
+     */
+    private final Log log;
+    /**
+     * Where the DFA is stored.
+     */
+    private final Path file;
+    /**
+     * Fingerprint of the grammar used in this run.
+     */
+    private final String grammarFingerprint;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param log must not be {@code null}
+     * @param file must not be {@code null}
+     * @param grammarFingerprint must not be {@code null} or empty
+     */
+    DfaCache(final Log log, final Path file, final String grammarFingerprint) {
+        super();
+        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
+        this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+        this.grammarFingerprint = Validate.notEmpty(
+            grammarFingerprint, "Parameter 'grammarFingerprint' must not be null or empty!");
+    }
+
+    /**
+     * Preloads the stored DFA into the lexer and parser class of the given parser.
+     * <p>
+     * Nothing is loaded if there is no stored DFA for this grammar, it can't be read or the recognizers already have
+     * a DFA.
+     * </p>
+     *
+     * @param parser must not be {@code null}, any parser of the grammar
+     * @return {@code true} if the DFA was loaded, else {@code false}
+     */
+    boolean load(final Parser parser) {
+        Validate.notNull(parser, "Parameter 'parser' must not be null!");
+        final Lexer lexer = lexer(parser);
+        final DFA[] parserDfa = parser.getInterpreter().decisionToDFA;
+        final DFA[] lexerDfa = lexer.getInterpreter().decisionToDFA;
+
+        if (!Files.isRegularFile(file)) {
+            log.debug(String.format("No DFA cache '%s', start with empty DFA.", file));
+            return false;
+        }
+
+        if (!DfaSerializer.isSupported()) {
+            log.warn("The ANTLR runtime does not support to load the DFA, start with empty DFA!");
+            return false;
+        }
+
+        if (DfaSerializer.countStates(parserDfa) > 0 || DfaSerializer.countStates(lexerDfa) > 0) {
+            log.debug("DFA already built, ignore DFA cache.");
+            return false;
+        }
+
+        final DFA[] loadedParserDfa;
+        final DFA[] loadedLexerDfa;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a DFA cache");
+            }
+
+            if (!grammarFingerprint.equals(input.readUTF())) {
+                log.info("Grammar changed since the DFA was stored, start with empty DFA.");
+                return false;
+            }
+
+            loadedParserDfa = DfaSerializer.read(input, parser.getATN(), false);
+            loadedLexerDfa = DfaSerializer.read(input, lexer.getATN(), true);
+        } catch (final IOException | RuntimeException ex) {
+            log.warn(String.format("Can't read DFA cache '%s', start with empty DFA (%s)!", file, ex.getMessage()));
+            return false;
+        }
+
+        // Installed only after everything was read, so a broken file never leaves a partially loaded DFA.
+        System.arraycopy(loadedParserDfa, 0, parserDfa, 0, parserDfa.length);
+        System.arraycopy(loadedLexerDfa, 0, lexerDfa, 0, lexerDfa.length);
+        log.info(String.format("Loaded %d parser and %d lexer DFA states from '%s'.",
+            DfaSerializer.countStates(parserDfa), DfaSerializer.countStates(lexerDfa), file));
+        return true;
+    }
+
+    /**
+     * Stores the DFA of the lexer and parser class of the given parser, so that it is preloaded by the next run.
+     *
+     * @param parser must not be {@code null}, any parser of the grammar
+     * @throws MojoExecutionException if the cache file can't be written
+     */
+    void store(final Parser parser) throws MojoExecutionException {
+        Validate.notNull(parser, "Parameter 'parser' must not be null!");
+        final Lexer lexer = lexer(parser);
+        final DFA[] parserDfa = parser.getInterpreter().decisionToDFA;
+        final DFA[] lexerDfa = lexer.getInterpreter().decisionToDFA;
+
+        if (!DfaSerializer.isSupported()) {
+            log.warn("The ANTLR runtime does not support to store the DFA!");
+            return;
+        }
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+
+            try {
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp), BUFFER_SIZE), BUFFER_SIZE))) {
+                    output.writeInt(MAGIC);
+                    output.writeUTF(grammarFingerprint);
+                    DfaSerializer.write(output, parserDfa, false);
+                    DfaSerializer.write(output, lexerDfa, true);
+                }
+
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                log.info(String.format("Stored %d parser and %d lexer DFA states to '%s'.",
+                    DfaSerializer.countStates(parserDfa), DfaSerializer.countStates(lexerDfa), file));
+            } catch (final RuntimeException ex) {
+                // E.g. a DFA which can't be serialized or reflection denied by the runtime.
+                log.warn(String.format("Can't store DFA in cache '%s' (%s)!", file, ex.getMessage()));
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write DFA cache '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private static Lexer lexer(final Parser parser) {
+        return (Lexer) parser.getInputStream().getTokenSource();
+    }
+}
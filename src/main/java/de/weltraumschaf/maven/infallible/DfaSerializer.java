@@ -0,0 +1,978 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.ArrayPredictionContext;
+import org.antlr.v4.runtime.atn.EmptyPredictionContext;
+import org.antlr.v4.runtime.atn.LexerATNConfig;
+import org.antlr.v4.runtime.atn.LexerAction;
+import org.antlr.v4.runtime.atn.LexerActionExecutor;
+import org.antlr.v4.runtime.atn.LexerActionType;
+import org.antlr.v4.runtime.atn.LexerChannelAction;
+import org.antlr.v4.runtime.atn.LexerCustomAction;
+import org.antlr.v4.runtime.atn.LexerIndexedCustomAction;
+import org.antlr.v4.runtime.atn.LexerModeAction;
+import org.antlr.v4.runtime.atn.LexerMoreAction;
+import org.antlr.v4.runtime.atn.LexerPopModeAction;
+import org.antlr.v4.runtime.atn.LexerPushModeAction;
+import org.antlr.v4.runtime.atn.LexerSkipAction;
+import org.antlr.v4.runtime.atn.LexerTypeAction;
+import org.antlr.v4.runtime.atn.OrderedATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Writes and reads the prediction DFA of a lexer or parser in a compact binary format.
+ * <p>
+ * The DFA states are written with their complete ATN configurations, because ANTLR computes missing edges of a DFA
+ * state from them. Prediction contexts, semantic contexts and lexer action executors are shared between many
+ * configurations, so each of them is written once into a table and referenced by index.
+ * </p>
+ * <p>
+ * Some needed fields are not accessible by ANTLR's API and are accessed by reflection. If they are not available or
+ * the runtime denies the access (e.g. a module system which does not open ANTLR's packages), nothing can be written
+ * or read (see {@link #isSupported()}). The DFA cache is then skipped, it never fails the run.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class DfaSerializer {
+
+    /**
+     * Reference to {@code null}.
+     */
+    private static final int NULL = -1;
+    /**
+     * Reference to {@link ATNSimulator#ERROR}.
+     */
+    private static final int ERROR = -2;
+
+    /**
+     * Kind of {@link EmptyPredictionContext}.
+     */
+    private static final byte EMPTY_CONTEXT = 0;
+    /**
+     * Kind of {@link SingletonPredictionContext}.
+     */
+    private static final byte SINGLETON_CONTEXT = 1;
+    /**
+     * Kind of {@link ArrayPredictionContext}.
+     */
+    private static final byte ARRAY_CONTEXT = 2;
+
+    /**
+     * Kind of {@link SemanticContext#NONE}.
+     */
+    private static final byte NONE = 0;
+    /**
+     * Kind of {@link SemanticContext.Predicate}.
+     */
+    private static final byte PREDICATE = 1;
+    /**
+     * Kind of {@link SemanticContext.PrecedencePredicate}.
+     */
+    private static final byte PRECEDENCE_PREDICATE = 2;
+    /**
+     * Kind of {@link SemanticContext.AND}.
+     */
+    private static final byte AND = 3;
+    /**
+     * Kind of {@link SemanticContext.OR}.
+     */
+    private static final byte OR = 4;
+
+    /**
+     * Kind of {@link LexerIndexedCustomAction}, all other actions are written with their {@link LexerActionType}.
+     */
+    private static final byte INDEXED_CUSTOM_ACTION = -1;
+
+    /**
+     * Not accessible field {@code ATNConfigSet#conflictingAlts}.
+     */
+    private static final Field CONFLICTING_ALTS = accessibleField(ATNConfigSet.class, "conflictingAlts");
+    /**
+     * Not accessible field {@code LexerATNConfig#passedThroughNonGreedyDecision}.
+     */
+    private static final Field PASSED_THROUGH_NON_GREEDY_DECISION = accessibleField(
+        LexerATNConfig.class, "passedThroughNonGreedyDecision");
+
+    /**
+     * Hidden for pure static class.
+     */
+    private DfaSerializer() {
+        super();
+    }
+
+    /**
+     * Makes the given field accessible.
+     *
+     * @param type must not be {@code null}
+     * @param name must not be {@code null}
+     * @return {@code null} if the field does not exist or the access is denied
+     */
+    static Field accessibleField(final Class<?> type, final String name) {
+        try {
+            final Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            // Also catches the InaccessibleObjectException of Java 9 and later.
+            return null;
+        }
+    }
+
+    /**
+     * Whether the used ANTLR runtime allows to serialize its DFA.
+     *
+     * @return {@code true} if supported, else {@code false}
+     */
+    static boolean isSupported() {
+        return null != CONFLICTING_ALTS && null != PASSED_THROUGH_NON_GREEDY_DECISION;
+    }
+
+    /**
+     * Writes the given DFA.
+     *
+     * @param output must not be {@code null}
+     * @param decisionToDfa must not be {@code null}
+     * @param lexer {@code true} if it is the DFA of a lexer, {@code false} for a parser
+     * @throws IOException if the output can't be written
+     * @throws IllegalStateException if the DFA contains anything which can't be serialized
+     */
+    static void write(final DataOutput output, final DFA[] decisionToDfa, final boolean lexer) throws IOException {
+        Validate.notNull(output, "Parameter 'output' must not be null!");
+        Validate.notNull(decisionToDfa, "Parameter 'decisionToDfa' must not be null!");
+        Validate.validState(isSupported(), "DFA serialization is not supported by the ANTLR runtime!");
+        new Writer(lexer).write(output, decisionToDfa);
+    }
+
+    /**
+     * Reads DFA previously written with {@link #write(java.io.DataOutput, org.antlr.v4.runtime.dfa.DFA[], boolean)}.
+     * <p>
+     * The read DFA are not installed in any recognizer, so a broken input can't leave a recognizer with partially
+     * read DFA.
+     * </p>
+     *
+     * @param input must not be {@code null}
+     * @param atn must not be {@code null}, the ATN the DFA was built for
+     * @param lexer {@code true} if it is the DFA of a lexer, {@code false} for a parser
+     * @return never {@code null}, one DFA per decision of the given ATN
+     * @throws IOException if the input can't be read or does not match the given ATN
+     */
+    static DFA[] read(final DataInput input, final ATN atn, final boolean lexer) throws IOException {
+        Validate.notNull(input, "Parameter 'input' must not be null!");
+        Validate.notNull(atn, "Parameter 'atn' must not be null!");
+        Validate.validState(isSupported(), "DFA serialization is not supported by the ANTLR runtime!");
+        return new Reader(atn, lexer).read(input);
+    }
+
+    /**
+     * Number of states of the given DFA.
+     *
+     * @param decisionToDfa must not be {@code null}
+     * @return not negative
+     */
+    static int countStates(final DFA[] decisionToDfa) {
+        Validate.notNull(decisionToDfa, "Parameter 'decisionToDfa' must not be null!");
+        int count = 0;
+
+        for (final DFA dfa : decisionToDfa) {
+            count += dfa.states.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Writes one recognizer's DFA.
+     * <p>
+     * The shared tables are collected while the states are written into a buffer and written in front of them.
+     * </p>
+     */
+    private static final class Writer {
+
+        /**
+         * Whether the DFA belongs to a lexer.
+         */
+        private final boolean lexer;
+        /**
+         * Index of each written prediction context.
+         */
+        private final Map<PredictionContext, Integer> contexts = new IdentityHashMap<>();
+        /**
+         * Index of each written semantic context.
+         */
+        private final Map<SemanticContext, Integer> semanticContexts = new IdentityHashMap<>();
+        /**
+         * Index of each written lexer action executor.
+         */
+        private final Map<LexerActionExecutor, Integer> executors = new IdentityHashMap<>();
+        /**
+         * Table of prediction contexts, parents are always written before their children.
+         */
+        private final ByteArrayOutputStream contextTable = new ByteArrayOutputStream();
+        /**
+         * Table of semantic contexts, operands are always written before their operators.
+         */
+        private final ByteArrayOutputStream semanticContextTable = new ByteArrayOutputStream();
+        /**
+         * Table of lexer action executors.
+         */
+        private final ByteArrayOutputStream executorTable = new ByteArrayOutputStream();
+
+        Writer(final boolean lexer) {
+            super();
+            this.lexer = lexer;
+        }
+
+        void write(final DataOutput output, final DFA[] decisionToDfa) throws IOException {
+            final ByteArrayOutputStream states = new ByteArrayOutputStream();
+            final DataOutputStream stateOutput = new DataOutputStream(states);
+            stateOutput.writeInt(decisionToDfa.length);
+
+            for (final DFA dfa : decisionToDfa) {
+                writeDfa(stateOutput, dfa);
+            }
+
+            stateOutput.flush();
+            writeTable(output, contexts.size(), contextTable);
+            writeTable(output, semanticContexts.size(), semanticContextTable);
+            writeTable(output, executors.size(), executorTable);
+            output.write(states.toByteArray());
+        }
+
+        private static void writeTable(final DataOutput output, final int size, final ByteArrayOutputStream table)
+            throws IOException {
+            output.writeInt(size);
+            output.write(table.toByteArray());
+        }
+
+        private void writeDfa(final DataOutput output, final DFA dfa) throws IOException {
+            final List<DFAState> states = new ArrayList<>(dfa.states.values());
+            states.sort(Comparator.comparingInt(state -> state.stateNumber));
+            final Map<DFAState, Integer> indexes = new IdentityHashMap<>();
+
+            for (final DFAState state : states) {
+                indexes.put(state, indexes.size());
+            }
+
+            output.writeInt(dfa.decision);
+            output.writeBoolean(dfa.isPrecedenceDfa());
+            output.writeInt(states.size());
+
+            for (final DFAState state : states) {
+                writeState(output, state);
+            }
+
+            for (final DFAState state : states) {
+                writeEdges(output, state.edges, indexes);
+            }
+
+            if (dfa.isPrecedenceDfa()) {
+                // The start state of a precedence DFA only holds the start states per precedence as edges.
+                writeEdges(output, dfa.s0.edges, indexes);
+            } else {
+                output.writeInt(reference(dfa.s0, indexes));
+            }
+        }
+
+        private void writeState(final DataOutput output, final DFAState state) throws IOException {
+            output.writeInt(state.stateNumber);
+            output.writeBoolean(state.isAcceptState);
+            output.writeInt(state.prediction);
+            output.writeBoolean(state.requiresFullContext);
+            output.writeInt(executor(state.lexerActionExecutor));
+
+            if (null == state.predicates) {
+                output.writeInt(NULL);
+            } else {
+                output.writeInt(state.predicates.length);
+
+                for (final DFAState.PredPrediction predicate : state.predicates) {
+                    output.writeInt(semanticContext(predicate.pred));
+                    output.writeInt(predicate.alt);
+                }
+            }
+
+            writeConfigs(output, state.configs);
+        }
+
+        private void writeConfigs(final DataOutput output, final ATNConfigSet configs) throws IOException {
+            final Class<?> expectedType = lexer ? OrderedATNConfigSet.class : ATNConfigSet.class;
+
+            if (configs.getClass() != expectedType) {
+                throw new IllegalStateException(
+                    String.format("Unsupported configuration set %s!", configs.getClass().getName()));
+            }
+
+            output.writeBoolean(configs.fullCtx);
+            output.writeInt(configs.uniqueAlt);
+            output.writeBoolean(configs.hasSemanticContext);
+            output.writeBoolean(configs.dipsIntoOuterContext);
+            writeBitSet(output, (BitSet) get(CONFLICTING_ALTS, configs));
+            output.writeInt(configs.size());
+
+            for (final ATNConfig config : configs.configs) {
+                writeConfig(output, config);
+            }
+        }
+
+        private static void writeBitSet(final DataOutput output, final BitSet bits) throws IOException {
+            if (null == bits) {
+                output.writeInt(NULL);
+                return;
+            }
+
+            final long[] words = bits.toLongArray();
+            output.writeInt(words.length);
+
+            for (final long word : words) {
+                output.writeLong(word);
+            }
+        }
+
+        private void writeConfig(final DataOutput output, final ATNConfig config) throws IOException {
+            final Class<?> expectedType = lexer ? LexerATNConfig.class : ATNConfig.class;
+
+            if (config.getClass() != expectedType) {
+                throw new IllegalStateException(
+                    String.format("Unsupported configuration %s!", config.getClass().getName()));
+            }
+
+            output.writeInt(config.state.stateNumber);
+            output.writeInt(config.alt);
+            output.writeInt(context(config.context));
+            output.writeInt(config.reachesIntoOuterContext);
+
+            if (lexer) {
+                if (config.semanticContext != SemanticContext.NONE) {
+                    throw new IllegalStateException("Unsupported semantic context in lexer configuration!");
+                }
+
+                final LexerATNConfig lexerConfig = (LexerATNConfig) config;
+                output.writeInt(executor(lexerConfig.getLexerActionExecutor()));
+                output.writeBoolean(lexerConfig.hasPassedThroughNonGreedyDecision());
+            } else {
+                output.writeInt(semanticContext(config.semanticContext));
+            }
+        }
+
+        private static void writeEdges(
+            final DataOutput output, final DFAState[] edges, final Map<DFAState, Integer> indexes)
+            throws IOException {
+            if (null == edges) {
+                output.writeInt(NULL);
+                return;
+            }
+
+            output.writeInt(edges.length);
+            int count = 0;
+
+            for (final DFAState edge : edges) {
+                if (null != edge) {
+                    ++count;
+                }
+            }
+
+            // Most edges are missing, so only the present ones are written with their index.
+            output.writeInt(count);
+
+            for (int i = 0; i < edges.length; ++i) {
+                if (null != edges[i]) {
+                    output.writeInt(i);
+                    output.writeInt(reference(edges[i], indexes));
+                }
+            }
+        }
+
+        private static int reference(final DFAState state, final Map<DFAState, Integer> indexes) {
+            if (null == state) {
+                return NULL;
+            }
+
+            if (state == ATNSimulator.ERROR) {
+                return ERROR;
+            }
+
+            final Integer index = indexes.get(state);
+
+            if (null == index) {
+                throw new IllegalStateException(
+                    String.format("DFA state %d is not part of its DFA!", state.stateNumber));
+            }
+
+            return index;
+        }
+
+        private int context(final PredictionContext context) throws IOException {
+            if (null == context) {
+                return NULL;
+            }
+
+            // Contexts may be nested very deep, so the parents are written iteratively.
+            final Deque<PredictionContext> pending = new ArrayDeque<>();
+            pending.push(context);
+
+            while (!pending.isEmpty()) {
+                final PredictionContext current = pending.peek();
+
+                if (contexts.containsKey(current)) {
+                    pending.pop();
+                    continue;
+                }
+
+                boolean parentsWritten = true;
+
+                for (int i = 0; i < current.size(); ++i) {
+                    final PredictionContext parent = current.getParent(i);
+
+                    if (null != parent && !contexts.containsKey(parent)) {
+                        pending.push(parent);
+                        parentsWritten = false;
+                    }
+                }
+
+                if (parentsWritten) {
+                    pending.pop();
+                    writeContext(new DataOutputStream(contextTable), current);
+                    contexts.put(current, contexts.size());
+                }
+            }
+
+            return contexts.get(context);
+        }
+
+        private void writeContext(final DataOutput output, final PredictionContext context) throws IOException {
+            if (context instanceof EmptyPredictionContext) {
+                output.writeByte(EMPTY_CONTEXT);
+                return;
+            }
+
+            if (context instanceof SingletonPredictionContext) {
+                output.writeByte(SINGLETON_CONTEXT);
+            } else if (context instanceof ArrayPredictionContext) {
+                output.writeByte(ARRAY_CONTEXT);
+            } else {
+                throw new IllegalStateException(
+                    String.format("Unsupported prediction context %s!", context.getClass().getName()));
+            }
+
+            output.writeInt(context.size());
+
+            for (int i = 0; i < context.size(); ++i) {
+                final PredictionContext parent = context.getParent(i);
+                output.writeInt(null == parent ? NULL : contexts.get(parent));
+                output.writeInt(context.getReturnState(i));
+            }
+        }
+
+        private int semanticContext(final SemanticContext context) throws IOException {
+            final Integer known = semanticContexts.get(context);
+
+            if (null != known) {
+                return known;
+            }
+
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final DataOutputStream output = new DataOutputStream(buffer);
+
+            if (context == SemanticContext.NONE) {
+                output.writeByte(NONE);
+            } else if (context instanceof SemanticContext.Predicate) {
+                final SemanticContext.Predicate predicate = (SemanticContext.Predicate) context;
+                output.writeByte(PREDICATE);
+                output.writeInt(predicate.ruleIndex);
+                output.writeInt(predicate.predIndex);
+                output.writeBoolean(predicate.isCtxDependent);
+            } else if (context instanceof SemanticContext.PrecedencePredicate) {
+                output.writeByte(PRECEDENCE_PREDICATE);
+                output.writeInt(((SemanticContext.PrecedencePredicate) context).precedence);
+            } else if (context instanceof SemanticContext.AND) {
+                output.writeByte(AND);
+                writeOperands(output, ((SemanticContext.AND) context).opnds);
+            } else if (context instanceof SemanticContext.OR) {
+                output.writeByte(OR);
+                writeOperands(output, ((SemanticContext.OR) context).opnds);
+            } else {
+                throw new IllegalStateException(
+                    String.format("Unsupported semantic context %s!", context.getClass().getName()));
+            }
+
+            // Operands are written into the table while the operator is written into its own buffer.
+            semanticContextTable.write(buffer.toByteArray());
+            final int index = semanticContexts.size();
+            semanticContexts.put(context, index);
+            return index;
+        }
+
+        private void writeOperands(final DataOutput output, final SemanticContext[] operands) throws IOException {
+            output.writeInt(operands.length);
+
+            for (final SemanticContext operand : operands) {
+                output.writeInt(semanticContext(operand));
+            }
+        }
+
+        private int executor(final LexerActionExecutor executor) throws IOException {
+            if (null == executor) {
+                return NULL;
+            }
+
+            final Integer known = executors.get(executor);
+
+            if (null != known) {
+                return known;
+            }
+
+            final DataOutputStream output = new DataOutputStream(executorTable);
+            output.writeInt(executor.getLexerActions().length);
+
+            for (final LexerAction action : executor.getLexerActions()) {
+                writeAction(output, action);
+            }
+
+            final int index = executors.size();
+            executors.put(executor, index);
+            return index;
+        }
+
+        private static void writeAction(final DataOutput output, final LexerAction action) throws IOException {
+            if (action instanceof LexerIndexedCustomAction) {
+                final LexerIndexedCustomAction indexed = (LexerIndexedCustomAction) action;
+                output.writeByte(INDEXED_CUSTOM_ACTION);
+                output.writeInt(indexed.getOffset());
+                writeAction(output, indexed.getAction());
+                return;
+            }
+
+            output.writeByte(action.getActionType().ordinal());
+
+            switch (action.getActionType()) {
+                case CHANNEL:
+                    output.writeInt(((LexerChannelAction) action).getChannel());
+                    break;
+                case CUSTOM:
+                    output.writeInt(((LexerCustomAction) action).getRuleIndex());
+                    output.writeInt(((LexerCustomAction) action).getActionIndex());
+                    break;
+                case MODE:
+                    output.writeInt(((LexerModeAction) action).getMode());
+                    break;
+                case PUSH_MODE:
+                    output.writeInt(((LexerPushModeAction) action).getMode());
+                    break;
+                case TYPE:
+                    output.writeInt(((LexerTypeAction) action).getType());
+                    break;
+                case MORE:
+                case POP_MODE:
+                case SKIP:
+                    break;
+                default:
+                    throw new IllegalStateException(
+                        String.format("Unsupported lexer action %s!", action.getActionType()));
+            }
+        }
+    }
+
+    /**
+     * Reads one recognizer's DFA.
+     */
+    private static final class Reader {
+
+        /**
+         * The ATN the DFA was built for.
+         */
+        private final ATN atn;
+        /**
+         * Whether the DFA belongs to a lexer.
+         */
+        private final boolean lexer;
+        /**
+         * Read prediction contexts by index.
+         */
+        private PredictionContext[] contexts;
+        /**
+         * Read semantic contexts by index.
+         */
+        private SemanticContext[] semanticContexts;
+        /**
+         * Read lexer action executors by index.
+         */
+        private LexerActionExecutor[] executors;
+
+        Reader(final ATN atn, final boolean lexer) {
+            super();
+            this.atn = atn;
+            this.lexer = lexer;
+        }
+
+        DFA[] read(final DataInput input) throws IOException {
+            contexts = new PredictionContext[readSize(input)];
+
+            for (int i = 0; i < contexts.length; ++i) {
+                contexts[i] = readContext(input);
+            }
+
+            semanticContexts = new SemanticContext[readSize(input)];
+
+            for (int i = 0; i < semanticContexts.length; ++i) {
+                semanticContexts[i] = readSemanticContext(input);
+            }
+
+            executors = new LexerActionExecutor[readSize(input)];
+
+            for (int i = 0; i < executors.length; ++i) {
+                executors[i] = readExecutor(input);
+            }
+
+            final DFA[] decisionToDfa = new DFA[readSize(input)];
+
+            if (decisionToDfa.length != atn.getNumberOfDecisions()) {
+                throw new IOException(String.format("Expected %d decisions, but got %d!",
+                    atn.getNumberOfDecisions(), decisionToDfa.length));
+            }
+
+            for (int i = 0; i < decisionToDfa.length; ++i) {
+                decisionToDfa[i] = readDfa(input, i);
+            }
+
+            return decisionToDfa;
+        }
+
+        private DFA readDfa(final DataInput input, final int decision) throws IOException {
+            final DFA dfa = new DFA(atn.getDecisionState(decision), decision);
+
+            if (input.readInt() != decision || input.readBoolean() != dfa.isPrecedenceDfa()) {
+                throw new IOException(String.format("DFA of decision %d does not match the ATN!", decision));
+            }
+
+            final DFAState[] states = new DFAState[readSize(input)];
+
+            for (int i = 0; i < states.length; ++i) {
+                states[i] = readState(input);
+                dfa.states.put(states[i], states[i]);
+            }
+
+            for (final DFAState state : states) {
+                state.edges = readEdges(input, states);
+            }
+
+            if (dfa.isPrecedenceDfa()) {
+                final DFAState[] startStates = readEdges(input, states);
+
+                if (null != startStates) {
+                    for (int precedence = 0; precedence < startStates.length; ++precedence) {
+                        if (null != startStates[precedence]) {
+                            dfa.setPrecedenceStartState(precedence, startStates[precedence]);
+                        }
+                    }
+                }
+            } else {
+                dfa.s0 = state(input.readInt(), states);
+            }
+
+            return dfa;
+        }
+
+        private DFAState readState(final DataInput input) throws IOException {
+            final int stateNumber = input.readInt();
+            final boolean acceptState = input.readBoolean();
+            final int prediction = input.readInt();
+            final boolean requiresFullContext = input.readBoolean();
+            final LexerActionExecutor executor = element(executors, input.readInt());
+            final int predicateCount = input.readInt();
+            DFAState.PredPrediction[] predicates = null;
+
+            if (NULL != predicateCount) {
+                predicates = new DFAState.PredPrediction[checkSize(predicateCount)];
+
+                for (int i = 0; i < predicates.length; ++i) {
+                    predicates[i] = new DFAState.PredPrediction(
+                        element(semanticContexts, input.readInt()), input.readInt());
+                }
+            }
+
+            final DFAState state = new DFAState(readConfigs(input));
+            state.stateNumber = stateNumber;
+            state.isAcceptState = acceptState;
+            state.prediction = prediction;
+            state.requiresFullContext = requiresFullContext;
+            state.lexerActionExecutor = executor;
+            state.predicates = predicates;
+            return state;
+        }
+
+        private ATNConfigSet readConfigs(final DataInput input) throws IOException {
+            final boolean fullCtx = input.readBoolean();
+            final ATNConfigSet configs = lexer ? new OrderedATNConfigSet() : new ATNConfigSet(fullCtx);
+
+            if (configs.fullCtx != fullCtx) {
+                throw new IOException("Configuration set does not match the recognizer!");
+            }
+
+            configs.uniqueAlt = input.readInt();
+            final boolean hasSemanticContext = input.readBoolean();
+            final boolean dipsIntoOuterContext = input.readBoolean();
+            set(CONFLICTING_ALTS, configs, readBitSet(input));
+            final int size = readSize(input);
+
+            for (int i = 0; i < size; ++i) {
+                // Added directly to keep the order and to not merge anything.
+                configs.configs.add(readConfig(input));
+            }
+
+            configs.hasSemanticContext = hasSemanticContext;
+            configs.dipsIntoOuterContext = dipsIntoOuterContext;
+            configs.setReadonly(true);
+            return configs;
+        }
+
+        private static BitSet readBitSet(final DataInput input) throws IOException {
+            final int size = input.readInt();
+
+            if (NULL == size) {
+                return null;
+            }
+
+            final long[] words = new long[checkSize(size)];
+
+            for (int i = 0; i < words.length; ++i) {
+                words[i] = input.readLong();
+            }
+
+            return BitSet.valueOf(words);
+        }
+
+        private ATNConfig readConfig(final DataInput input) throws IOException {
+            final ATNState state = atnState(input.readInt());
+            final int alt = input.readInt();
+            final PredictionContext context = element(contexts, input.readInt());
+            final int reachesIntoOuterContext = input.readInt();
+            final ATNConfig config;
+
+            if (lexer) {
+                final LexerATNConfig lexerConfig = new LexerATNConfig(
+                    state, alt, context, element(executors, input.readInt()));
+                set(PASSED_THROUGH_NON_GREEDY_DECISION, lexerConfig, input.readBoolean());
+                config = lexerConfig;
+            } else {
+                config = new ATNConfig(state, alt, context, element(semanticContexts, input.readInt()));
+            }
+
+            config.reachesIntoOuterContext = reachesIntoOuterContext;
+            return config;
+        }
+
+        private DFAState[] readEdges(final DataInput input, final DFAState[] states) throws IOException {
+            final int length = input.readInt();
+
+            if (NULL == length) {
+                return null;
+            }
+
+            final DFAState[] edges = new DFAState[checkSize(length)];
+            final int count = readSize(input);
+
+            for (int i = 0; i < count; ++i) {
+                final int index = input.readInt();
+
+                if (index < 0 || index >= edges.length) {
+                    throw new IOException(String.format("Invalid edge %d!", index));
+                }
+
+                edges[index] = state(input.readInt(), states);
+            }
+
+            return edges;
+        }
+
+        private static DFAState state(final int reference, final DFAState[] states) throws IOException {
+            if (ERROR == reference) {
+                return ATNSimulator.ERROR;
+            }
+
+            return element(states, reference);
+        }
+
+        private ATNState atnState(final int stateNumber) throws IOException {
+            if (stateNumber < 0 || stateNumber >= atn.states.size() || null == atn.states.get(stateNumber)) {
+                throw new IOException(String.format("Unknown ATN state %d!", stateNumber));
+            }
+
+            return atn.states.get(stateNumber);
+        }
+
+        private PredictionContext readContext(final DataInput input) throws IOException {
+            final byte kind = input.readByte();
+
+            if (EMPTY_CONTEXT == kind) {
+                return PredictionContext.EMPTY;
+            }
+
+            final int size = readSize(input);
+            final PredictionContext[] parents = new PredictionContext[size];
+            final int[] returnStates = new int[size];
+
+            for (int i = 0; i < size; ++i) {
+                parents[i] = element(contexts, input.readInt());
+                returnStates[i] = input.readInt();
+            }
+
+            if (SINGLETON_CONTEXT == kind && 1 == size) {
+                return SingletonPredictionContext.create(parents[0], returnStates[0]);
+            }
+
+            if (ARRAY_CONTEXT == kind) {
+                return new ArrayPredictionContext(parents, returnStates);
+            }
+
+            throw new IOException(String.format("Invalid prediction context kind %d!", kind));
+        }
+
+        private SemanticContext readSemanticContext(final DataInput input) throws IOException {
+            final byte kind = input.readByte();
+
+            switch (kind) {
+                case NONE:
+                    return SemanticContext.NONE;
+                case PREDICATE:
+                    return new SemanticContext.Predicate(input.readInt(), input.readInt(), input.readBoolean());
+                case PRECEDENCE_PREDICATE:
+                    return new SemanticContext.PrecedencePredicate(input.readInt());
+                case AND:
+                case OR:
+                    final SemanticContext[] operands = new SemanticContext[readSize(input)];
+
+                    if (0 == operands.length) {
+                        throw new IOException("Semantic operator without operands!");
+                    }
+
+                    for (int i = 0; i < operands.length; ++i) {
+                        operands[i] = element(semanticContexts, input.readInt());
+                    }
+
+                    // The operator constructors flatten nested operators of the same kind.
+                    SemanticContext operator = combine(kind, operands[0], operands[0]);
+
+                    for (int i = 1; i < operands.length; ++i) {
+                        operator = combine(kind, operator, operands[i]);
+                    }
+
+                    return operator;
+                default:
+                    throw new IOException(String.format("Invalid semantic context kind %d!", kind));
+            }
+        }
+
+        private static SemanticContext combine(
+            final byte kind, final SemanticContext left, final SemanticContext right) {
+            return AND == kind ? new SemanticContext.AND(left, right) : new SemanticContext.OR(left, right);
+        }
+
+        private static LexerActionExecutor readExecutor(final DataInput input) throws IOException {
+            final LexerAction[] actions = new LexerAction[readSize(input)];
+
+            for (int i = 0; i < actions.length; ++i) {
+                actions[i] = readAction(input);
+            }
+
+            return new LexerActionExecutor(actions);
+        }
+
+        private static LexerAction readAction(final DataInput input) throws IOException {
+            final byte kind = input.readByte();
+
+            if (INDEXED_CUSTOM_ACTION == kind) {
+                return new LexerIndexedCustomAction(input.readInt(), readAction(input));
+            }
+
+            if (kind < 0 || kind >= LexerActionType.values().length) {
+                throw new IOException(String.format("Invalid lexer action kind %d!", kind));
+            }
+
+            switch (LexerActionType.values()[kind]) {
+                case CHANNEL:
+                    return new LexerChannelAction(input.readInt());
+                case CUSTOM:
+                    return new LexerCustomAction(input.readInt(), input.readInt());
+                case MODE:
+                    return new LexerModeAction(input.readInt());
+                case PUSH_MODE:
+                    return new LexerPushModeAction(input.readInt());
+                case TYPE:
+                    return new LexerTypeAction(input.readInt());
+                case MORE:
+                    return LexerMoreAction.INSTANCE;
+                case POP_MODE:
+                    return LexerPopModeAction.INSTANCE;
+                case SKIP:
+                    return LexerSkipAction.INSTANCE;
+                default:
+                    throw new IOException(String.format("Invalid lexer action kind %d!", kind));
+            }
+        }
+
+        private static <T> T element(final T[] elements, final int reference) throws IOException {
+            if (NULL == reference) {
+                return null;
+            }
+
+            if (reference < 0 || reference >= elements.length) {
+                throw new IOException(String.format("Invalid reference %d!", reference));
+            }
+
+            return elements[reference];
+        }
+
+        private static int readSize(final DataInput input) throws IOException {
+            return checkSize(input.readInt());
+        }
+
+        private static int checkSize(final int size) throws IOException {
+            if (size < 0) {
+                throw new IOException(String.format("Invalid size %d!", size));
+            }
+
+            return size;
+        }
+    }
+
+    private static Object get(final Field field, final Object target) {
+        try {
+            return field.get(target);
+        } catch (final IllegalAccessException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+
+    private static void set(final Field field, final Object target, final Object value) {
+        try {
+            field.set(target, value);
+        } catch (final IllegalAccessException ex) {
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+    }
+}
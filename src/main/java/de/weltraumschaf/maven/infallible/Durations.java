@@ -0,0 +1,255 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Remembers how long each file took in the last run, so that the next run can start the most expensive files first.
+ * <p>
+ * The expected cost of a file is its duration in the last run. Files without a recorded duration are estimated by
+ * their size and the average nanoseconds per byte of the last run, or only by their size if nothing was recorded.
+ * Starting the most expensive files first keeps a huge file found late from running alone while all other threads
+ * are idle.
+ * </p>
+ * <p>
+ * The files are keyed by their absolute path, archive entries by {@code archive!/entry}. Durations of files which
+ * were ordered but not parsed again (e.g. skipped as unchanged) are kept. This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Durations {
+
+    /**
+     * Name of the durations file in the work directory.
+     */
+    static final String FILE_NAME = "durations.properties";
+    /**
+     * Separates the nanoseconds from the bytes in the recorded values.
+     */
+    private static final char SEPARATOR = '/';
+
+    /**
+     * Where the durations are stored.
+     */
+    private final Path file;
+    /**
+     * Recorded durations of the last run.
+     */
+    private final Map<String, Duration> previous;
+    /**
+     * Durations of this run.
+     */
+    private final Map<String, Duration> current = new ConcurrentHashMap<>();
+    /**
+     * Files ordered in this run.
+     */
+    private final Set<String> ordered = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Use {@link #load(org.apache.maven.plugin.logging.Log, java.nio.file.Path)} instead.
+     * </p>
+     *
+     * @param file must not be {@code null}
+     * @param previous must not be {@code null}
+     */
+    private Durations(final Path file, final Map<String, Duration> previous) {
+        super();
+        this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+        this.previous = Validate.notNull(previous, "Parameter 'previous' must not be null!");
+    }
+
+    /**
+     * Loads the durations recorded by the last run.
+     * <p>
+     * If there is no durations file or it can't be read, no durations are known.
+     * </p>
+     *
+     * @param log must not be {@code null}
+     * @param file must not be {@code null}
+     * @return never {@code null}
+     */
+    static Durations load(final Log log, final Path file) {
+        Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final Map<String, Duration> previous = new ConcurrentHashMap<>();
+
+        if (Files.isRegularFile(file)) {
+            final Properties stored = new Properties();
+
+            try (InputStream input = Files.newInputStream(file)) {
+                stored.load(input);
+
+                for (final String name : stored.stringPropertyNames()) {
+                    previous.put(name, Duration.parse(stored.getProperty(name)));
+                }
+            } catch (final IOException | IllegalArgumentException ex) {
+                log.warn(String.format("Can't read durations '%s', order files by size (%s)!",
+                    file, ex.getMessage()));
+                previous.clear();
+            }
+        }
+
+        return new Durations(file, previous);
+    }
+
+    /**
+     * Number of durations recorded by the last run.
+     *
+     * @return not negative
+     */
+    int countPrevious() {
+        return previous.size();
+    }
+
+    /**
+     * Orders the given files by their expected cost, most expensive first.
+     * <p>
+     * Files with equal cost keep their order.
+     * </p>
+     *
+     * @param files must not be {@code null}, as found
+     * @param size must not be {@code null}, gives the size in bytes of a found file
+     * @return never {@code null}, new list
+     */
+    List<String> longestFirst(final Collection<String> files, final ToLongFunction<String> size) {
+        Validate.notNull(files, "Parameter 'files' must not be null!");
+        Validate.notNull(size, "Parameter 'size' must not be null!");
+        final double nanosPerByte = nanosPerByte();
+        final Map<String, Long> costs = new HashMap<>();
+
+        for (final String found : files) {
+            final String key = key(found);
+            final Duration last = previous.get(key);
+            ordered.add(key);
+            costs.put(found, null == last ? (long) (size.applyAsLong(found) * nanosPerByte) : last.nanos);
+        }
+
+        final List<String> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparingLong((String found) -> costs.get(found)).reversed());
+        return sorted;
+    }
+
+    /**
+     * Average nanoseconds per byte of the last run, 1 if unknown so that the size is the cost.
+     */
+    private double nanosPerByte() {
+        long nanos = 0;
+        long bytes = 0;
+
+        for (final Duration duration : previous.values()) {
+            nanos += duration.nanos;
+            bytes += duration.bytes;
+        }
+
+        return nanos > 0 && bytes > 0 ? (double) nanos / bytes : 1;
+    }
+
+    /**
+     * Records the duration of the given parsed file.
+     *
+     * @param testedFile must not be {@code null}
+     * @param nanos duration to read, lex and parse it, not negative
+     * @param bytes size of the file, not negative
+     */
+    void record(final String testedFile, final long nanos, final long bytes) {
+        Validate.notNull(testedFile, "Parameter 'testedFile' must not be null!");
+        Validate.isTrue(nanos >= 0, "Parameter 'nanos' must not be negative!");
+        Validate.isTrue(bytes >= 0, "Parameter 'bytes' must not be negative!");
+        current.put(key(testedFile), new Duration(nanos, bytes));
+    }
+
+    /**
+     * Stores the durations of this run, so that they are used by the next run.
+     *
+     * @throws MojoExecutionException if the durations file can't be written
+     */
+    void store() throws MojoExecutionException {
+        final Properties stored = new Properties();
+        previous.forEach((name, duration) -> {
+            if (ordered.contains(name)) {
+                stored.setProperty(name, duration.toString());
+            }
+        });
+        current.forEach((name, duration) -> stored.setProperty(name, duration.toString()));
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                stored.store(output, "Durations of the last run of the infallible-maven-plugin.");
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write durations '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Found files may be relative, tested files are absolute.
+     */
+    private static String key(final String file) {
+        return Paths.get(file).toAbsolutePath().toString();
+    }
+
+    /**
+     * Recorded duration and size of one file.
+     */
+    private static final class Duration {
+
+        /**
+         * Nanoseconds to read, lex and parse.
+         */
+        private final long nanos;
+        /**
+         * Size in bytes.
+         */
+        private final long bytes;
+
+        private Duration(final long nanos, final long bytes) {
+            super();
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        private static Duration parse(final String value) {
+            final int separator = value.indexOf(SEPARATOR);
+
+            if (separator < 0) {
+                throw new IllegalArgumentException(String.format("Malformed duration '%s'!", value));
+            }
+
+            return new Duration(
+                Long.parseLong(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(nanos) + SEPARATOR + bytes;
+        }
+    }
+}
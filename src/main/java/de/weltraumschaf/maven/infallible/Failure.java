@@ -0,0 +1,331 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import org.antlr.v4.runtime.FailedPredicateException;
+import org.antlr.v4.runtime.InputMismatchException;
+import org.antlr.v4.runtime.NoViableAltException;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Describes why a file failed.
+ * <p>
+ * The ANTLR exceptions of a failed parse reference the recognizer, the rule context and thereby the whole input. So
+ * only the details of the error are copied as strings and the exception is released immediately. This keeps
+ * the heap small, even if thousands of files fail. For the same reason the offending token is truncated to
+ * {@value #MAX_TOKEN_LENGTH} and the other strings to {@value #MAX_TEXT_LENGTH} characters, so a long string or
+ * comment token is not copied completely.
+ * </p>
+ * <p>
+ * This class is immutable.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Failure {
+
+    /**
+     * Used if the position of the error is not known.
+     */
+    static final int UNKNOWN = -1;
+    /**
+     * Longer offending tokens are truncated.
+     */
+    static final int MAX_TOKEN_LENGTH = 100;
+    /**
+     * Longer messages and expected tokens are truncated.
+     */
+    static final int MAX_TEXT_LENGTH = 2_000;
+
+    /**
+     * Human readable description.
+     */
+    private final String message;
+    /**
+     * One based line of the error, {@link #UNKNOWN} if not known.
+     */
+    private final int line;
+    /**
+     * Zero based column of the error, {@link #UNKNOWN} if not known.
+     */
+    private final int column;
+    /**
+     * Text of the offending token, empty if not known.
+     */
+    private final String offendingToken;
+    /**
+     * Display names of the expected tokens, empty if not known.
+     */
+    private final String expectedTokens;
+    /**
+     * Names of the invoked rules, innermost first.
+     */
+    private final List<String> ruleStack;
+
+    /**
+     * Convenience constructor for a failure without position.
+     *
+     * @param message must not be {@code null}
+     */
+    Failure(final String message) {
+        this(message, UNKNOWN, UNKNOWN, "", "", Collections.emptyList());
+    }
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Too long strings are truncated.
+     * </p>
+     *
+     * @param message must not be {@code null}
+     * @param line one based line, {@link #UNKNOWN} if not known
+     * @param column zero based column, {@link #UNKNOWN} if not known
+     * @param offendingToken must not be {@code null}
+     * @param expectedTokens must not be {@code null}
+     * @param ruleStack must not be {@code null}, innermost rule first
+     */
+    Failure(
+        final String message,
+        final int line,
+        final int column,
+        final String offendingToken,
+        final String expectedTokens,
+        final List<String> ruleStack) {
+        super();
+        Validate.notNull(message, "Parameter 'message' must not be null!");
+        Validate.notNull(offendingToken, "Parameter 'offendingToken' must not be null!");
+        Validate.notNull(expectedTokens, "Parameter 'expectedTokens' must not be null!");
+        this.message = StringUtils.abbreviate(message, MAX_TEXT_LENGTH);
+        this.line = line;
+        this.column = column;
+        this.offendingToken = abbreviateToken(offendingToken);
+        this.expectedTokens = StringUtils.abbreviate(expectedTokens, MAX_TEXT_LENGTH);
+        Validate.notNull(ruleStack, "Parameter 'ruleStack' must not be null!");
+        this.ruleStack = Collections.unmodifiableList(new ArrayList<>(ruleStack));
+    }
+
+    /**
+     * Copies the details of the given exception.
+     * <p>
+     * If caused by a {@link RecognitionException}, e.g. thrown by the {@link org.antlr.v4.runtime.BailErrorStrategy},
+     * the position, the offending and expected tokens and the rule stack are copied and the message is built from them.
+     * Otherwise only the message of the given exception is copied.
+     * </p>
+     *
+     * @param error must not be {@code null}
+     * @return never {@code null}, always new instance
+     */
+    static Failure of(final ParseCancellationException error) {
+        Validate.notNull(error, "Parameter 'error' must not be null!");
+        final Throwable cause = error.getCause();
+
+        if (cause instanceof RecognitionException) {
+            final Failure recognized = of((RecognitionException) cause);
+
+            if (null != recognized) {
+                return recognized;
+            }
+        }
+
+        return new Failure(null == error.getMessage() ? "" : error.getMessage());
+    }
+
+    private static Failure of(final RecognitionException error) {
+        final Token token = error.getOffendingToken();
+
+        if (null == token) {
+            return null;
+        }
+
+        final Recognizer<?, ?> recognizer = error.getRecognizer();
+        final IntervalSet expected = null == recognizer ? null : error.getExpectedTokens();
+        final String expectedTokens = null == expected ? "" : expected.toString(recognizer.getVocabulary());
+        final List<String> ruleStack = recognizer instanceof Parser && null != error.getCtx()
+            ? ((Parser) recognizer).getRuleInvocationStack(error.getCtx())
+            : Collections.emptyList();
+        final String offendingToken = abbreviateToken(String.valueOf(token.getText()));
+        final StringBuilder message = new StringBuilder();
+        message.append(String.format("line %d:%d %s '%s'",
+            token.getLine(), token.getCharPositionInLine(), describe(error), offendingToken));
+
+        if (!expectedTokens.isEmpty()) {
+            message.append(" expecting ").append(expectedTokens);
+        }
+
+        if (!ruleStack.isEmpty()) {
+            message.append(" in rule stack ").append(ruleStack);
+        }
+
+        return new Failure(message.toString(),
+            token.getLine(), token.getCharPositionInLine(), offendingToken, expectedTokens, ruleStack);
+    }
+
+    /**
+     * Truncates the given text of an offending token to {@value #MAX_TOKEN_LENGTH} characters.
+     *
+     * @param text must not be {@code null}
+     * @return never {@code null}
+     */
+    static String abbreviateToken(final String text) {
+        return StringUtils.abbreviate(text, MAX_TOKEN_LENGTH);
+    }
+
+    private static String describe(final RecognitionException error) {
+        if (error instanceof InputMismatchException) {
+            return "mismatched input";
+        }
+
+        if (error instanceof NoViableAltException) {
+            return "no viable alternative at input";
+        }
+
+        if (error instanceof FailedPredicateException) {
+            return String.format("failed predicate (%s) at input", error.getMessage());
+        }
+
+        return "unexpected input";
+    }
+
+    /**
+     * Human readable description.
+     *
+     * @return never {@code null}
+     */
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * One based line of the error.
+     *
+     * @return {@link #UNKNOWN} if not known
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Zero based column of the error.
+     *
+     * @return {@link #UNKNOWN} if not known
+     */
+    int getColumn() {
+        return column;
+    }
+
+    /**
+     * Text of the offending token.
+     *
+     * @return never {@code null}, empty if not known
+     */
+    String getOffendingToken() {
+        return offendingToken;
+    }
+
+    /**
+     * Display names of the expected tokens (e.g. {@code {INTEGER, '('}}).
+     *
+     * @return never {@code null}, empty if not known
+     */
+    String getExpectedTokens() {
+        return expectedTokens;
+    }
+
+    /**
+     * Names of the invoked rules at the error, innermost first.
+     *
+     * @return never {@code null}, unmodifiable
+     */
+    List<String> getRuleStack() {
+        return ruleStack;
+    }
+
+    /**
+     * Writes this failure.
+     *
+     * @param output must not be {@code null}
+     * @throws IOException if the failure can't be written
+     */
+    void write(final DataOutput output) throws IOException {
+        Validate.notNull(output, "Parameter 'output' must not be null!");
+        DataStrings.write(output, message);
+        output.writeInt(line);
+        output.writeInt(column);
+        DataStrings.write(output, offendingToken);
+        DataStrings.write(output, expectedTokens);
+        output.writeInt(ruleStack.size());
+
+        for (final String rule : ruleStack) {
+            DataStrings.write(output, rule);
+        }
+    }
+
+    /**
+     * Reads a failure written by {@link #write(java.io.DataOutput)}.
+     *
+     * @param input must not be {@code null}
+     * @return never {@code null}
+     * @throws IOException if the failure can't be read
+     */
+    static Failure read(final DataInput input) throws IOException {
+        Validate.notNull(input, "Parameter 'input' must not be null!");
+        final String message = DataStrings.read(input);
+        final int line = input.readInt();
+        final int column = input.readInt();
+        final String offendingToken = DataStrings.read(input);
+        final String expectedTokens = DataStrings.read(input);
+        final int rules = input.readInt();
+
+        if (rules < 0) {
+            throw new IOException(String.format("Invalid rule stack size %d!", rules));
+        }
+
+        final List<String> ruleStack = new ArrayList<>(rules);
+
+        for (int i = 0; i < rules; ++i) {
+            ruleStack.add(DataStrings.read(input));
+        }
+
+        return new Failure(message, line, column, offendingToken, expectedTokens, ruleStack);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(message, line, column, offendingToken, expectedTokens, ruleStack);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof Failure)) {
+            return false;
+        }
+
+        final Failure other = (Failure) obj;
+        return Objects.equals(message, other.message)
+            && line == other.line
+            && column == other.column
+            && Objects.equals(offendingToken, other.offendingToken)
+            && Objects.equals(expectedTokens, other.expectedTokens)
+            && Objects.equals(ruleStack, other.ruleStack);
+    }
+
+    @Override
+    public String toString() {
+        return "Failure{" + "message=" + message + ", line=" + line + ", column=" + column
+            + ", offendingToken=" + offendingToken + ", expectedTokens=" + expectedTokens
+            + ", ruleStack=" + ruleStack + '}';
+    }
+}
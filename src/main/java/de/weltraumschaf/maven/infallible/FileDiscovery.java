@@ -0,0 +1,688 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Finds the files of the file sets in background threads while they are already parsed.
+ * <p>
+ * Each directory is listed by its own task, so the directories of a tree are listed concurrently. This hides the
+ * latency of slow (e.g. network backed) file systems. The include and exclude patterns are compiled once per file set
+ * and excluded directories (e.g. {@code **&#47;.git/**}) are not walked at all. The found files are passed to the
+ * {@link #iterator() iterator} as soon as they are found, so parsing starts with the first file.
+ * </p>
+ * <p>
+ * The patterns have the Ant semantics of {@link org.apache.maven.shared.model.fileset.util.FileSetManager}: They
+ * are relative to the file set directory, {@code **} matches any number of directories, {@code *} and {@code ?} match
+ * within a name and a trailing {@code /} is the same as {@code /**}. Like there the patterns are case sensitive, also
+ * on case insensitive file systems, and the default excludes are the ones of
+ * {@link DirectoryScanner#DEFAULTEXCLUDES}. Without includes all files are included. The
+ * order of the found files is not defined. A file selected by more than one file set (e.g. nested or overlapping
+ * directories) is found only once.
+ * </p>
+ * <p>
+ * A file set directory may also be an archive (see {@link Archive}). Then the patterns apply to the entry names and
+ * the found entries are named {@code archive!/entry}. Archives are read once in the background and the content of
+ * each selected entry is kept until it is taken (see {@link #takeContent(java.lang.String)}). At most
+ * {@value #CONTENT_CAPACITY} bytes of entries wait to be iterated, so reading does not run arbitrarily far ahead.
+ * </p>
+ * <p>
+ * The instance must be closed to stop the background threads. Errors while walking the directories are reported by
+ * {@link #close()}.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class FileDiscovery implements Iterable<String>, AutoCloseable {
+
+    /**
+     * Marks the end of the found files in the queue, no found file has an empty path.
+     */
+    private static final String END = "";
+    /**
+     * Bytes of archive entries which may wait to be iterated.
+     */
+    static final long CONTENT_CAPACITY = 64L * 1024 * 1024;
+
+    /**
+     * Only the files of this shard are passed on.
+     */
+    private final Shard shard;
+    /**
+     * Only files whose relative path is accepted are passed on.
+     */
+    private final Predicate<String> filter;
+    /**
+     * The walked file set directories.
+     */
+    private final List<String> roots = new ArrayList<>();
+    /**
+     * Lists the directories.
+     */
+    private final ExecutorService walkers;
+    /**
+     * Found files, terminated by {@link #END}.
+     */
+    private final BlockingQueue<String> found = new LinkedBlockingQueue<>();
+    /**
+     * Absolute paths of the found files, so that files of overlapping file sets are found once.
+     */
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    /**
+     * Content of the found archive entries until taken.
+     */
+    private final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+    /**
+     * Guards {@link #queuedBytes}.
+     */
+    private final Object contentLock = new Object();
+    /**
+     * Bytes of the archive entries which are found but not iterated yet.
+     */
+    private long queuedBytes;
+    /**
+     * Number of directories submitted but not yet listed.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    /**
+     * The first error while walking.
+     */
+    private final AtomicReference<IOException> error = new AtomicReference<>();
+    /**
+     * Whether the iterator was already created.
+     */
+    private boolean iterated;
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Use {@link #start(org.apache.maven.shared.model.fileset.FileSet[], de.weltraumschaf.maven.infallible.Shard,
+     * int, java.util.function.Predicate)} instead.
+     * </p>
+     *
+     * @param shard must not be {@code null}
+     * @param threads must be greater than 0
+     * @param filter must not be {@code null}
+     */
+    private FileDiscovery(final Shard shard, final int threads, final Predicate<String> filter) {
+        super();
+        Validate.isTrue(threads > 0, "Parameter 'threads' must be greater than 0!");
+        this.shard = Validate.notNull(shard, "Parameter 'shard' must not be null!");
+        this.filter = Validate.notNull(filter, "Parameter 'filter' must not be null!");
+        this.walkers = Executors.newFixedThreadPool(threads, new WalkerThreadFactory());
+    }
+
+    /**
+     * Starts to walk the directories of the given file sets.
+     *
+     * @param filesets must not be {@code null}
+     * @param shard must not be {@code null}, only files of this shard are found
+     * @param threads number of directories listed concurrently, must be greater than 0
+     * @return never {@code null}
+     */
+    static FileDiscovery start(final FileSet[] filesets, final Shard shard, final int threads) {
+        return start(filesets, shard, threads, relativePath -> true);
+    }
+
+    /**
+     * Starts to walk the directories of the given file sets and only finds files accepted by the given filter.
+     *
+     * @param filesets must not be {@code null}
+     * @param shard must not be {@code null}, only files of this shard are found
+     * @param threads number of directories listed concurrently, must be greater than 0
+     * @param filter must not be {@code null}, gets the path relative to the file set directory separated by {@code /}
+     * @return never {@code null}
+     */
+    static FileDiscovery start(
+        final FileSet[] filesets, final Shard shard, final int threads, final Predicate<String> filter) {
+        Validate.notNull(filesets, "Parameter 'filesets' must not be null!");
+        final FileDiscovery discovery = new FileDiscovery(shard, threads, filter);
+        // Keeps the count above zero until all roots are submitted, so the end is not signalled too early.
+        discovery.pending.incrementAndGet();
+
+        for (final FileSet set : filesets) {
+            final Path directory = Paths.get(set.getDirectory());
+
+            if (Files.isDirectory(directory)) {
+                discovery.roots.add(directory.toString());
+                discovery.submit(new Selector(set), directory, "");
+            } else if (isArchive(directory)) {
+                discovery.submitArchive(new Selector(set), directory.toAbsolutePath());
+            }
+        }
+
+        discovery.done();
+        return discovery;
+    }
+
+    /**
+     * Finds all files of the given file sets and waits until the walk is finished.
+     *
+     * @param filesets must not be {@code null}
+     * @param shard must not be {@code null}, only files of this shard are found
+     * @param threads number of directories listed concurrently, must be greater than 0
+     * @return never {@code null}
+     * @throws MojoExecutionException if a directory can't be listed
+     */
+    static Collection<String> findAll(final FileSet[] filesets, final Shard shard, final int threads)
+        throws MojoExecutionException {
+        final Collection<String> files = new ArrayList<>();
+
+        try (FileDiscovery discovery = start(filesets, shard, threads)) {
+            discovery.forEach(files::add);
+        }
+
+        return files;
+    }
+
+    /**
+     * Iterates the found files, blocks until the next one is found or the walk is finished.
+     * <p>
+     * The paths consist of the file set directory and the path relative to it. This method may be called once.
+     * </p>
+     *
+     * @return never {@code null}
+     */
+    @Override
+    public synchronized Iterator<String> iterator() {
+        Validate.validState(!iterated, "The found files may only be iterated once!");
+        iterated = true;
+        return new FoundFiles();
+    }
+
+    /**
+     * Get the path of the given found file relative to its file set directory.
+     * <p>
+     * If file set directories are nested the path is relative to the innermost one.
+     * </p>
+     *
+     * @param file must not be {@code null}, found by this instance
+     * @return never {@code null}, separated by {@code /}
+     */
+    String relativize(final String file) {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        return relativize(roots, file);
+    }
+
+    /**
+     * Get the absolute path of a tested file or directory relative to its file set directory.
+     * <p>
+     * Like {@link #relativize(java.lang.String)}, but for absolute paths (see {@link Result#getTestedFile()}) after
+     * the discovery finished.
+     * </p>
+     *
+     * @param filesets must not be {@code null}
+     * @param file must not be {@code null}, absolute
+     * @return never {@code null}, separated by {@code /}, unchanged if not in any file set directory
+     */
+    static String relativize(final FileSet[] filesets, final String file) {
+        Validate.notNull(filesets, "Parameter 'filesets' must not be null!");
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final List<String> roots = new ArrayList<>();
+
+        for (final FileSet set : filesets) {
+            final Path directory = Paths.get(set.getDirectory()).toAbsolutePath();
+            roots.add(isArchive(directory) ? directory + ENTRY_ROOT_SUFFIX : directory.toString());
+        }
+
+        return relativize(roots, file);
+    }
+
+    /**
+     * Whether any file set directory is an archive.
+     * <p>
+     * The content of each entry is held in memory until it is taken, so all files of such a file set must not be
+     * iterated before they are parsed.
+     * </p>
+     *
+     * @param filesets must not be {@code null}
+     * @return {@code true} if any is an archive, else {@code false}
+     */
+    static boolean hasArchive(final FileSet[] filesets) {
+        Validate.notNull(filesets, "Parameter 'filesets' must not be null!");
+
+        for (final FileSet set : filesets) {
+            if (isArchive(Paths.get(set.getDirectory()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isArchive(final Path directory) {
+        return Files.isRegularFile(directory) && Archive.isArchive(directory);
+    }
+
+    private static String relativize(final List<String> roots, final String file) {
+        String root = "";
+
+        for (final String candidate : roots) {
+            if (candidate.length() > root.length() && file.startsWith(candidate)
+                && file.length() > candidate.length() && isSeparator(file.charAt(candidate.length()))) {
+                root = candidate;
+            }
+        }
+
+        final String relativePath = root.isEmpty() ? file : file.substring(root.length() + 1);
+        return relativePath.replace('\\', '/');
+    }
+
+    private static boolean isSeparator(final char c) {
+        return '/' == c || '\\' == c;
+    }
+
+    /**
+     * Takes the content of the given found archive entry.
+     * <p>
+     * The content is released by this instance, so it can be taken only once.
+     * </p>
+     *
+     * @param file must not be {@code null}, found by this instance
+     * @return {@code null} if not an archive entry or already taken, else the undecoded bytes
+     */
+    byte[] takeContent(final String file) {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        return contents.remove(file);
+    }
+
+    /**
+     * Size of the given found file.
+     *
+     * @param file must not be {@code null}, found by this instance
+     * @return the bytes of an archive entry not taken yet or of a file, 0 if unknown
+     */
+    long size(final String file) {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final byte[] content = contents.get(file);
+
+        if (null != content) {
+            return content.length;
+        }
+
+        try {
+            return Files.size(Paths.get(file));
+        } catch (final IOException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Stops the walk.
+     *
+     * @throws MojoExecutionException if a directory could not be listed
+     */
+    @Override
+    public void close() throws MojoExecutionException {
+        walkers.shutdownNow();
+        contents.clear();
+        final IOException ex = error.get();
+
+        if (null != ex) {
+            throw new MojoExecutionException(String.format("Can't find files to test (%s)!", ex.getMessage()), ex);
+        }
+    }
+
+    private void submit(final Selector selector, final Path directory, final String relativeDirectory) {
+        pending.incrementAndGet();
+
+        try {
+            walkers.execute(() -> walk(selector, directory, relativeDirectory));
+        } catch (final RejectedExecutionException ex) {
+            // Closed while walking.
+            done();
+        }
+    }
+
+    private void walk(final Selector selector, final Path directory, final String relativeDirectory) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (final Path entry : entries) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+
+                final String relativePath = relativeDirectory + entry.getFileName();
+                final BasicFileAttributes attributes = Files.readAttributes(
+                    entry, BasicFileAttributes.class, selector.linkOptions);
+
+                if (attributes.isDirectory()) {
+                    if (!selector.excludesAll(relativePath)) {
+                        submit(selector, entry, relativePath + '/');
+                    }
+                } else if (attributes.isRegularFile() && selector.isSelected(relativePath)
+                    && shard.contains(relativePath) && filter.test(relativePath)
+                    && seen.add(entry.toAbsolutePath().normalize().toString())) {
+                    found.add(entry.toString());
+                }
+            }
+        } catch (final IOException ex) {
+            error.compareAndSet(null, ex);
+        } finally {
+            done();
+        }
+    }
+
+    private void submitArchive(final Selector selector, final Path archive) {
+        // Entries are relativized like files of a directory named as the archive with a trailing '!'.
+        final String root = archive + ENTRY_ROOT_SUFFIX;
+        roots.add(root);
+        pending.incrementAndGet();
+
+        try {
+            walkers.execute(() -> walkArchive(selector, archive, root));
+        } catch (final RejectedExecutionException ex) {
+            // Closed while walking.
+            done();
+        }
+    }
+
+    private void walkArchive(final Selector selector, final Path archive, final String root) {
+        try {
+            Archive.read(archive, (name, content) -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Closed while reading!");
+                }
+
+                if (selector.isSelected(name) && shard.contains(name) && filter.test(name)
+                    && seen.add(root + '/' + name)) {
+                    addEntry(root + '/' + name, Archive.readFully(content));
+                }
+            });
+        } catch (final InterruptedIOException ex) {
+            // Closed while reading.
+        } catch (final IOException ex) {
+            error.compareAndSet(null, ex);
+        } finally {
+            done();
+        }
+    }
+
+    /**
+     * Passes on a found archive entry, blocks while too many bytes wait to be iterated.
+     */
+    private void addEntry(final String entry, final byte[] content) throws InterruptedIOException {
+        synchronized (contentLock) {
+            // A single entry larger than the capacity is passed on if nothing waits.
+            while (queuedBytes > 0 && queuedBytes + content.length > CONTENT_CAPACITY) {
+                try {
+                    contentLock.wait();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Closed while reading!");
+                }
+            }
+
+            queuedBytes += content.length;
+        }
+
+        contents.put(entry, content);
+        found.add(entry);
+    }
+
+    /**
+     * Releases the capacity of the given iterated file if it is an archive entry.
+     */
+    private void iterated(final String file) {
+        final byte[] content = contents.get(file);
+
+        if (null == content) {
+            return;
+        }
+
+        synchronized (contentLock) {
+            queuedBytes -= content.length;
+            contentLock.notifyAll();
+        }
+    }
+
+    /**
+     * Signals the end of the found files after the last directory was listed.
+     */
+    private void done() {
+        if (0 == pending.decrementAndGet()) {
+            found.add(END);
+        }
+    }
+
+    /**
+     * Takes the found files from the queue.
+     */
+    private final class FoundFiles implements Iterator<String> {
+
+        /**
+         * The next file, {@code null} if not taken yet.
+         */
+        private String next;
+
+        @Override
+        public boolean hasNext() {
+            if (null == next) {
+                try {
+                    next = found.take();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    next = END;
+                }
+            }
+
+            return END != next;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final String file = next;
+            next = null;
+            iterated(file);
+            return file;
+        }
+    }
+
+    /**
+     * The compiled patterns of one file set.
+     */
+    private static final class Selector {
+
+        /**
+         * Ant pattern matching any path.
+         */
+        private static final String ANY = "**";
+
+        /**
+         * Compiled include patterns.
+         */
+        private final List<Pattern> includes = new ArrayList<>();
+        /**
+         * Compiled exclude patterns.
+         */
+        private final List<Pattern> excludes = new ArrayList<>();
+        /**
+         * Compiled exclude patterns which exclude a directory with all its content.
+         */
+        private final List<Pattern> directoryExcludes = new ArrayList<>();
+        /**
+         * Whether symbolic links are followed.
+         */
+        private final LinkOption[] linkOptions;
+
+        private Selector(final FileSet set) {
+            super();
+            final List<String> includePatterns = set.getIncludes().isEmpty()
+                ? Collections.singletonList(ANY)
+                : set.getIncludes();
+
+            for (final String include : includePatterns) {
+                includes.add(compile(include));
+            }
+
+            final List<String> excludePatterns = new ArrayList<>(set.getExcludes());
+
+            if (set.isUseDefaultExcludes()) {
+                excludePatterns.addAll(Arrays.asList(DirectoryScanner.DEFAULTEXCLUDES));
+            }
+
+            for (final String exclude : excludePatterns) {
+                final String normalized = normalize(exclude);
+                final Pattern compiled = compile(normalized);
+                excludes.add(compiled);
+
+                if (normalized.endsWith("/" + ANY)) {
+                    directoryExcludes.add(compiled);
+                }
+            }
+
+            linkOptions = set.isFollowSymlinks() ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        }
+
+        /**
+         * Whether the file with the given relative path is included and not excluded.
+         */
+        private boolean isSelected(final String relativePath) {
+            return matchesAny(includes, relativePath) && !matchesAny(excludes, relativePath);
+        }
+
+        /**
+         * Whether the directory with the given relative path and all its content is excluded.
+         */
+        private boolean excludesAll(final String relativeDirectory) {
+            return matchesAny(directoryExcludes, relativeDirectory);
+        }
+
+        private static boolean matchesAny(final List<Pattern> patterns, final String relativePath) {
+            for (final Pattern pattern : patterns) {
+                if (pattern.matcher(relativePath).matches()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Appended to the path of an archive to get the root its entries are relativized to.
+     */
+    private static final String ENTRY_ROOT_SUFFIX = "!";
+
+    /**
+     * Unifies the separators and expands a trailing separator to {@code /**}.
+     *
+     * @param pattern must not be {@code null}
+     * @return never {@code null}
+     */
+    static String normalize(final String pattern) {
+        Validate.notNull(pattern, "Parameter 'pattern' must not be null!");
+        final String normalized = pattern.trim().replace('\\', '/');
+        return normalized.endsWith("/") ? normalized + Selector.ANY : normalized;
+    }
+
+    /**
+     * Compiles an Ant pattern into a regular expression which matches relative paths separated by {@code /}.
+     *
+     * @param pattern must not be {@code null}
+     * @return never {@code null}
+     */
+    static Pattern compile(final String pattern) {
+        final String[] segments = normalize(pattern).split("/");
+        final StringBuilder regex = new StringBuilder();
+        // Whether the next segment must be preceded by a separator.
+        boolean separate = false;
+
+        for (int i = 0; i < segments.length; ++i) {
+            final String segment = segments[i];
+
+            if (Selector.ANY.equals(segment)) {
+                if (i == segments.length - 1) {
+                    regex.append(separate ? "(?:/.*)?" : ".*");
+                } else {
+                    regex.append(separate ? "(?:/.*)?/" : "(?:.*/)?");
+                }
+
+                separate = false;
+                continue;
+            }
+
+            if (separate) {
+                regex.append('/');
+            }
+
+            compileSegment(segment, regex);
+            separate = true;
+        }
+
+        return Pattern.compile(regex.toString());
+    }
+
+    private static void compileSegment(final String segment, final StringBuilder regex) {
+        final StringBuilder literal = new StringBuilder();
+
+        for (final char c : segment.toCharArray()) {
+            if ('*' == c || '?' == c) {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+
+                regex.append('*' == c ? "[^/]*" : "[^/]");
+            } else {
+                literal.append(c);
+            }
+        }
+
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that they do not prevent the JVM from exiting.
+     */
+    private static final class WalkerThreadFactory implements ThreadFactory {
+
+        /**
+         * Used to number the threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread walker = new Thread(r, "infallible-discovery-" + count.incrementAndGet());
+            walker.setDaemon(true);
+            return walker;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import org.antlr.v4.runtime.ANTLRFileStream;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerNoViableAltException;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Lexes one file without creating a parser.
+ * <p>
+ * Only the generated lexer class is resolved, so this also works for lexer grammars without parser. The lexer stops
+ * on the first token recognition error, the file fails with it. Each result carries the measured read and lex time
+ * and the number of tokens (see {@link Metrics}), so the summary reports the throughput in tokens/s.
+ * </p>
+ * <p>
+ * Files with more bytes than the streaming threshold are decoded on the fly (see
+ * {@link ParserFactory#openStreaming(java.nio.file.Path, long, java.lang.String)}).
+ * </p>
+ * <p>
+ * If the lexing thread is interrupted, lexing stops with a {@link CancellationException}. Optionally a
+ * {@link ParseWatchdog} interrupts files which exceed their time budget, they result in
+ * {@link Result#timedOut(java.lang.String)}.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class FileLexer {
+
+    /**
+     * Type of the lexer constructor handle.
+     */
+    private static final MethodType LEXER_CONSTRUCTOR = MethodType.methodType(Lexer.class, CharStream.class);
+    /**
+     * Fails the file on the first token recognition error.
+     */
+    private static final BaseErrorListener FAIL_ON_ERROR = new BaseErrorListener() {
+        @Override
+        public void syntaxError(
+            final Recognizer<?, ?> recognizer,
+            final Object offendingSymbol,
+            final int line,
+            final int charPositionInLine,
+            final String msg,
+            final RecognitionException e) {
+            final String offendingText = e instanceof LexerNoViableAltException
+                ? offendingText((Lexer) recognizer, (LexerNoViableAltException) e)
+                : "";
+            throw new LexerError(new Failure(String.format("line %d:%d %s", line, charPositionInLine, msg),
+                line, charPositionInLine, offendingText, "", Collections.emptyList()));
+        }
+    };
+
+    /**
+     * Logging facility.
+     */
+    private final Log log;
+    /**
+     * Encoding of the files.
+     */
+    private final String encoding;
+    /**
+     * Files with more bytes are streamed.
+     */
+    private final long streamingThreshold;
+    /**
+     * Aborts files which exceed their time budget, {@code null} if there is no budget.
+     */
+    private final ParseWatchdog watchdog;
+    /**
+     * The generated lexer class.
+     */
+    private final Class<? extends Lexer> lexerClass;
+    /**
+     * Creates a lexer for a {@link CharStream}.
+     */
+    private final MethodHandle lexerConstructor;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param log must not be {@code null}
+     * @param classes must not be {@code null}
+     * @param packageName must not be {@code null}
+     * @param grammarName must not be {@code null}, empty or blank
+     * @param encoding must not be {@code null} or empty
+     * @param streamingThreshold files with more bytes are streamed, must not be negative
+     * @param watchdog may be {@code null}, if not each file is aborted when it exceeds the time budget
+     * @throws MojoExecutionException if the generated lexer class or its constructor can't be resolved
+     */
+    FileLexer(
+        final Log log,
+        final ClassLoader classes,
+        final String packageName,
+        final String grammarName,
+        final String encoding,
+        final long streamingThreshold,
+        final ParseWatchdog watchdog) throws MojoExecutionException {
+        super();
+        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(classes, "Parameter 'classes' must not be null!");
+        Validate.notNull(packageName, "Parameter 'packageName' must not be null!");
+        Validate.notBlank(grammarName, "Parameter 'grammarName' must not be null, empty or blank!");
+        this.encoding = Validate.notEmpty(encoding, "Parameter 'encoding' must not be null or empty!");
+        Validate.isTrue(streamingThreshold >= 0, "Parameter 'streamingThreshold' must not be negative!");
+        this.streamingThreshold = streamingThreshold;
+        this.watchdog = watchdog;
+
+        final String lexerClassName = ParserFactory.generateClassName(packageName, grammarName, "Lexer");
+        log.info(String.format("Using lexer class '%s'.", lexerClassName));
+        lexerClass = ParserFactory.createClass(classes, lexerClassName, Lexer.class);
+        lexerConstructor = ParserFactory.createConstructor(lexerClass, CharStream.class, LEXER_CONSTRUCTOR);
+    }
+
+    /**
+     * The generated lexer class.
+     *
+     * @return never {@code null}
+     */
+    Class<? extends Lexer> getLexerClass() {
+        return lexerClass;
+    }
+
+    /**
+     * Lexes the given file until its end or the first token recognition error.
+     *
+     * @param file must not be {@code null}, absolute
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error which is not a lexer error
+     * @throws CancellationException if the lexing thread was interrupted
+     */
+    Result lex(final Path file) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final long size = size(file);
+        final long readStart = System.nanoTime();
+        final CharStream input = open(file, size);
+        return lex(input, System.nanoTime() - readStart, size);
+    }
+
+    /**
+     * Lexes the given loaded file until its end or the first token recognition error.
+     *
+     * @param loaded must not be {@code null}, not released
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error which is not a lexer error
+     * @throws CancellationException if the lexing thread was interrupted
+     */
+    Result lex(final ReadAhead.Loaded loaded) throws MojoExecutionException {
+        Validate.notNull(loaded, "Parameter 'loaded' must not be null!");
+        return lex(loaded.getInput(), loaded.getReadNanos(), loaded.getSize());
+    }
+
+    private Result lex(final CharStream input, final long readNanos, final long size) throws MojoExecutionException {
+        final Lexer lexer = create(input);
+        final String fileToTest = lexer.getSourceName();
+        final ParseWatchdog.Watch watch = null == watchdog ? null : watchdog.watch();
+        final long lexStart = System.nanoTime();
+        long tokens = 0;
+
+        try {
+            while (lexer.nextToken().getType() != Token.EOF) {
+                CancellableErrorStrategy.checkInterrupted(fileToTest);
+                ++tokens;
+            }
+
+            return Result.passed(fileToTest)
+                .withMetrics(new Metrics(readNanos, System.nanoTime() - lexStart, 0, tokens, size));
+        } catch (final LexerError ex) {
+            log.error(String.format("%s: %s", fileToTest, ex.failure.getMessage()));
+            return Result.failed(fileToTest, ex.failure)
+                .withMetrics(new Metrics(readNanos, System.nanoTime() - lexStart, 0, tokens, size));
+        } catch (final CancellationException ex) {
+            if (null == watch || !watch.isFired()) {
+                throw ex;
+            }
+
+            log.error(String.format("Lexing '%s' timed out after %d ms!", fileToTest, watchdog.getTimeoutMillis()));
+            return Result.timedOut(fileToTest);
+        } finally {
+            if (null != watch) {
+                watch.close();
+            }
+        }
+    }
+
+    private CharStream open(final Path file, final long size) throws MojoExecutionException {
+        if (size > streamingThreshold) {
+            return ParserFactory.openStreaming(file, size, encoding);
+        }
+
+        try {
+            return new ANTLRFileStream(file.toString(), encoding);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private Lexer create(final CharStream input) throws MojoExecutionException {
+        final Lexer lexer;
+
+        try {
+            lexer = (Lexer) lexerConstructor.invokeExact(input);
+        } catch (final Error ex) {
+            throw ex;
+        } catch (final Throwable ex) {
+            throw new MojoExecutionException(
+                String.format("Can't create lexer for '%s' (%s)!", input.getSourceName(), ex.getMessage()), ex);
+        }
+
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(FAIL_ON_ERROR);
+        return lexer;
+    }
+
+    private static String offendingText(final Lexer lexer, final LexerNoViableAltException error) {
+        final CharStream input = lexer.getInputStream();
+        // Only the truncated text is kept, so the rest is not copied at all.
+        final int stop = Math.min(input.index(), error.getStartIndex() + Failure.MAX_TOKEN_LENGTH);
+        return Failure.abbreviateToken(input.getText(Interval.of(error.getStartIndex(), stop)));
+    }
+
+    private static long size(final Path file) throws MojoExecutionException {
+        try {
+            return Files.size(file);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Stops lexing on the first token recognition error.
+     * <p>
+     * Only carries the details of the error, neither the lexer nor its input.
+     * </p>
+     */
+    private static final class LexerError extends ParseCancellationException {
+
+        private static final long serialVersionUID = 1L;
+        /**
+         * Describes the error.
+         */
+        private final transient Failure failure;
+
+        private LexerError(final Failure failure) {
+            super(failure.getMessage());
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.antlr.v4.runtime.Parser;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Parses one file and measures the whole effort.
+ * <p>
+ * Adds the time to read the file and its size to the metrics measured by the {@link ParserInvoker}. Used by the mojo
+ * and by forked workers (see {@link ForkedParser}). Files already loaded in the background are parsed from their
+ * decoded content (see {@link ReadAhead}).
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class FileParser {
+
+    /**
+     * Creates the parsers.
+     */
+    private final ParserFactory parsers;
+    /**
+     * Invokes the start rule.
+     */
+    private final ParserInvoker invoker;
+    /**
+     * Encoding of the files.
+     */
+    private final String encoding;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param parsers must not be {@code null}
+     * @param invoker must not be {@code null}
+     * @param encoding must not be {@code null} or empty
+     */
+    FileParser(final ParserFactory parsers, final ParserInvoker invoker, final String encoding) {
+        super();
+        this.parsers = Validate.notNull(parsers, "Parameter 'parsers' must not be null!");
+        this.invoker = Validate.notNull(invoker, "Parameter 'invoker' must not be null!");
+        this.encoding = Validate.notEmpty(encoding, "Parameter 'encoding' must not be null or empty!");
+    }
+
+    /**
+     * Parses the given file.
+     *
+     * @param file must not be {@code null}, absolute
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error which is not a parse error
+     */
+    Result parse(final Path file) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final long readStart = System.nanoTime();
+        final Parser parser = parsers.create(file, encoding);
+        final long readNanos = System.nanoTime() - readStart;
+        final Result parsed = ParserFactory.isStreaming(parser)
+            ? invoker.invoke(parser, () -> parsers.create(file, encoding))
+            : invoker.invoke(parser);
+        return parsed.withMetrics(parsed.getMetrics().withRead(readNanos, size(file)));
+    }
+
+    /**
+     * Parses the given loaded file.
+     * <p>
+     * The read time is the one measured while loading.
+     * </p>
+     *
+     * @param loaded must not be {@code null}, not released
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error which is not a parse error
+     */
+    Result parse(final ReadAhead.Loaded loaded) throws MojoExecutionException {
+        Validate.notNull(loaded, "Parameter 'loaded' must not be null!");
+        final Result parsed = invoker.invoke(parsers.create(loaded.getInput()));
+        return parsed.withMetrics(parsed.getMetrics().withRead(loaded.getReadNanos(), loaded.getSize()));
+    }
+
+    private static long size(final Path file) throws MojoExecutionException {
+        try {
+            return Files.size(file);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Computes hex encoded SHA-256 fingerprints of files and generated grammar classes.
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Fingerprint {
+
+    /**
+     * Used digest algorithm.
+     */
+    private static final String ALGORITHM = "SHA-256";
+    /**
+     * Used to hex encode the digest.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Hidden for pure static class.
+     */
+    private Fingerprint() {
+        super();
+    }
+
+    /**
+     * Fingerprint of the content of the given file.
+     *
+     * @param file must not be {@code null}
+     * @return never {@code null} or empty
+     * @throws MojoExecutionException if the file can't be read
+     */
+    static String ofFile(final Path file) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final MessageDigest digest = createDigest();
+
+        try (InputStream input = Files.newInputStream(file)) {
+            update(digest, input);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+
+        return hex(digest.digest());
+    }
+
+    /**
+     * Fingerprint of the remaining bytes of the given content, equal to the fingerprint of a file with these bytes.
+     * <p>
+     * The position of the given buffer is not changed.
+     * </p>
+     *
+     * @param content must not be {@code null}
+     * @return never {@code null} or empty
+     * @throws MojoExecutionException if the digest algorithm is not available
+     */
+    static String ofBytes(final ByteBuffer content) throws MojoExecutionException {
+        Validate.notNull(content, "Parameter 'content' must not be null!");
+        final MessageDigest digest = createDigest();
+        digest.update(content.duplicate());
+        return hex(digest.digest());
+    }
+
+    /**
+     * Fingerprint of the byte code of the given classes and the given additional values.
+     * <p>
+     * The byte code is loaded as resource from the given class loader.
+     * </p>
+     *
+     * @param classes must not be {@code null}
+     * @param classNames must not be {@code null}
+     * @param values must not be {@code null}
+     * @return never {@code null} or empty
+     * @throws MojoExecutionException if the byte code of a class can't be read
+     */
+    static String ofClasses(final ClassLoader classes, final String[] classNames, final String... values)
+        throws MojoExecutionException {
+        Validate.notNull(classes, "Parameter 'classes' must not be null!");
+        Validate.notNull(classNames, "Parameter 'classNames' must not be null!");
+        Validate.notNull(values, "Parameter 'values' must not be null!");
+        final MessageDigest digest = createDigest();
+
+        for (final String className : classNames) {
+            final String resource = className.replace('.', '/') + ".class";
+
+            try (InputStream input = classes.getResourceAsStream(resource)) {
+                if (null == input) {
+                    throw new MojoExecutionException(String.format("Can't find byte code of class '%s'!", className));
+                }
+
+                update(digest, input);
+            } catch (final IOException ex) {
+                throw new MojoExecutionException(
+                    String.format("Can't read byte code of class '%s' (%s)!", className, ex.getMessage()), ex);
+            }
+        }
+
+        for (final String value : values) {
+            // Separator, so that ("ab", "c") and ("a", "bc") result in different fingerprints.
+            digest.update((byte) 0);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        return hex(digest.digest());
+    }
+
+    /**
+     * Fingerprint of the names, sizes and modification times of all class files in the given directory.
+     * <p>
+     * The content is not read, so this is cheap enough to check on each execution whether classes were recompiled.
+     * </p>
+     *
+     * @param directory must not be {@code null}, may not exist
+     * @return never {@code null} or empty
+     * @throws MojoExecutionException if the directory can't be walked
+     */
+    static String ofClassFiles(final Path directory) throws MojoExecutionException {
+        Validate.notNull(directory, "Parameter 'directory' must not be null!");
+        final MessageDigest digest = createDigest();
+
+        if (!Files.isDirectory(directory)) {
+            return hex(digest.digest());
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            final List<Path> classFiles = files
+                .filter(file -> file.getFileName().toString().endsWith(".class"))
+                .sorted()
+                .collect(Collectors.toList());
+
+            for (final Path classFile : classFiles) {
+                final BasicFileAttributes attributes = Files.readAttributes(classFile, BasicFileAttributes.class);
+                digest.update(directory.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(attributes.size())
+                    .putLong(attributes.lastModifiedTime().toMillis())
+                    .array());
+            }
+        } catch (final IOException | UncheckedIOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read class files in '%s' (%s)!", directory, ex.getMessage()), ex);
+        }
+
+        return hex(digest.digest());
+    }
+
+    private static void update(final MessageDigest digest, final InputStream input) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+
+        while ((read = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private static MessageDigest createDigest() throws MojoExecutionException {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new MojoExecutionException(
+                String.format("Digest algorithm %s not available (%s)!", ALGORITHM, ex.getMessage()), ex);
+        }
+    }
+
+    static String hex(final byte[] bytes) {
+        final char[] buffer = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; ++i) {
+            buffer[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            buffer[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+
+        return new String(buffer);
+    }
+}
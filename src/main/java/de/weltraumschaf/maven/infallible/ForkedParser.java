@@ -0,0 +1,286 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Main class of the worker JVMs forked by {@link ForkedParsers}.
+ * <p>
+ * The worker reads its {@link Settings} and then the absolute paths of the files to parse from stdin. For each file
+ * it writes one response to stdout, either a result or the message of an error which is not a parse error. The worker
+ * ends with exit code 0 when stdin is closed. Everything else the worker prints goes to stderr.
+ * </p>
+ * <p>
+ * If the worker runs out of memory or fails with any other error it halts immediately with exit code
+ * {@link #OUT_OF_MEMORY} or {@link #CRASHED}. The file it was parsing is the one without response.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public final class ForkedParser {
+
+    /**
+     * Exit code if the worker ran out of memory.
+     */
+    static final int OUT_OF_MEMORY = 3;
+    /**
+     * Exit code if the worker failed with any other error.
+     */
+    static final int CRASHED = 4;
+    /**
+     * Response tag for a result.
+     */
+    static final byte RESULT = 0;
+    /**
+     * Response tag for an error which is not a parse error.
+     */
+    static final byte ERROR = 1;
+
+    private ForkedParser() {
+        super();
+    }
+
+    /**
+     * Runs the worker.
+     *
+     * @param args not used
+     */
+    public static void main(final String[] args) {
+        final PrintStream protocol = System.out;
+        // Nothing else must be written to the protocol stream.
+        System.setOut(System.err);
+
+        try {
+            serve(new DataInputStream(new BufferedInputStream(System.in)),
+                new DataOutputStream(new BufferedOutputStream(protocol)));
+        } catch (final OutOfMemoryError ex) {
+            Runtime.getRuntime().halt(OUT_OF_MEMORY);
+        } catch (final Throwable ex) {
+            ex.printStackTrace();
+            Runtime.getRuntime().halt(CRASHED);
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Answers the requests until the input ends.
+     *
+     * @param input must not be {@code null}
+     * @param output must not be {@code null}
+     * @throws IOException if the protocol streams fail
+     */
+    static void serve(final DataInput input, final DataOutputStream output) throws IOException {
+        final Settings settings = Settings.read(input);
+        final Log log = new WorkerLog();
+        FileParser files = null;
+        String setupError = null;
+
+        try (ParseWatchdog watchdog = settings.timeout > 0 ? new ParseWatchdog(settings.timeout) : null) {
+            try {
+                files = settings.createFileParser(log, watchdog);
+            } catch (final MojoExecutionException ex) {
+                setupError = ex.getMessage();
+            }
+
+            while (true) {
+                final String file;
+
+                try {
+                    file = input.readUTF();
+                } catch (final EOFException ex) {
+                    return;
+                }
+
+                if (null == setupError) {
+                    respond(output, file, files);
+                } else {
+                    output.writeByte(ERROR);
+                    DataStrings.write(output, setupError);
+                }
+
+                output.flush();
+            }
+        }
+    }
+
+    private static void respond(final DataOutput output, final String file, final FileParser files)
+        throws IOException {
+        final Result result;
+
+        try {
+            result = files.parse(Paths.get(file));
+        } catch (final MojoExecutionException ex) {
+            output.writeByte(ERROR);
+            DataStrings.write(output, String.valueOf(ex.getMessage()));
+            return;
+        }
+
+        output.writeByte(RESULT);
+        result.write(output);
+    }
+
+    /**
+     * Everything a worker needs to create its parsers.
+     */
+    static final class Settings {
+
+        /**
+         * Directory of the generated grammar classes.
+         */
+        private final String outputDirectory;
+        /**
+         * Package of the generated grammar classes.
+         */
+        private final String packageName;
+        /**
+         * Name of the grammar.
+         */
+        private final String grammarName;
+        /**
+         * Name of the start rule.
+         */
+        private final String startRule;
+        /**
+         * Encoding of the files.
+         */
+        private final String encoding;
+        /**
+         * Configuration name of the {@link PredictionStrategy}.
+         */
+        private final String predictionStrategy;
+        /**
+         * Files with more bytes are streamed.
+         */
+        private final long streamingThreshold;
+        /**
+         * Time budget per file in milliseconds, 0 means no budget.
+         */
+        private final long timeout;
+
+        /**
+         * Dedicated constructor.
+         *
+         * @param outputDirectory must not be {@code null}
+         * @param packageName must not be {@code null}
+         * @param grammarName must not be {@code null}
+         * @param startRule must not be {@code null}
+         * @param encoding must not be {@code null}
+         * @param predictionStrategy must not be {@code null}
+         * @param streamingThreshold not negative
+         * @param timeout not negative
+         */
+        Settings(
+            final String outputDirectory,
+            final String packageName,
+            final String grammarName,
+            final String startRule,
+            final String encoding,
+            final String predictionStrategy,
+            final long streamingThreshold,
+            final long timeout) {
+            super();
+            this.outputDirectory = Validate.notNull(outputDirectory, "Parameter 'outputDirectory' must not be null!");
+            this.packageName = Validate.notNull(packageName, "Parameter 'packageName' must not be null!");
+            this.grammarName = Validate.notNull(grammarName, "Parameter 'grammarName' must not be null!");
+            this.startRule = Validate.notNull(startRule, "Parameter 'startRule' must not be null!");
+            this.encoding = Validate.notNull(encoding, "Parameter 'encoding' must not be null!");
+            this.predictionStrategy = Validate.notNull(
+                predictionStrategy, "Parameter 'predictionStrategy' must not be null!");
+            Validate.isTrue(streamingThreshold >= 0, "Parameter 'streamingThreshold' must not be negative!");
+            Validate.isTrue(timeout >= 0, "Parameter 'timeout' must not be negative!");
+            this.streamingThreshold = streamingThreshold;
+            this.timeout = timeout;
+        }
+
+        /**
+         * Writes the settings for a worker.
+         *
+         * @param output must not be {@code null}
+         * @throws IOException if the settings can't be written
+         */
+        void write(final DataOutput output) throws IOException {
+            output.writeUTF(outputDirectory);
+            output.writeUTF(packageName);
+            output.writeUTF(grammarName);
+            output.writeUTF(startRule);
+            output.writeUTF(encoding);
+            output.writeUTF(predictionStrategy);
+            output.writeLong(streamingThreshold);
+            output.writeLong(timeout);
+        }
+
+        /**
+         * Reads the settings written by {@link #write(java.io.DataOutput)}.
+         *
+         * @param input must not be {@code null}
+         * @return never {@code null}
+         * @throws IOException if the settings can't be read
+         */
+        static Settings read(final DataInput input) throws IOException {
+            return new Settings(
+                input.readUTF(),
+                input.readUTF(),
+                input.readUTF(),
+                input.readUTF(),
+                input.readUTF(),
+                input.readUTF(),
+                input.readLong(),
+                input.readLong());
+        }
+
+        private FileParser createFileParser(final Log log, final ParseWatchdog watchdog)
+            throws MojoExecutionException {
+            final ParserFactory parsers = new ParserFactory(
+                log,
+                new ClassLoaderFactory(new File(outputDirectory)).getClassLoader(),
+                packageName,
+                grammarName,
+                // Workers only report whether a file passed, so they never build a parse tree.
+                ParserFactory.Options.DEFAULT.withStreamingThreshold(streamingThreshold));
+            final ParserInvoker invoker = new ParserInvoker(
+                log,
+                parsers.getParserClass(),
+                startRule,
+                PredictionStrategy.forConfigName(predictionStrategy),
+                null,
+                watchdog);
+            return new FileParser(parsers, invoker, encoding);
+        }
+    }
+
+    /**
+     * Logs to stderr without debug messages.
+     */
+    private static final class WorkerLog extends SystemStreamLog {
+
+        @Override
+        public void debug(final CharSequence content) {
+            // Debug is disabled.
+        }
+
+        @Override
+        public void debug(final CharSequence content, final Throwable error) {
+            // Debug is disabled.
+        }
+
+        @Override
+        public void debug(final Throwable error) {
+            // Debug is disabled.
+        }
+    }
+}
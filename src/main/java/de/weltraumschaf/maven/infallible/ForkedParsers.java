@@ -0,0 +1,357 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.antlr.v4.runtime.Parser;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Parses files in forked worker JVMs (see {@link ForkedParser}).
+ * <p>
+ * Workers are started on demand, so there are at most as many workers as threads calling {@link #parse(String)}
+ * concurrently. Each call sends one file to an idle worker and waits for its result. A worker which crashes or runs
+ * out of memory is reported as failed result for the file it was parsing and replaced by a new worker on the next
+ * call, so the remaining files are still parsed.
+ * </p>
+ * <p>
+ * Reading from the pipe of a worker can not be interrupted, so the responses are read by background threads while
+ * the calling thread waits interruptibly. If the calling thread is interrupted (e.g. because the run stops after too
+ * many failures), the worker is killed and the parse ends with a {@link CancellationException}, so the file counts as
+ * skipped.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ForkedParsers implements AutoCloseable {
+
+    /**
+     * How long to wait for a worker to exit.
+     */
+    private static final long EXIT_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Used to report crashed workers.
+     */
+    private final Log log;
+    /**
+     * Command to start a worker.
+     */
+    private final List<String> command;
+    /**
+     * Sent to each started worker.
+     */
+    private final ForkedParser.Settings settings;
+    /**
+     * Workers waiting for the next file.
+     */
+    private final BlockingQueue<Fork> idle = new LinkedBlockingQueue<>();
+    /**
+     * All started workers, guarded by itself.
+     */
+    private final List<Fork> started = new ArrayList<>();
+    /**
+     * Read the responses of the workers.
+     */
+    private final ExecutorService readers = Executors.newCachedThreadPool(new ReaderThreadFactory());
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param log must not be {@code null}
+     * @param argLine may be {@code null}, white space separated JVM arguments for the workers (e.g. {@code -Xmx1g})
+     * @param settings must not be {@code null}
+     * @throws MojoExecutionException if the class path for the workers can't be determined
+     */
+    ForkedParsers(final Log log, final String argLine, final ForkedParser.Settings settings)
+        throws MojoExecutionException {
+        super();
+        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
+        this.settings = Validate.notNull(settings, "Parameter 'settings' must not be null!");
+        this.command = command(argLine, classPath());
+    }
+
+    /**
+     * Creates the command to start a worker with the java executable of the running JVM.
+     *
+     * @param argLine may be {@code null}, white space separated JVM arguments
+     * @param classPath must not be {@code null}
+     * @return never {@code null}
+     */
+    static List<String> command(final String argLine, final String classPath) {
+        final List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        if (null != argLine && !argLine.trim().isEmpty()) {
+            command.addAll(Arrays.asList(argLine.trim().split("\\s+")));
+        }
+
+        command.add("-classpath");
+        command.add(classPath);
+        command.add(ForkedParser.class.getName());
+        return command;
+    }
+
+    /**
+     * The plugin and the libraries a worker needs.
+     * <p>
+     * The generated grammar classes are loaded by the worker itself.
+     * </p>
+     */
+    private static String classPath() throws MojoExecutionException {
+        final Set<String> entries = new LinkedHashSet<>();
+
+        for (final Class<?> type : new Class<?>[] {
+            ForkedParser.class, Parser.class, Validate.class, MojoExecutionException.class}) {
+            final CodeSource source = type.getProtectionDomain().getCodeSource();
+
+            if (null == source) {
+                throw new MojoExecutionException(
+                    String.format("Can't determine class path of '%s' for worker JVMs!", type.getName()));
+            }
+
+            try {
+                entries.add(Paths.get(source.getLocation().toURI()).toString());
+            } catch (final URISyntaxException ex) {
+                throw new MojoExecutionException(
+                    String.format("Can't determine class path of '%s' for worker JVMs (%s)!",
+                        type.getName(), ex.getMessage()), ex);
+            }
+        }
+
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Parses the given file in an idle worker.
+     *
+     * @param fileToTest must not be {@code null} or empty, absolute
+     * @return never {@code null}
+     * @throws MojoExecutionException if no worker can be started or on any error which is not a parse error
+     * @throws CancellationException if the current thread was interrupted while waiting for the worker
+     */
+    Result parse(final String fileToTest) throws MojoExecutionException {
+        Validate.notEmpty(fileToTest, "Parameter 'fileToTest' must not be null or empty!");
+        Fork fork = idle.poll();
+
+        if (null == fork) {
+            fork = start();
+        }
+
+        final Result result = fork.parse(fileToTest);
+
+        if (fork.isAlive()) {
+            idle.add(fork);
+        }
+
+        return result;
+    }
+
+    private Fork start() throws MojoExecutionException {
+        final Fork fork = new Fork();
+
+        synchronized (started) {
+            started.add(fork);
+        }
+
+        return fork;
+    }
+
+    /**
+     * Number of started workers, including the crashed ones.
+     *
+     * @return not negative
+     */
+    int countStarted() {
+        synchronized (started) {
+            return started.size();
+        }
+    }
+
+    /**
+     * Ends all workers.
+     */
+    @Override
+    public void close() {
+        synchronized (started) {
+            started.forEach(Fork::close);
+        }
+
+        readers.shutdownNow();
+    }
+
+    /**
+     * One worker JVM.
+     */
+    private final class Fork {
+
+        /**
+         * The worker process.
+         */
+        private final Process process;
+        /**
+         * Stdin of the worker.
+         */
+        private final DataOutputStream requests;
+        /**
+         * Stdout of the worker.
+         */
+        private final DataInputStream responses;
+        /**
+         * Whether the worker crashed.
+         */
+        private boolean crashed;
+
+        private Fork() throws MojoExecutionException {
+            super();
+
+            try {
+                process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+                requests = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+                responses = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+                settings.write(requests);
+                requests.flush();
+            } catch (final IOException ex) {
+                throw new MojoExecutionException(String.format("Can't start worker JVM (%s)!", ex.getMessage()), ex);
+            }
+        }
+
+        private Result parse(final String fileToTest) throws MojoExecutionException {
+            try {
+                requests.writeUTF(fileToTest);
+                requests.flush();
+            } catch (final IOException ex) {
+                return crashed(fileToTest);
+            }
+
+            final Future<Result> response = readers.submit(() -> readResponse(fileToTest));
+
+            try {
+                return response.get();
+            } catch (final InterruptedException ex) {
+                // The worker may parse for a long time, so it is killed instead of waiting for its response.
+                crashed = true;
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+                throw new CancellationException(String.format("Parsing '%s' cancelled!", fileToTest));
+            } catch (final ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    return crashed(fileToTest);
+                }
+
+                if (ex.getCause() instanceof MojoExecutionException) {
+                    throw (MojoExecutionException) ex.getCause();
+                }
+
+                throw new MojoExecutionException(String.format(
+                    "Can't read response of worker JVM (%s)!", ex.getCause().getMessage()), ex.getCause());
+            }
+        }
+
+        private Result readResponse(final String fileToTest) throws IOException, MojoExecutionException {
+            final byte response = responses.readByte();
+
+            if (ForkedParser.RESULT == response) {
+                return Result.read(responses, fileToTest);
+            }
+
+            if (ForkedParser.ERROR == response) {
+                throw new MojoExecutionException(DataStrings.read(responses));
+            }
+
+            crashed = true;
+            process.destroyForcibly();
+            throw new MojoExecutionException(String.format("Unexpected response %d from worker JVM!", response));
+        }
+
+        private Result crashed(final String fileToTest) {
+            crashed = true;
+            final int exitCode = awaitExit();
+            final String message = ForkedParser.OUT_OF_MEMORY == exitCode
+                ? String.format("Worker JVM ran out of memory while parsing '%s'!", fileToTest)
+                : String.format("Worker JVM crashed while parsing '%s' (exit code %d)!", fileToTest, exitCode);
+            log.error(message);
+            return Result.failed(fileToTest, new Failure(message));
+        }
+
+        private boolean isAlive() {
+            return !crashed;
+        }
+
+        /**
+         * Waits for the exit of the worker, kills it if it does not exit in time.
+         *
+         * @return exit code, -1 if killed
+         */
+        private int awaitExit() {
+            try {
+                if (process.waitFor(EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    return process.exitValue();
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            process.destroyForcibly();
+            return -1;
+        }
+
+        /**
+         * Closes stdin, so the worker exits.
+         */
+        private void close() {
+            try {
+                requests.close();
+            } catch (final IOException ex) {
+                // The worker is already gone.
+            }
+
+            awaitExit();
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that they do not prevent the JVM from exiting.
+     */
+    private static final class ReaderThreadFactory implements ThreadFactory {
+
+        /**
+         * Used to number the threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread reader = new Thread(r, "infallible-fork-reader-" + count.incrementAndGet());
+            reader.setDaemon(true);
+            return reader;
+        }
+    }
+}
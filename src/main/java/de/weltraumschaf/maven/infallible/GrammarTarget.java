@@ -0,0 +1,114 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configures one grammar and start rule to parse a part of the files with.
+ * <p>
+ * Example configuration:
+ * </p>
+ * <pre>{@code
+ *  <targets>
+ *      <target>
+ *          <grammarName>Snafu</grammarName>
+ *          <packageName>foo.bar.baz</packageName>
+ *          <startRule>startRule</startRule>
+ *
+ *          <includes>
+ *              <include>dialect/**&#47;*.snf</include>
+ *          </includes>
+ *      </target>
+ *  </targets>
+ * }</pre>
+ * <p>
+ * The include and exclude patterns select the files of the file sets which are parsed by this target. They are
+ * relative to the file set directory and have the same semantics as the patterns of the file sets. Without includes
+ * all files are parsed by this target.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public final class GrammarTarget {
+
+    /**
+     * Optional name in the report, defaults to grammar name and start rule.
+     */
+    private String id;
+    /**
+     * Name of the parsed grammar.
+     */
+    private String grammarName;
+    /**
+     * Optional package name.
+     */
+    private String packageName = "";
+    /**
+     * The name of the rule where to start the parsing.
+     */
+    private String startRule;
+    /**
+     * Patterns of the files to parse.
+     */
+    private List<String> includes = new ArrayList<>();
+    /**
+     * Patterns of the files not to parse.
+     */
+    private List<String> excludes = new ArrayList<>();
+
+    /**
+     * Used by Maven to create the configured targets.
+     */
+    public GrammarTarget() {
+        super();
+    }
+
+    /**
+     * Creates a target for all files.
+     *
+     * @param grammarName may be {@code null}
+     * @param packageName may be {@code null}
+     * @param startRule may be {@code null}
+     */
+    GrammarTarget(final String grammarName, final String packageName, final String startRule) {
+        super();
+        this.grammarName = grammarName;
+        this.packageName = packageName;
+        this.startRule = startRule;
+    }
+
+    /**
+     * Name of this target in the report.
+     *
+     * @return never {@code null}
+     */
+    public String getId() {
+        return null == id || id.trim().isEmpty() ? String.format("%s:%s", grammarName, startRule) : id;
+    }
+
+    public String getGrammarName() {
+        return grammarName;
+    }
+
+    public String getPackageName() {
+        return null == packageName ? "" : packageName;
+    }
+
+    public String getStartRule() {
+        return startRule;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    @Override
+    public String toString() {
+        return getId();
+    }
+}
@@ -0,0 +1,165 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Remembers which files passed in the last run, so unchanged files need not be parsed again.
+ * <p>
+ * Each passed file is recorded with the fingerprint of its content and the fingerprint of the grammar (generated
+ * classes, start rule and encoding) it was parsed with. A file is only unchanged if both fingerprints are equal to the
+ * recorded ones. Failed files are never recorded, so they are parsed again in the next run.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class IncrementalState {
+
+    /**
+     * Name of the state file in the work directory.
+     */
+    static final String FILE_NAME = "incremental.properties";
+    /**
+     * Separates the content from the grammar fingerprint in the recorded values.
+     */
+    private static final char SEPARATOR = '/';
+
+    /**
+     * Where the state is stored.
+     */
+    private final Path file;
+    /**
+     * Fingerprint of the grammar used in this run.
+     */
+    private final String grammarFingerprint;
+    /**
+     * Recorded state of the last run.
+     */
+    private final Map<String, String> previous;
+    /**
+     * State of this run.
+     */
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Use {@link #load(org.apache.maven.plugin.logging.Log, java.nio.file.Path, java.lang.String)} instead.
+     * </p>
+     *
+     * @param file must not be {@code null}
+     * @param grammarFingerprint must not be {@code null} or empty
+     * @param previous must not be {@code null}
+     */
+    private IncrementalState(final Path file, final String grammarFingerprint, final Map<String, String> previous) {
+        super();
+        this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+        this.grammarFingerprint = Validate.notEmpty(
+            grammarFingerprint, "Parameter 'grammarFingerprint' must not be null or empty!");
+        this.previous = Validate.notNull(previous, "Parameter 'previous' must not be null!");
+    }
+
+    /**
+     * Loads the state recorded by the last run.
+     * <p>
+     * If there is no state file or it can't be read, the state is empty.
+     * </p>
+     *
+     * @param log must not be {@code null}
+     * @param file must not be {@code null}
+     * @param grammarFingerprint must not be {@code null} or empty
+     * @return never {@code null}
+     */
+    static IncrementalState load(final Log log, final Path file, final String grammarFingerprint) {
+        Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final Map<String, String> previous = new ConcurrentHashMap<>();
+
+        if (Files.isRegularFile(file)) {
+            final Properties stored = new Properties();
+
+            try (InputStream input = Files.newInputStream(file)) {
+                stored.load(input);
+                stored.stringPropertyNames().forEach(name -> previous.put(name, stored.getProperty(name)));
+            } catch (final IOException | IllegalArgumentException ex) {
+                log.warn(String.format("Can't read incremental state '%s', parse all files (%s)!",
+                    file, ex.getMessage()));
+                previous.clear();
+            }
+        }
+
+        return new IncrementalState(file, grammarFingerprint, previous);
+    }
+
+    /**
+     * Whether the given file passed in the last run with the same content and grammar.
+     *
+     * @param testedFile must not be {@code null}
+     * @param contentFingerprint must not be {@code null}
+     * @return {@code true} if it need not be parsed again, else {@code false}
+     */
+    boolean isUnchanged(final String testedFile, final String contentFingerprint) {
+        return value(contentFingerprint).equals(previous.get(testedFile));
+    }
+
+    /**
+     * Records the given file as passed.
+     *
+     * @param testedFile must not be {@code null}
+     * @param contentFingerprint must not be {@code null}
+     */
+    void passed(final String testedFile, final String contentFingerprint) {
+        current.put(testedFile, value(contentFingerprint));
+    }
+
+    /**
+     * Number of files recorded as passed in this run.
+     *
+     * @return not negative
+     */
+    int size() {
+        return current.size();
+    }
+
+    /**
+     * Stores the state of this run, so that it is used by the next run.
+     *
+     * @throws MojoExecutionException if the state file can't be written
+     */
+    void store() throws MojoExecutionException {
+        final Properties stored = new Properties();
+        stored.putAll(current);
+
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            final Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), FILE_NAME, ".tmp");
+
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                stored.store(output, "Files passed by the last run of the infallible-maven-plugin.");
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write incremental state '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private String value(final String contentFingerprint) {
+        return contentFingerprint + SEPARATOR + grammarFingerprint;
+    }
+}
@@ -5,16 +5,26 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.antlr.v4.runtime.ANTLRFileStream;
+import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RuntimeMetaData;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
 
 import org.apache.maven.plugin.MojoExecutionException;
@@ -23,7 +33,6 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
-import org.apache.maven.shared.model.fileset.util.FileSetManager;
 
 /**
  * This mojo searches for files with language code to test against parser generated by given grammar.
@@ -41,6 +50,30 @@ import org.apache.maven.shared.model.fileset.util.FileSetManager;
  *          <startRule>startRule</startRule>
  *          <grammarName>Snafu</grammarName>
  *          <packageName>foo.bar.baz</packageName>
+ *          <threads>1C</threads>
+ *          <predictionStrategy>twoStage</predictionStrategy>
+ *          <persistDfa>true</persistDfa>
+ *          <profile>false</profile>
+ *          <failAfter>10</failAfter>
+ *          <timeout>60000</timeout>
+ *          <forkCount>0</forkCount>
+ *          <argLine>-Xmx1g</argLine>
+ *          <shardIndex>1</shardIndex>
+ *          <shardCount>1</shardCount>
+ *          <runId>${env.CI_PIPELINE_ID}</runId>
+ *          <discoveryThreads>4</discoveryThreads>
+ *          <mode>parse</mode>
+ *          <reuseParsers>true</reuseParsers>
+ *          <buildParseTree>false</buildParseTree>
+ *          <readAhead>16</readAhead>
+ *          <ioThreads>2</ioThreads>
+ *          <longestFirst>true</longestFirst>
+ *          <recordBaseline>false</recordBaseline>
+ *          <compareBaseline>true</compareBaseline>
+ *          <baselineFile>src/test/baseline.properties</baselineFile>
+ *          <maxSlowdown>10</maxSlowdown>
+ *          <fileBudget>5000</fileBudget>
+ *          <failOnRegression>true</failOnRegression>
  *
  *          <filesets>
  *              <fileset>
@@ -89,6 +122,66 @@ public final class InfallibleMojo extends AbstractMojo {
      * FIXME Use the Maven OM property for resource encoding.
      */
     static final String DEFAULT_ENCODING = "utf-8";
+    /**
+     * By default all files are parsed sequentially.
+     */
+    static final String DEFAULT_THREADS = "1";
+    /**
+     * By default ANTLR's full LL prediction is used.
+     */
+    static final String DEFAULT_PREDICTION_STRATEGY = "ll";
+    /**
+     * By default files with more than 64 MiB are streamed.
+     */
+    static final String DEFAULT_STREAMING_THRESHOLD = "67108864";
+    /**
+     * By default the slowest files are not reported.
+     */
+    static final String DEFAULT_REPORT_SLOWEST = "0";
+    /**
+     * By default all files are parsed regardless of failures.
+     */
+    static final String DEFAULT_FAIL_AFTER = "0";
+    /**
+     * By default parses have no time budget.
+     */
+    static final String DEFAULT_TIMEOUT = "0";
+    /**
+     * By default all files are parsed in the Maven JVM.
+     */
+    static final String DEFAULT_FORK_COUNT = "0";
+    /**
+     * By default all files are parsed by one build.
+     */
+    static final String DEFAULT_SHARD_COUNT = "1";
+    /**
+     * The first shard.
+     */
+    static final String DEFAULT_SHARD_INDEX = "1";
+    /**
+     * By default four directories are listed concurrently.
+     */
+    static final String DEFAULT_DISCOVERY_THREADS = "4";
+    /**
+     * By default the files are lexed and parsed.
+     */
+    static final String DEFAULT_MODE = "parse";
+    /**
+     * By default sixteen files are read ahead of the parse threads.
+     */
+    static final String DEFAULT_READ_AHEAD = "16";
+    /**
+     * By default two files are read concurrently.
+     */
+    static final String DEFAULT_IO_THREADS = "2";
+    /**
+     * By default the throughput may drop by ten percent.
+     */
+    static final String DEFAULT_MAX_SLOWDOWN = "10";
+    /**
+     * By default files have no soft time budget.
+     */
+    static final String DEFAULT_FILE_BUDGET = "0";
 
     /**
      * Whether the plugin execution should be skipped or not.
@@ -97,13 +190,19 @@ public final class InfallibleMojo extends AbstractMojo {
     private boolean skip;
     /**
      * The name of the rule where to start the parsing.
+     * <p>
+     * Required unless {@link #targets} are configured or only lexed (see {@link #mode}).
+     * </p>
      */
-    @Parameter(required = true)
+    @Parameter
     private String startRule;
     /**
      * NAme of the parsed grammar.
+     * <p>
+     * Required unless {@link #targets} are configured.
+     * </p>
      */
-    @Parameter(required = true)
+    @Parameter
     private String grammarName;
     /**
      * Optional package name.
@@ -115,6 +214,260 @@ public final class InfallibleMojo extends AbstractMojo {
      */
     @Parameter(defaultValue = DEFAULT_ENCODING)
     private String encoding = DEFAULT_ENCODING;
+    /**
+     * Number of threads used to parse the files.
+     * <p>
+     * Either a fixed number (e.g. {@code 4}) or a number suffixed with {@code C} which is multiplied by the available
+     * cores (e.g. {@code 1C}).
+     * </p>
+     */
+    @Parameter(property = "infallible.threads", defaultValue = DEFAULT_THREADS)
+    private String threads = DEFAULT_THREADS;
+    /**
+     * How the parser predicts alternatives.
+     * <p>
+     * Either {@code ll} for ANTLR's default full LL prediction or {@code twoStage} to parse with the faster SLL
+     * prediction first and only re-parse files with full LL if SLL fails.
+     * </p>
+     */
+    @Parameter(property = "infallible.predictionStrategy", defaultValue = DEFAULT_PREDICTION_STRATEGY)
+    private String predictionStrategy = DEFAULT_PREDICTION_STRATEGY;
+    /**
+     * Files with more bytes are streamed instead of read completely into memory.
+     * <p>
+     * Streamed files are decoded and lexed on the fly and no parse tree is built, so the needed memory stays
+     * constant regardless of the file size.
+     * </p>
+     */
+    @Parameter(property = "infallible.streamingThreshold", defaultValue = DEFAULT_STREAMING_THRESHOLD)
+    private long streamingThreshold = Long.parseLong(DEFAULT_STREAMING_THRESHOLD);
+    /**
+     * Whether files which passed unchanged in the last run are skipped.
+     * <p>
+     * The state of the last run is stored in the {@link #workDirectory}. Any change of the generated lexer/parser
+     * classes, the start rule or the encoding invalidates the state.
+     * </p>
+     */
+    @Parameter(property = "infallible.incremental")
+    private boolean incremental;
+    /**
+     * Whether the prediction DFA built by the parser is stored and preloaded by the next run.
+     * <p>
+     * The DFA is stored in the {@link #workDirectory}. Any change of the generated lexer/parser classes or the ANTLR
+     * runtime invalidates it.
+     * </p>
+     */
+    @Parameter(property = "infallible.persistDfa")
+    private boolean persistDfa;
+    /**
+     * Whether the decisions of the parser are profiled.
+     * <p>
+     * The statistics of all files are merged and written ranked by time in prediction as {@code profile.txt} and
+     * {@code profile.csv} into the {@link #workDirectory}. Profiling slows down parsing.
+     * </p>
+     */
+    @Parameter(property = "infallible.profile")
+    private boolean profile;
+    /**
+     * How many of the slowest files and directories are reported.
+     */
+    @Parameter(property = "infallible.reportSlowest", defaultValue = DEFAULT_REPORT_SLOWEST)
+    private int reportSlowest = Integer.parseInt(DEFAULT_REPORT_SLOWEST);
+    /**
+     * Whether to stop on the first failed file.
+     * <p>
+     * Same as {@link #failAfter} 1, overrides it.
+     * </p>
+     */
+    @Parameter(property = "infallible.failFast")
+    private boolean failFast;
+    /**
+     * Stop after this many failed files, 0 parses all files.
+     * <p>
+     * When stopped no more files are parsed and parses in flight are cancelled. Only the failures found so far and the
+     * number of skipped files are reported.
+     * </p>
+     */
+    @Parameter(property = "infallible.failAfter", defaultValue = DEFAULT_FAIL_AFTER)
+    private int failAfter = Integer.parseInt(DEFAULT_FAIL_AFTER);
+    /**
+     * Time budget to parse one file in milliseconds, 0 means no budget.
+     * <p>
+     * Parses exceeding the budget are aborted and reported as timed out, they fail the build like syntax errors.
+     * </p>
+     */
+    @Parameter(property = "infallible.timeout", defaultValue = DEFAULT_TIMEOUT)
+    private long timeout = Long.parseLong(DEFAULT_TIMEOUT);
+    /**
+     * Number of worker JVMs to parse in, 0 parses in the Maven JVM.
+     * <p>
+     * Each worker has its own heap, so a memory hungry grammar can not take down the build. A worker which crashes or
+     * runs out of memory is reported as failure of the file it was parsing and replaced, the remaining files are
+     * still parsed. With workers the {@link #threads} are ignored, {@link #persistDfa} and {@link #profile} are not
+     * supported.
+     * </p>
+     */
+    @Parameter(property = "infallible.forkCount", defaultValue = DEFAULT_FORK_COUNT)
+    private int forkCount = Integer.parseInt(DEFAULT_FORK_COUNT);
+    /**
+     * White space separated JVM arguments for the worker JVMs (e.g. {@code -Xmx1g}).
+     */
+    @Parameter(property = "infallible.argLine")
+    private String argLine;
+    /**
+     * Number of shards the files are split into, so that several builds (e.g. CI agents) can parse them.
+     * <p>
+     * Each file belongs to exactly one shard, selected by a stable hash of its path relative to its file set
+     * directory. With more than one shard only the files of the {@link #shardIndex} are parsed and their results are
+     * written into the {@link #workDirectory} to be combined by the {@code merge} goal.
+     * </p>
+     */
+    @Parameter(property = "infallible.shardCount", defaultValue = DEFAULT_SHARD_COUNT)
+    private int shardCount = Integer.parseInt(DEFAULT_SHARD_COUNT);
+    /**
+     * One based index of the shard to parse, in range [1, {@link #shardCount}].
+     */
+    @Parameter(property = "infallible.shardIndex", defaultValue = DEFAULT_SHARD_INDEX)
+    private int shardIndex = Integer.parseInt(DEFAULT_SHARD_INDEX);
+    /**
+     * Id of the run stamped into the shard results, so that the {@code merge} goal ignores results of earlier runs.
+     * <p>
+     * All shards of one run must use the same id, e.g. the CI pipeline id.
+     * </p>
+     */
+    @Parameter(property = "infallible.runId")
+    private String runId = "";
+    /**
+     * Number of threads which list the file set directories concurrently while the found files are already parsed.
+     * <p>
+     * Values greater than the cores pay off on file systems with a high latency (e.g. network backed).
+     * </p>
+     */
+    @Parameter(property = "infallible.discoveryThreads", defaultValue = DEFAULT_DISCOVERY_THREADS)
+    private int discoveryThreads = Integer.parseInt(DEFAULT_DISCOVERY_THREADS);
+    /**
+     * Grammars and start rules to parse the files with instead of {@link #grammarName} and {@link #startRule}.
+     * <p>
+     * Each target parses the files of the {@link #filesets} selected by its include and exclude patterns (see
+     * {@link GrammarTarget}). The files are found and read only once and shared by all targets which apply, the results
+     * are reported per target. Targets do not support {@link #forkCount forked JVMs}, {@link #shardCount shards},
+     * {@link #incremental}, {@link #persistDfa} and {@link #profile}.
+     * </p>
+     */
+    @Parameter
+    private GrammarTarget[] targets;
+    /**
+     * What is done with each file.
+     * <p>
+     * Either {@code parse} to lex and parse each file with the {@link #startRule} or {@code lex} to only run the
+     * generated lexer. Lexing fails a file on its first token recognition error, no parser is created. It is a fast
+     * first pass for large corpora and does not support {@link #targets}, {@link #forkCount forked JVMs},
+     * {@link #persistDfa} and {@link #profile}.
+     * </p>
+     */
+    @Parameter(property = "infallible.mode", defaultValue = DEFAULT_MODE)
+    private String mode = DEFAULT_MODE;
+    /**
+     * Whether each parser thread reuses one lexer and parser for all files instead of creating new ones per file.
+     * <p>
+     * Reduces the allocations for corpora with many small files. Streamed files always get a new parser. Not
+     * supported with {@link #profile} and {@link #forkCount forked JVMs}.
+     * </p>
+     */
+    @Parameter(property = "infallible.reuseParsers")
+    private boolean reuseParsers;
+    /**
+     * Whether the parsers build parse trees.
+     * <p>
+     * Nothing consumes the trees, the files are only validated. So by default no trees are built, which saves the
+     * allocation of one node per token and rule invocation. The bytes saved per file are logged.
+     * </p>
+     */
+    @Parameter(property = "infallible.buildParseTree")
+    private boolean buildParseTree;
+    /**
+     * Number of files read and decoded in the background in addition to the files being parsed.
+     * <p>
+     * The files are loaded by {@link #ioThreads} while the parse threads parse the files loaded before, so reading
+     * and parsing overlap. Not used with {@link #forkCount forked JVMs} and {@link #targets}. Files above the
+     * {@link #streamingThreshold} are streamed by the parse threads instead. The loaded files hold at most
+     * {@link ReadAhead#CAPACITY} bytes of content, or a single larger file, no matter how many files that are (see
+     * {@link #longestFirst}).
+     * </p>
+     */
+    @Parameter(property = "infallible.readAhead", defaultValue = DEFAULT_READ_AHEAD)
+    private int readAhead = Integer.parseInt(DEFAULT_READ_AHEAD);
+    /**
+     * Number of threads which read files ahead concurrently (see {@link #readAhead}).
+     * <p>
+     * More threads pay off on file systems with a high latency (e.g. network backed).
+     * </p>
+     */
+    @Parameter(property = "infallible.ioThreads", defaultValue = DEFAULT_IO_THREADS)
+    private int ioThreads = Integer.parseInt(DEFAULT_IO_THREADS);
+    /**
+     * Whether the files are parsed in the order of their expected cost, most expensive first.
+     * <p>
+     * The cost of a file is its duration in the last run, recorded in the {@link #workDirectory}, else estimated from
+     * its size. So a huge file found late does not keep the run going while all other threads are idle. Parsing only
+     * starts after all files are found. Not supported with {@link #targets} and archives, because the content of all
+     * archive entries would be held until it is parsed. The largest files are read ahead first, but the files read
+     * ahead are limited by their size too (see {@link #readAhead}).
+     * </p>
+     */
+    @Parameter(property = "infallible.longestFirst")
+    private boolean longestFirst;
+    /**
+     * Whether the throughput of a passed run is recorded as baseline in the {@link #baselineFile}.
+     * <p>
+     * The baseline holds the parsed files and tokens per second and the time per directory. Record it on a quiet
+     * machine, e.g. by a nightly build of the main branch. Not supported with shards and incremental parsing.
+     * </p>
+     */
+    @Parameter(property = "infallible.recordBaseline")
+    private boolean recordBaseline;
+    /**
+     * Whether the throughput is compared with the recorded baseline (see {@link #recordBaseline}).
+     * <p>
+     * It is a regression if the files or tokens per second or the throughput of a directory dropped by more than
+     * {@link #maxSlowdown} percent. Not supported with shards and incremental parsing.
+     * </p>
+     */
+    @Parameter(property = "infallible.compareBaseline")
+    private boolean compareBaseline;
+    /**
+     * Where the baseline is recorded, by default {@value Baseline#FILE_NAME} in the {@link #workDirectory}.
+     * <p>
+     * The work directory is deleted by {@code mvn clean}, so for builds which start clean (e.g. on CI) point it to a
+     * file outside the build directory and commit it (e.g. {@code src/test/baseline.properties}).
+     * </p>
+     */
+    @Parameter(property = "infallible.baselineFile")
+    private File baselineFile;
+    /**
+     * How many percent the throughput may drop compared with the baseline, in range [0, 100].
+     */
+    @Parameter(property = "infallible.maxSlowdown", defaultValue = DEFAULT_MAX_SLOWDOWN)
+    private int maxSlowdown = Integer.parseInt(DEFAULT_MAX_SLOWDOWN);
+    /**
+     * Soft time budget per file in milliseconds, 0 for no budget.
+     * <p>
+     * Unlike the {@link #timeout} the parse is not aborted, but each file which took longer is a regression.
+     * </p>
+     */
+    @Parameter(property = "infallible.fileBudget", defaultValue = DEFAULT_FILE_BUDGET)
+    private long fileBudget = Long.parseLong(DEFAULT_FILE_BUDGET);
+    /**
+     * Whether regressions (see {@link #compareBaseline} and {@link #fileBudget}) fail the build, else they are only
+     * logged as warnings.
+     */
+    @Parameter(property = "infallible.failOnRegression", defaultValue = "true")
+    private boolean failOnRegression = true;
+    /**
+     * Where the plugin stores state between runs.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/infallible")
+    private File workDirectory;
     /**
      * Which files to test.
      *
@@ -127,8 +480,11 @@ public final class InfallibleMojo extends AbstractMojo {
      */
     @Parameter(defaultValue = "${project.build.outputDirectory}", readonly = true)
     private File outputDirectory;
-
-    private final FileSetManager fileSetManager = new FileSetManager();
+    /**
+     * Identifies the Maven session, class loaders are only shared within one session.
+     */
+    @Parameter(defaultValue = "${session.startTime}", readonly = true)
+    private Date sessionStart;
 
     boolean isSkip() {
         return skip;
@@ -154,16 +510,132 @@ public final class InfallibleMojo extends AbstractMojo {
         return encoding;
     }
 
-    Collection<String> getFilesToTest() {
-        final Collection<String> aggregator = new ArrayList<>();
+    String getThreads() {
+        return threads;
+    }
+
+    String getPredictionStrategy() {
+        return predictionStrategy;
+    }
 
-        for (final FileSet set : filesets) {
-            for (final String file : fileSetManager.getIncludedFiles(set)) {
-                aggregator.add(String.format("%s/%s", set.getDirectory(), file));
-            }
-        }
+    long getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    boolean isIncremental() {
+        return incremental;
+    }
+
+    boolean isPersistDfa() {
+        return persistDfa;
+    }
+
+    boolean isProfile() {
+        return profile;
+    }
+
+    int getReportSlowest() {
+        return reportSlowest;
+    }
+
+    boolean isFailFast() {
+        return failFast;
+    }
+
+    int getFailAfter() {
+        return failAfter;
+    }
 
-        return aggregator;
+    long getTimeout() {
+        return timeout;
+    }
+
+    int getForkCount() {
+        return forkCount;
+    }
+
+    String getArgLine() {
+        return argLine;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+
+    int getShardIndex() {
+        return shardIndex;
+    }
+
+    String getRunId() {
+        return runId;
+    }
+
+    GrammarTarget[] getTargets() {
+        return targets;
+    }
+
+    private boolean hasTargets() {
+        return null != targets && targets.length > 0;
+    }
+
+    int getDiscoveryThreads() {
+        return discoveryThreads;
+    }
+
+    String getMode() {
+        return mode;
+    }
+
+    boolean isReuseParsers() {
+        return reuseParsers;
+    }
+
+    boolean isBuildParseTree() {
+        return buildParseTree;
+    }
+
+    int getReadAhead() {
+        return readAhead;
+    }
+
+    int getIoThreads() {
+        return ioThreads;
+    }
+
+    boolean isLongestFirst() {
+        return longestFirst;
+    }
+
+    boolean isRecordBaseline() {
+        return recordBaseline;
+    }
+
+    boolean isCompareBaseline() {
+        return compareBaseline;
+    }
+
+    File getBaselineFile() {
+        return baselineFile;
+    }
+
+    int getMaxSlowdown() {
+        return maxSlowdown;
+    }
+
+    long getFileBudget() {
+        return fileBudget;
+    }
+
+    boolean isFailOnRegression() {
+        return failOnRegression;
+    }
+
+    Collection<String> getFilesToTest() throws MojoExecutionException {
+        return getFilesToTest(Shard.ALL);
+    }
+
+    Collection<String> getFilesToTest(final Shard shard) throws MojoExecutionException {
+        return FileDiscovery.findAll(filesets, shard, validDiscoveryThreads());
     }
 
     @Override
@@ -173,13 +645,103 @@ public final class InfallibleMojo extends AbstractMojo {
             return;
         }
 
+        final Shard shard = createShard();
+        validateGrammar();
+        validateRegressionGate();
         printStartInfo();
-        final Collector tested = parseFiles();
-        getLog().info(new ResultFormatter().format(tested));
+        final long start = System.nanoTime();
+        final Collector tested;
 
-        if (tested.hasFailed()) {
-            throw new MojoFailureException("TODO");
+        if (shard.getCount() > 1) {
+            getLog().info(String.format("Parsing shard %s.", shard));
+
+            try (ShardResults results = ShardResults.create(
+                workDirectory.toPath(), shard, StringUtils.defaultString(runId))) {
+                tested = parseFiles(shard, results);
+                results.finish(tested.countSkipped(), System.nanoTime() - start);
+                getLog().info(String.format("Wrote shard results to '%s'.", results.getFile()));
+            }
+        } else {
+            tested = parseFiles(shard, null);
         }
+
+        final long elapsedNanos = System.nanoTime() - start;
+        getLog().info(new ResultFormatter().format(tested, elapsedNanos));
+        final List<String> regressions = checkRegressions(shard, tested, elapsedNanos);
+        final int failedRegressions = failOnRegression ? regressions.size() : 0;
+
+        if (tested.hasFailed() || tested.countTimedOut() > 0 || failedRegressions > 0) {
+            throw new MojoFailureException(String.format(
+                "%d source(s) failed, %d timed out and %d performance regression(s)!",
+                tested.countFailed(), tested.countTimedOut(), failedRegressions));
+        }
+    }
+
+    private void validateRegressionGate() throws MojoExecutionException {
+        if (maxSlowdown < 0 || maxSlowdown > 100) {
+            throw new MojoExecutionException(
+                String.format("Max slowdown '%d' must be in range [0, 100]!", maxSlowdown));
+        }
+
+        if (fileBudget < 0) {
+            throw new MojoExecutionException(String.format("File budget '%d' must not be negative!", fileBudget));
+        }
+    }
+
+    private boolean isBaselineUsed() {
+        return recordBaseline || compareBaseline;
+    }
+
+    private Collector createCollector() {
+        // The baseline holds the time of all directories, not only of the slowest.
+        return new Collector(reportSlowest, isBaselineUsed(), TimeUnit.MILLISECONDS.toNanos(fileBudget));
+    }
+
+    /**
+     * Keys a directory by its path relative to its file set directory, so that baselines match across checkouts.
+     */
+    private String directoryKey(final String directory) {
+        final String relative = StringUtils.removeEnd(FileDiscovery.relativize(filesets, directory), "/");
+        return relative.isEmpty() ? "." : relative;
+    }
+
+    /**
+     * Compares the run with the baseline and the file budget and records the new baseline, regressions are logged.
+     */
+    private List<String> checkRegressions(final Shard shard, final Collector tested, final long elapsedNanos)
+        throws MojoExecutionException {
+        final List<String> regressions = new ArrayList<>();
+        tested.overBudget().forEach(r -> regressions.add(String.format(Locale.ROOT,
+            "Source '%s' took %.3f ms, budget is %d ms!",
+            r.getTestedFile(), r.getMetrics().getTotalNanos() / 1_000_000d, fileBudget)));
+
+        if (isBaselineUsed() && shard.getCount() > 1) {
+            getLog().warn("Baselines are not supported with shards and ignored.");
+        } else if (isBaselineUsed() && incremental) {
+            getLog().warn("Baselines are not supported with incremental parsing and ignored.");
+        } else if (isBaselineUsed()) {
+            final Path file = null == baselineFile
+                ? workDirectory.toPath().resolve(Baseline.FILE_NAME)
+                : baselineFile.toPath();
+            final Baseline current = Baseline.measure(tested, Math.max(1, elapsedNanos), this::directoryKey);
+
+            if (compareBaseline && Files.isRegularFile(file)) {
+                getLog().info(String.format(
+                    "Comparing with baseline '%s', throughput may drop by %d%%.", file, maxSlowdown));
+                regressions.addAll(Baseline.load(file).regressions(current, maxSlowdown));
+            } else if (compareBaseline) {
+                getLog().warn(String.format("There is no baseline '%s' to compare with!", file));
+            }
+
+            if (recordBaseline && !tested.hasFailed() && 0 == tested.countTimedOut()) {
+                current.store(file);
+                getLog().info(String.format(Locale.ROOT, "Wrote baseline of %.1f files/s and %.0f tokens/s to '%s'.",
+                    current.getFilesPerSecond(), current.getTokensPerSecond(), file));
+            }
+        }
+
+        regressions.forEach(getLog()::warn);
+        return regressions;
     }
 
     void printStartInfo() {
@@ -188,23 +750,530 @@ public final class InfallibleMojo extends AbstractMojo {
         getLog().info("-------------------------------------------------------");
     }
 
-    private Collector parseFiles() throws MojoExecutionException {
-        final ParserFactory parsers = new ParserFactory(
-            getLog(),
-            new ClassLoaderFactory(outputDirectory).getClassLoader(),
+    private void validateGrammar() throws MojoExecutionException {
+        if (hasTargets()) {
+            for (final GrammarTarget target : targets) {
+                if (StringUtils.isBlank(target.getGrammarName()) || StringUtils.isBlank(target.getStartRule())) {
+                    throw new MojoExecutionException(
+                        String.format("Target '%s' needs a grammar name and a start rule!", target.getId()));
+                }
+            }
+        } else if (Mode.LEX == Mode.forConfigName(mode)) {
+            if (StringUtils.isBlank(grammarName)) {
+                throw new MojoExecutionException("Parameter 'grammarName' is required to lex!");
+            }
+        } else if (StringUtils.isBlank(grammarName) || StringUtils.isBlank(startRule)) {
+            throw new MojoExecutionException("Parameters 'grammarName' and 'startRule' are required without targets!");
+        }
+    }
+
+    private Shard createShard() throws MojoExecutionException {
+        if (shardCount < 1) {
+            throw new MojoExecutionException(String.format("Shard count '%d' must be greater than 0!", shardCount));
+        }
+
+        if (shardIndex < 1 || shardIndex > shardCount) {
+            throw new MojoExecutionException(
+                String.format("Shard index '%d' must be in range [1, %d]!", shardIndex, shardCount));
+        }
+
+        if (shardCount > 1 && hasTargets()) {
+            throw new MojoExecutionException("Shards are not supported with targets!");
+        }
+
+        return new Shard(shardIndex - 1, shardCount);
+    }
+
+    private int validReadAhead() throws MojoExecutionException {
+        if (readAhead < 0) {
+            throw new MojoExecutionException(String.format("Read ahead '%d' must not be negative!", readAhead));
+        }
+
+        return readAhead;
+    }
+
+    private int validIoThreads() throws MojoExecutionException {
+        if (ioThreads < 1) {
+            throw new MojoExecutionException(String.format("I/O thread count '%d' must be greater than 0!", ioThreads));
+        }
+
+        return ioThreads;
+    }
+
+    private int validDiscoveryThreads() throws MojoExecutionException {
+        if (discoveryThreads < 1) {
+            throw new MojoExecutionException(
+                String.format("Discovery thread count '%d' must be greater than 0!", discoveryThreads));
+        }
+
+        return discoveryThreads;
+    }
+
+    private int effectiveFailAfter() throws MojoExecutionException {
+        if (failAfter < 0) {
+            throw new MojoExecutionException(String.format("Fail after count '%d' must not be negative!", failAfter));
+        }
+
+        return failFast ? 1 : failAfter;
+    }
+
+    private Collector parseFiles(final Shard shard, final ShardResults results) throws MojoExecutionException {
+        final String session = null == sessionStart ? "" : String.valueOf(sessionStart.getTime());
+        final ClassLoader classes = ClassLoaderCache.shared().getClassLoader(getLog(), outputDirectory, session);
+
+        if (forkCount < 0) {
+            throw new MojoExecutionException(String.format("Fork count '%d' must not be negative!", forkCount));
+        }
+
+        if (hasTargets()) {
+            return parseTargets(classes);
+        }
+
+        if (Mode.LEX == Mode.forConfigName(mode)) {
+            return lexFiles(classes, shard, results);
+        }
+
+        if (forkCount > 0) {
+            return parseForked(classes, shard, results);
+        }
+
+        if (reuseParsers && profile) {
+            getLog().warn("Reusing parsers is not supported with profiling and ignored.");
+        }
+
+        final ParserFactory parsers = new ParserFactory(getLog(), classes, packageName, grammarName,
+            parserOptions().withProfile(profile).withReuse(reuseParsers && !profile));
+        final DecisionProfile decisions = profile ? new DecisionProfile() : null;
+
+        try (ParseWatchdog watchdog = createWatchdog()) {
+            final ParserInvoker invoker = new ParserInvoker(
+                getLog(),
+                parsers.getParserClass(),
+                startRule,
+                PredictionStrategy.forConfigName(predictionStrategy),
+                decisions,
+                watchdog);
+            final FileParser files = new FileParser(parsers, invoker, encoding);
+            final ParseScheduler scheduler = new ParseScheduler(
+                ParseScheduler.parseThreads(threads, Runtime.getRuntime().availableProcessors()),
+                effectiveFailAfter());
+            getLog().info(String.format("Parsing with %d thread(s).", scheduler.getThreads()));
+            final ParseScheduler.Task<String> parse = fileToTest -> files.parse(Paths.get(fileToTest));
+            final Collector tested = parseFiles(classes, grammarClassNames(parsers), persistDfa ? parsers : null,
+                scheduler, parse, files::parse, decisions, shard, results);
+
+            if (!buildParseTree && getLog().isDebugEnabled()) {
+                logParseTreeSavings(parsers, tested);
+            }
+
+            return tested;
+        } finally {
+            // With one thread the files are parsed on the long lived Maven thread.
+            parsers.release();
+        }
+    }
+
+    /**
+     * Logs a rough estimate of the memory saved by not building parse trees.
+     * <p>
+     * Costs one extra parse of a sample file, so only done with debug logging. The savings of the sample are
+     * extrapolated to all files by their token count.
+     * </p>
+     */
+    private void logParseTreeSavings(final ParserFactory parsers, final Collector tested)
+        throws MojoExecutionException {
+        final String sample = firstParsed(tested);
+
+        if (null == sample || !ParseTreeSavings.isSupported()) {
+            return;
+        }
+
+        final long bytesPerToken = new ParseTreeSavings(
+            parsers, new ParserInvoker(getLog(), parsers.getParserClass(), startRule))
+            .bytesPerToken(Paths.get(sample), encoding);
+
+        if (ParseTreeSavings.UNKNOWN == bytesPerToken) {
+            return;
+        }
+
+        final long parsed = tested.count() - tested.countCached();
+        getLog().debug(String.format(
+            "No parse trees built, estimated to save %d bytes per file (extrapolated from %d bytes per token "
+                + "measured on '%s').",
+            bytesPerToken * tested.getTotalMetrics().getTokens() / parsed, bytesPerToken, sample));
+    }
+
+    /**
+     * Finds a passed file which is read into memory to measure the parse tree savings.
+     */
+    private String firstParsed(final Collector tested) {
+        for (int index = 0; index < tested.count(); ++index) {
+            final String file = tested.getTestedFile(index);
+
+            // Archive entries are no files.
+            if (tested.getState(index) == Result.State.PASSED && new File(file).isFile()
+                && new File(file).length() <= streamingThreshold) {
+                return file;
+            }
+        }
+
+        return null;
+    }
+
+    private Collector lexFiles(final ClassLoader classes, final Shard shard, final ShardResults results)
+        throws MojoExecutionException {
+        if (forkCount > 0) {
+            getLog().warn("Forked JVMs are not supported when lexing and ignored.");
+        }
+
+        if (persistDfa) {
+            getLog().warn("Persisting the DFA is not supported when lexing and ignored.");
+        }
+
+        if (profile) {
+            getLog().warn("Profiling is not supported when lexing and ignored.");
+        }
+
+        try (ParseWatchdog watchdog = createWatchdog()) {
+            final FileLexer files = new FileLexer(
+                getLog(), classes, packageName, grammarName, encoding, streamingThreshold, watchdog);
+            final ParseScheduler scheduler = new ParseScheduler(
+                ParseScheduler.parseThreads(threads, Runtime.getRuntime().availableProcessors()),
+                effectiveFailAfter());
+            getLog().info(String.format("Lexing with %d thread(s).", scheduler.getThreads()));
+            final ParseScheduler.Task<String> lex = fileToTest -> files.lex(Paths.get(fileToTest));
+            return parseFiles(classes, new String[]{files.getLexerClass().getName()}, null, scheduler, lex, files::lex,
+                null, shard, results);
+        }
+    }
+
+    private Collector parseForked(final ClassLoader classes, final Shard shard, final ShardResults results)
+        throws MojoExecutionException {
+        if (persistDfa) {
+            getLog().warn("Persisting the DFA is not supported with forked JVMs and ignored.");
+        }
+
+        if (profile) {
+            getLog().warn("Profiling is not supported with forked JVMs and ignored.");
+        }
+
+        if (reuseParsers) {
+            getLog().warn("Reusing parsers is not supported with forked JVMs and ignored.");
+        }
+
+        if (Archive.isAnyArchive(filesets)) {
+            throw new MojoExecutionException("Archives are not supported with forked JVMs!");
+        }
+
+        // Only resolves the grammar classes for the incremental state, the workers create their own parsers.
+        final ParserFactory parsers = new ParserFactory(getLog(), classes, packageName, grammarName);
+        final ForkedParser.Settings settings = new ForkedParser.Settings(
+            outputDirectory.getAbsolutePath(),
             packageName,
-            grammarName);
-        final Collector tested = new Collector();
+            grammarName,
+            startRule,
+            encoding,
+            PredictionStrategy.forConfigName(predictionStrategy).getConfigName(),
+            streamingThreshold,
+            validTimeout());
 
-        for (final String fileToTest : getFilesToTest()) {
-            final Path absoluteFileName = Paths.get(fileToTest).toAbsolutePath();
-            final Parser parser = parsers.create(absoluteFileName, encoding);
-            getLog().info(String.format("Parse file '%s'...", absoluteFileName.toString()));
-            final ParserInvoker invocation = new ParserInvoker(getLog(), parser, startRule);
-            tested.add(invocation.invoke());
+        try (ForkedParsers forks = new ForkedParsers(getLog(), argLine, settings)) {
+            final ParseScheduler scheduler = new ParseScheduler(forkCount, effectiveFailAfter());
+            getLog().info(String.format("Parsing in %d forked JVM(s).", forkCount));
+            // Forked workers build their own DFA.
+            return parseFiles(
+                classes, grammarClassNames(parsers), null, scheduler, forks::parse, null, null, shard, results);
+        }
+    }
+
+    private Collector parseTargets(final ClassLoader classes) throws MojoExecutionException {
+        if (forkCount > 0) {
+            throw new MojoExecutionException("Forked JVMs are not supported with targets!");
+        }
+
+        if (Mode.LEX == Mode.forConfigName(mode)) {
+            throw new MojoExecutionException("Lexing is not supported with targets!");
+        }
+
+        if (Archive.isAnyArchive(filesets)) {
+            throw new MojoExecutionException("Archives are not supported with targets!");
+        }
+
+        if (incremental) {
+            getLog().warn("Incremental parsing is not supported with targets and ignored.");
+        }
+
+        if (persistDfa) {
+            getLog().warn("Persisting the DFA is not supported with targets and ignored.");
+        }
+
+        if (profile) {
+            getLog().warn("Profiling is not supported with targets and ignored.");
+        }
+
+        if (longestFirst) {
+            getLog().warn("Longest first scheduling is not supported with targets and ignored.");
+        }
+
+        final PredictionStrategy strategy = PredictionStrategy.forConfigName(predictionStrategy);
+        final List<MultiTargetParser.Target> configured = new ArrayList<>();
+
+        try (ParseWatchdog watchdog = createWatchdog()) {
+            for (final GrammarTarget target : targets) {
+                final ParserFactory parsers = new ParserFactory(getLog(), classes, target.getPackageName(),
+                    target.getGrammarName(), parserOptions().withReuse(reuseParsers));
+                final ParserInvoker invoker = new ParserInvoker(
+                    getLog(), parsers.getParserClass(), target.getStartRule(), strategy, null, watchdog);
+                configured.add(new MultiTargetParser.Target(
+                    target, parsers, invoker, encoding, new Collector(reportSlowest)));
+            }
+
+            final MultiTargetParser parser = new MultiTargetParser(
+                configured, ParserFactory.charset(encoding), streamingThreshold);
+            final ParseScheduler scheduler = new ParseScheduler(
+                ParseScheduler.parseThreads(threads, Runtime.getRuntime().availableProcessors()),
+                effectiveFailAfter());
+            getLog().info(String.format(
+                "Parsing %d target(s) with %d thread(s).", configured.size(), scheduler.getThreads()));
+            final Collector tested = createCollector();
+
+            try (FileDiscovery filesToTest = FileDiscovery.start(
+                filesets, Shard.ALL, validDiscoveryThreads(), parser::applies)) {
+                scheduler.run(filesToTest, fileToTest -> {
+                    final Path absoluteFileName = Paths.get(fileToTest).toAbsolutePath();
+                    getLog().info(String.format("Parse file '%s'...", absoluteFileName));
+                    return parser.parse(absoluteFileName, filesToTest.relativize(fileToTest));
+                }, tested);
+            }
+
+            final Map<String, Collector> perTarget = new LinkedHashMap<>();
+            configured.forEach(target -> perTarget.put(target.getId(), target.getTested()));
+            getLog().info(new ResultFormatter().formatTargets(perTarget));
+            return tested;
+        } finally {
+            configured.forEach(target -> target.getParsers().release());
+        }
+    }
+
+    private ParserFactory.Options parserOptions() {
+        return ParserFactory.Options.DEFAULT
+            .withStreamingThreshold(streamingThreshold)
+            .withParseTree(buildParseTree);
+    }
+
+    private long validTimeout() throws MojoExecutionException {
+        if (timeout < 0) {
+            throw new MojoExecutionException(String.format("Timeout '%d' must not be negative!", timeout));
+        }
+
+        return timeout;
+    }
+
+    private ParseWatchdog createWatchdog() throws MojoExecutionException {
+        if (0 == validTimeout()) {
+            return null;
+        }
+
+        getLog().info(String.format("Abort parses after %d ms.", timeout));
+        return new ParseWatchdog(timeout);
+    }
+
+    private Collector parseFiles(
+        final ClassLoader classes,
+        final String[] grammarClasses,
+        final ParserFactory dfaParsers,
+        final ParseScheduler scheduler,
+        final ParseScheduler.Task<String> parse,
+        final ReadAhead.LoadedTask parseLoaded,
+        final DecisionProfile decisions,
+        final Shard shard,
+        final ShardResults results) throws MojoExecutionException {
+        if (scheduler.getFailAfter() > 0) {
+            getLog().info(String.format("Stop after %d failed file(s).", scheduler.getFailAfter()));
+        }
+
+        final Collector tested = createCollector();
+        final IncrementalState state = incremental ? loadIncrementalState(classes, grammarClasses) : null;
+        final DfaCache dfaCache = null == dfaParsers ? null : createDfaCache(classes, grammarClasses);
+        // Any parser shares the DFA with all parsers of the grammar.
+        final Parser dfaOwner = null == dfaCache ? null : dfaParsers.create(new ANTLRInputStream(""));
+
+        if (null != dfaCache) {
+            dfaCache.load(dfaOwner);
+        }
+
+        final boolean ordered = longestFirst && !FileDiscovery.hasArchive(filesets);
+
+        if (longestFirst && !ordered) {
+            getLog().warn("Longest first scheduling is not supported with archives and ignored.");
+        }
+
+        final Durations durations = ordered
+            ? Durations.load(getLog(), workDirectory.toPath().resolve(Durations.FILE_NAME))
+            : null;
+
+        try (FileDiscovery found = FileDiscovery.start(filesets, shard, validDiscoveryThreads())) {
+            final Iterable<String> order = null == durations ? found : longestFirst(found, durations);
+
+            if (null == parseLoaded) {
+                scheduler.run(order, fileToTest ->
+                    record(parseFile(fileToTest, null, parse, null, state), results, durations), tested);
+            } else {
+                parseLoaded(found, order, scheduler, parse, parseLoaded, state, results, durations, tested);
+            }
+        }
+
+        if (null != state) {
+            state.store();
+        }
+
+        if (null != durations) {
+            durations.store();
+        }
+
+        if (null != dfaCache) {
+            dfaCache.store(dfaOwner);
+        }
+
+        if (null != decisions) {
+            decisions.write(workDirectory.toPath());
+            getLog().info(String.format("Wrote decision profile of %d decision(s) to '%s'.",
+                decisions.ranked().size(), workDirectory.toPath().resolve(DecisionProfile.TEXT_FILE_NAME)));
         }
 
         return tested;
     }
 
+    /**
+     * Waits until all files are found and orders them by their expected cost, most expensive first.
+     */
+    private List<String> longestFirst(final FileDiscovery found, final Durations durations) {
+        final List<String> all = new ArrayList<>();
+        found.forEach(all::add);
+        final List<String> ordered = durations.longestFirst(all, found::size);
+        getLog().info(String.format("Parsing %d file(s) longest first (%d duration(s) recorded by the last run).",
+            ordered.size(), durations.countPrevious()));
+        return ordered;
+    }
+
+    /**
+     * Parses the found files in the given order while the next ones are loaded in the background.
+     */
+    private void parseLoaded(
+        final FileDiscovery found,
+        final Iterable<String> order,
+        final ParseScheduler scheduler,
+        final ParseScheduler.Task<String> parse,
+        final ReadAhead.LoadedTask parseLoaded,
+        final IncrementalState state,
+        final ShardResults results,
+        final Durations durations,
+        final Collector tested) throws MojoExecutionException {
+        // Each parse thread holds one loaded file, the read ahead comes on top.
+        final int depth = validReadAhead() + scheduler.getThreads();
+        getLog().info(String.format("Loading up to %d file(s) ahead with %d I/O thread(s).", depth, validIoThreads()));
+
+        try (ReadAhead filesToTest = ReadAhead.start(
+            found, order, ParserFactory.charset(encoding), streamingThreshold, null != state, depth, ReadAhead.CAPACITY,
+            ioThreads)) {
+            scheduler.run(filesToTest, new ParseScheduler.Task<ReadAhead.Slot>() {
+                @Override
+                public Result parse(final ReadAhead.Slot fileToTest) throws MojoExecutionException {
+                    final ReadAhead.Loaded loaded = fileToTest.take();
+
+                    try {
+                        return record(parseFile(fileToTest.getFile(), loaded, parse, parseLoaded, state),
+                            results, durations);
+                    } finally {
+                        if (null != loaded) {
+                            loaded.release();
+                        }
+                    }
+                }
+
+                @Override
+                public void skip(final ReadAhead.Slot fileToTest) {
+                    fileToTest.release();
+                }
+
+                @Override
+                public void stop() {
+                    // The remaining files are only counted as skipped.
+                    filesToTest.stop();
+                }
+            }, tested);
+        }
+    }
+
+    private IncrementalState loadIncrementalState(final ClassLoader classes, final String[] grammarClasses)
+        throws MojoExecutionException {
+        final Mode selected = Mode.forConfigName(mode);
+        // Lexing does not invoke the start rule, so it may be unset.
+        final String grammarFingerprint = Fingerprint.ofClasses(classes, grammarClasses,
+            Mode.LEX == selected ? "" : startRule, encoding, selected.getConfigName());
+        return IncrementalState.load(
+            getLog(), workDirectory.toPath().resolve(IncrementalState.FILE_NAME), grammarFingerprint);
+    }
+
+    private DfaCache createDfaCache(final ClassLoader classes, final String[] grammarClasses)
+        throws MojoExecutionException {
+        final String grammarFingerprint = Fingerprint.ofClasses(classes, grammarClasses, RuntimeMetaData.VERSION);
+        return new DfaCache(getLog(), workDirectory.toPath().resolve(DfaCache.FILE_NAME), grammarFingerprint);
+    }
+
+    private static String[] grammarClassNames(final ParserFactory parsers) {
+        return new String[]{parsers.getLexerClass().getName(), parsers.getParserClass().getName()};
+    }
+
+    private Result record(final Result result, final ShardResults results, final Durations durations)
+        throws MojoExecutionException {
+        if (null != results) {
+            results.add(result);
+        }
+
+        if (null != durations && !result.isCached()) {
+            // Timed out parses have no metrics, but took at least the time budget.
+            final long nanos = result.isTimedOut()
+                ? TimeUnit.MILLISECONDS.toNanos(timeout)
+                : result.getMetrics().getTotalNanos();
+            durations.record(result.getTestedFile(), nanos, result.getMetrics().getBytes());
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses one found file, loaded files are parsed from their content, all others are opened by the parse task.
+     */
+    private Result parseFile(
+        final String fileToTest,
+        final ReadAhead.Loaded loaded,
+        final ParseScheduler.Task<String> parse,
+        final ReadAhead.LoadedTask parseLoaded,
+        final IncrementalState state) throws MojoExecutionException {
+        final String testedFile = null == loaded ? Paths.get(fileToTest).toAbsolutePath().toString() : loaded.getFile();
+        final String contentFingerprint;
+
+        if (null == state) {
+            contentFingerprint = null;
+        } else {
+            contentFingerprint = null == loaded ? Fingerprint.ofFile(Paths.get(testedFile)) : loaded.getFingerprint();
+        }
+
+        if (null != state && state.isUnchanged(testedFile, contentFingerprint)) {
+            getLog().info(String.format("Skip unchanged file '%s'.", testedFile));
+            state.passed(testedFile, contentFingerprint);
+            return Result.cached(testedFile);
+        }
+
+        getLog().info(String.format("Parse file '%s'...", testedFile));
+        final Result result = null == loaded ? parse.parse(testedFile) : parseLoaded.parse(loaded);
+
+        if (null != state && result.getState() == Result.State.PASSED) {
+            state.passed(testedFile, contentFingerprint);
+        }
+
+        return result;
+    }
+
 }
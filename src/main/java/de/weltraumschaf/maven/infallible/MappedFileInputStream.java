@@ -0,0 +1,126 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Reads a file sequentially through memory mapped windows.
+ * <p>
+ * The content is not copied onto the heap, so reading even very large files needs only constant heap. The file is
+ * mapped window by window, because a single mapping is limited to {@link Integer#MAX_VALUE} bytes. The file channel
+ * is only open while a window is mapped, so this stream holds no file handle and need not be closed.
+ * </p>
+ * <p>
+ * This class is not thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class MappedFileInputStream extends InputStream {
+
+    /**
+     * Default size of a mapped window.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * The read file.
+     */
+    private final Path file;
+    /**
+     * Size of the file in bytes.
+     */
+    private final long size;
+    /**
+     * Maximum size of one mapped window.
+     */
+    private final int windowSize;
+    /**
+     * Offset of the next window in the file.
+     */
+    private long nextWindowStart;
+    /**
+     * Currently mapped window, {@code null} before the first read.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * Convenience constructor for {@link #DEFAULT_WINDOW_SIZE}.
+     *
+     * @param file must not be {@code null}
+     * @param size not negative
+     */
+    MappedFileInputStream(final Path file, final long size) {
+        this(file, size, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param file must not be {@code null}
+     * @param size not negative
+     * @param windowSize must be greater than 0
+     */
+    MappedFileInputStream(final Path file, final long size, final int windowSize) {
+        super();
+        this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+        Validate.isTrue(size >= 0, "Parameter 'size' must not be negative!");
+        this.size = size;
+        Validate.isTrue(windowSize > 0, "Parameter 'windowSize' must be greater than 0!");
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!hasRemaining()) {
+            return -1;
+        }
+
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+
+        if (!hasRemaining()) {
+            return -1;
+        }
+
+        final int read = Math.min(length, window.remaining());
+        window.get(buffer, offset, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return null == window ? 0 : window.remaining();
+    }
+
+    private boolean hasRemaining() throws IOException {
+        if (null != window && window.hasRemaining()) {
+            return true;
+        }
+
+        if (nextWindowStart >= size) {
+            return false;
+        }
+
+        final long length = Math.min(windowSize, size - nextWindowStart);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, nextWindowStart, length);
+        }
+
+        nextWindowStart += length;
+        return window.hasRemaining();
+    }
+}
@@ -0,0 +1,93 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.File;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * This mojo combines the partial results of all shards parsed by the {@code parse} goal into one summary.
+ * <p>
+ * The partial result files of all shards must be copied into the {@link #shardResults} directory before (e.g. as CI
+ * artifacts). The build fails if any shard has failed or timed out sources or if the results of a shard are missing.
+ * </p>
+ * <p>
+ * Example usage:
+ * </p>
+ * <pre>{@code
+ *  mvn infallible:merge -Dinfallible.shardResults=path/to/all/shard/results -Dinfallible.runId=42
+ * }</pre>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+@Mojo(name = MergeMojo.GOAL, requiresProject = true, threadSafe = true)
+public final class MergeMojo extends AbstractMojo {
+
+    /**
+     * The goal name for this mojo.
+     */
+    static final String GOAL = "merge";
+
+    /**
+     * Whether the plugin execution should be skipped or not.
+     */
+    @Parameter(property = "infallible.skip")
+    private boolean skip;
+    /**
+     * Directory with the partial result files of all shards.
+     */
+    @Parameter(property = "infallible.shardResults", defaultValue = "${project.build.directory}/infallible")
+    private File shardResults;
+    /**
+     * How many of the slowest files and directories are reported.
+     */
+    @Parameter(property = "infallible.reportSlowest", defaultValue = InfallibleMojo.DEFAULT_REPORT_SLOWEST)
+    private int reportSlowest = Integer.parseInt(InfallibleMojo.DEFAULT_REPORT_SLOWEST);
+    /**
+     * Only the partial results written with this run id are merged, empty to merge all.
+     * <p>
+     * Set the same id for the {@code parse} goal of all shards and this goal (e.g. the CI pipeline id), so that
+     * results left over from earlier runs are ignored.
+     * </p>
+     */
+    @Parameter(property = "infallible.runId")
+    private String runId = "";
+
+    boolean isSkip() {
+        return skip;
+    }
+
+    File getShardResults() {
+        return shardResults;
+    }
+
+    int getReportSlowest() {
+        return reportSlowest;
+    }
+
+    String getRunId() {
+        return runId;
+    }
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Execution skipped.");
+            return;
+        }
+
+        final Collector tested = new Collector(reportSlowest);
+        final long elapsedNanos = ShardResults.merge(shardResults.toPath(), StringUtils.defaultString(runId), tested);
+        getLog().info(String.format("Merged shard results from '%s'.", shardResults));
+        getLog().info(new ResultFormatter().format(tested, elapsedNanos));
+
+        if (tested.hasFailed() || tested.countTimedOut() > 0) {
+            throw new MojoFailureException(String.format(
+                "%d source(s) failed and %d timed out!", tested.countFailed(), tested.countTimedOut()));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.Objects;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Describes the measured effort to parse one file.
+ * <p>
+ * Streamed files are read and lexed while they are parsed, so for them reading and lexing is included in the parse
+ * time.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Metrics {
+
+    /**
+     * Used for files which were not parsed.
+     */
+    static final Metrics NONE = new Metrics(0, 0, 0, 0, 0);
+
+    /**
+     * Nanoseconds to read and decode the file.
+     */
+    private final long readNanos;
+    /**
+     * Nanoseconds to lex the file.
+     */
+    private final long lexNanos;
+    /**
+     * Nanoseconds to parse the file.
+     */
+    private final long parseNanos;
+    /**
+     * Number of lexed tokens.
+     */
+    private final long tokens;
+    /**
+     * Size of the file in bytes.
+     */
+    private final long bytes;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param readNanos not negative
+     * @param lexNanos not negative
+     * @param parseNanos not negative
+     * @param tokens not negative
+     * @param bytes not negative
+     */
+    Metrics(final long readNanos, final long lexNanos, final long parseNanos, final long tokens, final long bytes) {
+        super();
+        Validate.isTrue(readNanos >= 0, "Parameter 'readNanos' must not be negative!");
+        Validate.isTrue(lexNanos >= 0, "Parameter 'lexNanos' must not be negative!");
+        Validate.isTrue(parseNanos >= 0, "Parameter 'parseNanos' must not be negative!");
+        Validate.isTrue(tokens >= 0, "Parameter 'tokens' must not be negative!");
+        Validate.isTrue(bytes >= 0, "Parameter 'bytes' must not be negative!");
+        this.readNanos = readNanos;
+        this.lexNanos = lexNanos;
+        this.parseNanos = parseNanos;
+        this.tokens = tokens;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Creates a copy of this metrics with the given read time and size.
+     *
+     * @param readNanos not negative
+     * @param bytes not negative
+     * @return never {@code null}, always new instance
+     */
+    Metrics withRead(final long readNanos, final long bytes) {
+        return new Metrics(readNanos, lexNanos, parseNanos, tokens, bytes);
+    }
+
+    /**
+     * Nanoseconds to read and decode the file.
+     *
+     * @return not negative
+     */
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    /**
+     * Nanoseconds to lex the file.
+     *
+     * @return not negative
+     */
+    long getLexNanos() {
+        return lexNanos;
+    }
+
+    /**
+     * Nanoseconds to parse the file.
+     *
+     * @return not negative
+     */
+    long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Nanoseconds to read, lex and parse the file.
+     *
+     * @return not negative
+     */
+    long getTotalNanos() {
+        return readNanos + lexNanos + parseNanos;
+    }
+
+    /**
+     * Number of lexed tokens.
+     *
+     * @return not negative
+     */
+    long getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Size of the file in bytes.
+     *
+     * @return not negative
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(readNanos, lexNanos, parseNanos, tokens, bytes);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof Metrics)) {
+            return false;
+        }
+
+        final Metrics other = (Metrics) obj;
+        return readNanos == other.readNanos
+            && lexNanos == other.lexNanos
+            && parseNanos == other.parseNanos
+            && tokens == other.tokens
+            && bytes == other.bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Metrics{" + "readNanos=" + readNanos + ", lexNanos=" + lexNanos + ", parseNanos=" + parseNanos
+            + ", tokens=" + tokens + ", bytes=" + bytes + '}';
+    }
+}
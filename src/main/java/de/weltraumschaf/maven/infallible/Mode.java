@@ -0,0 +1,71 @@
+package de.weltraumschaf.maven.infallible;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * What is done with each file.
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+enum Mode {
+
+    /**
+     * Lex and parse each file with the start rule.
+     */
+    PARSE("parse"),
+    /**
+     * Only lex each file, no parser is created at all.
+     * <p>
+     * A file fails on its first token recognition error. This is a fast first pass before the full parse.
+     * </p>
+     */
+    LEX("lex");
+
+    /**
+     * Name used in the plugin configuration.
+     */
+    private final String configName;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param configName must not be {@code null}
+     */
+    private Mode(final String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Name used in the plugin configuration.
+     *
+     * @return never {@code null}
+     */
+    String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Get the mode for the given name from the plugin configuration.
+     * <p>
+     * The name is matched case insensitive.
+     * </p>
+     *
+     * @param configName must not be {@code null}
+     * @return never {@code null}
+     * @throws MojoExecutionException if there is no mode with the given name
+     */
+    static Mode forConfigName(final String configName) throws MojoExecutionException {
+        Validate.notNull(configName, "Parameter 'configName' must not be null!");
+
+        for (final Mode mode : values()) {
+            if (mode.configName.equalsIgnoreCase(configName.trim())) {
+                return mode;
+            }
+        }
+
+        throw new MojoExecutionException(
+            String.format("Unknown mode '%s' (use '%s' or '%s')!", configName, PARSE.configName, LEX.configName));
+    }
+}
@@ -0,0 +1,296 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Parses each file with all grammar targets which apply to it.
+ * <p>
+ * A file is read and decoded only once and the decoded characters are shared by the input streams of all targets.
+ * Only files above the streaming threshold are streamed once per target, because a streamed input can not be
+ * rewound.
+ * </p>
+ * <p>
+ * The result of each target is collected per target. The combined result of a file fails if any target failed, its
+ * error message names the failed targets. It is timed out if no target failed but any timed out.
+ * </p>
+ * <p>
+ * This class is thread safe as long as its targets are.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class MultiTargetParser {
+
+    /**
+     * All targets in configured order.
+     */
+    private final List<Target> targets;
+    /**
+     * Encoding of the files.
+     */
+    private final Charset encoding;
+    /**
+     * Files with more bytes are streamed.
+     */
+    private final long streamingThreshold;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param targets must not be {@code null} or empty
+     * @param encoding must not be {@code null}
+     * @param streamingThreshold files with more bytes are streamed, must not be negative
+     */
+    MultiTargetParser(final List<Target> targets, final Charset encoding, final long streamingThreshold) {
+        super();
+        Validate.notEmpty(targets, "Parameter 'targets' must not be null or empty!");
+        Validate.isTrue(streamingThreshold >= 0, "Parameter 'streamingThreshold' must not be negative!");
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+        this.encoding = Validate.notNull(encoding, "Parameter 'encoding' must not be null!");
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * All targets in configured order.
+     *
+     * @return never {@code null}, unmodifiable
+     */
+    List<Target> getTargets() {
+        return targets;
+    }
+
+    /**
+     * Whether any target parses the file with the given relative path.
+     *
+     * @param relativePath must not be {@code null}, relative to the file set directory separated by {@code /}
+     * @return {@code true} if parsed by any target, else {@code false}
+     */
+    boolean applies(final String relativePath) {
+        return targets.stream().anyMatch(target -> target.applies(relativePath));
+    }
+
+    /**
+     * Parses the given file with all applying targets.
+     *
+     * @param file must not be {@code null}, absolute
+     * @param relativePath must not be {@code null}, relative to the file set directory separated by {@code /}
+     * @return never {@code null}, the combined result
+     * @throws MojoExecutionException on any error which is not a parse error
+     */
+    Result parse(final Path file, final String relativePath) throws MojoExecutionException {
+        Validate.notNull(file, "Parameter 'file' must not be null!");
+        final List<Target> applying = targets.stream()
+            .filter(target -> target.applies(relativePath))
+            .collect(Collectors.toList());
+        final long size = size(file);
+        final long readStart = System.nanoTime();
+        final CharBuffer chars = size > streamingThreshold ? null : read(file);
+        final long readNanos = System.nanoTime() - readStart;
+        final Map<Target, Result> results = new LinkedHashMap<>();
+
+        for (final Target target : applying) {
+            final Result result;
+
+            if (null == chars) {
+                result = target.files.parse(file);
+            } else {
+                final Result parsed = target.invoker.invoke(target.parsers.create(shared(file, chars)));
+                result = parsed.withMetrics(parsed.getMetrics().withRead(readNanos, size));
+            }
+
+            target.tested.add(result);
+            results.put(target, result);
+        }
+
+        return combine(file.toString(), results, readNanos, size);
+    }
+
+    private static Result combine(
+        final String testedFile, final Map<Target, Result> results, final long readNanos, final long size) {
+        final List<String> errors = new ArrayList<>();
+        boolean timedOut = false;
+        boolean fallback = false;
+        long lexNanos = 0;
+        long parseNanos = 0;
+        long tokens = 0;
+
+        for (final Map.Entry<Target, Result> entry : results.entrySet()) {
+            final Result result = entry.getValue();
+
+            if (result.isFailed()) {
+                errors.add(String.format("%s: %s", entry.getKey().getId(), result.getFailure().getMessage()));
+            }
+
+            timedOut |= result.isTimedOut();
+            fallback |= result.isFallback();
+            lexNanos += result.getMetrics().getLexNanos();
+            parseNanos += result.getMetrics().getParseNanos();
+            tokens += result.getMetrics().getTokens();
+        }
+
+        final Result combined;
+
+        if (!errors.isEmpty()) {
+            combined = Result.failed(testedFile, new Failure(String.join("; ", errors)));
+        } else if (timedOut) {
+            combined = Result.timedOut(testedFile);
+        } else {
+            combined = Result.passed(testedFile);
+        }
+
+        return (fallback ? combined.withFallback() : combined)
+            .withMetrics(new Metrics(readNanos, lexNanos, parseNanos, tokens, size));
+    }
+
+    /**
+     * Creates an input stream which shares the given characters without copying them.
+     */
+    private static ANTLRInputStream shared(final Path file, final CharBuffer chars) {
+        final ANTLRInputStream input = new ANTLRInputStream(chars.array(), chars.limit());
+        input.name = file.toString();
+        return input;
+    }
+
+    private CharBuffer read(final Path file) throws MojoExecutionException {
+        try {
+            return encoding.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private static long size(final Path file) throws MojoExecutionException {
+        try {
+            return Files.size(file);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * One grammar and start rule with the files it applies to and its collected results.
+     */
+    static final class Target {
+
+        /**
+         * Name in the report.
+         */
+        private final String id;
+        /**
+         * Compiled include patterns, empty includes all files.
+         */
+        private final List<Pattern> includes;
+        /**
+         * Compiled exclude patterns.
+         */
+        private final List<Pattern> excludes;
+        /**
+         * Creates the parsers of this target.
+         */
+        private final ParserFactory parsers;
+        /**
+         * Invokes the start rule of this target.
+         */
+        private final ParserInvoker invoker;
+        /**
+         * Parses streamed files.
+         */
+        private final FileParser files;
+        /**
+         * Collects the results of this target.
+         */
+        private final Collector tested;
+
+        /**
+         * Dedicated constructor.
+         *
+         * @param config must not be {@code null}
+         * @param parsers must not be {@code null}
+         * @param invoker must not be {@code null}
+         * @param encoding must not be {@code null} or empty
+         * @param tested must not be {@code null}
+         */
+        Target(
+            final GrammarTarget config,
+            final ParserFactory parsers,
+            final ParserInvoker invoker,
+            final String encoding,
+            final Collector tested) {
+            super();
+            Validate.notNull(config, "Parameter 'config' must not be null!");
+            this.id = config.getId();
+            this.includes = compile(config.getIncludes());
+            this.excludes = compile(config.getExcludes());
+            this.parsers = Validate.notNull(parsers, "Parameter 'parsers' must not be null!");
+            this.invoker = Validate.notNull(invoker, "Parameter 'invoker' must not be null!");
+            this.files = new FileParser(parsers, invoker, encoding);
+            this.tested = Validate.notNull(tested, "Parameter 'tested' must not be null!");
+        }
+
+        private static List<Pattern> compile(final List<String> patterns) {
+            return null == patterns
+                ? Collections.emptyList()
+                : patterns.stream().map(FileDiscovery::compile).collect(Collectors.toList());
+        }
+
+        /**
+         * Name in the report.
+         *
+         * @return never {@code null}
+         */
+        String getId() {
+            return id;
+        }
+
+        /**
+         * The collected results of this target.
+         *
+         * @return never {@code null}
+         */
+        Collector getTested() {
+            return tested;
+        }
+
+        /**
+         * The parser factory of this target.
+         *
+         * @return never {@code null}
+         */
+        ParserFactory getParsers() {
+            return parsers;
+        }
+
+        /**
+         * Whether this target parses the file with the given relative path.
+         *
+         * @param relativePath must not be {@code null}
+         * @return {@code true} if parsed, else {@code false}
+         */
+        boolean applies(final String relativePath) {
+            Validate.notNull(relativePath, "Parameter 'relativePath' must not be null!");
+            return (includes.isEmpty() || matchesAny(includes, relativePath)) && !matchesAny(excludes, relativePath);
+        }
+
+        private static boolean matchesAny(final List<Pattern> patterns, final String relativePath) {
+            return patterns.stream().anyMatch(pattern -> pattern.matcher(relativePath).matches());
+        }
+    }
+}
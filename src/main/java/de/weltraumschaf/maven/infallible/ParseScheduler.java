@@ -0,0 +1,472 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Distributes the files to parse over a pool of worker threads.
+ * <p>
+ * With one thread all files are parsed sequentially in the calling thread, so no pool is created at all. Otherwise at
+ * most {@value #PENDING_PER_THREAD} files per thread are submitted but not parsed yet, so files are not iterated
+ * arbitrarily far ahead of the parsers.
+ * </p>
+ * <p>
+ * Optionally the run stops after a number of failed or timed out files: No further files are parsed, parses in flight
+ * are interrupted (see {@link CancellableErrorStrategy}) and their results are discarded. Errors of parses after the
+ * stop are discarded too, because the interrupt may surface as any I/O error (e.g. a
+ * {@link java.nio.channels.ClosedByInterruptException} while reading the file). The task is told about the stop once
+ * (see {@link Task#stop()}), so that it no longer prepares the remaining files. The files which were not collected are
+ * counted as skipped (see {@link Collector#countSkipped()}).
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ParseScheduler {
+
+    /**
+     * Suffix for thread counts relative to the available cores (e.g. {@code 1.5C}).
+     */
+    private static final String CORES_SUFFIX = "C";
+    /**
+     * Files per thread which may be submitted but not parsed yet.
+     */
+    static final int PENDING_PER_THREAD = 4;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threads;
+    /**
+     * Stop after this many failed files, 0 means never stop.
+     */
+    private final int failAfter;
+
+    /**
+     * Convenience constructor which never stops on failed files.
+     *
+     * @param threads must be greater than 0
+     */
+    ParseScheduler(final int threads) {
+        this(threads, 0);
+    }
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param threads must be greater than 0
+     * @param failAfter stop after this many failed files, not negative, 0 means never stop
+     */
+    ParseScheduler(final int threads, final int failAfter) {
+        super();
+        Validate.isTrue(threads > 0, "Parameter 'threads' must be greater than 0!");
+        Validate.isTrue(failAfter >= 0, "Parameter 'failAfter' must not be negative!");
+        this.threads = threads;
+        this.failAfter = failAfter;
+    }
+
+    /**
+     * Number of worker threads.
+     *
+     * @return greater than 0
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * After how many failed files the run stops.
+     *
+     * @return not negative, 0 means never stop
+     */
+    int getFailAfter() {
+        return failAfter;
+    }
+
+    /**
+     * Parses all given files with the given task and adds the results to the collector.
+     * <p>
+     * The files are consumed as they are iterated, so parsing may start while the files are still being found (see
+     * {@link FileDiscovery}). This method blocks until all files are parsed or the run stopped because of too many
+     * failed files. If one task throws an exception no further files are iterated, all outstanding tasks are
+     * cancelled and the exception is propagated as soon as they are done.
+     * </p>
+     *
+     * @param <T> type of the files, e.g. their names
+     * @param filesToTest must not be {@code null}
+     * @param task must not be {@code null}
+     * @param tested must not be {@code null}
+     * @throws MojoExecutionException if any task fails with an error which is not a parse error
+     */
+    <T> void run(final Iterable<T> filesToTest, final Task<? super T> task, final Collector tested)
+        throws MojoExecutionException {
+        Validate.notNull(filesToTest, "Parameter 'filesToTest' must not be null!");
+        Validate.notNull(task, "Parameter 'task' must not be null!");
+        Validate.notNull(tested, "Parameter 'tested' must not be null!");
+        final Batch batch = new Batch(tested, task::stop);
+        final long files;
+
+        if (threads == 1) {
+            long count = 0;
+
+            for (final T fileToTest : filesToTest) {
+                ++count;
+
+                if (batch.isStopped()) {
+                    task.skip(fileToTest);
+                } else {
+                    batch.add(task.parse(fileToTest));
+                }
+            }
+
+            files = count;
+        } else {
+            files = runParallel(filesToTest, task, batch);
+        }
+
+        tested.skip(files - batch.countAdded());
+    }
+
+    /**
+     * Parses the files in the pool and returns the number of iterated files.
+     */
+    private <T> long runParallel(final Iterable<T> filesToTest, final Task<? super T> task, final Batch batch)
+        throws MojoExecutionException {
+        final ExecutorService workers = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+        final int capacity = threads * PENDING_PER_THREAD;
+        final Semaphore slots = new Semaphore(capacity);
+        long files = 0;
+
+        try {
+            for (final T fileToTest : filesToTest) {
+                if (batch.isFailed()) {
+                    task.skip(fileToTest);
+                    break;
+                }
+
+                ++files;
+
+                if (batch.isStopped()) {
+                    // Only counted as skipped.
+                    task.skip(fileToTest);
+                    continue;
+                }
+
+                slots.acquire();
+                final FutureTask<Void> parse = new FutureTask<Void>(() -> {
+                    parseUnlessStopped(fileToTest, task, batch);
+                    return null;
+                }) {
+                    @Override
+                    protected void setException(final Throwable error) {
+                        super.setException(error);
+
+                        // Errors of cancelled tasks are not set.
+                        if (!isCancelled()) {
+                            batch.failed(error);
+                        }
+                    }
+
+                    @Override
+                    protected void done() {
+                        // Also called for cancelled tasks which never run.
+                        batch.done(this);
+                        slots.release();
+
+                        if (isCancelled()) {
+                            task.skip(fileToTest);
+                        }
+                    }
+                };
+                // Remembered before it runs, so that it is forgotten when done.
+                batch.submitted(parse);
+                workers.execute(parse);
+            }
+
+            // Each done task returns its slot.
+            slots.acquire(capacity);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for parser threads!", ex);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        final Throwable error = batch.getError();
+
+        if (error instanceof MojoExecutionException) {
+            throw (MojoExecutionException) error;
+        }
+
+        if (null != error) {
+            throw new MojoExecutionException(
+                String.format("Parser thread failed unexpectedly (%s)!", error.getMessage()), error);
+        }
+
+        if (batch.isStopped()) {
+            awaitCancelledParses(workers);
+        }
+
+        return files;
+    }
+
+    /**
+     * Parses the file in a worker thread, errors are discarded if the batch stopped meanwhile.
+     */
+    private static <T> void parseUnlessStopped(final T fileToTest, final Task<? super T> task, final Batch batch)
+        throws MojoExecutionException {
+        if (batch.isStopped()) {
+            task.skip(fileToTest);
+            return;
+        }
+
+        try {
+            batch.add(task.parse(fileToTest));
+        } catch (final MojoExecutionException | RuntimeException ex) {
+            if (!batch.isStopped()) {
+                throw ex;
+            }
+
+            // Interrupted by the stop, e.g. while reading the file.
+            task.skip(fileToTest);
+        }
+    }
+
+    /**
+     * Waits until the interrupted parses stopped, so that they no longer touch shared state like the DFA.
+     */
+    private static void awaitCancelledParses(final ExecutorService workers) throws MojoExecutionException {
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for parser threads!", ex);
+        }
+    }
+
+    /**
+     * Parses the given thread count specification.
+     * <p>
+     * The specification is either a plain positive integer (e.g. {@code 4}) or a positive number suffixed with
+     * {@code C} (e.g. {@code 1C} or {@code 0.5C}) which is multiplied by the given number of cores. The result is
+     * always at least 1.
+     * </p>
+     *
+     * @param spec must not be {@code null} or empty
+     * @param cores must be greater than 0
+     * @return greater than 0
+     * @throws MojoExecutionException if the specification is not parseable
+     */
+    static int parseThreads(final String spec, final int cores) throws MojoExecutionException {
+        Validate.notEmpty(spec, "Parameter 'spec' must not be null or empty!");
+        Validate.isTrue(cores > 0, "Parameter 'cores' must be greater than 0!");
+        final String trimmed = spec.trim().toUpperCase();
+
+        try {
+            if (trimmed.endsWith(CORES_SUFFIX)) {
+                final float factor = Float.parseFloat(trimmed.substring(0, trimmed.length() - CORES_SUFFIX.length()));
+
+                if (factor > 0) {
+                    return Math.max(1, (int) (factor * cores));
+                }
+            } else {
+                final int threads = Integer.parseInt(trimmed);
+
+                if (threads > 0) {
+                    return threads;
+                }
+            }
+        } catch (final NumberFormatException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't parse thread count '%s' (%s)!", spec, ex.getMessage()), ex);
+        }
+
+        throw new MojoExecutionException(String.format("Thread count '%s' must be greater than 0!", spec));
+    }
+
+    /**
+     * Parses one file.
+     *
+     * @param <T> type of the files, e.g. their names
+     */
+    @FunctionalInterface
+    interface Task<T> {
+
+        /**
+         * Parses the given file.
+         *
+         * @param fileToTest never {@code null}
+         * @return never {@code null}
+         * @throws MojoExecutionException on any error which is not a parse error
+         */
+        Result parse(T fileToTest) throws MojoExecutionException;
+
+        /**
+         * Called for files skipped because the run stopped, so that resources held for them can be released.
+         * <p>
+         * Also called for cancelled parses, which may already have started. By default does nothing.
+         * </p>
+         *
+         * @param fileToTest never {@code null}
+         */
+        default void skip(final T fileToTest) {
+            // Nothing to release by default.
+        }
+
+        /**
+         * Called once when the run stops because of too many failed files, before the remaining files are skipped.
+         * <p>
+         * Called by the thread which added the last failed result. By default does nothing.
+         * </p>
+         */
+        default void stop() {
+            // Nothing to stop by default.
+        }
+    }
+
+    /**
+     * Collects the results of one run and stops it after too many failed files or the first error.
+     */
+    private final class Batch {
+
+        /**
+         * Futures of the submitted tasks which are not done yet, only used for parallel runs.
+         * <p>
+         * At most one per slot, so the memory does not grow with the number of files.
+         * </p>
+         */
+        private final Set<Future<?>> pending = ConcurrentHashMap.newKeySet();
+        /**
+         * Where the results are added.
+         */
+        private final Collector tested;
+        /**
+         * Called once when the batch stops.
+         */
+        private final Runnable onStop;
+        /**
+         * Number of added results, guarded by this.
+         */
+        private int added;
+        /**
+         * Whether no more results are added, guarded by this.
+         */
+        private boolean stopped;
+        /**
+         * The first error of a task before the stop, guarded by this.
+         */
+        private Throwable error;
+
+        private Batch(final Collector tested, final Runnable onStop) {
+            super();
+            this.tested = tested;
+            this.onStop = onStop;
+        }
+
+        /**
+         * Adds the result unless the batch stopped.
+         * <p>
+         * Stops the batch, signals the stop and cancels all pending tasks, if there are enough failed results.
+         * </p>
+         */
+        private void add(final Result result) {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+
+                tested.add(result);
+                ++added;
+                stopped = failAfter > 0 && tested.countFailed() + tested.countTimedOut() >= failAfter;
+
+                if (!stopped) {
+                    return;
+                }
+            }
+
+            onStop.run();
+            pending.forEach(future -> future.cancel(true));
+        }
+
+        /**
+         * Remembers the error of a task and cancels all pending tasks, unless the batch stopped or failed before.
+         * <p>
+         * After the stop the error may be caused by the interrupt, so it is discarded.
+         * </p>
+         */
+        private void failed(final Throwable taskError) {
+            synchronized (this) {
+                if (stopped || null != error) {
+                    return;
+                }
+
+                error = taskError;
+            }
+
+            pending.forEach(future -> future.cancel(true));
+        }
+
+        /**
+         * Remembers the future of a submitted task, cancels it if the batch already stopped or failed.
+         */
+        private void submitted(final Future<?> future) {
+            pending.add(future);
+
+            // The batch may have stopped before the future was added.
+            if (isStopped() || isFailed()) {
+                future.cancel(true);
+            }
+        }
+
+        /**
+         * Forgets the future of a done task.
+         */
+        private void done(final Future<?> future) {
+            pending.remove(future);
+        }
+
+        private synchronized boolean isStopped() {
+            return stopped;
+        }
+
+        private synchronized boolean isFailed() {
+            return null != error;
+        }
+
+        private synchronized Throwable getError() {
+            return error;
+        }
+
+        private synchronized int countAdded() {
+            return added;
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so that they do not prevent the JVM from exiting.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        /**
+         * Used to number the threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread worker = new Thread(r, "infallible-worker-" + count.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        }
+    }
+}
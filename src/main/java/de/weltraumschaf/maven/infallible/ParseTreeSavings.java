@@ -0,0 +1,121 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import org.antlr.v4.runtime.ANTLRFileStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Parser;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Estimates how many bytes a parser does not allocate because it builds no parse tree.
+ * <p>
+ * A sample file is parsed with and without parse tree and the bytes allocated by the current thread are compared.
+ * The sample is parsed once before measuring, so the prediction DFA built for it is not counted. The savings are
+ * reported per token, so they can be extrapolated to files of any size.
+ * </p>
+ * <p>
+ * Measuring needs a JVM which counts the allocated bytes per thread (e.g. HotSpot). The result is only an estimate
+ * for diagnostics: One sample is not representative for all files of a corpus.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ParseTreeSavings {
+
+    /**
+     * Returned if the savings can't be measured.
+     */
+    static final long UNKNOWN = -1;
+
+    /**
+     * Creates the parsers.
+     */
+    private final ParserFactory parsers;
+    /**
+     * Invokes the start rule.
+     */
+    private final ParserInvoker invoker;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param parsers must not be {@code null}
+     * @param invoker must not be {@code null}, should neither profile nor have a time budget
+     */
+    ParseTreeSavings(final ParserFactory parsers, final ParserInvoker invoker) {
+        super();
+        this.parsers = Validate.notNull(parsers, "Parameter 'parsers' must not be null!");
+        this.invoker = Validate.notNull(invoker, "Parameter 'invoker' must not be null!");
+    }
+
+    /**
+     * Whether the JVM counts the bytes allocated per thread.
+     *
+     * @return {@code true} if supported, else {@code false}
+     */
+    static boolean isSupported() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Measures the bytes saved per token by parsing the given file without parse tree.
+     *
+     * @param sample must not be {@code null}, a file which passes
+     * @param encoding must not be {@code null} or empty
+     * @return {@link #UNKNOWN} if not measurable or the sample does not pass, else not negative
+     * @throws MojoExecutionException if the sample can't be read or parsed
+     */
+    long bytesPerToken(final Path sample, final String encoding) throws MojoExecutionException {
+        Validate.notNull(sample, "Parameter 'sample' must not be null!");
+        Validate.notEmpty(encoding, "Parameter 'encoding' must not be null or empty!");
+
+        if (!isSupported()) {
+            return UNKNOWN;
+        }
+
+        final CharStream input;
+
+        try {
+            input = new ANTLRFileStream(sample.toString(), encoding);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", sample, ex.getMessage()), ex);
+        }
+
+        final Result warmUp = parse(input, false);
+
+        if (warmUp.isFailed() || warmUp.getMetrics().getTokens() == 0) {
+            return UNKNOWN;
+        }
+
+        final long withTree = allocated(input, true);
+        final long withoutTree = allocated(input, false);
+        return Math.max(0, withTree - withoutTree) / warmUp.getMetrics().getTokens();
+    }
+
+    private long allocated(final CharStream input, final boolean buildParseTree) throws MojoExecutionException {
+        final long start = allocatedBytes();
+        parse(input, buildParseTree);
+        return allocatedBytes() - start;
+    }
+
+    private Result parse(final CharStream input, final boolean buildParseTree) throws MojoExecutionException {
+        input.seek(0);
+        final Parser parser = parsers.create(input);
+        parser.setBuildParseTree(buildParseTree);
+        return invoker.invoke(parser);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,137 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Interrupts parses which exceed their time budget.
+ * <p>
+ * A parsing thread {@link #watch() watches} itself before it parses a file and closes the watch afterwards. If the
+ * budget is exceeded before, the watchdog interrupts the thread, so the parse stops with a
+ * {@link java.util.concurrent.CancellationException} (see {@link CancellableErrorStrategy}). Closing the watch clears
+ * that interrupt again, so the thread can go on with the next file.
+ * </p>
+ * <p>
+ * This class is thread safe. All watches share one timer thread, which is stopped on {@link #close()}.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ParseWatchdog implements AutoCloseable {
+
+    /**
+     * Time budget per file in milliseconds.
+     */
+    private final long timeoutMillis;
+    /**
+     * Fires the alarms.
+     */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread watchdog = new Thread(r, "infallible-watchdog");
+        watchdog.setDaemon(true);
+        return watchdog;
+    });
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param timeoutMillis time budget per file in milliseconds, must be greater than 0
+     */
+    ParseWatchdog(final long timeoutMillis) {
+        super();
+        Validate.isTrue(timeoutMillis > 0, "Parameter 'timeoutMillis' must be greater than 0!");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Time budget per file in milliseconds.
+     *
+     * @return greater than 0
+     */
+    long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Starts to watch the current thread.
+     *
+     * @return never {@code null}, must be closed by the current thread
+     */
+    Watch watch() {
+        final Watch watch = new Watch(Thread.currentThread());
+        watch.alarm = timer.schedule(watch::fire, timeoutMillis, TimeUnit.MILLISECONDS);
+        return watch;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Watches one parse.
+     */
+    static final class Watch implements AutoCloseable {
+
+        /**
+         * The parsing thread.
+         */
+        private final Thread watched;
+        /**
+         * Scheduled interrupt, guarded by this.
+         */
+        private ScheduledFuture<?> alarm;
+        /**
+         * Whether the thread was interrupted, guarded by this.
+         */
+        private boolean fired;
+        /**
+         * Whether the parse ended, guarded by this.
+         */
+        private boolean closed;
+
+        private Watch(final Thread watched) {
+            super();
+            this.watched = watched;
+        }
+
+        private synchronized void fire() {
+            if (!closed) {
+                fired = true;
+                watched.interrupt();
+            }
+        }
+
+        /**
+         * Whether the parse exceeded its time budget.
+         *
+         * @return {@code true} if the thread was interrupted, else {@code false}
+         */
+        synchronized boolean isFired() {
+            return fired;
+        }
+
+        /**
+         * Stops watching and clears the interrupt if the watch fired.
+         * <p>
+         * Must be called by the watched thread.
+         * </p>
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+
+            if (null != alarm) {
+                alarm.cancel(false);
+            }
+
+            if (fired) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
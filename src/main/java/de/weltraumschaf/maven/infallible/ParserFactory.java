@@ -1,22 +1,59 @@
 package de.weltraumschaf.maven.infallible;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
+import java.io.InputStreamReader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import org.antlr.v4.runtime.ANTLRFileStream;
-import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
 import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
 import org.apache.commons.lang3.Validate;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 
 /**
  * This class abstracts the whole creation of an ANTLR4 generated parser with all dependencies.
+ * <p>
+ * The generated lexer and parser classes and their constructors are resolved once on construction. Creating a parser
+ * for a file only invokes the cached method handles, so no reflection is done per file.
+ * </p>
+ * <p>
+ * Files up to the streaming threshold are read completely into memory. Larger files are streamed: They are read
+ * through memory mapped windows, decoded and lexed on the fly with unbuffered char and token streams and the parser
+ * does not build a parse tree. So the needed heap stays constant regardless of the file size. Such a parser can not
+ * be rewound (see {@link #isStreaming(org.antlr.v4.runtime.Parser)}).
+ * </p>
+ * <p>
+ * Unless enabled in the {@link Options} the created parsers only validate their input and build no parse tree (see
+ * {@link Parser#setBuildParseTree(boolean)}), which saves the allocation of the tree nodes.
+ * </p>
+ * <p>
+ * Optionally all created parsers are profiling (see {@link Parser#setProfile(boolean)}).
+ * </p>
+ * <p>
+ * Optionally each thread reuses one lexer, token stream and parser for all files read into memory: They are reset
+ * to the next input instead of allocating new ones, which reduces the garbage of corpora with many small files. A
+ * reused parser is only valid until the next parser is created on the same thread. The reused instances pin the
+ * generated classes and thereby their class loader, so the thread which parsed must {@link #release()} them after the
+ * run. Worker threads release them when they terminate.
+ * </p>
+ * <p>
+ * All created parsers stop soon if their thread is interrupted (see {@link CancellableErrorStrategy}).
+ * </p>
  *
  * @since 1.0.0
  * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
@@ -24,21 +61,59 @@ import org.apache.maven.plugin.logging.Log;
 final class ParserFactory {
 
     /**
-     * Logging facility.
+     * Type of the lexer constructor handle.
      */
-    private final Log log;
+    private static final MethodType LEXER_CONSTRUCTOR = MethodType.methodType(Lexer.class, CharStream.class);
     /**
-     * Used to load generated ANTLR4 classes.
+     * Type of the parser constructor handle.
      */
-    private final ClassLoader classes;
+    private static final MethodType PARSER_CONSTRUCTOR = MethodType.methodType(Parser.class, TokenStream.class);
     /**
-     * Optional package name of generated classes.
+     * Files with more bytes are streamed.
      */
-    private final String packageName;
+    private final long streamingThreshold;
     /**
-     * NAme of the ANTLR4 grammar.
+     * Whether created parsers are profiling.
      */
-    private final String grammarName;
+    private final boolean profile;
+    /**
+     * Whether created parsers build a parse tree.
+     */
+    private final boolean buildParseTree;
+    /**
+     * The generated lexer class.
+     */
+    private final Class<? extends Lexer> lexerClass;
+    /**
+     * The generated parser class.
+     */
+    private final Class<? extends Parser> parserClass;
+    /**
+     * Creates a lexer for a {@link CharStream}.
+     */
+    private final MethodHandle lexerConstructor;
+    /**
+     * Creates a parser for a {@link TokenStream}.
+     */
+    private final MethodHandle parserConstructor;
+    /**
+     * The parser of each thread, {@code null} if parsers are not reused.
+     */
+    private final ThreadLocal<Recycled> recycled;
+
+    /**
+     * Convenience constructor with the {@link Options#DEFAULT default options}.
+     *
+     * @param log must not be {@code null}
+     * @param classes must not be {@code null}
+     * @param packageName must not be {@code null}
+     * @param grammarName must not be {@code null}, empty or blank
+     * @throws MojoExecutionException if the generated classes or their constructors can't be resolved
+     */
+    ParserFactory(final Log log, final ClassLoader classes, final String packageName, final String grammarName)
+        throws MojoExecutionException {
+        this(log, classes, packageName, grammarName, Options.DEFAULT);
+    }
 
     /**
      * Dedicated constructor.
@@ -47,59 +122,241 @@ final class ParserFactory {
      * @param classes must not be {@code null}
      * @param packageName must not be {@code null}
      * @param grammarName must not be {@code null}, empty or blank
+     * @param options must not be {@code null}
+     * @throws MojoExecutionException if the generated classes or their constructors can't be resolved
      */
-    ParserFactory(final Log log, final ClassLoader classes, final String packageName, final String grammarName) {
+    ParserFactory(
+        final Log log,
+        final ClassLoader classes,
+        final String packageName,
+        final String grammarName,
+        final Options options) throws MojoExecutionException {
         super();
-        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
-        this.classes = Validate.notNull(classes, "Parameter 'classes' must not be null!");
-        this.packageName = Validate.notNull(packageName, "Parameter 'packageName' must not be null!");
-        this.grammarName = Validate.notBlank(grammarName, "Parameter 'grammarName' must not be null, empty or blank!");
+        Validate.notNull(options, "Parameter 'options' must not be null!");
+        // Profiling statistics are collected per parser instance, so they must not mix files.
+        Validate.isTrue(!(options.profile && options.reuse), "Profiling parsers can not be reused!");
+        this.streamingThreshold = options.streamingThreshold;
+        this.profile = options.profile;
+        this.recycled = options.reuse ? new ThreadLocal<>() : null;
+        this.buildParseTree = options.buildParseTree;
+        Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(classes, "Parameter 'classes' must not be null!");
+        Validate.notNull(packageName, "Parameter 'packageName' must not be null!");
+        Validate.notBlank(grammarName, "Parameter 'grammarName' must not be null, empty or blank!");
+
+        final String lexerClassName = generateClassName(packageName, grammarName, "Lexer");
+        log.info(String.format("Using lexer class '%s'.", lexerClassName));
+        lexerClass = createClass(classes, lexerClassName, Lexer.class);
+        lexerConstructor = createConstructor(lexerClass, CharStream.class, LEXER_CONSTRUCTOR);
+
+        final String parserClassName = generateClassName(packageName, grammarName, "Parser");
+        log.info(String.format("Using parser class '%s'.", parserClassName));
+        parserClass = createClass(classes, parserClassName, Parser.class);
+        parserConstructor = createConstructor(parserClass, TokenStream.class, PARSER_CONSTRUCTOR);
     }
 
+    /**
+     * The generated lexer class.
+     *
+     * @return never {@code null}
+     */
+    Class<? extends Lexer> getLexerClass() {
+        return lexerClass;
+    }
+
+    /**
+     * The generated parser class.
+     *
+     * @return never {@code null}
+     */
+    Class<? extends Parser> getParserClass() {
+        return parserClass;
+    }
+
+    /**
+     * Creates a parser for the given file.
+     * <p>
+     * Files with more bytes than the streaming threshold are streamed.
+     * </p>
+     *
+     * @param sourcetoParse must not be {@code null}
+     * @param encoding must not be {@code null}
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException if the file can't be read or the parser can't be created
+     */
     Parser create(final Path sourcetoParse, final String encoding) throws MojoExecutionException {
         try {
-            final Lexer lexer = (Lexer) createLexerConstructor().newInstance(new ANTLRFileStream(sourcetoParse.toString(), encoding));
-            final Parser parser = (Parser) createParserConstructor().newInstance(new CommonTokenStream(lexer));
-            parser.setErrorHandler(new BailErrorStrategy());
-            return parser;
-        } catch (final InstantiationException ex) {
-            throw new MojoExecutionException(String.format("TODO (%s)", ex.getMessage()), ex);
-        } catch (final IllegalAccessException ex) {
-            throw new MojoExecutionException(String.format("TODO (%s)", ex.getMessage()), ex);
-        } catch (final IllegalArgumentException ex) {
-            throw new MojoExecutionException(String.format("TODO (%s)", ex.getMessage()), ex);
-        } catch (final InvocationTargetException ex) {
-            throw new MojoExecutionException(String.format("TODO (%s)", ex.getMessage()), ex);
+            final long size = Files.size(sourcetoParse);
+
+            if (size > streamingThreshold) {
+                return createStreaming(sourcetoParse, size, encoding);
+            }
+
+            return create(new ANTLRFileStream(sourcetoParse.toString(), encoding));
         } catch (final IOException ex) {
-            throw new MojoExecutionException(String.format("TODO (%s)", ex.getMessage()), ex);
+            throw new MojoExecutionException(
+                String.format("Can't read file '%s' (%s)!", sourcetoParse, ex.getMessage()), ex);
         }
     }
 
-    final Constructor<? extends Lexer> createLexerConstructor() throws MojoExecutionException {
-        final String lexerClassName = generateClassName(packageName, grammarName, "Lexer");
-        log.info(String.format("Using lexer class '%s'.", lexerClassName));
-        final Class<? extends Lexer> lexerClass = createClass(lexerClassName, Lexer.class);
+    private Parser createStreaming(final Path sourcetoParse, final long size, final String encoding)
+        throws MojoExecutionException {
+        final CharStream input = openStreaming(sourcetoParse, size, encoding);
 
         try {
-            return lexerClass.getConstructor(CharStream.class);
-        } catch (final NoSuchMethodException | SecurityException ex) {
-            throw new MojoExecutionException(String.format("Can not get constructor for '%s'!", lexerClassName));
+            final Lexer lexer = (Lexer) lexerConstructor.invokeExact((CharStream) input);
+            // The char stream discards consumed input, so tokens must copy their text.
+            lexer.setTokenFactory(new CommonTokenFactory(true));
+            final Parser parser = (Parser) parserConstructor.invokeExact(
+                (TokenStream) new CancellableUnbufferedTokenStream(lexer));
+            parser.setBuildParseTree(false);
+            parser.setErrorHandler(new CancellableErrorStrategy());
+            parser.setProfile(profile);
+            return parser;
+        } catch (final Error ex) {
+            throw ex;
+        } catch (final Throwable ex) {
+            throw new MojoExecutionException(
+                String.format("Can't create parser for '%s' (%s)!", input.getSourceName(), ex.getMessage()), ex);
         }
     }
 
-    final Constructor<? extends Parser> createParserConstructor() throws MojoExecutionException {
-        final String parserClassName = generateClassName(packageName, grammarName, "Parser");
-        log.info(String.format("Using parser class '%s'.", parserClassName));
-        final Class<? extends Parser> parserClass = createClass(parserClassName, Parser.class);
+    /**
+     * Opens the given file as char stream which is decoded on the fly through memory mapped windows.
+     *
+     * @param sourcetoParse must not be {@code null}
+     * @param size size of the file in bytes, not negative
+     * @param encoding must not be {@code null}
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException if the encoding is not supported
+     */
+    static CharStream openStreaming(final Path sourcetoParse, final long size, final String encoding)
+        throws MojoExecutionException {
+        final UnbufferedCharStream input = new UnbufferedCharStream(
+            new InputStreamReader(new MappedFileInputStream(sourcetoParse, size), charset(encoding)));
+        input.name = sourcetoParse.toString();
+        return input;
+    }
 
+    /**
+     * Resolves the given encoding.
+     *
+     * @param encoding must not be {@code null}
+     * @return never {@code null}
+     * @throws MojoExecutionException if the encoding is not supported
+     */
+    static Charset charset(final String encoding) throws MojoExecutionException {
         try {
-            return parserClass.getConstructor(TokenStream.class);
-        } catch (final NoSuchMethodException | SecurityException ex) {
-            throw new MojoExecutionException(String.format("Can not get constructor for '%s'!", parserClassName));
+            return Charset.forName(encoding);
+        } catch (final IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            throw new MojoExecutionException(
+                String.format("Unsupported encoding '%s' (%s)!", encoding, ex.getMessage()), ex);
         }
     }
 
-    private <U> Class<? extends U> createClass(final String name, final Class<U> superType) throws MojoExecutionException {
+    /**
+     * Whether the given parser was created for a streamed file.
+     * <p>
+     * The input of such a parser can not be rewound, so it can not parse the same input a second time.
+     * </p>
+     *
+     * @param parser must not be {@code null}
+     * @return {@code true} if streamed, else {@code false}
+     */
+    static boolean isStreaming(final Parser parser) {
+        return Validate.notNull(parser, "Parameter 'parser' must not be null!").getInputStream()
+            instanceof UnbufferedTokenStream;
+    }
+
+    /**
+     * Whether each thread reuses its parser.
+     *
+     * @return {@code true} if reused, else {@code false}
+     */
+    boolean isReuse() {
+        return null != recycled;
+    }
+
+    /**
+     * Whether parsers for inputs in memory build a parse tree.
+     * <p>
+     * Parsers for streamed files never build a parse tree.
+     * </p>
+     *
+     * @return {@code true} if built, else {@code false}
+     */
+    boolean isBuildParseTree() {
+        return buildParseTree;
+    }
+
+    /**
+     * Releases the lexer, token stream and parser reused by the current thread.
+     * <p>
+     * Does nothing if parsers are not reused. The next parser created on the current thread is a new one.
+     * </p>
+     */
+    void release() {
+        if (null != recycled) {
+            recycled.remove();
+        }
+    }
+
+    /**
+     * Creates a parser for the given input.
+     * <p>
+     * If parsers are reused, the parser of the current thread is reset to the given input.
+     * </p>
+     *
+     * @param input must not be {@code null}
+     * @return never {@code null}, new instance unless reused
+     * @throws MojoExecutionException if the parser can't be created
+     */
+    Parser create(final CharStream input) throws MojoExecutionException {
+        final Parser parser;
+
+        if (null == recycled) {
+            parser = createNew(input);
+        } else if (null == recycled.get()) {
+            parser = createNew(input);
+            recycled.set(new Recycled(parser));
+        } else {
+            parser = recycled.get().reset(input);
+        }
+
+        parser.setBuildParseTree(buildParseTree);
+        return parser;
+    }
+
+    private Parser createNew(final CharStream input) throws MojoExecutionException {
+        try {
+            final Lexer lexer = (Lexer) lexerConstructor.invokeExact(input);
+            final Parser parser = (Parser) parserConstructor.invokeExact(
+                (TokenStream) new CancellableCommonTokenStream(lexer));
+            parser.setErrorHandler(new CancellableErrorStrategy());
+            parser.setProfile(profile);
+            return parser;
+        } catch (final Error ex) {
+            throw ex;
+        } catch (final Throwable ex) {
+            throw new MojoExecutionException(
+                String.format("Can't create parser for '%s' (%s)!", input.getSourceName(), ex.getMessage()), ex);
+        }
+    }
+
+    static MethodHandle createConstructor(
+        final Class<?> type, final Class<?> parameter, final MethodType handleType) throws MojoExecutionException {
+        try {
+            return MethodHandles.publicLookup()
+                .findConstructor(type, MethodType.methodType(void.class, parameter))
+                .asType(handleType);
+        } catch (final NoSuchMethodException | IllegalAccessException | SecurityException ex) {
+            throw new MojoExecutionException(
+                String.format("Can not get constructor for '%s' (%s)!", type.getName(), ex.getMessage()), ex);
+        }
+    }
+
+    static <U> Class<? extends U> createClass(
+        final ClassLoader classes, final String name, final Class<U> superType) throws MojoExecutionException {
         try {
             return classes.loadClass(name).asSubclass(superType);
         } catch (final ClassNotFoundException ex) {
@@ -118,4 +375,158 @@ final class ParserFactory {
         buffer.append(grammarName).append(suffix);
         return buffer.toString();
     }
+
+    /**
+     * Options of the created parsers.
+     * <p>
+     * By default files are never streamed and parsers neither profile, nor are reused, nor build a parse tree. This
+     * is the configuration of the mojo's defaults except the streaming threshold. This class is immutable.
+     * </p>
+     */
+    static final class Options {
+
+        /**
+         * Never streams and creates a new parser without parse tree for each input.
+         */
+        static final Options DEFAULT = new Options(Long.MAX_VALUE, false, false, false);
+
+        /**
+         * Files with more bytes are streamed.
+         */
+        private final long streamingThreshold;
+        /**
+         * Whether created parsers are profiling.
+         */
+        private final boolean profile;
+        /**
+         * Whether each thread reuses its parser for inputs in memory.
+         */
+        private final boolean reuse;
+        /**
+         * Whether parsers for inputs in memory build a parse tree.
+         */
+        private final boolean buildParseTree;
+
+        private Options(
+            final long streamingThreshold, final boolean profile, final boolean reuse, final boolean buildParseTree) {
+            super();
+            this.streamingThreshold = streamingThreshold;
+            this.profile = profile;
+            this.reuse = reuse;
+            this.buildParseTree = buildParseTree;
+        }
+
+        /**
+         * Copies these options with the given streaming threshold.
+         *
+         * @param threshold files with more bytes are streamed, must not be negative
+         * @return never {@code null}
+         */
+        Options withStreamingThreshold(final long threshold) {
+            Validate.isTrue(threshold >= 0, "Parameter 'threshold' must not be negative!");
+            return new Options(threshold, profile, reuse, buildParseTree);
+        }
+
+        /**
+         * Copies these options with the given profiling.
+         *
+         * @param enabled {@code true} if created parsers are profiling, else {@code false}
+         * @return never {@code null}
+         */
+        Options withProfile(final boolean enabled) {
+            return new Options(streamingThreshold, enabled, reuse, buildParseTree);
+        }
+
+        /**
+         * Copies these options with the given reuse.
+         *
+         * @param enabled {@code true} if each thread reuses its parser for inputs in memory, else {@code false}
+         * @return never {@code null}
+         */
+        Options withReuse(final boolean enabled) {
+            return new Options(streamingThreshold, profile, enabled, buildParseTree);
+        }
+
+        /**
+         * Copies these options with the given parse tree building.
+         *
+         * @param enabled {@code true} if parsers for inputs in memory build a parse tree, else {@code false}
+         * @return never {@code null}
+         */
+        Options withParseTree(final boolean enabled) {
+            return new Options(streamingThreshold, profile, reuse, enabled);
+        }
+    }
+
+    /**
+     * Lexer, token stream and parser reused by one thread.
+     */
+    private static final class Recycled {
+
+        /**
+         * Lexes the current input.
+         */
+        private final Lexer lexer;
+        /**
+         * Buffers the tokens of the current input.
+         */
+        private final CancellableCommonTokenStream tokens;
+        /**
+         * Parses the current input.
+         */
+        private final Parser parser;
+
+        private Recycled(final Parser parser) {
+            super();
+            this.parser = parser;
+            this.tokens = (CancellableCommonTokenStream) parser.getInputStream();
+            this.lexer = (Lexer) tokens.getTokenSource();
+        }
+
+        private Parser reset(final CharStream input) {
+            lexer.setInputStream(input);
+            tokens.setTokenSource(lexer);
+            // Also resets the parser and its error strategy.
+            parser.setInputStream(tokens);
+            return parser;
+        }
+    }
+
+    /**
+     * Buffered token stream which stops consuming if the thread was interrupted.
+     */
+    private static final class CancellableCommonTokenStream extends CommonTokenStream {
+
+        private CancellableCommonTokenStream(final TokenSource tokenSource) {
+            super(tokenSource);
+        }
+
+        @Override
+        public void setTokenSource(final TokenSource tokenSource) {
+            super.setTokenSource(tokenSource);
+            fetchedEOF = false;
+        }
+
+        @Override
+        public void consume() {
+            CancellableErrorStrategy.checkInterrupted(getSourceName());
+            super.consume();
+        }
+    }
+
+    /**
+     * Unbuffered token stream which stops consuming if the thread was interrupted.
+     */
+    private static final class CancellableUnbufferedTokenStream extends UnbufferedTokenStream<Token> {
+
+        private CancellableUnbufferedTokenStream(final TokenSource tokenSource) {
+            super(tokenSource);
+        }
+
+        @Override
+        public void consume() {
+            CancellableErrorStrategy.checkInterrupted(getSourceName());
+            super.consume();
+        }
+    }
 }
@@ -1,8 +1,13 @@
 package de.weltraumschaf.maven.infallible;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CancellationException;
+import org.antlr.v4.runtime.BufferedTokenStream;
 import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.lang3.Validate;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -10,6 +15,24 @@ import org.apache.maven.plugin.logging.Log;
 
 /**
  * THis class abstracts the start rule invocation on a parser instance.
+ * <p>
+ * The start rule method is resolved once on construction and invoked per parser through a cached method handle.
+ * </p>
+ * <p>
+ * With {@link PredictionStrategy#TWO_STAGE} the parser first runs with SLL prediction. Only if that fails the start
+ * rule is invoked again with full LL prediction, either on the reset parser or on a freshly created one, if the
+ * input of the parser can not be rewound.
+ * </p>
+ * <p>
+ * Each result carries the measured lex and parse time and the number of tokens (see {@link Metrics}). If the parser
+ * buffers all tokens, the input is lexed completely before the start rule is invoked, so lexing is measured separately.
+ * Otherwise lexing is included in the parse time.
+ * </p>
+ * <p>
+ * If the invoking thread is interrupted, the invocation stops with a {@link CancellationException} (see
+ * {@link CancellableErrorStrategy}). Optionally a {@link ParseWatchdog} interrupts invocations which exceed their time
+ * budget, they result in {@link Result#timedOut(java.lang.String)}.
+ * </p>
  *
  * @since 1.0.0
  * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
@@ -17,61 +40,121 @@ import org.apache.maven.plugin.logging.Log;
 final class ParserInvoker {
 
     /**
-     * Logging facility.
+     * Type of the start rule handle: The return value of the rule is dropped.
      */
-    private final Log log;
+    private static final MethodType START_RULE = MethodType.methodType(void.class, Parser.class);
+
     /**
-     * PArser on which the method is invoked.
+     * Logging facility.
      */
-    private final Parser parser;
+    private final Log log;
     /**
      * Name of invoked method.
      */
     private final String methodName;
+    /**
+     * Invokes the start rule on a parser.
+     */
+    private final MethodHandle startRule;
+    /**
+     * How the parser predicts alternatives.
+     */
+    private final PredictionStrategy strategy;
+    /**
+     * Merges the statistics of profiling parsers, {@code null} if not profiling.
+     */
+    private final DecisionProfile profile;
+    /**
+     * Aborts invocations which exceed their time budget, {@code null} if there is no budget.
+     */
+    private final ParseWatchdog watchdog;
 
     /**
-     * Dedicated constructor.
+     * Convenience constructor for {@link PredictionStrategy#LL}.
      *
      * @param log must not be {@code null}
-     * @param parser not be {@code null}
+     * @param parserClass not be {@code null}
      * @param methodName not be {@code null}
+     * @throws MojoExecutionException if the method can't be resolved on the given parser class
      */
-    ParserInvoker(final Log log, final Parser parser, final String methodName) {
-        super();
-        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
-        this.parser = Validate.notNull(parser, "Parameter 'parser' must not be null!");
-        this.methodName = Validate.notNull(methodName, "Parameter 'methodName' must not be null!");
+    ParserInvoker(final Log log, final Class<? extends Parser> parserClass, final String methodName)
+        throws MojoExecutionException {
+        this(log, parserClass, methodName, PredictionStrategy.LL);
     }
 
     /**
-     * Invokes the given method on the given parser.
+     * Convenience constructor which merges no profiling statistics.
      *
-     * @return never {@code null}, always new instance
-     * @throws MojoExecutionException on any reflection error during invocation
+     * @param log must not be {@code null}
+     * @param parserClass not be {@code null}
+     * @param methodName not be {@code null}
+     * @param strategy not be {@code null}
+     * @throws MojoExecutionException if the method can't be resolved on the given parser class
      */
-    Result invoke() throws MojoExecutionException {
-        final String fileToTest = parser.getSourceName();
+    ParserInvoker(
+        final Log log,
+        final Class<? extends Parser> parserClass,
+        final String methodName,
+        final PredictionStrategy strategy) throws MojoExecutionException {
+        this(log, parserClass, methodName, strategy, null);
+    }
 
+    /**
+     * Convenience constructor without time budget.
+     *
+     * @param log must not be {@code null}
+     * @param parserClass not be {@code null}
+     * @param methodName not be {@code null}
+     * @param strategy not be {@code null}
+     * @param profile may be {@code null}, if not the statistics of each invoked parser are merged into it
+     * @throws MojoExecutionException if the method can't be resolved on the given parser class
+     */
+    ParserInvoker(
+        final Log log,
+        final Class<? extends Parser> parserClass,
+        final String methodName,
+        final PredictionStrategy strategy,
+        final DecisionProfile profile) throws MojoExecutionException {
+        this(log, parserClass, methodName, strategy, profile, null);
+    }
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param log must not be {@code null}
+     * @param parserClass not be {@code null}
+     * @param methodName not be {@code null}
+     * @param strategy not be {@code null}
+     * @param profile may be {@code null}, if not the statistics of each invoked parser are merged into it
+     * @param watchdog may be {@code null}, if not each invocation is aborted when it exceeds the time budget
+     * @throws MojoExecutionException if the method can't be resolved on the given parser class
+     */
+    ParserInvoker(
+        final Log log,
+        final Class<? extends Parser> parserClass,
+        final String methodName,
+        final PredictionStrategy strategy,
+        final DecisionProfile profile,
+        final ParseWatchdog watchdog) throws MojoExecutionException {
+        super();
+        this.log = Validate.notNull(log, "Parameter 'log' must not be null!");
+        Validate.notNull(parserClass, "Parameter 'parserClass' must not be null!");
+        this.methodName = Validate.notNull(methodName, "Parameter 'methodName' must not be null!");
+        this.startRule = resolve(parserClass, methodName);
+        this.strategy = Validate.notNull(strategy, "Parameter 'strategy' must not be null!");
+        this.profile = profile;
+        this.watchdog = watchdog;
+    }
+
+    private static MethodHandle resolve(final Class<? extends Parser> parserClass, final String methodName)
+        throws MojoExecutionException {
         try {
-            final Method start = parser.getClass().getDeclaredMethod(methodName);
-            start.invoke(parser);
-            return Result.passed(fileToTest);
+            return MethodHandles.lookup().unreflect(parserClass.getDeclaredMethod(methodName)).asType(START_RULE);
         } catch (final IllegalAccessException ex) {
             throw new MojoExecutionException(
                 String.format("Can't access method '%s' on parser (%s)!",
                     methodName, ex.getMessage()),
                 ex);
-        } catch (final InvocationTargetException ex) {
-            if (ex.getTargetException() instanceof ParseCancellationException) {
-                final ParseCancellationException target = (ParseCancellationException) ex.getTargetException();
-                log.error(target.getMessage(), target);
-                return Result.failed(fileToTest, target);
-            } else {
-                throw new MojoExecutionException(
-                    String.format("Can't invoke method '%s' on target parser (%s)!",
-                        methodName, ex.getMessage()),
-                    ex);
-            }
         } catch (final NoSuchMethodException ex) {
             throw new MojoExecutionException(
                 String.format("Given parser has no method with name '%s' (%s)",
@@ -84,4 +167,159 @@ final class ParserInvoker {
                 ex);
         }
     }
+
+    /**
+     * Invokes the start rule on the given parser.
+     * <p>
+     * If a LL fallback is necessary the given parser is reset.
+     * </p>
+     *
+     * @param parser must not be {@code null}
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error during invocation which is not a parse error
+     */
+    Result invoke(final Parser parser) throws MojoExecutionException {
+        Validate.notNull(parser, "Parameter 'parser' must not be null!");
+        return invoke(parser, () -> {
+            parser.reset();
+            return parser;
+        });
+    }
+
+    /**
+     * Invokes the start rule on the given parser.
+     *
+     * @param parser must not be {@code null}
+     * @param reparse must not be {@code null}, provides the parser for the LL fallback
+     * @return never {@code null}, always new instance
+     * @throws MojoExecutionException on any error during invocation which is not a parse error
+     * @throws CancellationException if the invoking thread was interrupted
+     */
+    Result invoke(final Parser parser, final Reparse reparse) throws MojoExecutionException {
+        Validate.notNull(parser, "Parameter 'parser' must not be null!");
+        Validate.notNull(reparse, "Parameter 'reparse' must not be null!");
+
+        if (null == watchdog) {
+            return invokeMeasured(parser, reparse);
+        }
+
+        final ParseWatchdog.Watch watch = watchdog.watch();
+
+        try {
+            return invokeMeasured(parser, reparse);
+        } catch (final CancellationException ex) {
+            if (!watch.isFired()) {
+                throw ex;
+            }
+
+            log.error(String.format("Parsing '%s' timed out after %d ms!",
+                parser.getSourceName(), watchdog.getTimeoutMillis()));
+            return Result.timedOut(parser.getSourceName());
+        } finally {
+            watch.close();
+        }
+    }
+
+    private Result invokeMeasured(final Parser parser, final Reparse reparse) throws MojoExecutionException {
+        final long lexStart = System.nanoTime();
+        final TokenStream tokens = parser.getInputStream();
+
+        if (tokens instanceof BufferedTokenStream) {
+            ((BufferedTokenStream) tokens).fill();
+        }
+
+        CancellableErrorStrategy.checkInterrupted(parser.getSourceName());
+
+        final long parseStart = System.nanoTime();
+        // Remembers the parser of the LL fallback, because it may have its own token stream.
+        final Parser[] lastParser = {parser};
+        final Result result = invokeWithStrategy(parser, () -> {
+            lastParser[0] = reparse.parser();
+            return lastParser[0];
+        });
+        final long parseEnd = System.nanoTime();
+
+        if (null != profile) {
+            profile.add(parser);
+
+            if (lastParser[0] != parser) {
+                profile.add(lastParser[0]);
+            }
+        }
+
+        return result.withMetrics(new Metrics(
+            0, parseStart - lexStart, parseEnd - parseStart, countTokens(lastParser[0].getInputStream()), 0));
+    }
+
+    private static long countTokens(final TokenStream tokens) {
+        if (tokens instanceof BufferedTokenStream) {
+            return ((BufferedTokenStream) tokens).size();
+        }
+
+        return Math.max(0, tokens.index());
+    }
+
+    private Result invokeWithStrategy(final Parser parser, final Reparse reparse) throws MojoExecutionException {
+        final String fileToTest = parser.getSourceName();
+
+        if (strategy == PredictionStrategy.TWO_STAGE) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+            try {
+                invokeStartRule(parser);
+                return Result.passed(fileToTest);
+            } catch (final ParseCancellationException ex) {
+                log.debug(String.format("SLL prediction failed for '%s', retry with LL.", fileToTest));
+            }
+
+            final Parser retry = reparse.parser();
+            retry.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return invokeWithLl(retry).withFallback();
+        }
+
+        return invokeWithLl(parser);
+    }
+
+    private Result invokeWithLl(final Parser parser) throws MojoExecutionException {
+        final String fileToTest = parser.getSourceName();
+
+        try {
+            invokeStartRule(parser);
+            return Result.passed(fileToTest);
+        } catch (final ParseCancellationException ex) {
+            // Only keep the details, the exception references the parser and its whole input.
+            final Failure failure = Failure.of(ex);
+            log.error(String.format("%s: %s", fileToTest, failure.getMessage()));
+            return Result.failed(fileToTest, failure);
+        }
+    }
+
+    private void invokeStartRule(final Parser parser) throws MojoExecutionException {
+        try {
+            startRule.invokeExact(parser);
+        } catch (final CancellationException | Error ex) {
+            // Syntax errors and cancelled parses are handled by the caller.
+            throw ex;
+        } catch (final Throwable ex) {
+            throw new MojoExecutionException(
+                String.format("Can't invoke method '%s' on target parser (%s)!",
+                    methodName, ex.getMessage()),
+                ex);
+        }
+    }
+
+    /**
+     * Provides the parser to parse the same input again.
+     */
+    @FunctionalInterface
+    interface Reparse {
+
+        /**
+         * Get a parser which parses the input from the beginning.
+         *
+         * @return never {@code null}
+         * @throws MojoExecutionException if the parser can't be created
+         */
+        Parser parser() throws MojoExecutionException;
+    }
 }
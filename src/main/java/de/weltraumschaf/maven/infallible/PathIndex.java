@@ -0,0 +1,122 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Assigns consecutive indexes to file paths and stores them compact.
+ * <p>
+ * Each path is split into its directory and its file name. Directories are interned, so a directory shared by many
+ * files is only stored once and per file only the name and the index of its directory is stored.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class PathIndex {
+
+    /**
+     * Initial capacity for file paths.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Index of each interned directory.
+     */
+    private final Map<String, Integer> directoryIndexes = new HashMap<>();
+    /**
+     * Interned directories by index, including the trailing separator.
+     */
+    private final List<String> directories = new ArrayList<>();
+    /**
+     * Directory index of each path.
+     */
+    private int[] directoryOfPath = new int[INITIAL_CAPACITY];
+    /**
+     * File name of each path.
+     */
+    private String[] names = new String[INITIAL_CAPACITY];
+    /**
+     * Number of added paths.
+     */
+    private int size;
+
+    /**
+     * Adds the given path.
+     * <p>
+     * Duplicates are not cared, each added path gets a new index.
+     * </p>
+     *
+     * @param path must not be {@code null}
+     * @return the index of the path, not negative
+     */
+    synchronized int add(final String path) {
+        Validate.notNull(path, "Parameter 'path' must not be null!");
+
+        if (size == names.length) {
+            directoryOfPath = Arrays.copyOf(directoryOfPath, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+
+        final int nameStart = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1;
+        final String directory = path.substring(0, nameStart);
+        Integer directoryIndex = directoryIndexes.get(directory);
+
+        if (null == directoryIndex) {
+            directoryIndex = directories.size();
+            directories.add(directory);
+            directoryIndexes.put(directory, directoryIndex);
+        }
+
+        directoryOfPath[size] = directoryIndex;
+        names[size] = path.substring(nameStart);
+        return size++;
+    }
+
+    /**
+     * Get the path with the given index.
+     *
+     * @param index must be less than {@link #size()}
+     * @return never {@code null}
+     */
+    synchronized String get(final int index) {
+        Validate.isTrue(index >= 0 && index < size, "Parameter 'index' must be in range [0, %d)!", size);
+        return directories.get(directoryOfPath[index]) + names[index];
+    }
+
+    /**
+     * Get the directory of the path with the given index.
+     *
+     * @param index must be less than {@link #size()}
+     * @return never {@code null}, empty if the path has no directory, else with trailing separator
+     */
+    synchronized String getDirectory(final int index) {
+        Validate.isTrue(index >= 0 && index < size, "Parameter 'index' must be in range [0, %d)!", size);
+        return directories.get(directoryOfPath[index]);
+    }
+
+    /**
+     * Number of added paths.
+     *
+     * @return not negative
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Number of distinct directories of the added paths.
+     *
+     * @return not negative
+     */
+    synchronized int countDirectories() {
+        return directories.size();
+    }
+}
@@ -0,0 +1,72 @@
+package de.weltraumschaf.maven.infallible;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * How the parser predicts alternatives.
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+enum PredictionStrategy {
+
+    /**
+     * Parse with ANTLR's default full LL prediction.
+     */
+    LL("ll"),
+    /**
+     * Parse with the faster SLL prediction first and only re-parse with full LL if SLL fails.
+     * <p>
+     * A file is only reported as failed if the LL parse fails too.
+     * </p>
+     */
+    TWO_STAGE("twoStage");
+
+    /**
+     * Name used in the plugin configuration.
+     */
+    private final String configName;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param configName must not be {@code null}
+     */
+    private PredictionStrategy(final String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Name used in the plugin configuration.
+     *
+     * @return never {@code null}
+     */
+    String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Get the strategy for the given name from the plugin configuration.
+     * <p>
+     * The name is matched case insensitive.
+     * </p>
+     *
+     * @param configName must not be {@code null}
+     * @return never {@code null}
+     * @throws MojoExecutionException if there is no strategy with the given name
+     */
+    static PredictionStrategy forConfigName(final String configName) throws MojoExecutionException {
+        Validate.notNull(configName, "Parameter 'configName' must not be null!");
+
+        for (final PredictionStrategy strategy : values()) {
+            if (strategy.configName.equalsIgnoreCase(configName.trim())) {
+                return strategy;
+            }
+        }
+
+        throw new MojoExecutionException(
+            String.format("Unknown prediction strategy '%s' (use '%s' or '%s')!",
+                configName, LL.configName, TWO_STAGE.configName));
+    }
+}
@@ -0,0 +1,757 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Reads and decodes the found files in the background while the files read before are parsed.
+ * <p>
+ * A pool of I/O threads takes the files from a {@link FileDiscovery}, reads each one through a reused byte buffer and
+ * decodes it into a pooled char array. The iterator returns one {@link Slot} per file in the order they are loaded and
+ * the parse stage takes the decoded content from it. There are as many char arrays as files may be loaded but not
+ * released, so the I/O threads wait while all are in use and read at most that many files ahead. The I/O threads
+ * also wait while the loaded but not released files have more than {@value #CAPACITY} bytes, so large files (e.g.
+ * the first ones when the longest are parsed first) do not all occupy the heap at once.
+ * </p>
+ * <p>
+ * Each slot holds the content of its own position in the order, so a file which occurs twice is loaded twice and each
+ * char array goes back to the pool once its slot is released.
+ * </p>
+ * <p>
+ * Files with more bytes than the streaming threshold and files which can't be read are not loaded: The parse stage
+ * opens them itself, so that it streams them or reports the error as before. The content of archive entries is
+ * already read by the discovery and only decoded.
+ * </p>
+ * <p>
+ * After {@link #stop()} the remaining files are still iterated, so that they can be counted, but no longer loaded.
+ * The instance must be closed to stop the background threads.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ReadAhead implements Iterable<ReadAhead.Slot>, AutoCloseable {
+
+    /**
+     * Marks the end of the loaded files in the queue, no found file has an empty path.
+     */
+    private static final Slot END = new Slot("", null);
+    /**
+     * Larger buffers are not kept for the next file, so one huge file does not occupy the heap until the end.
+     */
+    static final int MAX_POOLED_SIZE = 4 * 1024 * 1024;
+    /**
+     * Bytes of the files which may be loaded but not released.
+     */
+    static final long CAPACITY = 64L * 1024 * 1024;
+
+    /**
+     * Where the files come from.
+     */
+    private final FileDiscovery files;
+    /**
+     * Iterates the files of {@link #files} in the order they are loaded, guarded by itself.
+     */
+    private final Iterator<String> found;
+    /**
+     * Encoding of the files.
+     */
+    private final Charset encoding;
+    /**
+     * Files with more bytes are not loaded.
+     */
+    private final long streamingThreshold;
+    /**
+     * Whether the fingerprint of each loaded file is computed.
+     */
+    private final boolean fingerprints;
+    /**
+     * Char arrays not in use and the bytes of the loaded files, both limit the read ahead.
+     */
+    private final Pool pool;
+    /**
+     * The loaded files not iterated yet in the order they are loaded, terminated by {@link #END}.
+     */
+    private final BlockingQueue<Slot> ready = new LinkedBlockingQueue<>();
+    /**
+     * Whether the remaining files are iterated without loading them.
+     */
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    /**
+     * Number of I/O threads not finished yet.
+     */
+    private final AtomicInteger running;
+    /**
+     * Reads the files.
+     */
+    private final ExecutorService readers;
+    /**
+     * Whether the iterator was already created.
+     */
+    private boolean iterated;
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Use {@link #start(de.weltraumschaf.maven.infallible.FileDiscovery, java.lang.Iterable, java.nio.charset.Charset,
+     * long, boolean, int, long, int)} instead.
+     * </p>
+     */
+    private ReadAhead(
+        final FileDiscovery files,
+        final Iterable<String> order,
+        final Charset encoding,
+        final long streamingThreshold,
+        final boolean fingerprints,
+        final int depth,
+        final long capacity,
+        final int threads) {
+        super();
+        this.files = Validate.notNull(files, "Parameter 'files' must not be null!");
+        this.found = Validate.notNull(order, "Parameter 'order' must not be null!").iterator();
+        this.encoding = Validate.notNull(encoding, "Parameter 'encoding' must not be null!");
+        Validate.isTrue(streamingThreshold >= 0, "Parameter 'streamingThreshold' must not be negative!");
+        this.streamingThreshold = streamingThreshold;
+        this.fingerprints = fingerprints;
+        Validate.isTrue(depth > 0, "Parameter 'depth' must be greater than 0!");
+        Validate.isTrue(capacity > 0, "Parameter 'capacity' must be greater than 0!");
+        Validate.isTrue(threads > 0, "Parameter 'threads' must be greater than 0!");
+        this.pool = new Pool(depth, capacity);
+        this.running = new AtomicInteger(threads);
+        this.readers = Executors.newFixedThreadPool(threads, new ReaderThreadFactory());
+    }
+
+    /**
+     * Starts to load the files found by the given discovery.
+     *
+     * @param files must not be {@code null}, not iterated yet
+     * @param encoding must not be {@code null}
+     * @param streamingThreshold files with more bytes are not loaded, must not be negative
+     * @param fingerprints whether the fingerprint of each loaded file is computed (see {@link Loaded#getFingerprint()})
+     * @param depth number of files which may be loaded but not released, must be greater than 0
+     * @param threads number of files read concurrently, must be greater than 0
+     * @return never {@code null}
+     */
+    static ReadAhead start(
+        final FileDiscovery files,
+        final Charset encoding,
+        final long streamingThreshold,
+        final boolean fingerprints,
+        final int depth,
+        final int threads) {
+        return start(files, files, encoding, streamingThreshold, fingerprints, depth, CAPACITY, threads);
+    }
+
+    /**
+     * Starts to load the files found by the given discovery in the given order.
+     *
+     * @param files must not be {@code null}
+     * @param order must not be {@code null}, the files of the discovery, iterated once
+     * @param encoding must not be {@code null}
+     * @param streamingThreshold files with more bytes are not loaded, must not be negative
+     * @param fingerprints whether the fingerprint of each loaded file is computed (see {@link Loaded#getFingerprint()})
+     * @param depth number of files which may be loaded but not released, must be greater than 0
+     * @param capacity bytes of the files which may be loaded but not released, must be greater than 0, a larger file
+     * is loaded if no other is
+     * @param threads number of files read concurrently, must be greater than 0
+     * @return never {@code null}
+     */
+    static ReadAhead start(
+        final FileDiscovery files,
+        final Iterable<String> order,
+        final Charset encoding,
+        final long streamingThreshold,
+        final boolean fingerprints,
+        final int depth,
+        final long capacity,
+        final int threads) {
+        final ReadAhead readAhead = new ReadAhead(
+            files, order, encoding, streamingThreshold, fingerprints, depth, capacity, threads);
+
+        for (int i = 0; i < threads; ++i) {
+            readAhead.readers.execute(readAhead::load);
+        }
+
+        return readAhead;
+    }
+
+    /**
+     * Iterates the files in the order they are loaded, blocks until the next one is loaded or all are loaded.
+     * <p>
+     * The content of each slot must be taken or released (see {@link Slot#release()}). This method may be called once.
+     * </p>
+     *
+     * @return never {@code null}
+     */
+    @Override
+    public synchronized Iterator<Slot> iterator() {
+        Validate.validState(!iterated, "The loaded files may only be iterated once!");
+        iterated = true;
+        return new LoadedFiles();
+    }
+
+    /**
+     * Stops loading, the remaining files are iterated without content.
+     * <p>
+     * Files already loaded keep their content until released.
+     * </p>
+     */
+    void stop() {
+        stopped.set(true);
+    }
+
+    /**
+     * Stops loading and releases the content of the files not iterated yet.
+     * <p>
+     * Does not close the discovery.
+     * </p>
+     */
+    @Override
+    public void close() {
+        readers.shutdownNow();
+        Slot slot;
+
+        while (null != (slot = ready.poll())) {
+            slot.release();
+        }
+    }
+
+    /**
+     * Loads the next files until all are iterated, runs in one I/O thread.
+     */
+    private void load() {
+        final Loader loader = new Loader();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final char[] chars = stopped.get() ? null : pool.take();
+                Loaded content = null;
+
+                try {
+                    final String file = next();
+
+                    if (null == file) {
+                        return;
+                    }
+
+                    content = null == chars || stopped.get() ? null : load(file, chars, loader);
+                    ready.add(new Slot(file, content));
+                } finally {
+                    if (null == content && null != chars) {
+                        pool.put(chars);
+                    }
+                }
+            }
+        } catch (final InterruptedException ex) {
+            // Closed while loading.
+            Thread.currentThread().interrupt();
+        } finally {
+            if (0 == running.decrementAndGet()) {
+                ready.add(END);
+            }
+        }
+    }
+
+    private String next() {
+        synchronized (found) {
+            return found.hasNext() ? found.next() : null;
+        }
+    }
+
+    /**
+     * Loads one file into the given chars, returns {@code null} if the parse stage must open it itself.
+     */
+    private Loaded load(final String file, final char[] chars, final Loader loader) {
+        final long readStart = System.nanoTime();
+        final byte[] entry = files.takeContent(file);
+        final String name;
+        final ByteBuffer bytes;
+
+        try {
+            if (null == entry) {
+                final Path path = Paths.get(file).toAbsolutePath();
+                name = path.toString();
+                bytes = loader.read(path, streamingThreshold);
+
+                if (null == bytes) {
+                    return null;
+                }
+            } else {
+                // Archive entries are already named with the absolute archive path.
+                name = file;
+                bytes = ByteBuffer.wrap(entry);
+            }
+
+            final String fingerprint = fingerprints ? Fingerprint.ofBytes(bytes) : null;
+            final long size = bytes.remaining();
+            final long readNanos = System.nanoTime() - readStart;
+            // Waits until the file fits, so the decoded chars stay within the capacity.
+            pool.reserve(size);
+
+            try {
+                final long decodeStart = System.nanoTime();
+                final CharBuffer decoded = loader.decode(bytes, chars);
+                return new Loaded(name, decoded.array(), decoded.limit(),
+                    readNanos + System.nanoTime() - decodeStart, size, fingerprint, pool);
+            } catch (final RuntimeException ex) {
+                pool.free(size);
+                throw ex;
+            }
+        } catch (final IOException | MojoExecutionException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Takes the loaded files from the queue.
+     */
+    private final class LoadedFiles implements Iterator<Slot> {
+
+        /**
+         * The next file, {@code null} if not taken yet.
+         */
+        private Slot next;
+
+        @Override
+        public boolean hasNext() {
+            if (null == next) {
+                try {
+                    next = ready.take();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    next = END;
+                }
+            }
+
+            return END != next;
+        }
+
+        @Override
+        public Slot next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final Slot file = next;
+            next = null;
+            return file;
+        }
+    }
+
+    /**
+     * One iterated file and its content, if it was loaded.
+     */
+    static final class Slot {
+
+        /**
+         * Name of the file as found by the discovery.
+         */
+        private final String file;
+        /**
+         * The content until taken, {@code null} if not loaded or already taken.
+         */
+        private final AtomicReference<Loaded> content;
+
+        /**
+         * Dedicated constructor.
+         *
+         * @param file must not be {@code null}
+         * @param content may be {@code null} if the file was not loaded
+         */
+        Slot(final String file, final Loaded content) {
+            super();
+            this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+            this.content = new AtomicReference<>(content);
+        }
+
+        /**
+         * Name of the file as found by the discovery.
+         *
+         * @return never {@code null}
+         */
+        String getFile() {
+            return file;
+        }
+
+        /**
+         * Takes the content of the file.
+         * <p>
+         * The content can be taken only once and must be released after parsing (see {@link Loaded#release()}).
+         * </p>
+         *
+         * @return {@code null} if the file was not loaded or is already taken, else the decoded content
+         */
+        Loaded take() {
+            return content.getAndSet(null);
+        }
+
+        /**
+         * Releases the content unless it is already taken.
+         */
+        void release() {
+            final Loaded taken = take();
+
+            if (null != taken) {
+                taken.release();
+            }
+        }
+    }
+
+    /**
+     * Reads and decodes files with buffers reused by one I/O thread.
+     */
+    private final class Loader {
+
+        /**
+         * Decodes into the pooled chars.
+         */
+        private final CharsetDecoder decoder = encoding.newDecoder()
+            // Like the readers used by ANTLR.
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        /**
+         * Reused for all files of this thread.
+         */
+        private ByteBuffer bytes = ByteBuffer.allocate(0);
+
+        /**
+         * Reads the given file, returns {@code null} if it has more bytes than the threshold.
+         */
+        private ByteBuffer read(final Path file, final long threshold) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final long size = channel.size();
+
+                if (size > threshold) {
+                    return null;
+                }
+
+                if (bytes.capacity() < size || bytes.capacity() > MAX_POOLED_SIZE) {
+                    bytes = ByteBuffer.allocate((int) size);
+                }
+
+                bytes.clear().limit((int) size);
+
+                int read = 0;
+
+                while (bytes.hasRemaining() && read >= 0) {
+                    read = channel.read(bytes);
+                }
+
+                bytes.flip();
+                return bytes;
+            }
+        }
+
+        /**
+         * Decodes the given bytes into the given chars or a larger array if they do not fit.
+         */
+        private CharBuffer decode(final ByteBuffer input, final char[] chars) {
+            final int maxChars = (int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte());
+            final CharBuffer output = CharBuffer.wrap(chars.length < maxChars ? new char[maxChars] : chars);
+            decoder.reset();
+            final CoderResult result = decoder.decode(input, output, true);
+            decoder.flush(output);
+            // Capacity for the maximum number of chars, so the output never overflows.
+            Validate.validState(!result.isOverflow(), "Decoded chars exceed the maximum chars per byte!");
+            output.flip();
+            return output;
+        }
+    }
+
+    /**
+     * The char arrays and the bytes of the loaded files, which are both limited.
+     */
+    static final class Pool {
+
+        /**
+         * Char arrays not in use.
+         */
+        private final BlockingQueue<char[]> arrays = new LinkedBlockingQueue<>();
+        /**
+         * Bytes of the loaded files which may not be exceeded, unless only one file is loaded.
+         */
+        private final long capacity;
+        /**
+         * Bytes of the loaded files not released yet, guarded by this.
+         */
+        private long reserved;
+
+        /**
+         * Dedicated constructor.
+         *
+         * @param depth number of char arrays, not negative
+         * @param capacity must be greater than 0
+         */
+        Pool(final int depth, final long capacity) {
+            super();
+            Validate.isTrue(depth >= 0, "Parameter 'depth' must not be negative!");
+            Validate.isTrue(capacity > 0, "Parameter 'capacity' must be greater than 0!");
+            this.capacity = capacity;
+
+            for (int i = 0; i < depth; ++i) {
+                arrays.add(new char[0]);
+            }
+        }
+
+        /**
+         * Takes a char array, waits until one is available.
+         */
+        private char[] take() throws InterruptedException {
+            return arrays.take();
+        }
+
+        /**
+         * Returns a char array which holds no content.
+         */
+        private void put(final char[] chars) {
+            arrays.add(chars.length > MAX_POOLED_SIZE ? new char[0] : chars);
+        }
+
+        /**
+         * Reserves the bytes of a file to load, waits while they exceed the capacity.
+         * <p>
+         * The bytes are freed when the loaded file is released (see {@link Loaded#release()}).
+         * </p>
+         *
+         * @param bytes not negative
+         * @throws InterruptedIOException if interrupted while waiting
+         */
+        synchronized void reserve(final long bytes) throws InterruptedIOException {
+            // A single file larger than the capacity is loaded if nothing else is.
+            while (reserved > 0 && reserved + bytes > capacity) {
+                try {
+                    wait();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Closed while loading!");
+                }
+            }
+
+            reserved += bytes;
+        }
+
+        /**
+         * Frees the reserved bytes of a file.
+         */
+        private synchronized void free(final long bytes) {
+            reserved -= bytes;
+            notifyAll();
+        }
+
+        /**
+         * Bytes of the loaded files not released yet.
+         *
+         * @return not negative
+         */
+        synchronized long getReserved() {
+            return reserved;
+        }
+
+        /**
+         * Returns the chars and frees the bytes of a released file.
+         */
+        private void release(final char[] chars, final long bytes) {
+            put(chars);
+            free(bytes);
+        }
+
+        /**
+         * Number of char arrays not in use.
+         *
+         * @return not negative
+         */
+        int countAvailable() {
+            return arrays.size();
+        }
+    }
+
+    /**
+     * The decoded content of one file.
+     * <p>
+     * The chars belong to the pool, so the content must not be used after it was released.
+     * </p>
+     */
+    static final class Loaded {
+
+        /**
+         * Absolute name of the file.
+         */
+        private final String file;
+        /**
+         * The decoded chars, only the first {@link #length} are valid.
+         */
+        private final char[] chars;
+        /**
+         * Number of valid chars.
+         */
+        private final int length;
+        /**
+         * Time to read and decode.
+         */
+        private final long readNanos;
+        /**
+         * Size of the undecoded file in bytes.
+         */
+        private final long size;
+        /**
+         * Fingerprint of the undecoded bytes, {@code null} if not computed.
+         */
+        private final String fingerprint;
+        /**
+         * Where the chars are returned and the size is freed.
+         */
+        private final Pool pool;
+        /**
+         * Whether the chars were already returned.
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Dedicated constructor.
+         *
+         * @param file must not be {@code null}
+         * @param chars must not be {@code null}
+         * @param length number of valid chars, in range [0, {@code chars.length}]
+         * @param readNanos time to read and decode
+         * @param size size of the undecoded file in bytes
+         * @param fingerprint may be {@code null}
+         * @param pool must not be {@code null}, where {@code size} bytes are reserved
+         */
+        Loaded(
+            final String file,
+            final char[] chars,
+            final int length,
+            final long readNanos,
+            final long size,
+            final String fingerprint,
+            final Pool pool) {
+            super();
+            this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+            this.chars = Validate.notNull(chars, "Parameter 'chars' must not be null!");
+            Validate.isTrue(length >= 0 && length <= chars.length, "Parameter 'length' out of range!");
+            this.length = length;
+            this.readNanos = readNanos;
+            this.size = size;
+            this.fingerprint = fingerprint;
+            this.pool = Validate.notNull(pool, "Parameter 'pool' must not be null!");
+        }
+
+        /**
+         * Absolute name of the file, archive entries are named {@code archive!/entry}.
+         *
+         * @return never {@code null}
+         */
+        String getFile() {
+            return file;
+        }
+
+        /**
+         * Creates an input stream which shares the decoded chars without copying them.
+         *
+         * @return never {@code null}, always new instance
+         */
+        CharStream getInput() {
+            Validate.validState(!released.get(), "The content of '%s' is already released!", file);
+            final ANTLRInputStream input = new ANTLRInputStream(chars, length);
+            input.name = file;
+            return input;
+        }
+
+        /**
+         * Time to read and decode.
+         *
+         * @return not negative
+         */
+        long getReadNanos() {
+            return readNanos;
+        }
+
+        /**
+         * Size of the undecoded file.
+         *
+         * @return not negative
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Fingerprint of the undecoded bytes.
+         *
+         * @return {@code null} if not computed
+         */
+        String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * Returns the chars to the pool, so that the next file can be loaded.
+         * <p>
+         * Calling this more than once has no effect.
+         * </p>
+         */
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                pool.release(chars, size);
+            }
+        }
+    }
+
+    /**
+     * Parses one loaded file.
+     */
+    @FunctionalInterface
+    interface LoadedTask {
+
+        /**
+         * Parses the given loaded file.
+         *
+         * @param loaded never {@code null}, not released
+         * @return never {@code null}
+         * @throws MojoExecutionException on any error which is not a parse error
+         */
+        Result parse(Loaded loaded) throws MojoExecutionException;
+    }
+
+    /**
+     * Creates named daemon threads, so that they do not prevent the JVM from exiting.
+     */
+    private static final class ReaderThreadFactory implements ThreadFactory {
+
+        /**
+         * Used to number the threads.
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread reader = new Thread(r, "infallible-reader-" + count.incrementAndGet());
+            reader.setDaemon(true);
+            return reader;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package de.weltraumschaf.maven.infallible;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Objects;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.commons.lang3.Validate;
@@ -13,34 +16,49 @@ import org.apache.commons.lang3.Validate;
 final class Result {
 
     /**
-     * Indicates if the parse failed or not.
+     * Indicates if the parse passed, failed, timed out or was skipped.
      */
-    private final boolean failed;
+    private final State state;
     /**
      * The relative path string as collected from the Maven file set configuration.
      */
     private final String testedFile;
     /**
-     * Holds the error if {@link #failed} is {@code true}, else {@code null}.
+     * Describes the error if {@link #state} is {@link State#FAILED}, else {@code null}.
      */
-    private final ParseCancellationException error;
+    private final Failure failure;
+    /**
+     * Whether the file had to be re-parsed with full LL prediction after SLL prediction failed.
+     */
+    private final boolean fallback;
+    /**
+     * Measured effort to parse the file.
+     */
+    private final Metrics metrics;
 
     /**
      * Dedicated constructor.
      * <p>
-     * Use {@link #passed(java.lang.String)} or
-     * {@link #failed(java.lang.String, org.antlr.v4.runtime.misc.ParseCancellationException)} factory methods instead.
+     * Use {@link #passed(java.lang.String)}, {@link #cached(java.lang.String)},
+     * {@link #failed(java.lang.String, org.antlr.v4.runtime.misc.ParseCancellationException)},
+     * {@link #failed(java.lang.String, de.weltraumschaf.maven.infallible.Failure)} or
+     * {@link #timedOut(java.lang.String)} factory methods instead.
      * </p>
      *
-     * @param failed {@code true} if failed, else {@code false}
+     * @param state must not be {@code null}
      * @param testedFile must not be {@code null} or empty
-     * @param error may be {@code null}
+     * @param failure may be {@code null}
+     * @param fallback {@code true} if re-parsed with full LL, else {@code false}
+     * @param metrics must not be {@code null}
      */
-    private Result(boolean failed, String testedFile, ParseCancellationException error) {
+    private Result(
+        State state, String testedFile, Failure failure, boolean fallback, Metrics metrics) {
         super();
-        this.failed = failed;
+        this.state = Validate.notNull(state, "Parameter 'state' must not be null!");
         this.testedFile = Validate.notEmpty(testedFile, "Parameter 'testedFile' must not be null or empty!");
-        this.error = error;
+        this.failure = failure;
+        this.fallback = fallback;
+        this.metrics = Validate.notNull(metrics, "Parameter 'metrics' must not be null!");
     }
 
     /**
@@ -50,18 +68,86 @@ final class Result {
      * @return never {@code null}, always new instance
      */
     static Result passed(final String testedFile) {
-        return new Result(false, testedFile, null);
+        return new Result(State.PASSED, testedFile, null, false, Metrics.NONE);
+    }
+
+    /**
+     * Factory method to create a result for a file which was not parsed because it passed unchanged in the last run.
+     *
+     * @param testedFile must not be {@code null} or empty
+     * @return never {@code null}, always new instance
+     */
+    static Result cached(final String testedFile) {
+        return new Result(State.CACHED, testedFile, null, false, Metrics.NONE);
     }
 
     /**
      * Factory method to create a result for failed parse run.
+     * <p>
+     * Only the details of the error are kept (see {@link Failure#of(ParseCancellationException)}), so the error and
+     * the parser it references may be garbage collected.
+     * </p>
      *
      * @param testedFile must not be {@code null} or empty
      * @param error must not be {@code null}
      * @return never {@code null}, always new instance
      */
     static Result failed(final String testedFile, final ParseCancellationException error) {
-        return new Result(true, testedFile, Validate.notNull(error, "Parameter 'error' must not be null!"));
+        return failed(testedFile, Failure.of(error));
+    }
+
+    /**
+     * Factory method to create a result for failed parse run.
+     *
+     * @param testedFile must not be {@code null} or empty
+     * @param failure must not be {@code null}
+     * @return never {@code null}, always new instance
+     */
+    static Result failed(final String testedFile, final Failure failure) {
+        return new Result(
+            State.FAILED,
+            testedFile,
+            Validate.notNull(failure, "Parameter 'failure' must not be null!"),
+            false,
+            Metrics.NONE);
+    }
+
+    /**
+     * Factory method to create a result for a parse run which exceeded its time budget.
+     *
+     * @param testedFile must not be {@code null} or empty
+     * @return never {@code null}, always new instance
+     */
+    static Result timedOut(final String testedFile) {
+        return new Result(State.TIMED_OUT, testedFile, null, false, Metrics.NONE);
+    }
+
+    /**
+     * Creates a copy of this result which is marked as re-parsed with full LL prediction.
+     *
+     * @return never {@code null}, always new instance
+     */
+    Result withFallback() {
+        return new Result(state, testedFile, failure, true, metrics);
+    }
+
+    /**
+     * Creates a copy of this result with the given metrics.
+     *
+     * @param metrics must not be {@code null}
+     * @return never {@code null}, always new instance
+     */
+    Result withMetrics(final Metrics metrics) {
+        return new Result(state, testedFile, failure, fallback, metrics);
+    }
+
+    /**
+     * Whether the parse run passed, failed or was skipped.
+     *
+     * @return never {@code null}
+     */
+    State getState() {
+        return state;
     }
 
     /**
@@ -70,7 +156,25 @@ final class Result {
      * @return {@code true} if failed, else {@code false}
      */
     boolean isFailed() {
-        return failed;
+        return state == State.FAILED;
+    }
+
+    /**
+     * Whether the file was not parsed because it passed unchanged in the last run.
+     *
+     * @return {@code true} if cached, else {@code false}
+     */
+    boolean isCached() {
+        return state == State.CACHED;
+    }
+
+    /**
+     * Whether the parse run was aborted because it exceeded its time budget.
+     *
+     * @return {@code true} if timed out, else {@code false}
+     */
+    boolean isTimedOut() {
+        return state == State.TIMED_OUT;
     }
 
     /**
@@ -83,17 +187,83 @@ final class Result {
     }
 
     /**
-     * The causing error, if {@link #isFailed()}.
+     * Describes the causing error, if {@link #isFailed()}.
      *
      * @return {@code null} if {@link #isFailed()} is {@code false}
      */
-    ParseCancellationException getError() {
-        return error;
+    Failure getFailure() {
+        return failure;
+    }
+
+    /**
+     * Whether the file had to be re-parsed with full LL prediction after SLL prediction failed.
+     *
+     * @return {@code true} if re-parsed, else {@code false}
+     */
+    boolean isFallback() {
+        return fallback;
+    }
+
+    /**
+     * Measured effort to parse the file.
+     *
+     * @return never {@code null}, {@link Metrics#NONE} if not measured
+     */
+    Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes this result without its tested file.
+     *
+     * @param output must not be {@code null}
+     * @throws IOException if the result can't be written
+     */
+    void write(final DataOutput output) throws IOException {
+        Validate.notNull(output, "Parameter 'output' must not be null!");
+        output.writeUTF(state.name());
+        output.writeBoolean(null != failure);
+
+        if (null != failure) {
+            failure.write(output);
+        }
+
+        output.writeBoolean(fallback);
+        output.writeLong(metrics.getReadNanos());
+        output.writeLong(metrics.getLexNanos());
+        output.writeLong(metrics.getParseNanos());
+        output.writeLong(metrics.getTokens());
+        output.writeLong(metrics.getBytes());
+    }
+
+    /**
+     * Reads a result written by {@link #write(java.io.DataOutput)}.
+     *
+     * @param input must not be {@code null}
+     * @param testedFile must not be {@code null} or empty
+     * @return never {@code null}
+     * @throws IOException if the result can't be read
+     */
+    static Result read(final DataInput input, final String testedFile) throws IOException {
+        Validate.notNull(input, "Parameter 'input' must not be null!");
+        final State state;
+
+        try {
+            state = State.valueOf(input.readUTF());
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+
+        final Failure failure = input.readBoolean() ? Failure.read(input) : null;
+        final boolean fallback = input.readBoolean();
+        final Metrics metrics = new Metrics(
+            input.readLong(), input.readLong(), input.readLong(), input.readLong(), input.readLong());
+        return new Result(state, testedFile, failure, fallback, metrics);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(failed, testedFile, error);
+        return Objects.hash(state, testedFile, failure, fallback, metrics);
     }
 
     @Override
@@ -103,14 +273,38 @@ final class Result {
         }
 
         final Result other = (Result) obj;
-        return Objects.equals(failed, other.failed)
+        return Objects.equals(state, other.state)
             && Objects.equals(testedFile, other.testedFile)
-            && Objects.equals(error, other.error);
+            && Objects.equals(failure, other.failure)
+            && Objects.equals(fallback, other.fallback)
+            && Objects.equals(metrics, other.metrics);
     }
 
     @Override
     public String toString() {
-        return "Result{" + "failed=" + failed + ", testedFile=" + testedFile + ", error=" + error + '}';
+        return "Result{" + "state=" + state + ", testedFile=" + testedFile + ", failure=" + failure
+            + ", fallback=" + fallback + ", metrics=" + metrics + '}';
     }
 
+    /**
+     * Possible states of a result.
+     */
+    enum State {
+        /**
+         * The file was parsed without errors.
+         */
+        PASSED,
+        /**
+         * The file was not parsed because it passed unchanged in the last run.
+         */
+        CACHED,
+        /**
+         * The file was parsed with errors.
+         */
+        FAILED,
+        /**
+         * The parse was aborted because it exceeded its time budget.
+         */
+        TIMED_OUT;
+    }
 }
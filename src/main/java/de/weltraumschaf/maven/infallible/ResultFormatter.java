@@ -1,27 +1,181 @@
 package de.weltraumschaf.maven.infallible;
 
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+
 /**
+ * Formats the collected results for the build log.
+ * <p>
+ * Failed sources are sorted by their file name, so the output does not depend on the order in which the files were
+ * parsed.
+ * </p>
+ * <p>
+ * If the elapsed time is given, the throughput of the parsed files is reported. The slowest files and directories are
+ * reported if the collector tracked them.
+ * </p>
+ *
  * @since 1.0.0
  * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
  */
 final class ResultFormatter {
 
     static final String NL = String.format("%n");
+    /**
+     * Nanoseconds per second.
+     */
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+    /**
+     * Bytes per megabyte.
+     */
+    private static final double BYTES_PER_MEGABYTE = 1_000_000d;
 
+    /**
+     * Formats the results without throughput.
+     *
+     * @param tested must not be {@code null}
+     * @return never {@code null}
+     */
     String format(final Collector tested) {
+        return format(tested, 0);
+    }
+
+    /**
+     * Formats the results.
+     *
+     * @param tested must not be {@code null}
+     * @param elapsedNanos wall clock time to parse all files, no throughput is reported if not greater than 0
+     * @return never {@code null}
+     */
+    String format(final Collector tested, final long elapsedNanos) {
         final StringBuilder buffer = new StringBuilder();
         buffer.append("Results:").append(NL).append(NL);
 
         if (tested.hasFailed()) {
             buffer.append("Failed sources:").append(NL);
-            tested.results().stream().filter(r -> r.isFailed()).forEach(r -> {
-                buffer.append("  ").append(r.getTestedFile()).append(NL);
-                buffer.append("    ").append(r.getError().getMessage()).append(NL);
-            });
+            tested.failures().stream()
+                .sorted(Comparator.comparing(Result::getTestedFile))
+                .forEach(r -> {
+                    buffer.append("  ").append(r.getTestedFile()).append(NL);
+                    buffer.append("    ").append(r.getFailure().getMessage()).append(NL);
+                });
+            buffer.append(NL);
+        }
+
+        if (tested.countTimedOut() > 0) {
+            buffer.append("Timed out sources:").append(NL);
+            tested.timedOutFiles().stream()
+                .sorted()
+                .forEach(f -> buffer.append("  ").append(f).append(NL));
             buffer.append(NL);
         }
 
-        buffer.append(String.format("Sources parsed: %d, Failed: %d%n", tested.count(), tested.countFailed()));
+        final long parsed = tested.count() - tested.countCached();
+
+        if (tested.countCached() > 0) {
+            buffer.append(String.format("Sources parsed: %d, Cached: %d, Failed: %d%n",
+                parsed, tested.countCached(), tested.countFailed()));
+        } else {
+            buffer.append(String.format("Sources parsed: %d, Failed: %d%n", tested.count(), tested.countFailed()));
+        }
+
+        if (tested.countTimedOut() > 0) {
+            buffer.append(String.format("Sources timed out: %d%n", tested.countTimedOut()));
+        }
+
+        if (tested.countSkipped() > 0) {
+            buffer.append(String.format("Sources skipped after failures: %d%n", tested.countSkipped()));
+        }
+
+        if (tested.countFallbacks() > 0) {
+            buffer.append(String.format("Sources re-parsed with full LL prediction: %d%n", tested.countFallbacks()));
+        }
+
+        if (elapsedNanos > 0 && parsed > 0) {
+            formatThroughput(buffer, parsed, tested.getTotalMetrics(), elapsedNanos);
+        }
+
+        formatSlowest(buffer, tested);
         return buffer.toString();
     }
+
+    /**
+     * Formats the results of each grammar target.
+     *
+     * @param tested must not be {@code null}, the collected results by target id in report order
+     * @return never {@code null}
+     */
+    String formatTargets(final Map<String, Collector> tested) {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append("Results per target:").append(NL).append(NL);
+
+        for (final Map.Entry<String, Collector> target : tested.entrySet()) {
+            final Collector results = target.getValue();
+            buffer.append(String.format("%s: Sources parsed: %d, Failed: %d",
+                target.getKey(), results.count(), results.countFailed()));
+
+            if (results.countTimedOut() > 0) {
+                buffer.append(String.format(", Timed out: %d", results.countTimedOut()));
+            }
+
+            buffer.append(NL);
+            results.failures().stream()
+                .sorted(Comparator.comparing(Result::getTestedFile))
+                .forEach(r -> {
+                    buffer.append("  ").append(r.getTestedFile()).append(NL);
+                    buffer.append("    ").append(r.getFailure().getMessage()).append(NL);
+                });
+        }
+
+        return buffer.toString();
+    }
+
+    private static void formatThroughput(
+        final StringBuilder buffer, final long parsed, final Metrics total, final long elapsedNanos) {
+        final double seconds = elapsedNanos / NANOS_PER_SECOND;
+        buffer.append(String.format(Locale.ROOT,
+            "Throughput: %d files in %.3f s, %.1f files/s, %.2f MB/s, %.0f tokens/s%n",
+            parsed,
+            seconds,
+            parsed / seconds,
+            total.getBytes() / BYTES_PER_MEGABYTE / seconds,
+            total.getTokens() / seconds));
+        buffer.append(String.format(Locale.ROOT, "Time spent reading: %s, lexing: %s, parsing: %s%n",
+            millis(total.getReadNanos()), millis(total.getLexNanos()), millis(total.getParseNanos())));
+    }
+
+    private static void formatSlowest(final StringBuilder buffer, final Collector tested) {
+        if (!tested.slowestFiles().isEmpty()) {
+            buffer.append("Slowest sources:").append(NL);
+            tested.slowestFiles().forEach(r -> {
+                final Metrics metrics = r.getMetrics();
+                buffer.append(String.format(Locale.ROOT,
+                    "  %12s  %s (read %s, lex %s, parse %s, %d tokens, %d bytes)%n",
+                    millis(metrics.getTotalNanos()),
+                    r.getTestedFile(),
+                    millis(metrics.getReadNanos()),
+                    millis(metrics.getLexNanos()),
+                    millis(metrics.getParseNanos()),
+                    metrics.getTokens(),
+                    metrics.getBytes()));
+            });
+        }
+
+        if (!tested.slowestDirectories().isEmpty()) {
+            buffer.append("Slowest directories:").append(NL);
+
+            for (final Map.Entry<String, Long> directory : tested.slowestDirectories()) {
+                buffer.append(String.format(Locale.ROOT, "  %12s  %s%n",
+                    millis(directory.getValue()), directory.getKey()));
+            }
+        }
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / NANOS_PER_MILLI);
+    }
 }
@@ -0,0 +1,90 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * One of several disjoint parts of the files to test, so that the files can be parsed by several build agents.
+ * <p>
+ * A file belongs to the shard selected by a CRC-32 of its path relative to its file set directory. The relative path
+ * is used because the checkout directory usually differs between agents and the CRC-32 is used because it is the
+ * same on every JVM. So each agent selects the same files for the same shard index and all shards together contain
+ * each file exactly once.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class Shard {
+
+    /**
+     * The only shard, contains all files.
+     */
+    static final Shard ALL = new Shard(0, 1);
+
+    /**
+     * Zero based index of this shard.
+     */
+    private final int index;
+    /**
+     * Number of all shards.
+     */
+    private final int count;
+
+    /**
+     * Dedicated constructor.
+     *
+     * @param index must be in range [0, count)
+     * @param count must be greater than 0
+     */
+    Shard(final int index, final int count) {
+        super();
+        Validate.isTrue(count > 0, "Parameter 'count' must be greater than 0!");
+        Validate.isTrue(index >= 0 && index < count, "Parameter 'index' must be in range [0, %d)!", count);
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Zero based index of this shard.
+     *
+     * @return in range [0, {@link #getCount()})
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * Number of all shards.
+     *
+     * @return greater than 0
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Whether the given file belongs to this shard.
+     *
+     * @param relativePath must not be {@code null}, path relative to its file set directory, the separator does not
+     * matter
+     * @return {@code true} if the file belongs to this shard, else {@code false}
+     */
+    boolean contains(final String relativePath) {
+        Validate.notNull(relativePath, "Parameter 'relativePath' must not be null!");
+
+        if (1 == count) {
+            return true;
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(relativePath.replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % count == index;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d", index + 1, count);
+    }
+}
@@ -0,0 +1,299 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Writes the results of one shard into a partial result file and merges the files of all shards.
+ * <p>
+ * Results are written as they are added, so the memory needed does not depend on the number of files. The file is
+ * only complete after {@link #finish(long, long)}, incomplete files are rejected by the merge.
+ * </p>
+ * <p>
+ * Each file is stamped with the id of the run which wrote it (e.g. the CI pipeline id), so the merge ignores files
+ * left over from earlier runs. Creating the file of a shard deletes the files of other shard counts in the same
+ * directory, because they can't belong to the same run.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ *
+ * @since 1.0.0
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+final class ShardResults implements AutoCloseable {
+
+    /**
+     * Glob of the partial result file names.
+     */
+    static final String FILE_GLOB = "shard-*-of-*.results";
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 4;
+
+    /**
+     * Where the results are written.
+     */
+    private final Path file;
+    /**
+     * Open until finished or closed.
+     */
+    private final DataOutputStream output;
+
+    /**
+     * Dedicated constructor.
+     * <p>
+     * Use {@link #create(java.nio.file.Path, de.weltraumschaf.maven.infallible.Shard)} instead.
+     * </p>
+     *
+     * @param file must not be {@code null}
+     * @param output must not be {@code null}
+     */
+    private ShardResults(final Path file, final DataOutputStream output) {
+        super();
+        this.file = Validate.notNull(file, "Parameter 'file' must not be null!");
+        this.output = Validate.notNull(output, "Parameter 'output' must not be null!");
+    }
+
+    /**
+     * Name of the partial result file of the given shard.
+     *
+     * @param shard must not be {@code null}
+     * @return never {@code null} or empty
+     */
+    static String fileName(final Shard shard) {
+        Validate.notNull(shard, "Parameter 'shard' must not be null!");
+        return String.format("shard-%d-of-%d.results", shard.getIndex() + 1, shard.getCount());
+    }
+
+    /**
+     * Creates the partial result file of the given shard, an existing one is replaced.
+     *
+     * @param directory must not be {@code null}, created if it does not exist
+     * @param shard must not be {@code null}
+     * @param runId must not be {@code null}, may be empty if runs are not distinguished
+     * @return never {@code null}
+     * @throws MojoExecutionException if the file can't be created
+     */
+    static ShardResults create(final Path directory, final Shard shard, final String runId)
+        throws MojoExecutionException {
+        Validate.notNull(directory, "Parameter 'directory' must not be null!");
+        Validate.notNull(runId, "Parameter 'runId' must not be null!");
+        final Path file = directory.resolve(fileName(shard));
+
+        try {
+            Files.createDirectories(directory);
+            deleteOtherCounts(directory, shard);
+            final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)));
+            output.writeInt(VERSION);
+            DataStrings.write(output, runId);
+            output.writeInt(shard.getIndex());
+            output.writeInt(shard.getCount());
+            return new ShardResults(file, output);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write shard results '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    private static void deleteOtherCounts(final Path directory, final Shard shard) throws IOException {
+        final String suffix = String.format("-of-%d.results", shard.getCount());
+
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            for (final Path stale : found) {
+                if (!stale.getFileName().toString().endsWith(suffix)) {
+                    Files.delete(stale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Where the results are written.
+     *
+     * @return never {@code null}
+     */
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the given result.
+     *
+     * @param result must not be {@code null}
+     * @throws MojoExecutionException if the result can't be written
+     */
+    synchronized void add(final Result result) throws MojoExecutionException {
+        Validate.notNull(result, "Parameter 'result' must not be null!");
+
+        try {
+            output.writeBoolean(true);
+            output.writeUTF(result.getTestedFile());
+            result.write(output);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write shard results '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Completes and closes the file.
+     *
+     * @param skipped number of files skipped after failures, not negative
+     * @param elapsedNanos wall clock time to parse the shard, not negative
+     * @throws MojoExecutionException if the file can't be written
+     */
+    synchronized void finish(final long skipped, final long elapsedNanos) throws MojoExecutionException {
+        Validate.isTrue(skipped >= 0, "Parameter 'skipped' must not be negative!");
+        Validate.isTrue(elapsedNanos >= 0, "Parameter 'elapsedNanos' must not be negative!");
+
+        try {
+            output.writeBoolean(false);
+            output.writeLong(skipped);
+            output.writeLong(elapsedNanos);
+            output.close();
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write shard results '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Closes the file, it stays incomplete if not {@link #finish(long, long) finished} before.
+     *
+     * @throws MojoExecutionException if the file can't be closed
+     */
+    @Override
+    public synchronized void close() throws MojoExecutionException {
+        try {
+            output.close();
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't write shard results '%s' (%s)!", file, ex.getMessage()), ex);
+        }
+    }
+
+    /**
+     * Merges the partial result files of all shards in the given directory.
+     * <p>
+     * If a run id is given, only the files of this run are merged. All merged files must belong to the same run and
+     * number of shards and there must be exactly one complete file per shard.
+     * </p>
+     *
+     * @param directory must not be {@code null}
+     * @param runId must not be {@code null}, empty to merge the files of any run
+     * @param tested must not be {@code null}, collects all results and skipped files
+     * @return the wall clock time of the slowest shard in nanoseconds, not negative
+     * @throws MojoExecutionException if the files can't be read, are incomplete or shards are missing
+     */
+    static long merge(final Path directory, final String runId, final Collector tested)
+        throws MojoExecutionException {
+        Validate.notNull(directory, "Parameter 'directory' must not be null!");
+        Validate.notNull(runId, "Parameter 'runId' must not be null!");
+        Validate.notNull(tested, "Parameter 'tested' must not be null!");
+        final List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> found = Files.newDirectoryStream(directory, FILE_GLOB)) {
+            found.forEach(files::add);
+        } catch (final IOException ex) {
+            throw new MojoExecutionException(
+                String.format("Can't list shard results in '%s' (%s)!", directory, ex.getMessage()), ex);
+        }
+
+        if (files.isEmpty()) {
+            throw new MojoExecutionException(String.format("No shard results found in '%s'!", directory));
+        }
+
+        final Set<Integer> merged = new TreeSet<>();
+        String run = null;
+        int count = 0;
+        long elapsedNanos = 0;
+
+        for (final Path file : files) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (input.readInt() != VERSION) {
+                    throw new IOException("unsupported version");
+                }
+
+                final String fileRun = DataStrings.read(input);
+
+                if (!runId.isEmpty() && !runId.equals(fileRun)) {
+                    continue;
+                }
+
+                if (null == run) {
+                    run = fileRun;
+                } else if (!run.equals(fileRun)) {
+                    throw new MojoExecutionException(String.format(
+                        "Shard results '%s' are of run '%s', but others of '%s'!", file, fileRun, run));
+                }
+
+                final int index = input.readInt();
+                final int shards = input.readInt();
+
+                if (index < 0 || index >= shards) {
+                    throw new IOException(String.format("invalid shard %d of %d", index + 1, shards));
+                }
+
+                if (0 == count) {
+                    count = shards;
+                } else if (count != shards) {
+                    throw new MojoExecutionException(String.format(
+                        "Shard results '%s' are of %d shards, but others of %d!", file, shards, count));
+                }
+
+                if (!merged.add(index)) {
+                    throw new MojoExecutionException(String.format(
+                        "Shard results '%s' duplicate the results of shard %d!", file, index + 1));
+                }
+
+                while (input.readBoolean()) {
+                    tested.add(Result.read(input, input.readUTF()));
+                }
+
+                tested.skip(input.readLong());
+                elapsedNanos = Math.max(elapsedNanos, input.readLong());
+            } catch (final EOFException ex) {
+                throw new MojoExecutionException(String.format("Shard results '%s' are incomplete!", file), ex);
+            } catch (final IOException ex) {
+                throw new MojoExecutionException(
+                    String.format("Can't read shard results '%s' (%s)!", file, ex.getMessage()), ex);
+            }
+        }
+
+        if (null == run) {
+            throw new MojoExecutionException(
+                String.format("No shard results of run '%s' found in '%s'!", runId, directory));
+        }
+
+        final int shards = count;
+        final String missing = IntStream.range(0, shards)
+            .filter(i -> !merged.contains(i))
+            .mapToObj(i -> String.valueOf(i + 1))
+            .collect(Collectors.joining(", "));
+
+        if (!missing.isEmpty()) {
+            throw new MojoExecutionException(String.format(
+                "Missing results of shard(s) %s of %d in '%s'!", missing, shards, directory));
+        }
+
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,134 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.maven.shared.model.fileset.FileSet;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link Archive}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ArchiveTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    static Path zip(final Path archive, final String... namesAndContents) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("simple/"));
+            zip.closeEntry();
+
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+
+        return archive;
+    }
+
+    private Path tarGz(final String fileName, final String... namesAndContents) throws IOException {
+        final Path archive = tmp.getRoot().toPath().resolve(fileName);
+
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(archive)))) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                final byte[] content = namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8);
+                final TarArchiveEntry entry = new TarArchiveEntry(namesAndContents[i]);
+                entry.setSize(content.length);
+                tar.putArchiveEntry(entry);
+                tar.write(content);
+                tar.closeArchiveEntry();
+            }
+        }
+
+        return archive;
+    }
+
+    private static Map<String, String> readAll(final Path archive) throws IOException {
+        final Map<String, String> entries = new LinkedHashMap<>();
+        Archive.read(archive, (name, content) ->
+            entries.put(name, new String(Archive.readFully(content), StandardCharsets.UTF_8)));
+        return entries;
+    }
+
+    @Test
+    public void isArchive() {
+        assertThat(Archive.isArchive(Paths.get("corpus.zip")), is(true));
+        assertThat(Archive.isArchive(Paths.get("corpus.JAR")), is(true));
+        assertThat(Archive.isArchive(Paths.get("corpus.tar")), is(true));
+        assertThat(Archive.isArchive(Paths.get("corpus.tar.gz")), is(true));
+        assertThat(Archive.isArchive(Paths.get("corpus.tgz")), is(true));
+        assertThat(Archive.isArchive(Paths.get("huge.snf.gz")), is(true));
+        assertThat(Archive.isArchive(Paths.get("corpus")), is(false));
+        assertThat(Archive.isArchive(Paths.get("some.snf")), is(false));
+    }
+
+    @Test
+    public void isAnyArchive() throws IOException {
+        final FileSet directory = new FileSet();
+        directory.setDirectory(tmp.getRoot().toString());
+        final FileSet archive = new FileSet();
+        archive.setDirectory(zip(tmp.getRoot().toPath().resolve("corpus.zip")).toString());
+
+        assertThat(Archive.isAnyArchive(null), is(false));
+        assertThat(Archive.isAnyArchive(new FileSet[]{directory}), is(false));
+        assertThat(Archive.isAnyArchive(new FileSet[]{directory, archive}), is(true));
+    }
+
+    @Test
+    public void normalize() {
+        assertThat(Archive.normalize("a/b.snf"), is("a/b.snf"));
+        assertThat(Archive.normalize("./a/b.snf"), is("a/b.snf"));
+        assertThat(Archive.normalize("/a/b.snf"), is("a/b.snf"));
+        assertThat(Archive.normalize("a\\b.snf"), is("a/b.snf"));
+    }
+
+    @Test
+    public void read_zipSkipsDirectories() throws IOException {
+        final Path archive = zip(tmp.getRoot().toPath().resolve("corpus.zip"),
+            "simple/a.snf", "1;", "b.snf", "2;");
+
+        assertThat(readAll(archive).keySet(), contains("simple/a.snf", "b.snf"));
+        assertThat(readAll(archive).get("simple/a.snf"), is("1;"));
+    }
+
+    @Test
+    public void read_compressedTar() throws IOException {
+        final Path archive = tarGz("corpus.tar.gz", "./simple/a.snf", "1;", "b.snf", "2;");
+
+        assertThat(readAll(archive).keySet(), contains("simple/a.snf", "b.snf"));
+        assertThat(readAll(archive).get("b.snf"), is("2;"));
+    }
+
+    @Test
+    public void read_compressedFile() throws IOException {
+        final Path archive = tmp.getRoot().toPath().resolve("huge.snf.gz");
+
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(archive))) {
+            output.write("1 + 2;".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(readAll(archive).keySet(), contains("huge.snf"));
+        assertThat(readAll(archive).get("huge.snf"), is("1 + 2;"));
+    }
+}
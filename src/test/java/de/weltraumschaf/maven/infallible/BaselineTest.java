@@ -0,0 +1,143 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link Baseline}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class BaselineTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path baselineFile() {
+        return tmp.getRoot().toPath().resolve("sub").resolve(Baseline.FILE_NAME);
+    }
+
+    private static Map<String, Long> directories(final String directory, final long nanos) {
+        final Map<String, Long> directories = new HashMap<>();
+        directories.put(directory, nanos);
+        return directories;
+    }
+
+    @Test
+    public void measure() {
+        final Collector tested = new Collector(0, true, 0);
+        tested.add(Result.passed("/foo/one.snf").withMetrics(new Metrics(0, 0, 20 * MILLIS, 300, 1)));
+        tested.add(Result.passed("/bar/two.snf").withMetrics(new Metrics(0, 0, 30 * MILLIS, 100, 1)));
+
+        final Baseline sut = Baseline.measure(tested, 2_000 * MILLIS, directory -> directory);
+
+        assertThat(sut.getFilesPerSecond(), is(closeTo(1, 0.001)));
+        assertThat(sut.getTokensPerSecond(), is(closeTo(200, 0.001)));
+        assertThat(sut.getDirectoryNanos().get("/foo/"), is(20 * MILLIS));
+        assertThat(sut.getDirectoryNanos().get("/bar/"), is(30 * MILLIS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void measure_cachedResults() {
+        final Collector tested = new Collector(0, true, 0);
+        tested.add(Result.passed("/foo/one.snf").withMetrics(new Metrics(0, 0, 20 * MILLIS, 300, 1)));
+        tested.add(Result.cached("/foo/two.snf"));
+
+        Baseline.measure(tested, 2_000 * MILLIS, directory -> directory);
+    }
+
+    @Test
+    public void measure_sumsDirectoriesWithSameKey() {
+        final Collector tested = new Collector(0, true, 0);
+        tested.add(Result.passed("/one/foo/a.snf").withMetrics(new Metrics(0, 0, 20 * MILLIS, 1, 1)));
+        tested.add(Result.passed("/two/foo/b.snf").withMetrics(new Metrics(0, 0, 30 * MILLIS, 1, 1)));
+
+        final Baseline sut = Baseline.measure(tested, 1_000 * MILLIS, directory -> "foo");
+
+        assertThat(sut.getDirectoryNanos(), is(directories("foo", 50 * MILLIS)));
+    }
+
+    @Test
+    public void storeAndLoad() throws MojoExecutionException {
+        new Baseline(12.5, 1_000, directories("/foo/", 42 * MILLIS)).store(baselineFile());
+
+        final Baseline sut = Baseline.load(baselineFile());
+
+        assertThat(sut.getFilesPerSecond(), is(12.5));
+        assertThat(sut.getTokensPerSecond(), is(1_000d));
+        assertThat(sut.getDirectoryNanos(), is(directories("/foo/", 42 * MILLIS)));
+    }
+
+    @Test
+    public void load_malformed() throws IOException {
+        Files.createDirectories(baselineFile().getParent());
+        Files.write(baselineFile(), "filesPerSecond=1.0\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        try {
+            Baseline.load(baselineFile());
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), startsWith("Can't read baseline '"));
+        }
+    }
+
+    @Test
+    public void regressions_withinSlowdown() {
+        final Baseline sut = new Baseline(100, 1_000, directories("/foo/", 100 * MILLIS));
+
+        assertThat(
+            sut.regressions(new Baseline(90, 900, directories("/foo/", 110 * MILLIS)), 10),
+            is(empty()));
+    }
+
+    @Test
+    public void regressions_throughputDropped() {
+        final Baseline sut = new Baseline(100, 1_000, Collections.emptyMap());
+
+        assertThat(
+            sut.regressions(new Baseline(89.9, 899, Collections.emptyMap()), 10),
+            contains(
+                "Throughput dropped from 100.0 to 89.9 files/s!",
+                "Throughput dropped from 1000 to 899 tokens/s!"));
+    }
+
+    @Test
+    public void regressions_directorySlower() {
+        final Map<String, Long> before = directories("/foo/", 100 * MILLIS);
+        before.put("/bar/", 1 * MILLIS);
+        before.put("/gone/", 100 * MILLIS);
+        final Map<String, Long> after = directories("/foo/", 200 * MILLIS);
+        after.put("/bar/", 100 * MILLIS);
+        after.put("/new/", 100 * MILLIS);
+        final Baseline sut = new Baseline(100, 1_000, before);
+
+        assertThat(
+            sut.regressions(new Baseline(100, 1_000, after), 10),
+            contains("Directory '/foo/' took 200.000 ms instead of 100.000 ms!"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void regressions_slowdownOutOfRange() {
+        final Baseline sut = new Baseline(100, 1_000, Collections.emptyMap());
+
+        sut.regressions(sut, 101);
+    }
+}
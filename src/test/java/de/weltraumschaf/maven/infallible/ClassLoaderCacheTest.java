@@ -0,0 +1,89 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link ClassLoaderCache}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ClassLoaderCacheTest {
+
+    private static final String CLASS_FILE = "foo/Bar.class";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private final ClassLoaderCache sut = new ClassLoaderCache();
+    private File outputDirectory;
+
+    @Before
+    public void createClassFile() throws IOException {
+        outputDirectory = tmp.newFolder("classes");
+        final Path classFile = outputDirectory.toPath().resolve(CLASS_FILE);
+        Files.createDirectories(classFile.getParent());
+        Files.write(classFile, new byte[]{1, 2, 3});
+    }
+
+    @After
+    public void closeLoaders() {
+        sut.closeAll(log);
+    }
+
+    @Test
+    public void getClassLoader_reusedWhileUnchanged() throws MojoExecutionException {
+        final ClassLoader loader = sut.getClassLoader(log, outputDirectory, "session");
+
+        assertThat(loader.getResource(CLASS_FILE), is(notNullValue()));
+        assertThat(sut.getClassLoader(log, outputDirectory, "session"), is(sameInstance(loader)));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void getClassLoader_closedWhenClassFilesChanged() throws MojoExecutionException, IOException {
+        final ClassLoader loader = sut.getClassLoader(log, outputDirectory, "session");
+        Files.setLastModifiedTime(outputDirectory.toPath().resolve(CLASS_FILE), FileTime.fromMillis(0));
+
+        assertThat(sut.getClassLoader(log, outputDirectory, "session"), is(not(sameInstance(loader))));
+        assertThat(loader.getResource(CLASS_FILE), is(nullValue()));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void getClassLoader_closedWhenNewSession() throws MojoExecutionException, IOException {
+        final ClassLoader loader = sut.getClassLoader(log, outputDirectory, "first");
+        sut.getClassLoader(log, tmp.newFolder("other"), "first");
+
+        assertThat(sut.getClassLoader(log, outputDirectory, "second"), is(not(sameInstance(loader))));
+        assertThat(loader.getResource(CLASS_FILE), is(nullValue()));
+        assertThat(sut.size(), is(1));
+    }
+
+    @Test
+    public void closeAll() throws MojoExecutionException {
+        final ClassLoader loader = sut.getClassLoader(log, outputDirectory, "session");
+
+        sut.closeAll(log);
+
+        assertThat(sut.size(), is(0));
+        assertThat(loader.getResource(CLASS_FILE), is(nullValue()));
+    }
+}
@@ -1,6 +1,11 @@
 package de.weltraumschaf.maven.infallible;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -40,4 +45,136 @@ public class CollectorTest {
         assertThat(sut.countPassed(), is(3L));
         assertThat(sut.countFailed(), is(2L));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCountCached() {
+        sut.add(Result.passed("foo"));
+        sut.add(Result.cached("bar"));
+        sut.add(Result.cached("baz"));
+        sut.add(Result.failed("snafu", mock(ParseCancellationException.class)));
+
+        assertThat(sut.count(), is(4L));
+        assertThat(sut.countCached(), is(2L));
+        assertThat(sut.countPassed(), is(3L));
+        assertThat(sut.countFailed(), is(1L));
+    }
+
+    @Test
+    public void testCountFallbacks() {
+        sut.add(Result.passed("foo"));
+        sut.add(Result.passed("bar").withFallback());
+        sut.add(Result.failed("snafu", mock(ParseCancellationException.class)).withFallback());
+
+        assertThat(sut.countFallbacks(), is(2L));
+        assertThat(sut.countFailed(), is(1L));
+    }
+
+    @Test
+    public void testCountTimedOut() {
+        final int passed = sut.add(Result.passed("foo"));
+        final int timedOut = sut.add(Result.timedOut("bar"));
+        sut.add(Result.failed("baz", mock(ParseCancellationException.class)));
+        sut.add(Result.timedOut("snafu"));
+
+        assertThat(sut.count(), is(4L));
+        assertThat(sut.countTimedOut(), is(2L));
+        assertThat(sut.countFailed(), is(1L));
+        assertThat(sut.countPassed(), is(1L));
+        assertThat(sut.getState(passed), is(Result.State.PASSED));
+        assertThat(sut.getState(timedOut), is(Result.State.TIMED_OUT));
+        assertThat(sut.timedOutFiles(), contains("bar", "snafu"));
+    }
+
+    @Test
+    public void testCountSkipped() {
+        sut.add(Result.passed("foo"));
+        sut.skip(2);
+        sut.skip(3);
+
+        assertThat(sut.countSkipped(), is(5L));
+        assertThat(sut.count(), is(1L));
+    }
+
+    @Test
+    public void testStateAndPathByIndex() {
+        final int passed = sut.add(Result.passed("/foo/bar.snf"));
+        final int cached = sut.add(Result.cached("/foo/baz.snf"));
+        final int failed = sut.add(Result.failed("/snafu.snf", mock(ParseCancellationException.class)));
+
+        assertThat(sut.getState(passed), is(Result.State.PASSED));
+        assertThat(sut.getTestedFile(passed), is("/foo/bar.snf"));
+        assertThat(sut.getState(cached), is(Result.State.CACHED));
+        assertThat(sut.getTestedFile(cached), is("/foo/baz.snf"));
+        assertThat(sut.getState(failed), is(Result.State.FAILED));
+        assertThat(sut.getTestedFile(failed), is("/snafu.snf"));
+    }
+
+    @Test
+    public void testDirectoryNanos_allDirectories() {
+        final Collector all = new Collector(1, true, 0);
+        all.add(Result.passed("/foo/one.snf").withMetrics(new Metrics(0, 0, 1_000, 1, 1)));
+        all.add(Result.passed("/foo/two.snf").withMetrics(new Metrics(0, 0, 2_000, 1, 1)));
+        all.add(Result.passed("/bar/three.snf").withMetrics(new Metrics(0, 0, 500, 1, 1)));
+        all.add(Result.cached("/baz/four.snf"));
+
+        assertThat(all.slowestDirectories(), hasSize(1));
+        assertThat(all.directoryNanos().size(), is(2));
+        assertThat(all.directoryNanos().get("/foo/"), is(3_000L));
+        assertThat(all.directoryNanos().get("/bar/"), is(500L));
+    }
+
+    @Test
+    public void testDirectoryNanos_noneTrackedByDefault() {
+        sut.add(Result.passed("/foo/one.snf").withMetrics(new Metrics(0, 0, 1_000, 1, 1)));
+
+        assertThat(sut.directoryNanos().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testOverBudget() {
+        final Collector budgeted = new Collector(0, false, 1_000);
+        final Result slow = Result.passed("/foo/slow.snf").withMetrics(new Metrics(0, 0, 1_001, 1, 1));
+        final Result alsoSlow = Result.passed("/bar/slow.snf").withMetrics(new Metrics(0, 500, 501, 1, 1));
+        budgeted.add(slow);
+        budgeted.add(Result.passed("/foo/fast.snf").withMetrics(new Metrics(0, 0, 1_000, 1, 1)));
+        budgeted.add(alsoSlow);
+        budgeted.add(Result.cached("/foo/cached.snf"));
+
+        assertThat(budgeted.overBudget(), contains(alsoSlow, slow));
+        assertThat(sut.overBudget().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFailures_keepsOnlyFailedResults() {
+        final Result failed = Result.failed("snafu", mock(ParseCancellationException.class));
+        sut.add(Result.passed("foo"));
+        sut.add(failed);
+        sut.add(Result.cached("bar"));
+
+        assertThat(sut.failures(), contains(failed));
+    }
+
+    @Test
+    public void testAdd_concurrently() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+        for (int i = 0; i < 10_000; ++i) {
+            final String file = "file" + i;
+            pool.execute(() -> sut.add(file.endsWith("0")
+                ? Result.failed(file, mock(ParseCancellationException.class))
+                : Result.passed(file)));
+        }
+
+        pool.shutdown();
+        assertThat(pool.awaitTermination(1, TimeUnit.MINUTES), is(true));
+
+        assertThat(sut.count(), is(10_000L));
+        assertThat(sut.countFailed(), is(1_000L));
+        assertThat(sut.countPassed(), is(9_000L));
+        assertThat(sut.failures().size(), is(1_000));
+
+        for (int i = 0; i < 10_000; ++i) {
+            assertThat(sut.getState(i) == Result.State.FAILED, is(sut.getTestedFile(i).endsWith("0")));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import org.apache.commons.lang3.StringUtils;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DataStrings}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class DataStringsTest {
+
+    private static String writeAndRead(final String value) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataStrings.write(new DataOutputStream(buffer), value);
+        return DataStrings.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+
+    @Test
+    public void writeAndRead_empty() throws IOException {
+        assertThat(writeAndRead(""), is(""));
+    }
+
+    @Test
+    public void writeAndRead_moreThanWriteUtfAllows() throws IOException {
+        final String value = StringUtils.repeat("\u00e4", 70_000);
+
+        assertThat(writeAndRead(value), is(value));
+    }
+
+    @Test(expected = IOException.class)
+    public void read_negativeLength() throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new DataOutputStream(buffer).writeInt(-1);
+
+        DataStrings.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}
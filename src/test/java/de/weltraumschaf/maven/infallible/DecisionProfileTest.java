@@ -0,0 +1,154 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNType;
+import org.antlr.v4.runtime.atn.BasicBlockStartState;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.ParseInfo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link DecisionProfile}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class DecisionProfileTest {
+
+    private static final String[] RULE_NAMES = {"first", "second"};
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final DecisionProfile sut = new DecisionProfile();
+
+    /**
+     * Creates a profiled parser with three decisions: 0 and 1 in rule "first", 2 in rule "second".
+     */
+    private static Parser profiledParser(final DecisionInfo... decisions) {
+        final ATN atn = new ATN(ATNType.PARSER, 0);
+
+        for (final int ruleIndex : new int[] {0, 0, 1}) {
+            final DecisionState state = new BasicBlockStartState();
+            state.ruleIndex = ruleIndex;
+            atn.addState(state);
+            atn.defineDecisionState(state);
+        }
+
+        final ParseInfo info = mock(ParseInfo.class);
+        when(info.getDecisionInfo()).thenReturn(decisions);
+        final Parser parser = mock(Parser.class);
+        when(parser.getParseInfo()).thenReturn(info);
+        when(parser.getATN()).thenReturn(atn);
+        when(parser.getRuleNames()).thenReturn(RULE_NAMES);
+        return parser;
+    }
+
+    private static DecisionInfo decision(final int number, final long invocations, final long time,
+        final long fallbacks, final long sllMaxLook) {
+        final DecisionInfo info = new DecisionInfo(number);
+        info.invocations = invocations;
+        info.timeInPrediction = time;
+        info.LL_Fallback = fallbacks;
+        info.SLL_MaxLook = sllMaxLook;
+        return info;
+    }
+
+    @Test
+    public void ranked_withoutParsers() {
+        assertThat(sut.ranked(), is(empty()));
+        assertThat(sut.countParsers(), is(0L));
+    }
+
+    @Test
+    public void ranked_mergesAllParsers() {
+        sut.add(profiledParser(decision(0, 2, 100, 0, 1), decision(1, 0, 0, 0, 0), decision(2, 1, 50, 1, 3)));
+        sut.add(profiledParser(decision(0, 3, 10, 1, 2), decision(1, 0, 0, 0, 0), decision(2, 4, 200, 0, 2)));
+
+        final List<DecisionProfile.Decision> ranked = sut.ranked();
+
+        assertThat(sut.countParsers(), is(2L));
+        assertThat(ranked.size(), is(2));
+        assertThat(ranked.get(0).getNumber(), is(2));
+        assertThat(ranked.get(0).getRule(), is("second"));
+        assertThat(ranked.get(0).getInvocations(), is(5L));
+        assertThat(ranked.get(0).getTimeInPrediction(), is(250L));
+        assertThat(ranked.get(0).getLlFallbacks(), is(1L));
+        assertThat(ranked.get(0).getSllMaxLook(), is(3L));
+        assertThat(ranked.get(1).getNumber(), is(0));
+        assertThat(ranked.get(1).getRule(), is("first"));
+        assertThat(ranked.get(1).getInvocations(), is(5L));
+        assertThat(ranked.get(1).getTimeInPrediction(), is(110L));
+    }
+
+    @Test
+    public void ranked_isCopy() {
+        sut.add(profiledParser(decision(0, 1, 10, 0, 1), decision(1, 0, 0, 0, 0), decision(2, 0, 0, 0, 0)));
+        final List<DecisionProfile.Decision> before = sut.ranked();
+
+        sut.add(profiledParser(decision(0, 1, 10, 0, 1), decision(1, 0, 0, 0, 0), decision(2, 0, 0, 0, 0)));
+
+        assertThat(before.get(0).getInvocations(), is(1L));
+        assertThat(sut.ranked().get(0).getInvocations(), is(2L));
+    }
+
+    @Test
+    public void formatCsv() {
+        sut.add(profiledParser(decision(0, 2, 100, 0, 1), decision(1, 0, 0, 0, 0), decision(2, 1, 50, 1, 3)));
+
+        assertThat(sut.formatCsv().split("\n"), is(new String[] {
+            "rank,decision,rule,invocations,timeInPredictionNanos,sllTotalLook,sllMaxLook,llTotalLook,llMaxLook,"
+                + "llFallbacks,ambiguities,contextSensitivities,errors,predicateEvaluations",
+            "1,0,first,2,100,0,1,0,0,0,0,0,0,0",
+            "2,2,second,1,50,0,3,0,0,1,0,0,0,0"}));
+    }
+
+    @Test
+    public void write() throws MojoExecutionException, IOException {
+        sut.add(profiledParser(decision(0, 2, 100, 0, 1), decision(1, 0, 0, 0, 0), decision(2, 1, 50, 1, 3)));
+        final Path directory = tmp.getRoot().toPath().resolve("sub");
+
+        sut.write(directory);
+
+        final String text = new String(
+            Files.readAllBytes(directory.resolve(DecisionProfile.TEXT_FILE_NAME)), StandardCharsets.UTF_8);
+        assertThat(text, startsWith("Decision profile of 1 parser run(s), ranked by time in prediction:"));
+        assertThat(text, containsString("first"));
+        assertThat(text, containsString("second"));
+        assertThat(new String(Files.readAllBytes(directory.resolve(DecisionProfile.CSV_FILE_NAME)),
+            StandardCharsets.UTF_8), is(sut.formatCsv()));
+    }
+
+    @Test
+    public void add_profilingParsersOfInvoker() throws MojoExecutionException {
+        final Log log = mock(Log.class);
+        final ParserFactory parsers = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu", ParserFactory.Options.DEFAULT.withProfile(true));
+        final ParserInvoker invoker = new ParserInvoker(
+            log, parsers.getParserClass(), "startRule", PredictionStrategy.TWO_STAGE, sut);
+
+        invoker.invoke(parsers.create(new ANTLRInputStream("1 + 2;")));
+        invoker.invoke(parsers.create(new ANTLRInputStream("(3 * 4) - 5;")));
+
+        assertThat(sut.countParsers(), is(2L));
+        // The Snafu grammar is LL(1), so the generated parser never needs adaptive prediction.
+        assertThat(sut.ranked(), is(empty()));
+    }
+}
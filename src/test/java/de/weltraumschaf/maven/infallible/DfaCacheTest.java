@@ -0,0 +1,168 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link DfaCache} and {@link DfaSerializer}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class DfaCacheTest {
+
+    private static final String[] SOURCES = {
+        "src/test/snafu/some.snf", "src/test/snafu/with_errors.snf", "src/test/snafu/without_errors.snf"};
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private ParserFactory parsers;
+    private ParserInvoker invoker;
+    private Parser dfaOwner;
+
+    @Before
+    public void createParserAndClearDfa() throws MojoExecutionException {
+        parsers = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        invoker = new ParserInvoker(log, parsers.getParserClass(), "startRule");
+        dfaOwner = parsers.create(new ANTLRInputStream(""));
+        clearDfa();
+    }
+
+    private void clearDfa() {
+        dfaOwner.getInterpreter().clearDFA();
+        lexer().getInterpreter().clearDFA();
+    }
+
+    private Lexer lexer() {
+        return (Lexer) dfaOwner.getInputStream().getTokenSource();
+    }
+
+    private int countStates() {
+        return DfaSerializer.countStates(dfaOwner.getInterpreter().decisionToDFA)
+            + DfaSerializer.countStates(lexer().getInterpreter().decisionToDFA);
+    }
+
+    private List<String> describeDfa() {
+        final List<String> description = new ArrayList<>();
+
+        for (final DFA dfa : dfaOwner.getInterpreter().decisionToDFA) {
+            description.add(dfa.toString(dfaOwner.getVocabulary()));
+        }
+
+        for (final DFA dfa : lexer().getInterpreter().decisionToDFA) {
+            description.add(dfa.toLexerString());
+        }
+
+        return description;
+    }
+
+    private void parseSources() throws MojoExecutionException {
+        for (final String source : SOURCES) {
+            assertThat(invoker.invoke(parsers.create(Paths.get(source), "utf-8")).isFailed(), is(false));
+        }
+    }
+
+    private Path cacheFile() {
+        return tmp.getRoot().toPath().resolve("sub").resolve(DfaCache.FILE_NAME);
+    }
+
+    @Test
+    public void isSupported() {
+        assertThat(DfaSerializer.isSupported(), is(true));
+    }
+
+    @Test
+    public void accessibleField_missing() {
+        assertThat(DfaSerializer.accessibleField(DFA.class, "noSuchField"), is(nullValue()));
+    }
+
+    @Test
+    public void load_withoutCacheFile() {
+        assertThat(new DfaCache(log, cacheFile(), "grammar").load(dfaOwner), is(false));
+        assertThat(countStates(), is(0));
+    }
+
+    @Test
+    public void storeAndLoad() throws MojoExecutionException {
+        parseSources();
+        final int builtStates = countStates();
+        final List<String> builtDfa = describeDfa();
+        assertThat(builtStates, is(greaterThan(0)));
+        new DfaCache(log, cacheFile(), "grammar").store(dfaOwner);
+        clearDfa();
+
+        assertThat(new DfaCache(log, cacheFile(), "grammar").load(dfaOwner), is(true));
+
+        assertThat(countStates(), is(builtStates));
+        assertThat(describeDfa(), is(builtDfa));
+        verify(log).info(startsWith("Loaded "));
+    }
+
+    @Test
+    public void load_warmDfaNeedsNoNewStates() throws MojoExecutionException {
+        parseSources();
+        final int builtStates = countStates();
+        new DfaCache(log, cacheFile(), "grammar").store(dfaOwner);
+        clearDfa();
+        new DfaCache(log, cacheFile(), "grammar").load(dfaOwner);
+
+        parseSources();
+
+        assertThat(countStates(), is(builtStates));
+    }
+
+    @Test
+    public void load_grammarChanged() throws MojoExecutionException {
+        parseSources();
+        new DfaCache(log, cacheFile(), "grammar").store(dfaOwner);
+        clearDfa();
+
+        assertThat(new DfaCache(log, cacheFile(), "changed").load(dfaOwner), is(false));
+
+        assertThat(countStates(), is(0));
+    }
+
+    @Test
+    public void load_dfaAlreadyBuilt() throws MojoExecutionException {
+        parseSources();
+        final List<String> builtDfa = describeDfa();
+        new DfaCache(log, cacheFile(), "grammar").store(dfaOwner);
+
+        assertThat(new DfaCache(log, cacheFile(), "grammar").load(dfaOwner), is(false));
+
+        assertThat(describeDfa(), is(builtDfa));
+    }
+
+    @Test
+    public void load_brokenCacheFile() throws IOException {
+        Files.createDirectories(cacheFile().getParent());
+        Files.write(cacheFile(), "broken".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(new DfaCache(log, cacheFile(), "grammar").load(dfaOwner), is(false));
+
+        assertThat(countStates(), is(0));
+        verify(log).warn(startsWith("Can't read DFA cache"));
+    }
+}
@@ -0,0 +1,122 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+/**
+ * Tests for {@link Durations}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class DurationsTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private final Map<String, Long> sizes = new HashMap<>();
+
+    private Path durationsFile() {
+        return tmp.getRoot().toPath().resolve("sub").resolve(Durations.FILE_NAME);
+    }
+
+    private long size(final String file) {
+        return sizes.getOrDefault(file, 0L);
+    }
+
+    @Test
+    public void longestFirst_bySizeWithoutDurations() {
+        final Durations sut = Durations.load(log, durationsFile());
+        sizes.put("/a.snf", 10L);
+        sizes.put("/b.snf", 30L);
+        sizes.put("/c.snf", 20L);
+
+        assertThat(sut.longestFirst(Arrays.asList("/a.snf", "/b.snf", "/c.snf"), this::size),
+            contains("/b.snf", "/c.snf", "/a.snf"));
+        assertThat(sut.countPrevious(), is(0));
+        verifyZeroInteractions(log);
+    }
+
+    @Test
+    public void longestFirst_keepsOrderOfEqualCosts() {
+        final Durations sut = Durations.load(log, durationsFile());
+
+        assertThat(sut.longestFirst(Arrays.asList("/a.snf", "/b.snf", "/c.snf"), this::size),
+            contains("/a.snf", "/b.snf", "/c.snf"));
+    }
+
+    @Test
+    public void longestFirst_byRecordedDurations() throws MojoExecutionException {
+        final Durations first = Durations.load(log, durationsFile());
+        // 10 ns per byte.
+        first.record("/a.snf", 1_000, 100);
+        first.record("/b.snf", 5_000, 500);
+        first.store();
+        sizes.put("/a.snf", 100L);
+        sizes.put("/b.snf", 500L);
+        // Estimated as 3000 ns.
+        sizes.put("/c.snf", 300L);
+
+        final Durations second = Durations.load(log, durationsFile());
+
+        assertThat(second.countPrevious(), is(2));
+        assertThat(second.longestFirst(Arrays.asList("/a.snf", "/b.snf", "/c.snf"), this::size),
+            contains("/b.snf", "/c.snf", "/a.snf"));
+    }
+
+    @Test
+    public void longestFirst_recordedDurationBeatsSize() throws MojoExecutionException {
+        final Durations first = Durations.load(log, durationsFile());
+        // Small but ambiguous, so slow.
+        first.record("/a.snf", 90_000, 10);
+        first.record("/b.snf", 10_000, 1_000);
+        first.store();
+        sizes.put("/a.snf", 10L);
+        sizes.put("/b.snf", 1_000L);
+
+        assertThat(Durations.load(log, durationsFile()).longestFirst(Arrays.asList("/b.snf", "/a.snf"), this::size),
+            contains("/a.snf", "/b.snf"));
+    }
+
+    @Test
+    public void store_keepsDurationsOfOrderedFilesOnly() throws MojoExecutionException {
+        final Durations first = Durations.load(log, durationsFile());
+        first.record("/a.snf", 1_000, 100);
+        first.record("/deleted.snf", 1_000, 100);
+        first.store();
+
+        final Durations second = Durations.load(log, durationsFile());
+        second.longestFirst(Arrays.asList("/a.snf", "/b.snf"), this::size);
+        second.record("/b.snf", 2_000, 100);
+        second.store();
+
+        assertThat(Durations.load(log, durationsFile()).countPrevious(), is(2));
+    }
+
+    @Test
+    public void load_malformedFile() throws IOException {
+        Files.createDirectories(durationsFile().getParent());
+        Files.write(durationsFile(), "/a.snf=fast".getBytes(StandardCharsets.ISO_8859_1));
+
+        final Durations sut = Durations.load(log, durationsFile());
+
+        assertThat(sut.countPrevious(), is(0));
+        verify(log).warn(startsWith("Can't read durations "));
+    }
+}
@@ -0,0 +1,102 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import nl.jqno.equalsverifier.EqualsVerifier;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link Failure}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class FailureTest {
+
+    @Test
+    public void testEqualsAndHashCode() {
+        EqualsVerifier.forClass(Failure.class).verify();
+    }
+
+    @Test
+    public void of_withoutRecognitionException() {
+        final Failure sut = Failure.of(new ParseCancellationException("Snafu!"));
+
+        assertThat(sut.getMessage(), is("Snafu!"));
+        assertThat(sut.getLine(), is(Failure.UNKNOWN));
+        assertThat(sut.getColumn(), is(Failure.UNKNOWN));
+        assertThat(sut.getOffendingToken(), is(""));
+        assertThat(sut.getExpectedTokens(), is(""));
+        assertThat(sut.getRuleStack(), is(empty()));
+    }
+
+    @Test
+    public void of_withoutMessage() {
+        assertThat(Failure.of(new ParseCancellationException()).getMessage(), is(""));
+    }
+
+    @Test
+    public void of_copiesDetailsOfSyntaxError() throws MojoExecutionException {
+        final ParserFactory parsers = new ParserFactory(
+            mock(Log.class), getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        final ParserInvoker invoker = new ParserInvoker(mock(Log.class), parsers.getParserClass(), "startRule");
+
+        final Failure sut = invoker.invoke(parsers.create(new ANTLRInputStream("1;\n1 + ;"))).getFailure();
+
+        assertThat(sut.getLine(), is(2));
+        assertThat(sut.getColumn(), is(4));
+        assertThat(sut.getOffendingToken(), is(";"));
+        assertThat(sut.getExpectedTokens(), containsString("INTEGER"));
+        assertThat(sut.getRuleStack(), contains("factor", "term", "statement", "startRule"));
+        assertThat(sut.getMessage(), startsWith("line 2:4 no viable alternative at input ';' expecting "));
+        assertThat(sut.getMessage(), containsString(" in rule stack [factor, term, statement, startRule]"));
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        final Failure sut = new Failure(
+            "Snafu!", 2, 4, ";", "{INTEGER, FLOAT}", Arrays.asList("factor", "term"));
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        sut.write(new DataOutputStream(buffer));
+
+        assertThat(Failure.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()))), is(sut));
+    }
+
+    @Test
+    public void truncatesLongStrings() {
+        final String longText = StringUtils.repeat("x", 100_000);
+        final Failure sut = new Failure(longText, 1, 0, longText, longText, Collections.emptyList());
+
+        assertThat(sut.getMessage().length(), is(Failure.MAX_TEXT_LENGTH));
+        assertThat(sut.getOffendingToken().length(), is(Failure.MAX_TOKEN_LENGTH));
+        assertThat(sut.getOffendingToken(), endsWith("..."));
+        assertThat(sut.getExpectedTokens().length(), is(Failure.MAX_TEXT_LENGTH));
+    }
+
+    @Test
+    public void writeAndRead_longStrings() throws IOException {
+        final String longText = StringUtils.repeat("\u00e4", 1_000);
+        final Failure sut = new Failure(longText, 1, 0, "x", longText, Collections.emptyList());
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        sut.write(new DataOutputStream(buffer));
+
+        assertThat(Failure.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray()))), is(sut));
+    }
+}
@@ -0,0 +1,278 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FileDiscovery}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class FileDiscoveryTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private Path root;
+
+    @Before
+    public void createTree() throws IOException {
+        root = tmp.getRoot().toPath();
+        touch("a.snf");
+        touch("a.log");
+        touch("sub/b.snf");
+        touch("sub/deeper/c.snf");
+        touch("sub/deeper/deepest/d.snf");
+        touch("other/e.snf");
+        touch(".git/objects/f.snf");
+    }
+
+    private void touch(final String relativePath) throws IOException {
+        final Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.createFile(file);
+    }
+
+    private FileSet fileset(final String... includes) {
+        final FileSet set = new FileSet();
+        set.setDirectory(root.toString());
+
+        for (final String include : includes) {
+            set.addInclude(include);
+        }
+
+        return set;
+    }
+
+    private Collection<String> relative(final Collection<String> files) {
+        return files.stream()
+            .map(file -> root.relativize(new File(file).toPath()).toString().replace(File.separatorChar, '/'))
+            .collect(Collectors.toList());
+    }
+
+    private Collection<String> findAll(final FileSet set) throws MojoExecutionException {
+        return relative(FileDiscovery.findAll(new FileSet[]{set}, Shard.ALL, 3));
+    }
+
+    @Test
+    public void findAll_includesInAllDirectories() throws MojoExecutionException {
+        assertThat(findAll(fileset("**/*.snf")), containsInAnyOrder(
+            "a.snf", "sub/b.snf", "sub/deeper/c.snf", "sub/deeper/deepest/d.snf", "other/e.snf"));
+    }
+
+    @Test
+    public void findAll_withoutIncludesFindsAllButDefaultExcludes() throws MojoExecutionException {
+        assertThat(findAll(fileset()), containsInAnyOrder(
+            "a.snf", "a.log", "sub/b.snf", "sub/deeper/c.snf", "sub/deeper/deepest/d.snf", "other/e.snf"));
+    }
+
+    @Test
+    public void findAll_withoutDefaultExcludes() throws MojoExecutionException {
+        final FileSet set = fileset("**/f.snf");
+        set.setUseDefaultExcludes(false);
+
+        assertThat(findAll(set), containsInAnyOrder(".git/objects/f.snf"));
+    }
+
+    @Test
+    public void findAll_excludes() throws MojoExecutionException {
+        final FileSet set = fileset("**/*.snf");
+        set.addExclude("sub/deeper/");
+        set.addExclude("*/e.*");
+
+        assertThat(findAll(set), containsInAnyOrder("a.snf", "sub/b.snf"));
+    }
+
+    @Test
+    public void findAll_onlyShard() throws MojoExecutionException {
+        final FileSet[] sets = {fileset("**/*.snf")};
+        final Collection<String> first = relative(FileDiscovery.findAll(sets, new Shard(0, 2), 2));
+        final Collection<String> second = relative(FileDiscovery.findAll(sets, new Shard(1, 2), 2));
+
+        assertThat(first.size() + second.size(), is(5));
+
+        for (final String file : first) {
+            assertThat(file, new Shard(0, 2).contains(file), is(true));
+        }
+    }
+
+    private void assertSameAsFileSetManager(final FileSet set) throws MojoExecutionException {
+        final Collection<String> expected = Arrays.stream(new FileSetManager().getIncludedFiles(set))
+            .map(file -> file.replace(File.separatorChar, '/'))
+            .collect(Collectors.toCollection(TreeSet::new));
+
+        assertThat(set.getIncludes() + " " + set.getExcludes(), new TreeSet<>(findAll(set)), is(expected));
+    }
+
+    @Test
+    public void findAll_sameAsFileSetManager() throws IOException, MojoExecutionException {
+        touch("ab.snf");
+        touch("other/Upper.SNF");
+        final String[][] includes = {
+            {}, {"**"}, {"**/*.snf"}, {"?.snf"}, {"??.snf"}, {"sub/*/?.snf"}, {"sub/**/deepest/**"}, {"sub/"},
+            {"*/"}, {"sub\\deeper\\"}, {"**/*.SNF"}, {"**/upper.snf"}, {"**/*.Snf"}
+        };
+
+        for (final String[] patterns : includes) {
+            assertSameAsFileSetManager(fileset(patterns));
+        }
+
+        final FileSet excluding = fileset("**/*.snf", "**/*.SNF");
+        excluding.addExclude("sub/deeper/");
+        excluding.addExclude("*/?.snf");
+        excluding.addExclude("**/upper.*");
+        assertSameAsFileSetManager(excluding);
+
+        final FileSet withoutDefaultExcludes = fileset();
+        withoutDefaultExcludes.setUseDefaultExcludes(false);
+        assertSameAsFileSetManager(withoutDefaultExcludes);
+    }
+
+    @Test
+    public void findAll_overlappingFilesetsOnce() throws MojoExecutionException {
+        final FileSet nested = fileset("**/*.snf");
+        nested.setDirectory(root.resolve("sub").toString());
+        final FileSet[] sets = {fileset("**/*.snf"), fileset("sub/**", "a.*"), nested};
+
+        assertThat(relative(FileDiscovery.findAll(sets, Shard.ALL, 3)), containsInAnyOrder(
+            "a.snf", "a.log", "sub/b.snf", "sub/deeper/c.snf", "sub/deeper/deepest/d.snf", "other/e.snf"));
+    }
+
+    @Test
+    public void findAll_missingDirectory() throws MojoExecutionException {
+        final FileSet set = new FileSet();
+        set.setDirectory(root.resolve("missing").toString());
+
+        assertThat(FileDiscovery.findAll(new FileSet[]{set}, Shard.ALL, 1), is(empty()));
+    }
+
+    @Test
+    public void iterator_startsBeforeWalkFinished() throws MojoExecutionException {
+        try (FileDiscovery sut = FileDiscovery.start(new FileSet[]{fileset("**/*.snf")}, Shard.ALL, 1)) {
+            final Iterator<String> files = sut.iterator();
+
+            assertThat(files.hasNext(), is(true));
+            files.next();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void iterator_onlyOnce() throws MojoExecutionException {
+        try (FileDiscovery sut = FileDiscovery.start(new FileSet[0], Shard.ALL, 1)) {
+            sut.iterator();
+            sut.iterator();
+        }
+    }
+
+    @Test
+    public void compile() {
+        assertThat(FileDiscovery.compile("**/*.snf").matcher("a.snf").matches(), is(true));
+        assertThat(FileDiscovery.compile("**/*.snf").matcher("a/b/c.snf").matches(), is(true));
+        assertThat(FileDiscovery.compile("a/**/c.snf").matcher("a/c.snf").matches(), is(true));
+        assertThat(FileDiscovery.compile("a/**/c.snf").matcher("a/b/c.snf").matches(), is(true));
+        assertThat(FileDiscovery.compile("a/**").matcher("a/b/c.snf").matches(), is(true));
+        assertThat(FileDiscovery.compile("a\\").matcher("a/b").matches(), is(true));
+        assertThat(FileDiscovery.compile("*.snf").matcher("a/b.snf").matches(), is(false));
+        assertThat(FileDiscovery.compile("?.snf").matcher("ab.snf").matches(), is(false));
+        assertThat(FileDiscovery.compile("a+(b).snf").matcher("a+(b).snf").matches(), is(true));
+    }
+
+    @Test
+    public void findAll_archiveEntries() throws IOException, MojoExecutionException {
+        final Path archive = ArchiveTest.zip(
+            root.resolve("corpus.zip"), "simple/a.snf", "1;", "simple/a.log", "", "b.snf", "2;");
+        final FileSet set = new FileSet();
+        set.setDirectory(archive.toString());
+        set.addInclude("**/*.snf");
+
+        assertThat(FileDiscovery.findAll(new FileSet[]{set}, Shard.ALL, 1), containsInAnyOrder(
+            archive.toAbsolutePath() + "!/simple/a.snf", archive.toAbsolutePath() + "!/b.snf"));
+    }
+
+    @Test
+    public void hasArchive() throws IOException {
+        final FileSet directory = new FileSet();
+        directory.setDirectory(root.toString());
+        final FileSet archive = new FileSet();
+        archive.setDirectory(ArchiveTest.zip(root.resolve("corpus.zip"), "a.snf", "1;").toString());
+
+        assertThat(FileDiscovery.hasArchive(new FileSet[]{directory}), is(false));
+        assertThat(FileDiscovery.hasArchive(new FileSet[]{directory, archive}), is(true));
+    }
+
+    @Test
+    public void takeContent_ofArchiveEntries() throws IOException, MojoExecutionException {
+        final Path archive = ArchiveTest.zip(root.resolve("corpus.zip"), "simple/a.snf", "1;");
+        final FileSet set = new FileSet();
+        set.setDirectory(archive.toString());
+
+        try (FileDiscovery sut = FileDiscovery.start(new FileSet[]{set, fileset("a.snf")}, Shard.ALL, 1)) {
+            for (final String file : sut) {
+                if (file.endsWith("!/simple/a.snf")) {
+                    assertThat(sut.relativize(file), is("simple/a.snf"));
+                    assertThat(new String(sut.takeContent(file), StandardCharsets.UTF_8), is("1;"));
+                    assertThat(sut.takeContent(file), is(nullValue()));
+                } else {
+                    assertThat(sut.relativize(file), is("a.snf"));
+                    assertThat(sut.takeContent(file), is(nullValue()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void relativize_absolutePaths() throws IOException {
+        final Path archive = ArchiveTest.zip(root.resolve("corpus.zip"), "simple/a.snf", "1;");
+        final FileSet set = new FileSet();
+        set.setDirectory(archive.toString());
+        final FileSet[] filesets = {set, fileset(), fileset()};
+        filesets[2].setDirectory(root.resolve("sub").toString());
+        final String absoluteRoot = root.toAbsolutePath().toString();
+
+        assertThat(FileDiscovery.relativize(filesets, absoluteRoot + "/other/"), is("other/"));
+        assertThat(FileDiscovery.relativize(filesets, absoluteRoot + "/sub/deeper/c.snf"), is("deeper/c.snf"));
+        assertThat(FileDiscovery.relativize(filesets, archive.toAbsolutePath() + "!/simple/"), is("simple/"));
+        assertThat(FileDiscovery.relativize(filesets, "/elsewhere/a.snf"), is("/elsewhere/a.snf"));
+    }
+
+    @Test
+    public void size_ofFilesAndArchiveEntries() throws IOException, MojoExecutionException {
+        Files.write(root.resolve("sub/b.snf"), "1 + 2;".getBytes(StandardCharsets.UTF_8));
+        final Path archive = ArchiveTest.zip(root.resolve("corpus.zip"), "c.snf", "3;");
+        final FileSet set = new FileSet();
+        set.setDirectory(archive.toString());
+
+        try (FileDiscovery sut = FileDiscovery.start(new FileSet[]{set, fileset("sub/b.snf")}, Shard.ALL, 1)) {
+            for (final String file : sut) {
+                assertThat(sut.size(file), is(file.endsWith("!/c.snf") ? 2L : 6L));
+            }
+
+            assertThat(sut.size(root.resolve("missing.snf").toString()), is(0L));
+        }
+    }
+
+    @Test
+    public void findAll_noFilesets() throws MojoExecutionException {
+        assertThat(FileDiscovery.findAll(new FileSet[0], Shard.ALL, 1), hasSize(0));
+    }
+}
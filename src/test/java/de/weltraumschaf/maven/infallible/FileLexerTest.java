@@ -0,0 +1,100 @@
+package de.weltraumschaf.maven.infallible;
+
+import foo.bar.baz.SnafuLexer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link FileLexer}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class FileLexerTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+
+    private FileLexer sut(final long streamingThreshold) throws MojoExecutionException {
+        return new FileLexer(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu", "utf-8", streamingThreshold, null);
+    }
+
+    private Path file(final String content) throws IOException {
+        final Path file = tmp.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void getLexerClass() throws MojoExecutionException {
+        assertThat(sut(Long.MAX_VALUE).getLexerClass(), is(sameInstance((Object) SnafuLexer.class)));
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void unknownLexer() throws MojoExecutionException {
+        new FileLexer(log, getClass().getClassLoader(), "foo.bar.baz", "Unknown", "utf-8", Long.MAX_VALUE, null);
+    }
+
+    @Test
+    public void lex_countsTokens() throws IOException, MojoExecutionException {
+        final Result result = sut(Long.MAX_VALUE).lex(file("3 * 4 + 5.27 ;"));
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.getMetrics().getTokens(), is(6L));
+        assertThat(result.getMetrics().getParseNanos(), is(0L));
+        assertThat(result.getMetrics().getBytes(), is(14L));
+    }
+
+    @Test
+    public void lex_loaded() throws MojoExecutionException {
+        final char[] chars = "3 * 4 ;".toCharArray();
+        final ReadAhead.Loaded loaded = new ReadAhead.Loaded(
+            "corpus.zip!/a.snf", chars, chars.length, 42, 7, null, new ReadAhead.Pool(0, 1));
+
+        final Result result = sut(Long.MAX_VALUE).lex(loaded);
+
+        assertThat(result.getTestedFile(), is("corpus.zip!/a.snf"));
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.getMetrics().getTokens(), is(4L));
+        assertThat(result.getMetrics().getReadNanos(), is(42L));
+        assertThat(result.getMetrics().getBytes(), is(7L));
+    }
+
+    @Test
+    public void lex_doesNotParse() throws IOException, MojoExecutionException {
+        // Valid tokens but no valid statement.
+        assertThat(sut(Long.MAX_VALUE).lex(file("; ; ) (")).isFailed(), is(false));
+    }
+
+    @Test
+    public void lex_failsOnFirstTokenRecognitionError() throws IOException, MojoExecutionException {
+        final Result result = sut(Long.MAX_VALUE).lex(file("1 +\n2 $ 3 # 4;"));
+
+        assertThat(result.isFailed(), is(true));
+        assertThat(result.getFailure().getMessage(), is("line 2:2 token recognition error at: '$'"));
+        assertThat(result.getFailure().getLine(), is(2));
+        assertThat(result.getFailure().getColumn(), is(2));
+        assertThat(result.getFailure().getOffendingToken(), is("$"));
+        assertThat(result.getMetrics().getTokens(), is(3L));
+    }
+
+    @Test
+    public void lex_streaming() throws IOException, MojoExecutionException {
+        final FileLexer sut = sut(0);
+
+        assertThat(sut.lex(file("3 * 4 + 5.27 ;")).getMetrics().getTokens(), is(6L));
+        assertThat(sut.lex(file("1 $")).isFailed(), is(true));
+    }
+}
@@ -0,0 +1,96 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link Fingerprint}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class FingerprintTest {
+
+    private static final String[] GRAMMAR = {"foo.bar.baz.SnafuLexer", "foo.bar.baz.SnafuParser"};
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    private final ClassLoader classes = getClass().getClassLoader();
+
+    @Test
+    public void hex() {
+        assertThat(Fingerprint.hex(new byte[]{0x00, 0x0f, (byte) 0xa5, (byte) 0xff}), is("000fa5ff"));
+    }
+
+    @Test
+    public void ofFile() throws IOException, MojoExecutionException {
+        final Path file = tmp.newFile().toPath();
+        Files.write(file, "abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(
+            Fingerprint.ofFile(file),
+            is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+    }
+
+    @Test
+    public void ofBytes() throws MojoExecutionException {
+        final ByteBuffer content = ByteBuffer.wrap("xabc".getBytes(StandardCharsets.UTF_8));
+        content.position(1);
+
+        assertThat(
+            Fingerprint.ofBytes(content),
+            is("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad"));
+        assertThat(content.position(), is(1));
+    }
+
+    @Test
+    public void ofClasses() throws MojoExecutionException {
+        final String fingerprint = Fingerprint.ofClasses(classes, GRAMMAR, "startRule", "utf-8");
+
+        assertThat(Fingerprint.ofClasses(classes, GRAMMAR, "startRule", "utf-8"), is(fingerprint));
+        assertThat(Fingerprint.ofClasses(classes, GRAMMAR, "statement", "utf-8"), is(not(fingerprint)));
+        assertThat(Fingerprint.ofClasses(classes, GRAMMAR, "startRule", "latin1"), is(not(fingerprint)));
+        assertThat(
+            Fingerprint.ofClasses(classes, new String[]{"foo.bar.baz.SnafuLexer"}, "startRule", "utf-8"),
+            is(not(fingerprint)));
+    }
+
+    @Test
+    public void ofClassFiles() throws MojoExecutionException, IOException {
+        final Path directory = tmp.newFolder().toPath();
+        final String empty = Fingerprint.ofClassFiles(directory);
+        final Path classFile = directory.resolve("Foo.class");
+        Files.write(classFile, "abc".getBytes(StandardCharsets.UTF_8));
+        final String fingerprint = Fingerprint.ofClassFiles(directory);
+        Files.write(directory.resolve("foo.txt"), "abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(fingerprint, is(not(empty)));
+        assertThat(Fingerprint.ofClassFiles(directory), is(fingerprint));
+        assertThat(Fingerprint.ofClassFiles(directory.resolve("missing")), is(empty));
+
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(0));
+
+        assertThat(Fingerprint.ofClassFiles(directory), is(not(fingerprint)));
+    }
+
+    @Test
+    public void ofClasses_unknownClass() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Can't find byte code of class 'foo.Unknown'!");
+
+        Fingerprint.ofClasses(classes, new String[]{"foo.Unknown"});
+    }
+}
@@ -0,0 +1,143 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link ForkedParsers} and {@link ForkedParser}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ForkedParsersTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    private final Log log = mock(Log.class);
+
+    private static ForkedParser.Settings settings(final String startRule) {
+        return new ForkedParser.Settings(
+            Paths.get("target/test-classes").toAbsolutePath().toString(),
+            "foo.bar.baz",
+            "Snafu",
+            startRule,
+            "utf-8",
+            PredictionStrategy.TWO_STAGE.getConfigName(),
+            Long.MAX_VALUE,
+            0);
+    }
+
+    private static String fixture(final String name) {
+        return Paths.get("src/test/snafu", name).toAbsolutePath().toString();
+    }
+
+    private String write(final String name, final String content) throws IOException {
+        final Path file = tmp.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toString();
+    }
+
+    @Test
+    public void command() {
+        assertThat(ForkedParsers.command(" -Xmx1g  -Dfoo=bar ", "a.jar").subList(1, 6), contains(
+            "-Xmx1g", "-Dfoo=bar", "-classpath", "a.jar", ForkedParser.class.getName()));
+        assertThat(ForkedParsers.command(null, "a.jar").subList(1, 4), contains(
+            "-classpath", "a.jar", ForkedParser.class.getName()));
+    }
+
+    @Test
+    public void parse() throws MojoExecutionException, IOException {
+        final String failing = write("failing.snf", "1 + ;\n");
+
+        try (ForkedParsers sut = new ForkedParsers(log, null, settings("startRule"))) {
+            final Result passed = sut.parse(fixture("some.snf"));
+            final Result failed = sut.parse(failing);
+
+            assertThat(passed.getState(), is(Result.State.PASSED));
+            assertThat(passed.getTestedFile(), is(fixture("some.snf")));
+            assertThat(passed.getMetrics().getTokens(), is(greaterThan(0L)));
+            assertThat(passed.getMetrics().getBytes(), is(Files.size(Paths.get(fixture("some.snf")))));
+            assertThat(failed.getState(), is(Result.State.FAILED));
+            assertThat(failed.getTestedFile(), is(failing));
+            assertThat(sut.countStarted(), is(1));
+        }
+    }
+
+    @Test
+    public void parse_errorInWorker() throws MojoExecutionException {
+        try (ForkedParsers sut = new ForkedParsers(log, null, settings("noSuchRule"))) {
+            thrown.expect(MojoExecutionException.class);
+            thrown.expectMessage("Given parser has no method with name 'noSuchRule'");
+
+            sut.parse(fixture("some.snf"));
+        }
+    }
+
+    @Test
+    public void parse_cancelledIfInterrupted() throws MojoExecutionException {
+        try (ForkedParsers sut = new ForkedParsers(log, null, settings("startRule"))) {
+            // The worker JVM is still starting, so its response can't be there yet.
+            Thread.currentThread().interrupt();
+
+            try {
+                sut.parse(fixture("some.snf"));
+                fail("Expected CancellationException!");
+            } catch (final CancellationException ex) {
+                assertThat(ex.getMessage(), is(String.format("Parsing '%s' cancelled!", fixture("some.snf"))));
+                assertThat(Thread.interrupted(), is(true));
+            }
+
+            final Result passed = sut.parse(fixture("some.snf"));
+
+            assertThat(passed.getState(), is(Result.State.PASSED));
+            assertThat(sut.countStarted(), is(2));
+        }
+    }
+
+    @Test
+    public void parse_workerOutOfMemory() throws MojoExecutionException, IOException {
+        final Path huge = tmp.getRoot().toPath().resolve("huge.snf");
+
+        try (OutputStream output = Files.newOutputStream(huge)) {
+            final byte[] statements = new byte[1024 * 1024];
+            Arrays.fill(statements, (byte) ';');
+
+            for (int i = 0; i < 32; ++i) {
+                output.write(statements);
+            }
+        }
+
+        try (ForkedParsers sut = new ForkedParsers(log, "-Xmx16m", settings("startRule"))) {
+            final Result crashed = sut.parse(huge.toString());
+            final Result passed = sut.parse(fixture("some.snf"));
+
+            assertThat(crashed.getState(), is(Result.State.FAILED));
+            assertThat(crashed.getTestedFile(), is(huge.toString()));
+            assertThat(crashed.getFailure().getMessage(),
+                is(String.format("Worker JVM ran out of memory while parsing '%s'!", huge)));
+            verify(log).error(crashed.getFailure().getMessage());
+            assertThat(passed.getState(), is(Result.State.PASSED));
+            assertThat(sut.countStarted(), is(2));
+        }
+    }
+}
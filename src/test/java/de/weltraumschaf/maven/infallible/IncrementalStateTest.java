@@ -0,0 +1,101 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Matchers.startsWith;
+
+/**
+ * Tests for {@link IncrementalState}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class IncrementalStateTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+
+    private Path stateFile() {
+        return tmp.getRoot().toPath().resolve("sub").resolve(IncrementalState.FILE_NAME);
+    }
+
+    @Test
+    public void load_withoutStateFile() {
+        final IncrementalState sut = IncrementalState.load(log, stateFile(), "grammar");
+
+        assertThat(sut.isUnchanged("foo.snf", "content"), is(false));
+        assertThat(sut.size(), is(0));
+        verifyZeroInteractions(log);
+    }
+
+    @Test
+    public void storeAndLoad() throws MojoExecutionException {
+        final IncrementalState first = IncrementalState.load(log, stateFile(), "grammar");
+        first.passed("foo.snf", "foo");
+        first.passed("bar.snf", "bar");
+        first.store();
+
+        final IncrementalState second = IncrementalState.load(log, stateFile(), "grammar");
+
+        assertThat(second.isUnchanged("foo.snf", "foo"), is(true));
+        assertThat(second.isUnchanged("bar.snf", "bar"), is(true));
+        assertThat(second.isUnchanged("baz.snf", "baz"), is(false));
+        assertThat(second.size(), is(0));
+    }
+
+    @Test
+    public void isUnchanged_contentChanged() throws MojoExecutionException {
+        final IncrementalState first = IncrementalState.load(log, stateFile(), "grammar");
+        first.passed("foo.snf", "foo");
+        first.store();
+
+        assertThat(IncrementalState.load(log, stateFile(), "grammar").isUnchanged("foo.snf", "changed"), is(false));
+    }
+
+    @Test
+    public void isUnchanged_grammarChanged() throws MojoExecutionException {
+        final IncrementalState first = IncrementalState.load(log, stateFile(), "grammar");
+        first.passed("foo.snf", "foo");
+        first.store();
+
+        assertThat(IncrementalState.load(log, stateFile(), "changed").isUnchanged("foo.snf", "foo"), is(false));
+    }
+
+    @Test
+    public void store_onlyRecordsFilesOfThisRun() throws MojoExecutionException {
+        final IncrementalState first = IncrementalState.load(log, stateFile(), "grammar");
+        first.passed("foo.snf", "foo");
+        first.passed("bar.snf", "bar");
+        first.store();
+        final IncrementalState second = IncrementalState.load(log, stateFile(), "grammar");
+        second.passed("foo.snf", "foo");
+        second.store();
+
+        final IncrementalState third = IncrementalState.load(log, stateFile(), "grammar");
+
+        assertThat(third.isUnchanged("foo.snf", "foo"), is(true));
+        assertThat(third.isUnchanged("bar.snf", "bar"), is(false));
+    }
+
+    @Test
+    public void load_brokenStateFile() throws IOException {
+        Files.createDirectories(stateFile().getParent());
+        Files.write(stateFile(), "foo=\\uXYZ".getBytes("ISO-8859-1"));
+
+        final IncrementalState sut = IncrementalState.load(log, stateFile(), "grammar");
+
+        assertThat(sut.isUnchanged("foo", "XYZ"), is(false));
+        verify(log).warn(startsWith("Can't read incremental state"));
+    }
+}
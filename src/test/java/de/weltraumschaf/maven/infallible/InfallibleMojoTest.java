@@ -1,6 +1,11 @@
 package de.weltraumschaf.maven.infallible;
 
+import foo.bar.baz.SnafuLexer;
+import foo.bar.baz.SnafuParser;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
@@ -16,9 +21,14 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 import org.mockito.InOrder;
+import static org.mockito.AdditionalMatchers.and;
+import static org.mockito.Matchers.startsWith;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * Tests for {@link InfallibleMojo}.
@@ -47,6 +57,31 @@ public final class InfallibleMojoTest extends AbstractMojoTestCase {
         assertThat(sut.getGrammarName(), is("Snafu"));
         assertThat(sut.getPackageName(), is("foo.bar.baz"));
         assertThat(sut.getEncoding(), is(InfallibleMojo.DEFAULT_ENCODING));
+        assertThat(sut.getThreads(), is(InfallibleMojo.DEFAULT_THREADS));
+        assertThat(sut.getPredictionStrategy(), is(InfallibleMojo.DEFAULT_PREDICTION_STRATEGY));
+        assertThat(sut.getStreamingThreshold(), is(Long.parseLong(InfallibleMojo.DEFAULT_STREAMING_THRESHOLD)));
+        assertThat(sut.isIncremental(), is(false));
+        assertThat(sut.isPersistDfa(), is(false));
+        assertThat(sut.isProfile(), is(false));
+        assertThat(sut.isFailFast(), is(false));
+        assertThat(sut.getFailAfter(), is(0));
+        assertThat(sut.getTimeout(), is(0L));
+        assertThat(sut.getForkCount(), is(0));
+        assertThat(sut.getArgLine(), is(nullValue()));
+        assertThat(sut.getReportSlowest(), is(Integer.parseInt(InfallibleMojo.DEFAULT_REPORT_SLOWEST)));
+        assertThat(sut.getDiscoveryThreads(), is(Integer.parseInt(InfallibleMojo.DEFAULT_DISCOVERY_THREADS)));
+        assertThat(sut.getMode(), is(InfallibleMojo.DEFAULT_MODE));
+        assertThat(sut.isReuseParsers(), is(false));
+        assertThat(sut.isBuildParseTree(), is(false));
+        assertThat(sut.getReadAhead(), is(Integer.parseInt(InfallibleMojo.DEFAULT_READ_AHEAD)));
+        assertThat(sut.getIoThreads(), is(Integer.parseInt(InfallibleMojo.DEFAULT_IO_THREADS)));
+        assertThat(sut.isLongestFirst(), is(false));
+        assertThat(sut.isRecordBaseline(), is(false));
+        assertThat(sut.isCompareBaseline(), is(false));
+        assertThat(sut.getBaselineFile(), is(nullValue()));
+        assertThat(sut.getMaxSlowdown(), is(Integer.parseInt(InfallibleMojo.DEFAULT_MAX_SLOWDOWN)));
+        assertThat(sut.getFileBudget(), is(Long.parseLong(InfallibleMojo.DEFAULT_FILE_BUDGET)));
+        assertThat(sut.isFailOnRegression(), is(true));
         assertThat(sut.getFilesets(), is(not(nullValue())));
         assertThat(sut.getFilesets().length, is(1));
 
@@ -60,7 +95,7 @@ public final class InfallibleMojoTest extends AbstractMojoTestCase {
 
     
     @Test
-    public void testGetFilesToTest() {
+    public void testGetFilesToTest() throws MojoExecutionException {
         assertThat(sut.getFilesToTest(), hasSize(3));
         assertThat(
             sut.getFilesToTest(),
@@ -83,4 +118,520 @@ public final class InfallibleMojoTest extends AbstractMojoTestCase {
         order.verify(log, times(1)).info("-------------------------------------------------------");
     }
 
+    @Test
+    public void testExecute_parallel() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "threads", "2");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info("Parsing with 2 thread(s).");
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_forked() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "forkCount", 2);
+        setVariableValueToObject(sut, "argLine", "-Xmx64m");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info("Parsing in 2 forked JVM(s).");
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_reportSlowest() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "reportSlowest", 2);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(and(
+            startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%nThroughput: 3 files in ")),
+            org.mockito.Matchers.contains(String.format("%nSlowest sources:%n"))));
+    }
+
+    @Test
+    public void testExecute_profile() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "profile", true);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(startsWith("Wrote decision profile of "));
+        assertThat(new File(workDirectory, DecisionProfile.TEXT_FILE_NAME).isFile(), is(true));
+        assertThat(new File(workDirectory, DecisionProfile.CSV_FILE_NAME).isFile(), is(true));
+    }
+
+    @Test
+    public void testExecute_incremental() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", Files.createTempDirectory("infallible").toFile());
+        setVariableValueToObject(sut, "incremental", true);
+        final Log first = mock(Log.class);
+        sut.setLog(first);
+
+        sut.execute();
+
+        verify(first, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+
+        final Log second = mock(Log.class);
+        sut.setLog(second);
+
+        sut.execute();
+
+        verify(second, times(1)).info(
+            startsWith(String.format("Results:%n%nSources parsed: 0, Cached: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_failFastWithIncrementalAndThreads() throws Exception {
+        final File corpus = Files.createTempDirectory("infallible").toFile();
+
+        for (int i = 0; i < 50; ++i) {
+            Files.write(new File(corpus, "valid" + i + ".snf").toPath(), "1 + 2;".getBytes(StandardCharsets.UTF_8));
+        }
+
+        Files.write(new File(corpus, "invalid.snf").toPath(), "1 +;".getBytes(StandardCharsets.UTF_8));
+        final FileSet set = new FileSet();
+        set.setDirectory(corpus.getAbsolutePath());
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", Files.createTempDirectory("infallible").toFile());
+        setVariableValueToObject(sut, "filesets", new FileSet[]{set});
+        setVariableValueToObject(sut, "incremental", true);
+        setVariableValueToObject(sut, "failFast", true);
+        setVariableValueToObject(sut, "threads", "4");
+        sut.setLog(mock(Log.class));
+
+        try {
+            sut.execute();
+            fail("Expected MojoFailureException!");
+        } catch (final MojoFailureException ex) {
+            assertThat(ex.getMessage(), is("1 source(s) failed, 0 timed out and 0 performance regression(s)!"));
+        }
+    }
+
+    @Test
+    public void testExecute_persistDfa() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", Files.createTempDirectory("infallible").toFile());
+        setVariableValueToObject(sut, "persistDfa", true);
+        final Log first = mock(Log.class);
+        sut.setLog(first);
+
+        sut.execute();
+
+        verify(first, times(1)).info(startsWith("Stored "));
+        // The generated classes are shared by all tests, so clear the DFA they built.
+        new SnafuParser(null).getInterpreter().clearDFA();
+        new SnafuLexer(null).getInterpreter().clearDFA();
+        final Log second = mock(Log.class);
+        sut.setLog(second);
+
+        sut.execute();
+
+        verify(second, times(1)).info(startsWith("Loaded "));
+        verify(second, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_streaming() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "streamingThreshold", 0L);
+        setVariableValueToObject(sut, "predictionStrategy", "twoStage");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_twoStage() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "predictionStrategy", "twoStage");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_targets() throws Exception {
+        final GrammarTarget constant = new GrammarTarget("Snafu", "foo.bar.baz", "constant");
+        constant.getIncludes().add("with*.snf");
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "targets", new GrammarTarget[]{
+            new GrammarTarget("Snafu", "foo.bar.baz", "startRule"), constant});
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info("Parsing 2 target(s) with 1 thread(s).");
+        verify(log, times(1)).info(String.format("Results per target:%n%n"
+            + "Snafu:startRule: Sources parsed: 3, Failed: 0%n"
+            + "Snafu:constant: Sources parsed: 2, Failed: 0%n"));
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_withoutParseTree() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, never()).debug(startsWith("No parse trees built"));
+    }
+
+    @Test
+    public void testExecute_withoutParseTreeDebug() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        final Log log = mock(Log.class);
+        when(log.isDebugEnabled()).thenReturn(true);
+        sut.setLog(log);
+
+        sut.execute();
+
+        if (ParseTreeSavings.isSupported()) {
+            verify(log, times(1)).debug(startsWith("No parse trees built, estimated to save "));
+        }
+    }
+
+    @Test
+    public void testExecute_buildParseTree() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "buildParseTree", true);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, never()).debug(startsWith("No parse trees built"));
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_reuseParsers() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "reuseParsers", true);
+        setVariableValueToObject(sut, "threads", "2");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_lex() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "mode", "lex");
+        setVariableValueToObject(sut, "startRule", null);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info("Lexing with 1 thread(s).");
+        verify(log, times(1)).info("Using lexer class 'foo.bar.baz.SnafuLexer'.");
+        verify(log, never()).info("Using parser class 'foo.bar.baz.SnafuParser'.");
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_readAhead() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "threads", "2");
+        setVariableValueToObject(sut, "readAhead", 1);
+        setVariableValueToObject(sut, "ioThreads", 3);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info("Loading up to 3 file(s) ahead with 3 I/O thread(s).");
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_readAheadWithOverlappingFilesets() throws Exception {
+        final FileSet all = new FileSet();
+        all.setDirectory("src/test/snafu");
+        all.addInclude("**/*.snf");
+        final FileSet some = new FileSet();
+        some.setDirectory("src/test/snafu");
+        some.addInclude("*_errors.snf");
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "filesets", new FileSet[]{all, some});
+        setVariableValueToObject(sut, "threads", "2");
+        setVariableValueToObject(sut, "readAhead", 0);
+        setVariableValueToObject(sut, "ioThreads", 2);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_longestFirst() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "threads", "2");
+        setVariableValueToObject(sut, "longestFirst", true);
+        final Log first = mock(Log.class);
+        sut.setLog(first);
+
+        sut.execute();
+
+        verify(first, times(1)).info("Parsing 3 file(s) longest first (0 duration(s) recorded by the last run).");
+        assertThat(new File(workDirectory, Durations.FILE_NAME).isFile(), is(true));
+
+        final Log second = mock(Log.class);
+        sut.setLog(second);
+
+        sut.execute();
+
+        verify(second, times(1)).info("Parsing 3 file(s) longest first (3 duration(s) recorded by the last run).");
+        verify(second, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_recordAndCompareBaseline() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "recordBaseline", true);
+        final Log first = mock(Log.class);
+        sut.setLog(first);
+
+        sut.execute();
+
+        verify(first, times(1)).info(startsWith("Wrote baseline of "));
+        assertThat(new File(workDirectory, Baseline.FILE_NAME).isFile(), is(true));
+
+        // A baseline no run can reach.
+        new Baseline(Double.MAX_VALUE, 0, Collections.emptyMap())
+            .store(workDirectory.toPath().resolve(Baseline.FILE_NAME));
+        setVariableValueToObject(sut, "recordBaseline", false);
+        setVariableValueToObject(sut, "compareBaseline", true);
+        final Log second = mock(Log.class);
+        sut.setLog(second);
+
+        try {
+            sut.execute();
+            fail("Expected MojoFailureException!");
+        } catch (final MojoFailureException ex) {
+            assertThat(ex.getMessage(), is("0 source(s) failed, 0 timed out and 1 performance regression(s)!"));
+        }
+
+        verify(second, times(1)).warn(startsWith("Throughput dropped from "));
+    }
+
+    @Test
+    public void testExecute_baselineIgnoredWithIncremental() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "incremental", true);
+        setVariableValueToObject(sut, "recordBaseline", true);
+        setVariableValueToObject(sut, "compareBaseline", true);
+        sut.setLog(mock(Log.class));
+        sut.execute();
+        final Log second = mock(Log.class);
+        sut.setLog(second);
+
+        sut.execute();
+
+        verify(second, times(1)).warn("Baselines are not supported with incremental parsing and ignored.");
+        verify(second, never()).info(startsWith("Wrote baseline of "));
+        assertThat(new File(workDirectory, Baseline.FILE_NAME).exists(), is(false));
+    }
+
+    @Test
+    public void testExecute_baselineFile() throws Exception {
+        final File baselineFile = new File(Files.createTempDirectory("baseline").toFile(), "snafu.properties");
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", Files.createTempDirectory("infallible").toFile());
+        setVariableValueToObject(sut, "baselineFile", baselineFile);
+        setVariableValueToObject(sut, "recordBaseline", true);
+        sut.setLog(mock(Log.class));
+
+        sut.execute();
+
+        // All files are directly in the file set directory.
+        assertThat(Baseline.load(baselineFile.toPath()).getDirectoryNanos().keySet(), contains("."));
+    }
+
+    @Test
+    public void testExecute_regressionsOnlyWarned() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        new Baseline(Double.MAX_VALUE, 0, Collections.emptyMap())
+            .store(workDirectory.toPath().resolve(Baseline.FILE_NAME));
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "compareBaseline", true);
+        setVariableValueToObject(sut, "failOnRegression", false);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).warn(startsWith("Throughput dropped from "));
+    }
+
+    @Test
+    public void testExecute_missingBaseline() throws Exception {
+        final File workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", workDirectory);
+        setVariableValueToObject(sut, "compareBaseline", true);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).warn(String.format("There is no baseline '%s' to compare with!",
+            workDirectory.toPath().resolve(Baseline.FILE_NAME)));
+    }
+
+    @Test
+    public void testExecute_maxSlowdownOutOfRange() throws Exception {
+        setVariableValueToObject(sut, "maxSlowdown", 101);
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Max slowdown '101' must be in range [0, 100]!"));
+        }
+    }
+
+    @Test
+    public void testExecute_negativeFileBudget() throws Exception {
+        setVariableValueToObject(sut, "fileBudget", -1L);
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("File budget '-1' must not be negative!"));
+        }
+    }
+
+    @Test
+    public void testExecute_negativeReadAhead() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "readAhead", -1);
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Read ahead '-1' must not be negative!"));
+        }
+    }
+
+    @Test
+    public void testExecute_unknownMode() throws Exception {
+        setVariableValueToObject(sut, "mode", "tokenize");
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Unknown mode 'tokenize' (use 'parse' or 'lex')!"));
+        }
+    }
+
+    private FileSet[] archiveFileset() throws Exception {
+        final File directory = Files.createTempDirectory("infallible").toFile();
+        final FileSet set = new FileSet();
+        set.setDirectory(ArchiveTest.zip(new File(directory, "corpus.zip").toPath(),
+            "simple/some.snf", "3 * 4 + 5.27 ;", "other.snf", "1 + 2;", "notes.log", "no snafu").toString());
+        set.addInclude("**/*.snf");
+        return new FileSet[]{set};
+    }
+
+    @Test
+    public void testExecute_archive() throws Exception {
+        final FileSet[] filesets = archiveFileset();
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "filesets", filesets);
+        setVariableValueToObject(sut, "threads", "2");
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).info(String.format(
+            "Parse file '%s!/simple/some.snf'...", new File(filesets[0].getDirectory()).getAbsolutePath()));
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 2, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_archiveWithLongestFirst() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "workDirectory", Files.createTempDirectory("infallible").toFile());
+        setVariableValueToObject(sut, "filesets", archiveFileset());
+        setVariableValueToObject(sut, "longestFirst", true);
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(log, times(1)).warn("Longest first scheduling is not supported with archives and ignored.");
+        verify(log, never()).info(startsWith("Parsing 2 file(s) longest first"));
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 2, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_archiveWithForks() throws Exception {
+        setVariableValueToObject(sut, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(sut, "filesets", archiveFileset());
+        setVariableValueToObject(sut, "forkCount", 1);
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Archives are not supported with forked JVMs!"));
+        }
+    }
+
+    @Test
+    public void testExecute_targetsWithShards() throws Exception {
+        setVariableValueToObject(sut, "targets", new GrammarTarget[]{
+            new GrammarTarget("Snafu", "foo.bar.baz", "startRule")});
+        setVariableValueToObject(sut, "shardCount", 2);
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Shards are not supported with targets!"));
+        }
+    }
+
 }
@@ -0,0 +1,79 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link MappedFileInputStream}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class MappedFileInputStreamTest {
+
+    private static final String CONTENT = "Hello, World!";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private Path createFile(final String content) throws IOException {
+        final Path file = tmp.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String readAll(final InputStream input, final int bufferSize) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[bufferSize];
+        int read;
+
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void read_singleWindow() throws IOException {
+        final Path file = createFile(CONTENT);
+
+        assertThat(readAll(new MappedFileInputStream(file, Files.size(file)), 1024), is(CONTENT));
+    }
+
+    @Test
+    public void read_multipleWindows() throws IOException {
+        final Path file = createFile(CONTENT);
+
+        assertThat(readAll(new MappedFileInputStream(file, Files.size(file), 3), 5), is(CONTENT));
+    }
+
+    @Test
+    public void read_byteByByte() throws IOException {
+        final Path file = createFile("ab");
+        final InputStream sut = new MappedFileInputStream(file, Files.size(file), 1);
+
+        assertThat(sut.read(), is((int) 'a'));
+        assertThat(sut.read(), is((int) 'b'));
+        assertThat(sut.read(), is(-1));
+        assertThat(sut.read(), is(-1));
+    }
+
+    @Test
+    public void read_emptyFile() throws IOException {
+        final Path file = createFile("");
+        final InputStream sut = new MappedFileInputStream(file, 0);
+
+        assertThat(sut.read(), is(-1));
+        assertThat(sut.read(new byte[4], 0, 4), is(-1));
+        assertThat(sut.available(), is(0));
+    }
+}
@@ -0,0 +1,139 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import static org.codehaus.plexus.PlexusTestCase.getTestFile;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import static org.mockito.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests for {@link MergeMojo} with the shards written by {@link InfallibleMojo}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public final class MergeMojoTest extends AbstractMojoTestCase {
+
+    private static final String FIXTURE_POM = "src/test/resources/fixture-pom.xml";
+    private MergeMojo sut;
+    private File workDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        sut = (MergeMojo) lookupMojo(MergeMojo.GOAL, getTestFile(FIXTURE_POM));
+        assertThat(sut, is(not(nullValue())));
+        workDirectory = Files.createTempDirectory("infallible").toFile();
+        setVariableValueToObject(sut, "shardResults", workDirectory);
+    }
+
+    private InfallibleMojo shard(final int index, final int count) throws Exception {
+        final InfallibleMojo shard = (InfallibleMojo) lookupMojo(InfallibleMojo.GOAL, getTestFile(FIXTURE_POM));
+        setVariableValueToObject(shard, "outputDirectory", getTestFile("target/test-classes"));
+        setVariableValueToObject(shard, "workDirectory", workDirectory);
+        setVariableValueToObject(shard, "shardIndex", index);
+        setVariableValueToObject(shard, "shardCount", count);
+        shard.setLog(mock(Log.class));
+        return shard;
+    }
+
+    @Test
+    public void testConfigurationFromPom() {
+        assertThat(sut.isSkip(), is(false));
+        assertThat(sut.getReportSlowest(), is(0));
+    }
+
+    @Test
+    public void testGetFilesToTest_disjointShards() throws Exception {
+        final InfallibleMojo first = shard(1, 2);
+        final InfallibleMojo second = shard(2, 2);
+
+        assertThat(first.getFilesToTest(new Shard(0, 2)), containsInAnyOrder("src/test/snafu/without_errors.snf"));
+        assertThat(second.getFilesToTest(new Shard(1, 2)), hasSize(2));
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        final InfallibleMojo first = shard(1, 2);
+        first.execute();
+        shard(2, 2).execute();
+        final Log log = mock(Log.class);
+        sut.setLog(log);
+
+        sut.execute();
+
+        verify(first.getLog(), times(1)).info("Parsing shard 1/2.");
+        verify(log, times(1)).info(startsWith(String.format("Results:%n%nSources parsed: 3, Failed: 0%n")));
+    }
+
+    @Test
+    public void testExecute_missingShard() throws Exception {
+        shard(2, 2).execute();
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), containsString("Missing results of shard(s) 1 of 2"));
+        }
+    }
+
+    @Test
+    public void testExecute_ignoresOtherRuns() throws Exception {
+        final InfallibleMojo stale = shard(1, 2);
+        setVariableValueToObject(stale, "runId", "41");
+        stale.execute();
+        final InfallibleMojo current = shard(2, 2);
+        setVariableValueToObject(current, "runId", "42");
+        current.execute();
+        setVariableValueToObject(sut, "runId", "42");
+
+        try {
+            sut.execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), containsString("Missing results of shard(s) 1 of 2"));
+        }
+    }
+
+    @Test
+    public void testExecute_invalidShardIndex() throws Exception {
+        try {
+            shard(3, 2).execute();
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), is("Shard index '3' must be in range [1, 2]!"));
+        }
+    }
+
+    @Test
+    public void testExecute_failedShard() throws Exception {
+        try (ShardResults results = ShardResults.create(workDirectory.toPath(), Shard.ALL, "")) {
+            results.add(Result.failed("a.snf", new ParseCancellationException("Broken!")));
+            results.finish(0, 0);
+        }
+
+        sut.setLog(mock(Log.class));
+
+        try {
+            sut.execute();
+            fail("Expected MojoFailureException!");
+        } catch (final MojoFailureException ex) {
+            assertThat(ex.getMessage(), is("1 source(s) failed and 0 timed out!"));
+        }
+    }
+}
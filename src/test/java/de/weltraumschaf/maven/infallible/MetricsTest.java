@@ -0,0 +1,29 @@
+package de.weltraumschaf.maven.infallible;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Metrics}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class MetricsTest {
+
+    @Test
+    public void testEqualsAndHashCode() {
+        EqualsVerifier.forClass(Metrics.class).verify();
+    }
+
+    @Test
+    public void getTotalNanos() {
+        assertThat(new Metrics(1, 2, 3, 4, 5).getTotalNanos(), is(6L));
+    }
+
+    @Test
+    public void withRead() {
+        assertThat(new Metrics(1, 2, 3, 4, 5).withRead(10, 20), is(new Metrics(10, 2, 3, 4, 20)));
+    }
+}
@@ -0,0 +1,34 @@
+package de.weltraumschaf.maven.infallible;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link Mode}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ModeTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void forConfigName() throws MojoExecutionException {
+        assertThat(Mode.forConfigName("parse"), is(Mode.PARSE));
+        assertThat(Mode.forConfigName("LEX"), is(Mode.LEX));
+        assertThat(Mode.forConfigName(" lex "), is(Mode.LEX));
+    }
+
+    @Test
+    public void forConfigName_unknown() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Unknown mode 'tokenize' (use 'parse' or 'lex')!");
+
+        Mode.forConfigName("tokenize");
+    }
+}
@@ -0,0 +1,108 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link MultiTargetParser}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class MultiTargetParserTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private MultiTargetParser.Target program;
+    private MultiTargetParser.Target constant;
+
+    private MultiTargetParser.Target target(final String startRule, final String... includes)
+        throws MojoExecutionException {
+        final GrammarTarget config = new GrammarTarget("Snafu", "foo.bar.baz", startRule);
+        config.getIncludes().addAll(Arrays.asList(includes));
+        final ParserFactory parsers = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        final ParserInvoker invoker = new ParserInvoker(log, parsers.getParserClass(), startRule);
+        return new MultiTargetParser.Target(config, parsers, invoker, "utf-8", new Collector());
+    }
+
+    @Before
+    public void createTargets() throws MojoExecutionException {
+        program = target("startRule");
+        constant = target("constant", "**/number*.snf");
+    }
+
+    private MultiTargetParser sut(final long streamingThreshold) {
+        return new MultiTargetParser(Arrays.asList(program, constant), StandardCharsets.UTF_8, streamingThreshold);
+    }
+
+    private Path file(final String name, final String content) throws IOException {
+        final Path file = tmp.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void applies() {
+        final MultiTargetParser sut = sut(Long.MAX_VALUE);
+
+        assertThat(program.applies("foo.snf"), is(true));
+        assertThat(constant.applies("foo.snf"), is(false));
+        assertThat(constant.applies("sub/number1.snf"), is(true));
+        assertThat(sut.applies("foo.snf"), is(true));
+        assertThat(program.getId(), is("Snafu:startRule"));
+    }
+
+    @Test
+    public void parse_onlyApplyingTargets() throws IOException, MojoExecutionException {
+        final Result result = sut(Long.MAX_VALUE).parse(file("foo.snf", "1 + 2;"), "foo.snf");
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(program.getTested().count(), is(1L));
+        assertThat(constant.getTested().count(), is(0L));
+    }
+
+    @Test
+    public void parse_sharedInputForAllTargets() throws IOException, MojoExecutionException {
+        final Result result = sut(Long.MAX_VALUE).parse(file("number.snf", "3;"), "number.snf");
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.getMetrics().getBytes(), is(2L));
+        assertThat(result.getMetrics().getTokens(), is(greaterThan(0L)));
+        assertThat(program.getTested().count(), is(1L));
+        assertThat(constant.getTested().count(), is(1L));
+        assertThat(constant.getTested().hasFailed(), is(false));
+    }
+
+    @Test
+    public void parse_streamedForEachTarget() throws IOException, MojoExecutionException {
+        final Result result = sut(0).parse(file("number.snf", "3;"), "number.snf");
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(program.getTested().count(), is(1L));
+        assertThat(constant.getTested().count(), is(1L));
+    }
+
+    @Test
+    public void parse_failedInOneTarget() throws IOException, MojoExecutionException {
+        final Result result = sut(Long.MAX_VALUE).parse(file("number.snf", "1 + ;"), "number.snf");
+
+        assertThat(result.isFailed(), is(true));
+        assertThat(result.getFailure().getMessage(), containsString("Snafu:startRule: "));
+        assertThat(program.getTested().countFailed(), is(1L));
+        assertThat(constant.getTested().countFailed(), is(0L));
+    }
+}
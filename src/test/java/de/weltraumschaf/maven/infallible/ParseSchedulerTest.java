@@ -0,0 +1,334 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link ParseScheduler}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ParseSchedulerTest {
+
+    private static final Collection<String> FILES = Arrays.asList("foo", "bar", "baz", "snafu", "fubar");
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void parseThreads_fixedNumber() throws MojoExecutionException {
+        assertThat(ParseScheduler.parseThreads("1", 8), is(1));
+        assertThat(ParseScheduler.parseThreads("4", 8), is(4));
+        assertThat(ParseScheduler.parseThreads(" 16 ", 8), is(16));
+    }
+
+    @Test
+    public void parseThreads_relativeToCores() throws MojoExecutionException {
+        assertThat(ParseScheduler.parseThreads("1C", 8), is(8));
+        assertThat(ParseScheduler.parseThreads("2c", 8), is(16));
+        assertThat(ParseScheduler.parseThreads("0.5C", 8), is(4));
+        assertThat(ParseScheduler.parseThreads("0.1C", 2), is(1));
+    }
+
+    @Test
+    public void parseThreads_zero() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Thread count '0' must be greater than 0!");
+
+        ParseScheduler.parseThreads("0", 8);
+    }
+
+    @Test
+    public void parseThreads_notANumber() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Can't parse thread count 'snafu'");
+
+        ParseScheduler.parseThreads("snafu", 8);
+    }
+
+    @Test
+    public void run_sequential() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(1);
+        final Collector tested = new Collector();
+        final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        sut.run(FILES, file -> {
+            threads.add(Thread.currentThread().getName());
+            return Result.passed(file);
+        }, tested);
+
+        assertThat(tested.count(), is(5L));
+        assertThat(threads, containsInAnyOrder(Thread.currentThread().getName()));
+    }
+
+    @Test
+    public void run_parallel() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(3);
+        final Collector tested = new Collector();
+        final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        sut.run(FILES, file -> {
+            threads.add(Thread.currentThread().getName());
+            return Result.passed(file);
+        }, tested);
+
+        assertThat(tested.count(), is(5L));
+        assertThat(tested.countPassed(), is(5L));
+        assertThat(threads.size(), is(greaterThan(0)));
+        assertThat(threads.contains(Thread.currentThread().getName()), is(false));
+    }
+
+    @Test
+    public void run_parallelPropagatesError() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(2);
+
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Can't parse snafu!");
+
+        sut.run(FILES, file -> {
+            if ("snafu".equals(file)) {
+                throw new MojoExecutionException("Can't parse snafu!");
+            }
+
+            return Result.passed(file);
+        }, new Collector());
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelStopsIteratingOnError() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(2);
+        // Never ends, so the run only returns if it stops iterating.
+        final Iterable<String> files = () -> IntStream.iterate(0, i -> i + 1).mapToObj(String::valueOf).iterator();
+
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Parser thread failed unexpectedly (Can't parse 0!)!");
+
+        sut.run(files, file -> {
+            if ("0".equals(file)) {
+                throw new StackOverflowError("Can't parse 0!");
+            }
+
+            return Result.passed(file);
+        }, new Collector());
+    }
+
+    @Test
+    public void run_sequentialFailAfter() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(1, 2);
+        final Collector tested = new Collector();
+
+        sut.run(FILES, file -> file.startsWith("b")
+            ? Result.failed(file, new ParseCancellationException(file))
+            : Result.passed(file), tested);
+
+        assertThat(tested.count(), is(3L));
+        assertThat(tested.countFailed(), is(2L));
+        assertThat(tested.countSkipped(), is(2L));
+    }
+
+    @Test
+    public void run_sequentialSkipsAfterStop() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(1, 1);
+        final Set<String> skipped = ConcurrentHashMap.newKeySet();
+
+        sut.run(FILES, new ParseScheduler.Task<String>() {
+            @Override
+            public Result parse(final String file) {
+                return "baz".equals(file) ? Result.failed(file, new Failure(file)) : Result.passed(file);
+            }
+
+            @Override
+            public void skip(final String file) {
+                skipped.add(file);
+            }
+        }, new Collector());
+
+        assertThat(skipped, containsInAnyOrder("snafu", "fubar"));
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelSignalsStopOnce() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(3, 1);
+        final AtomicInteger stopped = new AtomicInteger();
+
+        sut.run(FILES, new ParseScheduler.Task<String>() {
+            @Override
+            public Result parse(final String file) {
+                return Result.failed(file, new Failure(file));
+            }
+
+            @Override
+            public void stop() {
+                stopped.incrementAndGet();
+            }
+        }, new Collector());
+
+        assertThat(stopped.get(), is(1));
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelBoundsPendingFiles() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(2);
+        final AtomicInteger iterated = new AtomicInteger();
+        final AtomicInteger started = new AtomicInteger();
+        final AtomicInteger maxAhead = new AtomicInteger();
+        final Iterable<String> files = () -> IntStream.range(0, 200)
+            .mapToObj(String::valueOf)
+            .peek(file -> iterated.incrementAndGet())
+            .iterator();
+
+        sut.run(files, file -> {
+            maxAhead.accumulateAndGet(iterated.get() - started.incrementAndGet(), Math::max);
+            return Result.passed(file);
+        }, new Collector());
+
+        assertThat(started.get(), is(200));
+        assertThat(maxAhead.get(), is(lessThanOrEqualTo(2 * ParseScheduler.PENDING_PER_THREAD)));
+    }
+
+    @Test
+    public void run_sequentialFailAfterCountsTimedOut() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(1, 2);
+        final Collector tested = new Collector();
+
+        sut.run(FILES, file -> file.startsWith("b") ? Result.timedOut(file) : Result.passed(file), tested);
+
+        assertThat(tested.count(), is(3L));
+        assertThat(tested.countTimedOut(), is(2L));
+        assertThat(tested.countSkipped(), is(2L));
+    }
+
+    @Test
+    public void run_sequentialFailAfterNotReached() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(1, 3);
+        final Collector tested = new Collector();
+
+        sut.run(FILES, file -> file.startsWith("b")
+            ? Result.failed(file, new ParseCancellationException(file))
+            : Result.passed(file), tested);
+
+        assertThat(tested.count(), is(5L));
+        assertThat(tested.countSkipped(), is(0L));
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelFailFastCancelsParsesInFlight() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(3, 1);
+        final Collector tested = new Collector();
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicInteger cancelled = new AtomicInteger();
+
+        sut.run(FILES, file -> {
+            if ("foo".equals(file)) {
+                awaitUninterruptibly(started);
+                return Result.failed(file, new ParseCancellationException(file));
+            }
+
+            started.countDown();
+
+            try {
+                // Parses forever until cancelled.
+                new CountDownLatch(1).await();
+            } catch (final InterruptedException ex) {
+                cancelled.incrementAndGet();
+                throw new CancellationException(file);
+            }
+
+            return Result.passed(file);
+        }, tested);
+
+        assertThat(tested.count(), is(1L));
+        assertThat(tested.countFailed(), is(1L));
+        assertThat(tested.countSkipped(), is(4L));
+        assertThat(cancelled.get(), is(2));
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelFailFastSkipsCancelledParses() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(3, 1);
+        final CountDownLatch started = new CountDownLatch(2);
+        final Set<String> skipped = ConcurrentHashMap.newKeySet();
+
+        sut.run(FILES, new ParseScheduler.Task<String>() {
+            @Override
+            public Result parse(final String file) {
+                if ("foo".equals(file)) {
+                    awaitUninterruptibly(started);
+                    return Result.failed(file, new Failure(file));
+                }
+
+                started.countDown();
+
+                try {
+                    // Parses forever until cancelled.
+                    new CountDownLatch(1).await();
+                } catch (final InterruptedException ex) {
+                    throw new CancellationException(file);
+                }
+
+                return Result.passed(file);
+            }
+
+            @Override
+            public void skip(final String file) {
+                skipped.add(file);
+            }
+        }, new Collector());
+
+        assertThat(skipped, containsInAnyOrder("bar", "baz", "snafu", "fubar"));
+    }
+
+    @Test(timeout = 10_000)
+    public void run_parallelFailFastDiscardsErrorsOfInterruptedParses() throws MojoExecutionException {
+        final ParseScheduler sut = new ParseScheduler(3, 1);
+        final Collector tested = new Collector();
+        final CountDownLatch started = new CountDownLatch(2);
+
+        sut.run(FILES, file -> {
+            if ("foo".equals(file)) {
+                awaitUninterruptibly(started);
+                return Result.failed(file, new Failure(file));
+            }
+
+            started.countDown();
+
+            try {
+                // Reads forever until interrupted.
+                new CountDownLatch(1).await();
+            } catch (final InterruptedException ex) {
+                throw new MojoExecutionException(String.format("Can't read file '%s'!", file), ex);
+            }
+
+            return Result.passed(file);
+        }, tested);
+
+        assertThat(tested.count(), is(1L));
+        assertThat(tested.countFailed(), is(1L));
+        assertThat(tested.countSkipped(), is(4L));
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link ParseTreeSavings}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ParseTreeSavingsTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+    private ParseTreeSavings sut;
+
+    @Before
+    public void createSut() throws MojoExecutionException {
+        final ParserFactory parsers = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        sut = new ParseTreeSavings(parsers, new ParserInvoker(log, parsers.getParserClass(), "startRule"));
+    }
+
+    private Path file(final String content) throws IOException {
+        final Path file = tmp.newFile().toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void bytesPerToken() throws IOException, MojoExecutionException {
+        assumeTrue(ParseTreeSavings.isSupported());
+        final StringBuilder source = new StringBuilder();
+
+        for (int i = 0; i < 1_000; ++i) {
+            source.append("(1 + 2) * 3.4 ;\n");
+        }
+
+        assertThat(sut.bytesPerToken(file(source.toString()), "utf-8"), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void bytesPerToken_unknownForFailingSample() throws IOException, MojoExecutionException {
+        assumeTrue(ParseTreeSavings.isSupported());
+
+        assertThat(sut.bytesPerToken(file("1 + ;"), "utf-8"), is(ParseTreeSavings.UNKNOWN));
+    }
+}
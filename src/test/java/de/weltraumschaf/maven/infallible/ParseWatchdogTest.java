@@ -0,0 +1,46 @@
+package de.weltraumschaf.maven.infallible;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParseWatchdog}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ParseWatchdogTest {
+
+    private final ParseWatchdog sut = new ParseWatchdog(50);
+
+    @After
+    public void closeWatchdogAndClearInterrupt() {
+        sut.close();
+        Thread.interrupted();
+    }
+
+    @Test(timeout = 10_000)
+    public void watch_firesAfterTimeout() throws InterruptedException {
+        final ParseWatchdog.Watch watch = sut.watch();
+
+        while (!Thread.currentThread().isInterrupted()) {
+            Thread.yield();
+        }
+
+        assertThat(watch.isFired(), is(true));
+        watch.close();
+        assertThat(Thread.currentThread().isInterrupted(), is(false));
+    }
+
+    @Test
+    public void watch_closedBeforeTimeout() throws InterruptedException {
+        final ParseWatchdog.Watch watch = sut.watch();
+        watch.close();
+
+        Thread.sleep(200);
+
+        assertThat(watch.isFired(), is(false));
+        assertThat(Thread.currentThread().isInterrupted(), is(false));
+    }
+}
@@ -1,9 +1,25 @@
 
 package de.weltraumschaf.maven.infallible;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Parser;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import org.junit.Rule;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 /**
  * Tests for {@link ParserFactory}.
@@ -12,6 +28,18 @@ import static org.junit.Assert.*;
  */
 public class ParserFactoryTest {
 
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private final Log log = mock(Log.class);
+
+    private Path createSource(final String content) throws IOException {
+        final Path file = tmp.newFile("source.snf").toPath();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
     @Test
     public void testGenerateClassName_withEmptyPackage() {
         assertThat(ParserFactory.generateClassName("", "Foo", "Bar"), is("FooBar"));
@@ -23,5 +51,162 @@ public class ParserFactoryTest {
             is("de.weltraumschaf.FooBar"));
     }
 
+    @Test
+    public void testCreate_resolvesClassesOnlyOnce() throws MojoExecutionException {
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+
+        final Parser first = sut.create(new ANTLRInputStream("1 + 2;"));
+        final Parser second = sut.create(new ANTLRInputStream("3 * 4;"));
+
+        assertThat(first.getClass().getName(), is("foo.bar.baz.SnafuParser"));
+        assertThat(sut.getParserClass().getName(), is("foo.bar.baz.SnafuParser"));
+        assertThat(first, is(not(sameInstance(second))));
+        verify(log, times(1)).info("Using lexer class 'foo.bar.baz.SnafuLexer'.");
+        verify(log, times(1)).info("Using parser class 'foo.bar.baz.SnafuParser'.");
+    }
+
+    @Test
+    public void testCreate_reusesParserPerThread() throws Exception {
+        final ParserFactory sut = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu", ParserFactory.Options.DEFAULT.withReuse(true));
+        final ParserInvoker invoker = new ParserInvoker(log, sut.getParserClass(), "startRule");
+
+        final Parser first = sut.create(new ANTLRInputStream("1 + ;"));
+        assertThat(invoker.invoke(first).isFailed(), is(true));
+        final Parser second = sut.create(new ANTLRInputStream("3 * 4;"));
+        final Result passed = invoker.invoke(second);
+        final Parser[] other = new Parser[1];
+        final Thread thread = new Thread(() -> {
+            try {
+                other[0] = sut.create(new ANTLRInputStream("1;"));
+            } catch (final MojoExecutionException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(sut.isReuse(), is(true));
+        assertThat(second, is(sameInstance(first)));
+        assertThat(second.getNumberOfSyntaxErrors(), is(0));
+        assertThat(passed.isFailed(), is(false));
+        assertThat(passed.getMetrics().getTokens(), is(5L));
+        assertThat(other[0], is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void testRelease() throws MojoExecutionException {
+        final ParserFactory sut = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu", ParserFactory.Options.DEFAULT.withReuse(true));
+        final Parser first = sut.create(new ANTLRInputStream("1;"));
+
+        sut.release();
+
+        assertThat(sut.create(new ANTLRInputStream("2;")), is(not(sameInstance(first))));
+    }
+
+    @Test
+    public void testRelease_withoutReuse() throws MojoExecutionException {
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+
+        sut.release();
+
+        assertThat(sut.isReuse(), is(false));
+    }
+
+    @Test
+    public void testCreate_neverReusesStreamedParsers() throws IOException, MojoExecutionException {
+        final Path source = createSource("3 * 4 + 5.27 ;");
+        final ParserFactory sut = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withStreamingThreshold(0).withReuse(true));
+
+        assertThat(sut.create(source, "utf-8"), is(not(sameInstance(sut.create(source, "utf-8")))));
+    }
+
+    @Test
+    public void testCreate_withoutParseTreeByDefault() throws MojoExecutionException {
+        final ParserFactory sut = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu", ParserFactory.Options.DEFAULT.withReuse(true));
+        final Parser parser = sut.create(new ANTLRInputStream("1 + 2;"));
+        parser.setBuildParseTree(true);
+
+        assertThat(sut.isBuildParseTree(), is(false));
+        assertThat(sut.create(new ANTLRInputStream("3;")).getBuildParseTree(), is(false));
+    }
+
+    @Test
+    public void testCreate_withParseTree() throws MojoExecutionException {
+        final ParserFactory sut = new ParserFactory(
+            log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withParseTree(true));
+
+        assertThat(sut.isBuildParseTree(), is(true));
+        assertThat(sut.create(new ANTLRInputStream("3;")).getBuildParseTree(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreate_reuseWithProfile() throws MojoExecutionException {
+        new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withProfile(true).withReuse(true));
+    }
+
+    @Test
+    public void testCreate_belowStreamingThreshold() throws IOException, MojoExecutionException {
+        final Path source = createSource("3 * 4 + 5.27 ;");
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withStreamingThreshold(14).withParseTree(true));
+
+        final Parser parser = sut.create(source, "utf-8");
+
+        assertThat(ParserFactory.isStreaming(parser), is(false));
+        assertThat(parser.getBuildParseTree(), is(true));
+        assertThat(parser.getSourceName(), is(source.toString()));
+    }
+
+    @Test
+    public void testCreate_aboveStreamingThreshold() throws IOException, MojoExecutionException {
+        final Path source = createSource("3 * 4 + 5.27 ;");
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withStreamingThreshold(13).withParseTree(true));
+
+        final Parser parser = sut.create(source, "utf-8");
+
+        assertThat(ParserFactory.isStreaming(parser), is(true));
+        assertThat(parser.getBuildParseTree(), is(false));
+        assertThat(parser.getSourceName(), is(source.toString()));
+    }
+
+    @Test
+    public void testCreate_streamedParserParses() throws IOException, MojoExecutionException {
+        final Path source = createSource("3 * 4 + 5.27 ;\n(1 + 2) / 3.0e2 ;\n");
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withStreamingThreshold(0));
+        final ParserInvoker invoker = new ParserInvoker(log, sut.getParserClass(), "startRule");
+
+        final Result result = invoker.invoke(sut.create(source, "utf-8"));
+
+        assertThat(result.isFailed(), is(false));
+    }
+
+    @Test
+    public void testCreate_streamedParserFails() throws IOException, MojoExecutionException {
+        final Path source = createSource("3 * 4 + ;");
+        final ParserFactory sut = new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Snafu",
+            ParserFactory.Options.DEFAULT.withStreamingThreshold(0));
+        final ParserInvoker invoker = new ParserInvoker(log, sut.getParserClass(), "startRule");
+
+        final Result result = invoker.invoke(sut.create(source, "utf-8"));
+
+        assertThat(result.isFailed(), is(true));
+    }
+
+    @Test
+    public void testCreate_unknownGrammar() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Can not create class 'foo.bar.baz.UnknownLexer'");
+
+        new ParserFactory(log, getClass().getClassLoader(), "foo.bar.baz", "Unknown");
+    }
 
 }
\ No newline at end of file
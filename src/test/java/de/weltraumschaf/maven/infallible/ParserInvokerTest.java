@@ -1,11 +1,20 @@
 package de.weltraumschaf.maven.infallible;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.TokenStream;
 import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
@@ -30,51 +39,179 @@ public class ParserInvokerTest {
     @Test
     public void invoke() throws MojoExecutionException, Throwable {
         final ParserStub parser = spy(new ParserStub());
-        final ParserInvoker sut = new ParserInvoker(mock(Log.class), parser, "foobar");
+        final ParserInvoker sut = new ParserInvoker(mock(Log.class), ParserStub.class, "foobar");
 
-        final Result result = sut.invoke();
+        final Result result = sut.invoke(parser);
 
         verify(parser, times(1)).foobar();
         assertThat(result.isFailed(), is(false));
-        assertThat(result.getError(), is(nullValue()));
+        assertThat(result.getFailure(), is(nullValue()));
         assertThat(result.getTestedFile(), is(SOURCE_NAME));
     }
 
+    @Test
+    public void invoke_measuresBufferedTokens() throws MojoExecutionException {
+        final ParserFactory parsers = new ParserFactory(
+            mock(Log.class), getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        final ParserInvoker sut = new ParserInvoker(mock(Log.class), parsers.getParserClass(), "startRule");
+
+        final Result result = sut.invoke(parsers.create(new ANTLRInputStream("1 + 2;")));
+
+        assertThat(result.isFailed(), is(false));
+        // Four tokens and EOF.
+        assertThat(result.getMetrics().getTokens(), is(5L));
+        assertThat(result.getMetrics().getLexNanos(), is(greaterThan(0L)));
+        assertThat(result.getMetrics().getParseNanos(), is(greaterThan(0L)));
+        assertThat(result.getMetrics().getReadNanos(), is(0L));
+    }
+
+    @Test
+    public void invoke_cancelledIfInterrupted() throws MojoExecutionException {
+        final ParserFactory parsers = new ParserFactory(
+            mock(Log.class), getClass().getClassLoader(), "foo.bar.baz", "Snafu");
+        final ParserInvoker sut = new ParserInvoker(mock(Log.class), parsers.getParserClass(), "startRule");
+        final Parser parser = parsers.create(new ANTLRInputStream("1 + 2;"));
+        thrown.expect(CancellationException.class);
+        thrown.expectMessage("Parsing '<unknown>' cancelled!");
+        Thread.currentThread().interrupt();
+
+        try {
+            sut.invoke(parser);
+        } finally {
+            assertThat(Thread.interrupted(), is(true));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void invoke_timesOut() throws MojoExecutionException {
+        final Log log = mock(Log.class);
+
+        try (ParseWatchdog watchdog = new ParseWatchdog(50)) {
+            final ParserInvoker sut = new ParserInvoker(
+                log, ParserStubSpinning.class, "foobar", PredictionStrategy.LL, null, watchdog);
+
+            final Result result = sut.invoke(new ParserStubSpinning());
+
+            assertThat(result.isTimedOut(), is(true));
+            assertThat(result.getTestedFile(), is(SOURCE_NAME));
+            assertThat(Thread.currentThread().isInterrupted(), is(false));
+            verify(log, times(1)).error("Parsing 'foobar.snf' timed out after 50 ms!");
+        }
+    }
+
+    @Test
+    public void invoke_withinTimeout() throws MojoExecutionException {
+        try (ParseWatchdog watchdog = new ParseWatchdog(10_000)) {
+            final ParserInvoker sut = new ParserInvoker(
+                mock(Log.class), ParserStub.class, "foobar", PredictionStrategy.LL, null, watchdog);
+
+            final Result result = sut.invoke(new ParserStub());
+
+            assertThat(result.getState(), is(Result.State.PASSED));
+            assertThat(Thread.currentThread().isInterrupted(), is(false));
+        }
+    }
+
     @Test
     public void invoke_throwsParseCancellationException() throws MojoExecutionException, Throwable {
-        final ParserInvoker sut = new ParserInvoker(mock(Log.class), new ParserStubWithParseError(), "foobar");
+        final ParserInvoker sut = new ParserInvoker(mock(Log.class), ParserStubWithParseError.class, "foobar");
 
-        final Result result = sut.invoke();
+        final Result result = sut.invoke(new ParserStubWithParseError());
 
         assertThat(result.isFailed(), is(true));
-        assertThat(result.getError(), is(instanceOf(ParseCancellationException.class)));
-        assertThat(result.getError().getMessage(), is("snafu"));
+        assertThat(result.getFailure(), is(instanceOf(Failure.class)));
+        assertThat(result.getFailure().getMessage(), is("snafu"));
         assertThat(result.getTestedFile(), is(SOURCE_NAME));
     }
 
     @Test
-    public void invoke_throwsIllegalAccessException() throws MojoExecutionException, Throwable {
-        final ParserInvoker sut = new ParserInvoker(mock(Log.class), new ParserStubWithMethodIsNotPublic(), "foobar");
+    public void invoke_reusesResolvedMethod() throws MojoExecutionException, Throwable {
+        final ParserStub first = spy(new ParserStub());
+        final ParserStub second = spy(new ParserStub());
+        final ParserInvoker sut = new ParserInvoker(mock(Log.class), ParserStub.class, "foobar");
 
-        thrown.expect(MojoExecutionException.class);
-        thrown.expectMessage(
-            "Can't access method 'foobar' on parser (Class de.weltraumschaf.maven.infallible.ParserInvoker can not "
-                + "access a member of class de.weltraumschaf.maven.infallible.ParserInvokerTest$"
-                + "ParserStubWithMethodIsNotPublic with modifiers \"private\")!");
+        sut.invoke(first);
+        sut.invoke(second);
+
+        verify(first, times(1)).foobar();
+        verify(second, times(1)).foobar();
+    }
+
+    @Test
+    public void invoke_twoStagePassesWithSll() throws MojoExecutionException, Throwable {
+        final ParserStubWithSllError parser = new ParserStubWithSllError(0);
+        final ParserInvoker sut = new ParserInvoker(
+            mock(Log.class), ParserStubWithSllError.class, "foobar", PredictionStrategy.TWO_STAGE);
+
+        final Result result = sut.invoke(parser);
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.isFallback(), is(false));
+        assertThat(parser.modes, contains(PredictionMode.SLL));
+        verify(parser.getInterpreter(), never()).reset();
+    }
+
+    @Test
+    public void invoke_twoStageFallsBackToLl() throws MojoExecutionException, Throwable {
+        final ParserStubWithSllError parser = new ParserStubWithSllError(1);
+        final ParserInvoker sut = new ParserInvoker(
+            mock(Log.class), ParserStubWithSllError.class, "foobar", PredictionStrategy.TWO_STAGE);
+
+        final Result result = sut.invoke(parser);
+
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.isFallback(), is(true));
+        assertThat(result.getTestedFile(), is(SOURCE_NAME));
+        assertThat(parser.modes, contains(PredictionMode.SLL, PredictionMode.LL));
+        verify(parser.getInterpreter(), times(1)).reset();
+    }
+
+    @Test
+    public void invoke_twoStageFailsWithLl() throws MojoExecutionException, Throwable {
+        final ParserStubWithSllError parser = new ParserStubWithSllError(2);
+        final ParserInvoker sut = new ParserInvoker(
+            mock(Log.class), ParserStubWithSllError.class, "foobar", PredictionStrategy.TWO_STAGE);
 
-        sut.invoke();
+        final Result result = sut.invoke(parser);
+
+        assertThat(result.isFailed(), is(true));
+        assertThat(result.isFallback(), is(true));
+        assertThat(result.getFailure().getMessage(), is("snafu 2"));
+        assertThat(parser.modes, contains(PredictionMode.SLL, PredictionMode.LL));
     }
 
     @Test
-    public void invoke_throwsNoSuchMethodException() throws MojoExecutionException, Throwable {
-        final ParserInvoker sut = new ParserInvoker(mock(Log.class), new ParserStubWithMethodNotExists(), "foobar");
+    public void invoke_twoStageFallsBackToLlWithReparsedParser() throws MojoExecutionException, Throwable {
+        final ParserStubWithSllError first = new ParserStubWithSllError(1);
+        final ParserStubWithSllError second = new ParserStubWithSllError(0);
+        final ParserInvoker sut = new ParserInvoker(
+            mock(Log.class), ParserStubWithSllError.class, "foobar", PredictionStrategy.TWO_STAGE);
+
+        final Result result = sut.invoke(first, () -> second);
 
+        assertThat(result.isFailed(), is(false));
+        assertThat(result.isFallback(), is(true));
+        assertThat(first.modes, contains(PredictionMode.SLL));
+        assertThat(second.modes, contains(PredictionMode.LL));
+        verify(first.getInterpreter(), never()).reset();
+    }
+
+    @Test
+    public void construct_throwsIllegalAccessException() throws MojoExecutionException, Throwable {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Can't access method 'foobar' on parser (");
+
+        new ParserInvoker(mock(Log.class), ParserStubWithMethodIsNotPublic.class, "foobar");
+    }
+
+    @Test
+    public void construct_throwsNoSuchMethodException() throws MojoExecutionException, Throwable {
         thrown.expect(MojoExecutionException.class);
         thrown.expectMessage(
             "Given parser has no method with name 'foobar' (de.weltraumschaf.maven.infallible."
                 + "ParserInvokerTest$ParserStubWithMethodNotExists.foobar())");
 
-        sut.invoke();
+        new ParserInvoker(mock(Log.class), ParserStubWithMethodNotExists.class, "foobar");
     }
 
     public static abstract class AbstractParserStub extends Parser {
@@ -129,6 +266,43 @@ public class ParserInvokerTest {
         }
     }
 
+    public static class ParserStubSpinning extends AbstractParserStub {
+
+        /**
+         * Called by subject under test, spins like a pathological prediction until interrupted.
+         */
+        public void foobar() throws Throwable {
+            final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (System.nanoTime() < end) {
+                CancellableErrorStrategy.checkInterrupted(getSourceName());
+            }
+        }
+    }
+
+    public static class ParserStubWithSllError extends AbstractParserStub {
+
+        private final int failures;
+        private final List<PredictionMode> modes = new ArrayList<>();
+
+        public ParserStubWithSllError(final int failures) {
+            super();
+            this.failures = failures;
+            _interp = mock(ParserATNSimulator.class);
+        }
+
+        /**
+         * Called by subject under test.
+         */
+        public void foobar() throws Throwable {
+            modes.add(getInterpreter().getPredictionMode());
+
+            if (modes.size() <= failures) {
+                throw new ParseCancellationException("snafu " + modes.size());
+            }
+        }
+    }
+
     public static class ParserStubWithMethodNotExists extends AbstractParserStub {
     }
 
@@ -0,0 +1,63 @@
+package de.weltraumschaf.maven.infallible;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link PathIndex}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class PathIndexTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+    private final PathIndex sut = new PathIndex();
+
+    @Test
+    public void addAndGet() {
+        assertThat(sut.add("/foo/bar/one.snf"), is(0));
+        assertThat(sut.add("/foo/bar/two.snf"), is(1));
+        assertThat(sut.add("C:\\foo\\three.snf"), is(2));
+        assertThat(sut.add("four.snf"), is(3));
+
+        assertThat(sut.size(), is(4));
+        assertThat(sut.get(0), is("/foo/bar/one.snf"));
+        assertThat(sut.get(1), is("/foo/bar/two.snf"));
+        assertThat(sut.get(2), is("C:\\foo\\three.snf"));
+        assertThat(sut.get(3), is("four.snf"));
+    }
+
+    @Test
+    public void add_internsDirectories() {
+        for (int i = 0; i < 5000; ++i) {
+            sut.add(String.format("/foo/%d/file%d.snf", i % 3, i));
+        }
+
+        assertThat(sut.size(), is(5000));
+        assertThat(sut.countDirectories(), is(3));
+        assertThat(sut.get(4999), is("/foo/1/file4999.snf"));
+    }
+
+    @Test
+    public void add_duplicates() {
+        final String path = "/foo/bar.snf";
+
+        assertThat(sut.add(path), is(0));
+        assertThat(sut.add(path), is(1));
+        assertThat(sut.get(0), is(path));
+        assertThat(sut.get(1), is(path));
+    }
+
+    @Test
+    public void get_indexOutOfRange() {
+        sut.add("/foo/bar.snf");
+        thrown.expect(IllegalArgumentException.class);
+
+        sut.get(1);
+    }
+}
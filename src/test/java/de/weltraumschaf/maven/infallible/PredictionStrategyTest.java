@@ -0,0 +1,35 @@
+package de.weltraumschaf.maven.infallible;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Tests for {@link PredictionStrategy}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class PredictionStrategyTest {
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void forConfigName() throws MojoExecutionException {
+        assertThat(PredictionStrategy.forConfigName("ll"), is(PredictionStrategy.LL));
+        assertThat(PredictionStrategy.forConfigName("LL"), is(PredictionStrategy.LL));
+        assertThat(PredictionStrategy.forConfigName("twoStage"), is(PredictionStrategy.TWO_STAGE));
+        assertThat(PredictionStrategy.forConfigName(" twostage "), is(PredictionStrategy.TWO_STAGE));
+    }
+
+    @Test
+    public void forConfigName_unknown() throws MojoExecutionException {
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Unknown prediction strategy 'sll' (use 'll' or 'twoStage')!");
+
+        PredictionStrategy.forConfigName("sll");
+    }
+}
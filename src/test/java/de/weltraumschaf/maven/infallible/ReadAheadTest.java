@@ -0,0 +1,260 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ReadAhead}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ReadAheadTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    private Path root;
+
+    @Before
+    public void createTree() throws IOException {
+        root = tmp.getRoot().toPath();
+        write("a.snf", "1 + 2;");
+        write("sub/b.snf", "3 * 4;");
+        write("sub/c.snf", "\u00e4;");
+    }
+
+    private void write(final String relativePath, final String content) throws IOException {
+        final Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FileDiscovery discover() {
+        final FileSet set = new FileSet();
+        set.setDirectory(root.toString());
+        return FileDiscovery.start(new FileSet[]{set}, Shard.ALL, 1);
+    }
+
+    private static String text(final ReadAhead.Loaded loaded) {
+        final CharStream input = loaded.getInput();
+        final String text = input.getText(Interval.of(0, input.size() - 1));
+        loaded.release();
+        return text;
+    }
+
+    @Test
+    public void iterator_loadsAllFiles() throws MojoExecutionException {
+        final List<String> texts = new ArrayList<>();
+
+        try (FileDiscovery found = discover();
+            ReadAhead sut = ReadAhead.start(found, StandardCharsets.UTF_8, Long.MAX_VALUE, false, 1, 2)) {
+            for (final ReadAhead.Slot file : sut) {
+                final ReadAhead.Loaded loaded = file.take();
+
+                assertThat(loaded.getFile(),
+                    is(root.resolve(found.relativize(file.getFile())).toAbsolutePath().toString()));
+                assertThat(loaded.getFingerprint(), is(nullValue()));
+                texts.add(text(loaded));
+            }
+        }
+
+        assertThat(texts, containsInAnyOrder("1 + 2;", "3 * 4;", "\u00e4;"));
+    }
+
+    @Test
+    public void iterator_inGivenOrder() throws MojoExecutionException {
+        final List<String> order = new ArrayList<>();
+        final List<String> iterated = new ArrayList<>();
+
+        try (FileDiscovery found = discover()) {
+            found.forEach(order::add);
+            Collections.reverse(order);
+
+            try (ReadAhead sut = ReadAhead.start(
+                found, order, StandardCharsets.UTF_8, Long.MAX_VALUE, false, 3, ReadAhead.CAPACITY, 1)) {
+                for (final ReadAhead.Slot file : sut) {
+                    iterated.add(file.getFile());
+                    file.release();
+                }
+            }
+        }
+
+        assertThat(iterated, is(order));
+    }
+
+    @Test
+    public void iterator_loadsEachDuplicate() throws MojoExecutionException {
+        final List<String> texts = new ArrayList<>();
+
+        try (FileDiscovery found = discover()) {
+            final List<String> order = new ArrayList<>();
+            found.forEach(order::add);
+            order.addAll(new ArrayList<>(order));
+            order.addAll(new ArrayList<>(order));
+
+            // Each duplicate returns its own chars, so two are enough for all files.
+            try (ReadAhead sut = ReadAhead.start(
+                found, order, StandardCharsets.UTF_8, Long.MAX_VALUE, false, 2, ReadAhead.CAPACITY, 2)) {
+                for (final ReadAhead.Slot file : sut) {
+                    texts.add(text(file.take()));
+                }
+            }
+        }
+
+        assertThat(texts.size(), is(12));
+    }
+
+    @Test
+    public void stop_iteratesRemainingFilesWithoutContent() throws MojoExecutionException {
+        final List<ReadAhead.Loaded> loaded = new ArrayList<>();
+
+        try (FileDiscovery found = discover();
+            ReadAhead sut = ReadAhead.start(found, StandardCharsets.UTF_8, Long.MAX_VALUE, false, 1, 1)) {
+            for (final ReadAhead.Slot file : sut) {
+                final ReadAhead.Loaded content = file.take();
+                loaded.add(content);
+                // The only chars are in use, so the next file is loaded after the stop.
+                sut.stop();
+
+                if (null != content) {
+                    content.release();
+                }
+            }
+        }
+
+        assertThat(loaded, hasSize(3));
+        assertThat(loaded.get(0), is(not(nullValue())));
+        assertThat(loaded.get(1), is(nullValue()));
+        assertThat(loaded.get(2), is(nullValue()));
+    }
+
+    @Test
+    public void take_onlyOnce() throws MojoExecutionException {
+        try (FileDiscovery found = discover();
+            ReadAhead sut = ReadAhead.start(found, StandardCharsets.UTF_8, Long.MAX_VALUE, true, 3, 1)) {
+            for (final ReadAhead.Slot file : sut) {
+                final ReadAhead.Loaded loaded = file.take();
+
+                assertThat(loaded.getFingerprint(), is(not(nullValue())));
+                assertThat(file.take(), is(nullValue()));
+                loaded.release();
+            }
+        }
+    }
+
+    @Test
+    public void take_notLoadedAboveStreamingThreshold() throws MojoExecutionException {
+        int files = 0;
+
+        try (FileDiscovery found = discover();
+            ReadAhead sut = ReadAhead.start(found, StandardCharsets.UTF_8, 3, false, 1, 1)) {
+            for (final ReadAhead.Slot file : sut) {
+                assertThat(file.take(), is(nullValue()));
+                ++files;
+            }
+        }
+
+        assertThat(files, is(3));
+    }
+
+    @Test
+    public void take_archiveEntries() throws IOException, MojoExecutionException {
+        final Path archive = ArchiveTest.zip(tmp.newFolder().toPath().resolve("corpus.zip"), "d.snf", "5;");
+        final FileSet set = new FileSet();
+        set.setDirectory(archive.toString());
+
+        try (FileDiscovery found = FileDiscovery.start(new FileSet[]{set}, Shard.ALL, 1);
+            ReadAhead sut = ReadAhead.start(found, StandardCharsets.UTF_8, 0, false, 1, 1)) {
+            for (final ReadAhead.Slot file : sut) {
+                final ReadAhead.Loaded loaded = file.take();
+
+                assertThat(loaded.getFile(), is(archive.toAbsolutePath() + "!/d.snf"));
+                assertThat(text(loaded), is("5;"));
+            }
+        }
+    }
+
+    @Test
+    public void iterator_loadsLargerFileThanCapacity() throws MojoExecutionException {
+        final List<String> texts = new ArrayList<>();
+
+        try (FileDiscovery found = discover()) {
+            // Each file is larger than the capacity, so one after the other is loaded.
+            try (ReadAhead sut = ReadAhead.start(
+                found, found, StandardCharsets.UTF_8, Long.MAX_VALUE, false, 3, 1, 2)) {
+                for (final ReadAhead.Slot file : sut) {
+                    texts.add(text(file.take()));
+                }
+            }
+        }
+
+        assertThat(texts, containsInAnyOrder("1 + 2;", "3 * 4;", "\u00e4;"));
+    }
+
+    @Test
+    public void release_returnsCharsToPool() throws IOException {
+        final ReadAhead.Pool pool = new ReadAhead.Pool(0, 2);
+        pool.reserve(2);
+        final ReadAhead.Loaded sut = new ReadAhead.Loaded("a.snf", "1;".toCharArray(), 2, 0, 2, null, pool);
+
+        sut.release();
+        sut.release();
+
+        assertThat(pool.countAvailable(), is(1));
+        assertThat(pool.getReserved(), is(0L));
+    }
+
+    @Test(timeout = 10_000)
+    public void reserve_waitsUntilReleasedWithinCapacity() throws IOException, InterruptedException {
+        final ReadAhead.Pool pool = new ReadAhead.Pool(0, 10);
+        pool.reserve(8);
+        final ReadAhead.Loaded first = new ReadAhead.Loaded("a.snf", new char[8], 8, 0, 8, null, pool);
+        final CountDownLatch reserved = new CountDownLatch(1);
+        final Thread second = new Thread(() -> {
+            try {
+                pool.reserve(5);
+                reserved.countDown();
+            } catch (final InterruptedIOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        second.start();
+
+        assertThat(reserved.await(100, TimeUnit.MILLISECONDS), is(false));
+
+        first.release();
+
+        assertThat(reserved.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(pool.getReserved(), is(5L));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void getInput_afterRelease() {
+        final ReadAhead.Loaded sut = new ReadAhead.Loaded(
+            "a.snf", new char[0], 0, 0, 0, null, new ReadAhead.Pool(0, 1));
+        sut.release();
+
+        sut.getInput();
+    }
+}
@@ -1,6 +1,8 @@
 
 package de.weltraumschaf.maven.infallible;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import static org.hamcrest.Matchers.is;
 import org.junit.Test;
@@ -62,4 +64,156 @@ public class ResultFormatterTest {
                 + "Sources parsed: 3, Failed: 2" + NL));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFormatResult_withCached() {
+        final Collector tested = new Collector();
+        tested.add(Result.passed("foo.snf"));
+        tested.add(Result.cached("bar.snf"));
+        tested.add(Result.cached("baz.snf"));
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Sources parsed: 1, Cached: 2, Failed: 0" + NL));
+    }
+
+    @Test
+    public void testFormatResult_withTimedOut() {
+        final Collector tested = new Collector();
+        tested.add(Result.passed("foo.snf"));
+        tested.add(Result.timedOut("snafu.snf"));
+        tested.add(Result.timedOut("bar.snf"));
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Timed out sources:" + NL
+                + "  bar.snf" + NL
+                + "  snafu.snf" + NL
+                + NL
+                + "Sources parsed: 3, Failed: 0" + NL
+                + "Sources timed out: 2" + NL));
+    }
+
+    @Test
+    public void testFormatResult_withSkipped() {
+        final Collector tested = new Collector();
+        tested.add(Result.failed("foo.snf", new ParseCancellationException("Snafu!")));
+        tested.skip(3);
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Failed sources:" + NL
+                + "  foo.snf" + NL
+                + "    Snafu!" + NL
+                + NL
+                + "Sources parsed: 1, Failed: 1" + NL
+                + "Sources skipped after failures: 3" + NL));
+    }
+
+    @Test
+    public void testFormatResult_withFallbacks() {
+        final Collector tested = new Collector();
+        tested.add(Result.passed("foo.snf"));
+        tested.add(Result.passed("bar.snf").withFallback());
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Sources parsed: 2, Failed: 0" + NL
+                + "Sources re-parsed with full LL prediction: 1" + NL));
+    }
+
+    @Test
+    public void testFormatResult_failedSortedByFile() {
+        final Collector tested = new Collector();
+        tested.add(Result.failed("baz.snf", new ParseCancellationException("Snafu two!")));
+        tested.add(Result.passed("foo.snf"));
+        tested.add(Result.failed("bar.snf", new ParseCancellationException("Snafu one!")));
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Failed sources:" + NL
+                + "  bar.snf" + NL
+                + "    Snafu one!" + NL
+                + "  baz.snf" + NL
+                + "    Snafu two!" + NL
+                + NL
+                + "Sources parsed: 3, Failed: 2" + NL));
+    }
+
+    @Test
+    public void testFormatResult_withThroughput() {
+        final Collector tested = new Collector();
+        tested.add(Result.passed("foo.snf").withMetrics(new Metrics(1_000_000, 2_000_000, 3_000_000, 500, 2_000_000)));
+        tested.add(Result.passed("bar.snf").withMetrics(new Metrics(1_000_000, 2_000_000, 3_000_000, 500, 2_000_000)));
+        tested.add(Result.cached("baz.snf"));
+
+        assertThat(
+            sut.format(tested, 2_000_000_000L),
+            is(
+                "Results:" + NL
+                + NL
+                + "Sources parsed: 2, Cached: 1, Failed: 0" + NL
+                + "Throughput: 2 files in 2.000 s, 1.0 files/s, 2.00 MB/s, 500 tokens/s" + NL
+                + "Time spent reading: 2.000 ms, lexing: 4.000 ms, parsing: 6.000 ms" + NL));
+    }
+
+    @Test
+    public void testFormatResult_withSlowest() {
+        final Collector tested = new Collector(2);
+        tested.add(Result.passed("/foo/one.snf").withMetrics(new Metrics(1_000_000, 0, 1_000_000, 10, 100)));
+        tested.add(Result.passed("/foo/two.snf").withMetrics(new Metrics(0, 1_000_000, 4_000_000, 20, 200)));
+        tested.add(Result.passed("/bar/three.snf").withMetrics(new Metrics(0, 0, 1_000_000, 30, 300)));
+        tested.add(Result.passed("/baz/four.snf").withMetrics(new Metrics(0, 0, 500_000, 40, 400)));
+
+        assertThat(
+            sut.format(tested),
+            is(
+                "Results:" + NL
+                + NL
+                + "Sources parsed: 4, Failed: 0" + NL
+                + "Slowest sources:" + NL
+                + "      5.000 ms  /foo/two.snf (read 0.000 ms, lex 1.000 ms, parse 4.000 ms, 20 tokens, 200 bytes)"
+                + NL
+                + "      2.000 ms  /foo/one.snf (read 1.000 ms, lex 0.000 ms, parse 1.000 ms, 10 tokens, 100 bytes)"
+                + NL
+                + "Slowest directories:" + NL
+                + "      7.000 ms  /foo/" + NL
+                + "      1.000 ms  /bar/" + NL));
+    }
+
+    @Test
+    public void testFormatTargets() {
+        final Collector first = new Collector();
+        first.add(Result.passed("foo.snf"));
+        first.add(Result.failed("bar.snf", new ParseCancellationException("Snafu!")));
+        final Collector second = new Collector();
+        second.add(Result.timedOut("foo.snf"));
+        final Map<String, Collector> tested = new LinkedHashMap<>();
+        tested.put("Snafu:startRule", first);
+        tested.put("Snafu:statement", second);
+
+        assertThat(
+            sut.formatTargets(tested),
+            is(
+                "Results per target:" + NL
+                + NL
+                + "Snafu:startRule: Sources parsed: 2, Failed: 1" + NL
+                + "  bar.snf" + NL
+                + "    Snafu!" + NL
+                + "Snafu:statement: Sources parsed: 1, Failed: 0, Timed out: 1" + NL));
+    }
+}
@@ -1,7 +1,15 @@
-
 package de.weltraumschaf.maven.infallible;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import nl.jqno.equalsverifier.EqualsVerifier;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
 import org.junit.Test;
 
 /**
@@ -14,4 +22,37 @@ public class ResultTest {
         EqualsVerifier.forClass(Result.class).verify();
     }
 
-}
\ No newline at end of file
+    private static Result writeAndRead(final Result result) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        result.write(new DataOutputStream(buffer));
+        return Result.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())), "read.snf");
+    }
+
+    @Test
+    public void writeAndRead_passed() throws IOException {
+        final Result result = Result.passed("foo.snf").withFallback().withMetrics(new Metrics(1, 2, 3, 4, 5));
+
+        final Result read = writeAndRead(result);
+
+        assertThat(read.getTestedFile(), is("read.snf"));
+        assertThat(read.getState(), is(Result.State.PASSED));
+        assertThat(read.isFallback(), is(true));
+        assertThat(read.getMetrics(), is(new Metrics(1, 2, 3, 4, 5)));
+        assertThat(read.getFailure(), is(nullValue()));
+    }
+
+    @Test
+    public void writeAndRead_failed() throws IOException {
+        final Result read = writeAndRead(Result.failed("foo.snf", new ParseCancellationException("Syntax error!")));
+
+        assertThat(read.getState(), is(Result.State.FAILED));
+        assertThat(read.getFailure().getMessage(), is("Syntax error!"));
+    }
+
+    @Test
+    public void writeAndRead_cachedAndTimedOut() throws IOException {
+        assertThat(writeAndRead(Result.cached("foo.snf")), is(Result.cached("read.snf")));
+        assertThat(writeAndRead(Result.timedOut("foo.snf")), is(Result.timedOut("read.snf")));
+    }
+
+}
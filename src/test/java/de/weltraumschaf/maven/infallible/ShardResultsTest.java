@@ -0,0 +1,174 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.apache.maven.plugin.MojoExecutionException;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ShardResults}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ShardResultsTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private Path directory() {
+        return tmp.getRoot().toPath().resolve("shards");
+    }
+
+    private void write(final Shard shard, final long skipped, final long elapsedNanos, final Result... results)
+        throws MojoExecutionException {
+        write("", shard, skipped, elapsedNanos, results);
+    }
+
+    private void write(
+        final String runId, final Shard shard, final long skipped, final long elapsedNanos, final Result... results)
+        throws MojoExecutionException {
+        try (ShardResults sut = ShardResults.create(directory(), shard, runId)) {
+            for (final Result result : results) {
+                sut.add(result);
+            }
+
+            sut.finish(skipped, elapsedNanos);
+        }
+    }
+
+    @Test
+    public void fileName() {
+        assertThat(ShardResults.fileName(new Shard(1, 3)), is("shard-2-of-3.results"));
+    }
+
+    @Test
+    public void merge() throws MojoExecutionException {
+        write(new Shard(0, 2), 0, 2_000,
+            Result.passed("a.snf").withMetrics(new Metrics(1, 2, 3, 4, 5)),
+            Result.failed("b.snf", new ParseCancellationException("Syntax error!")));
+        write(new Shard(1, 2), 3, 1_000,
+            Result.cached("c.snf"),
+            Result.timedOut("d.snf"),
+            Result.passed("e.snf").withFallback());
+        final Collector tested = new Collector();
+
+        final long elapsedNanos = ShardResults.merge(directory(), "", tested);
+
+        assertThat(elapsedNanos, is(2_000L));
+        assertThat(tested.count(), is(5L));
+        assertThat(tested.countFailed(), is(1L));
+        assertThat(tested.countCached(), is(1L));
+        assertThat(tested.countTimedOut(), is(1L));
+        assertThat(tested.countFallbacks(), is(1L));
+        assertThat(tested.countSkipped(), is(3L));
+        assertThat(tested.getTotalMetrics(), is(new Metrics(1, 2, 3, 4, 5)));
+        assertThat(tested.timedOutFiles(), contains("d.snf"));
+        assertThat(tested.failures(), contains(
+            Result.failed("b.snf", tested.failures().iterator().next().getFailure())));
+        assertThat(tested.failures().iterator().next().getFailure().getMessage(), is("Syntax error!"));
+    }
+
+    @Test
+    public void merge_missingShard() throws MojoExecutionException {
+        write(new Shard(1, 3), 0, 0);
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("Missing results of shard(s) 1, 3 of 3");
+
+        ShardResults.merge(directory(), "", new Collector());
+    }
+
+    @Test
+    public void create_deletesOtherShardCounts() throws MojoExecutionException {
+        write(new Shard(0, 2), 0, 0);
+        write(new Shard(1, 12), 0, 0);
+        write(new Shard(1, 2), 0, 0);
+
+        assertThat(Files.exists(directory().resolve("shard-1-of-2.results")), is(true));
+        assertThat(Files.exists(directory().resolve("shard-2-of-12.results")), is(false));
+        assertThat(Files.exists(directory().resolve("shard-2-of-2.results")), is(true));
+    }
+
+    @Test
+    public void merge_onlyGivenRun() throws MojoExecutionException {
+        write("41", new Shard(0, 2), 0, 0, Result.passed("stale.snf"));
+        write("42", new Shard(1, 2), 0, 0, Result.passed("b.snf"));
+        final Collector tested = new Collector();
+
+        try {
+            ShardResults.merge(directory(), "42", tested);
+            fail("Expected MojoExecutionException!");
+        } catch (final MojoExecutionException ex) {
+            assertThat(ex.getMessage(), startsWith("Missing results of shard(s) 1 of 2"));
+        }
+
+        write("42", new Shard(0, 2), 0, 0, Result.passed("a.snf"));
+        ShardResults.merge(directory(), "42", tested);
+
+        assertThat(tested.count(), is(2L));
+    }
+
+    @Test
+    public void merge_differentRuns() throws MojoExecutionException {
+        write("41", new Shard(0, 2), 0, 0);
+        write("42", new Shard(1, 2), 0, 0);
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("but others of");
+
+        ShardResults.merge(directory(), "", new Collector());
+    }
+
+    @Test
+    public void merge_noFilesOfRun() throws MojoExecutionException {
+        write("41", new Shard(0, 1), 0, 0);
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("No shard results of run '42' found in");
+
+        ShardResults.merge(directory(), "42", new Collector());
+    }
+
+    @Test
+    public void merge_differentShardCounts() throws MojoExecutionException, IOException {
+        write(new Shard(1, 3), 0, 0);
+        final Path copied = tmp.getRoot().toPath().resolve("moved.results");
+        Files.move(directory().resolve("shard-2-of-3.results"), copied);
+        write(new Shard(0, 2), 0, 0);
+        Files.move(copied, directory().resolve("shard-2-of-3.results"));
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("shards, but others of");
+
+        ShardResults.merge(directory(), "", new Collector());
+    }
+
+    @Test
+    public void merge_incompleteFile() throws MojoExecutionException {
+        try (ShardResults sut = ShardResults.create(directory(), Shard.ALL, "")) {
+            sut.add(Result.passed("a.snf"));
+        }
+
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("are incomplete!");
+
+        ShardResults.merge(directory(), "", new Collector());
+    }
+
+    @Test
+    public void merge_noFiles() throws MojoExecutionException, IOException {
+        Files.createDirectories(directory());
+        thrown.expect(MojoExecutionException.class);
+        thrown.expectMessage("No shard results found in");
+
+        ShardResults.merge(directory(), "", new Collector());
+    }
+}
@@ -0,0 +1,76 @@
+package de.weltraumschaf.maven.infallible;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Shard}.
+ *
+ * @author Sven Strittmatter &lt;weltraumschaf@googlemail.com&gt;
+ */
+public class ShardTest {
+
+    private static final int SHARDS = 4;
+    private static final List<String> PATHS = IntStream.range(0, 1000)
+        .mapToObj(i -> String.format("dir%d/file%d.snf", i % 7, i))
+        .collect(Collectors.toList());
+
+    private static long countContained(final Shard shard) {
+        return PATHS.stream().filter(shard::contains).count();
+    }
+
+    @Test
+    public void contains_allContainsEverything() {
+        assertThat(countContained(Shard.ALL), is((long) PATHS.size()));
+    }
+
+    @Test
+    public void contains_eachFileInExactlyOneShard() {
+        for (final String path : PATHS) {
+            final long shards = IntStream.range(0, SHARDS).filter(i -> new Shard(i, SHARDS).contains(path)).count();
+
+            assertThat(path, shards, is(1L));
+        }
+    }
+
+    @Test
+    public void contains_balanced() {
+        for (int i = 0; i < SHARDS; ++i) {
+            assertThat(countContained(new Shard(i, SHARDS)), is(allOf(greaterThan(200L), lessThan(300L))));
+        }
+    }
+
+    @Test
+    public void contains_stable() {
+        // The shards must not change between JVMs or releases, else agents with different versions overlap.
+        assertThat(new Shard(1, 2).contains("some.snf"), is(true));
+        assertThat(new Shard(1, 2).contains("with_errors.snf"), is(true));
+        assertThat(new Shard(0, 2).contains("without_errors.snf"), is(true));
+    }
+
+    @Test
+    public void contains_ignoresSeparator() {
+        for (int i = 0; i < SHARDS; ++i) {
+            final Shard shard = new Shard(i, SHARDS);
+
+            assertThat(shard.contains("a\\b\\c.snf"), is(shard.contains("a/b/c.snf")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexOutOfRange() {
+        new Shard(2, 2);
+    }
+
+    @Test
+    public void testToString() {
+        assertThat(new Shard(0, 3).toString(), is("1/3"));
+    }
+}